@@ -4,7 +4,7 @@
 
 graph=soc-LiveJournal1
 
-for algorithm in hipg.app.HopDist hipg.app.PageRankWithTermination
+for algorithm in hipg.app.HopDist hipg.app.pregel.PregelHopDist hipg.app.PageRankWithTermination
 do
 	slots=1
 	for n in 1 2 4 8 16 24 32      	   
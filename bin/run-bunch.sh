@@ -208,6 +208,7 @@ JAVACOMMAND="$JAVA_HOME/bin/java $OPT $CONFIG\
  -Xmx$HEAP -Xms$HEAP\
  -Dibis.server.address=$HOSTNAME\
  -Dibis.pool.name=$POOLNAME\
+ -Dhipg.runId=$POOLNAME\
  -Dhipg.poolSize=$POOLSIZE\
   $RUN_JAVAOPTS\
   $ARGS" 
@@ -156,7 +156,7 @@ echo "Executing $NPROC threads of $ARGS"
 COMMAND="java\
  -classpath $CLASSPATH $OPT -Dlog4j.configuration=$LOGPROPS\
  -Dibis.server.address=$HOSTNAME\
- -Dibis.pool.name=$POOL $LOCALRUN_JAVAOPTS\
+ -Dibis.pool.name=$POOL -Dhipg.runId=$POOL $LOCALRUN_JAVAOPTS\
  -Dhipg.poolSize=$NPROC $ARGS" 
 
 echo "$COMMAND" > /dev/stderr
@@ -83,11 +83,6 @@ public class BFS {
 			return s + localQsize;
 		}
 
-		@Reduce
-		public long GlobalVisited(long s) {
-			return s + visited;
-		}
-
 		@Override
 		public void run() {
 			int depth = 0;
@@ -105,12 +100,14 @@ public class BFS {
 				if (Runtime.getRank() == 0)
 					System.out.println("Layer of depth " + depth + " and size " + qs);
 			} while (qs > 0);
-			avgBFS = EstAvgBFS(0.0) / (double) Runtime.getPoolSize();
-			globalVisited = GlobalVisited(0);
+			final double[] stats = GlobalStats(new double[2]);
+			avgBFS = stats[0] / (double) Runtime.getPoolSize();
+			globalVisited = (long) stats[1];
 		}
 
+		/** Estimates the average BFS depth and counts the visited nodes in a single reduction. */
 		@Reduce
-		public double EstAvgBFS(double s) {
+		public double[] GlobalStats(double[] s) {
 			long sum = 0;
 			int count = 0;
 			for (int i = 0; i < g.nodes(); i++) {
@@ -120,7 +117,9 @@ public class BFS {
 					count++;
 				}
 			}
-			return s + (count == 0 ? 0.0 : (double) sum / (double) count);
+			s[0] += (count == 0 ? 0.0 : (double) sum / (double) count);
+			s[1] += visited;
+			return s;
 		}
 
 	}
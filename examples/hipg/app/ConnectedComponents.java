@@ -0,0 +1,359 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package hipg.app;
+
+import hipg.BarrierAndReduce;
+import hipg.Config;
+import hipg.Node;
+import hipg.Reduce;
+import hipg.app.utils.Histogram;
+import hipg.format.GraphCreationException;
+import hipg.format.GraphIO;
+import hipg.graph.ActiveSet;
+import hipg.graph.ExplicitGraph;
+import hipg.graph.ExplicitLocalNode;
+import hipg.graph.ExplicitNodeReference;
+import hipg.runtime.Runtime;
+import hipg.runtime.Synchronizer;
+
+import myutils.ConversionUtils;
+
+/**
+ * Weakly connected components. Every component is labeled with the smallest reference of its nodes.
+ * <p>
+ * The components of the local subgraph of a worker are found first, without messages, with a union-find (hooking
+ * the larger root onto the smaller, and jumping pointers while finding). Every local component then behaves as a
+ * single node of the quotient graph, labeled with the smallest label it knows of, and its nodes with remote
+ * neighbors (the boundary) speak for it. A round consists of two supersteps:
+ * <ul>
+ * <li>propagation: a component whose label decreased sends the label along the remote edges of its boundary (in
+ * both directions); a component receiving a smaller label than its own takes it (min-label propagation),</li>
+ * <li>pointer jumping: a component whose label decreased asks the node its label refers to for that node's label,
+ * which may have decreased in the meantime, and takes it if it is smaller (Shiloach-Vishkin shortcutting).</li>
+ * </ul>
+ * Label messages are idempotent and combine by minimum at the receiving component, so their order does not matter
+ * and only decreasing labels are sent. Without pointer jumping, the number of rounds is the diameter of the quotient
+ * graph, e.g. the number of workers for a line of subgraphs, while with it the labels travel a path of components
+ * in about logarithmically many rounds. Finally, every local component reports its size to the node its label
+ * refers to, which sums the sizes of its component.
+ * <p>
+ * The graph must have its transpose (see {@link GraphIO#readUndirected}). The labels are available per node with
+ * {@link Components#component(int)}, e.g. to restrict the SCC decomposition to a single weak component.
+ */
+public class ConnectedComponents {
+
+	/** Connected components node interface. */
+	public static interface CCNode extends Node {
+		public void ccLabel(Components c, long label);
+
+		public void ccAsk(Components c, long asking);
+
+		public void ccSize(Components c, long size);
+	}
+
+	/** Connected components local node implementation. */
+	public static class CCLocalNode<TNode extends CCNode> extends ExplicitLocalNode<TNode> implements CCNode {
+		public CCLocalNode(ExplicitGraph<TNode> graph, int reference) {
+			super(graph, reference);
+		}
+
+		/** Received a label of a neighbor or an answer to a question. */
+		public final void ccLabel(Components c, long label) {
+			c.offer(reference(), label);
+		}
+
+		/** Asked for the label of the component of this node. */
+		public final void ccAsk(Components c, long asking) {
+			graph.globalNode(asking).ccLabel(c, c.component(reference()));
+		}
+
+		/** Received the size of a local component labeled with this node. */
+		public final void ccSize(Components c, long size) {
+			c.addSize(reference(), size);
+		}
+
+		/** Sends a label along the remote edges of this node. */
+		final void ccPropagate(Components c, long label) {
+			for (int j = localOutdegree(); hasNeighbor(j); j++) {
+				neighbor(j).ccLabel(c, label);
+			}
+			for (int j = localIndegree(); hasInNeighbor(j); j++) {
+				inNeighbor(j).ccLabel(c, label);
+			}
+		}
+
+		/** Asks the node a label refers to for its label. */
+		final void ccJump(Components c, long label) {
+			graph.globalNode(label).ccAsk(c, asReference());
+		}
+
+		/** Reports the size of the local component of this node to the node its label refers to. */
+		final void ccReport(Components c, long label, long size) {
+			graph.globalNode(label).ccSize(c, size);
+		}
+	}
+
+	/** Computes the connected components, executed by all workers. */
+	public static class Components extends Synchronizer {
+		/** The graph. */
+		private final ExplicitGraph<CCNode> g;
+		/** Per local node: parent in the union-find of the local subgraph, the root after the local phase. */
+		private final int[] parent;
+		/** Per local root: the smallest label known. */
+		private final long[] label;
+		/** Per local root: the last label sent to the neighbors and the last label asked for its label. */
+		private final long[] sent, asked;
+		/** Per local root: number of its nodes. */
+		private final long[] localSize;
+		/** Per node labeling a component: size of the component. */
+		private final long[] size;
+		/** Boundary nodes of the local components, grouped by root: boundary[boundaryStart[r] ..]. */
+		private int[] boundary, boundaryStart;
+		/** Local roots whose label decreased. */
+		private ActiveSet<CCNode> changed;
+		/** Sizes of the components labeled with local nodes. */
+		private final Histogram localSizes = new Histogram();
+
+		private Histogram sizes;
+		private long components;
+		private int rounds = 0;
+
+		@SuppressWarnings("unchecked")
+		public <TNode extends CCNode> Components(ExplicitGraph<TNode> g) {
+			if (g.getInTransitions() == null) {
+				throw new RuntimeException("Connected components need the transpose of the graph");
+			}
+			this.g = (ExplicitGraph<CCNode>) g;
+			this.parent = new int[g.nodes()];
+			this.label = new long[g.nodes()];
+			this.sent = new long[g.nodes()];
+			this.asked = new long[g.nodes()];
+			this.localSize = new long[g.nodes()];
+			this.size = new long[g.nodes()];
+		}
+
+		/** Label of the component of a local node: the smallest reference of a node in the component. */
+		public final long component(int id) {
+			return label[find(id)];
+		}
+
+		/** Histogram of the sizes of the components. */
+		public final Histogram sizes() {
+			return sizes;
+		}
+
+		/** Number of components. */
+		public final long components() {
+			return components;
+		}
+
+		/** Number of rounds after which no label decreased. */
+		public final int rounds() {
+			return rounds;
+		}
+
+		/** Finds the local root of a node, halving the path on the way. */
+		private int find(int id) {
+			while (parent[id] != id) {
+				parent[id] = parent[parent[id]];
+				id = parent[id];
+			}
+			return id;
+		}
+
+		/** Hooks the larger of two local roots onto the smaller one. */
+		private void union(int a, int b) {
+			a = find(a);
+			b = find(b);
+			if (a < b) {
+				parent[b] = a;
+			} else if (b < a) {
+				parent[a] = b;
+			}
+		}
+
+		/** Offers a label to the local component of a node. */
+		final void offer(int id, long newLabel) {
+			final int root = find(id);
+			if (newLabel < label[root]) {
+				label[root] = newLabel;
+				changed.activate(root);
+			}
+		}
+
+		/** Adds the size of a local component to the size of the component labeled with a node. */
+		final void addSize(int id, long localSize) {
+			size[id] += localSize;
+		}
+
+		/** Finds the components of the local subgraph and their boundaries. */
+		private void local() {
+			final int n = g.nodes();
+			for (int i = 0; i < n; i++) {
+				parent[i] = i;
+			}
+			for (int i = 0; i < n; i++) {
+				final CCLocalNode<?> node = (CCLocalNode<?>) g.node(i);
+				for (int j = 0; j < node.localOutdegree(); j++) {
+					union(i, node.localNeighbor(j).reference());
+				}
+			}
+			boundaryStart = new int[n + 1];
+			for (int i = 0; i < n; i++) {
+				final int root = find(i);
+				parent[i] = root;
+				localSize[root]++;
+				final CCLocalNode<?> node = (CCLocalNode<?>) g.node(i);
+				if (node.remoteOutdegree() + node.remoteIndegree() > 0) {
+					boundaryStart[root + 1]++;
+				}
+			}
+			for (int r = 0; r < n; r++) {
+				boundaryStart[r + 1] += boundaryStart[r];
+			}
+			boundary = new int[boundaryStart[n]];
+			final int[] filled = new int[n];
+			for (int i = 0; i < n; i++) {
+				final CCLocalNode<?> node = (CCLocalNode<?>) g.node(i);
+				if (node.remoteOutdegree() + node.remoteIndegree() > 0) {
+					final int root = parent[i];
+					boundary[boundaryStart[root] + filled[root]++] = i;
+				}
+			}
+			// the root of a local component is its smallest node, the label its reference
+			for (int r = 0; r < n; r++) {
+				if (parent[r] == r) {
+					label[r] = ExplicitNodeReference.createReference(r, Runtime.getRank());
+					sent[r] = Long.MAX_VALUE;
+					asked[r] = label[r];
+					if (boundaryStart[r + 1] > boundaryStart[r]) {
+						changed.activate(r);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Makes the local roots activated in this superstep current, and counts them. The swap happens
+		 * here, after all messages of the superstep were delivered.
+		 */
+		@BarrierAndReduce
+		public long Superstep(long s) {
+			return s + changed.advance();
+		}
+
+		/** Collects the sizes of the components labeled with local nodes. */
+		@Reduce
+		public Histogram GlobalSizes(Histogram h) {
+			return localSizes.add(h);
+		}
+
+		public void run() {
+			changed = activeSet(g);
+			local();
+			long active = Superstep(0);
+			while (active > 0) {
+				// propagate the decreased labels along the remote edges
+				ActiveSet.Ids ids = changed.ids();
+				for (int r = ids.next(); r >= 0; r = ids.next()) {
+					if (label[r] != sent[r]) {
+						sent[r] = label[r];
+						for (int k = boundaryStart[r]; k < boundaryStart[r + 1]; k++) {
+							((CCLocalNode<?>) g.node(boundary[k])).ccPropagate(this, sent[r]);
+						}
+					}
+					changed.activate(r);
+				}
+				Superstep(0);
+				// jump: ask the nodes the decreased labels refer to for their labels
+				ids = changed.ids();
+				for (int r = ids.next(); r >= 0; r = ids.next()) {
+					if (label[r] != asked[r]) {
+						asked[r] = label[r];
+						((CCLocalNode<?>) g.node(r)).ccJump(this, asked[r]);
+					}
+					if (label[r] != sent[r]) {
+						changed.activate(r);
+					}
+				}
+				active = Superstep(0);
+				rounds++;
+			}
+			changed.clear();
+
+			// sum the sizes of the local components at the nodes labeling the components
+			final int n = g.nodes();
+			for (int r = 0; r < n; r++) {
+				if (parent[r] == r) {
+					((CCLocalNode<?>) g.node(r)).ccReport(this, label[r], localSize[r]);
+				}
+			}
+			barrier();
+			for (int r = 0; r < n; r++) {
+				if (size[r] > 0) {
+					localSizes.add(size[r]);
+				}
+			}
+			sizes = GlobalSizes(new Histogram());
+			components = sizes.count();
+		}
+	}
+
+	/** Plain node. */
+	public static class MyLocalNode extends CCLocalNode<CCNode> {
+		public MyLocalNode(ExplicitGraph<CCNode> graph, int reference) {
+			super(graph, reference);
+		}
+	}
+
+	private static void print(final String msg) {
+		if (Runtime.getRank() == 0) {
+			System.out.println(msg);
+			System.out.flush();
+		}
+	}
+
+	public static void main(String[] args) throws GraphCreationException {
+		if (args.length < 2) {
+			System.err.println(ConnectedComponents.class.getName() + " <graph>");
+			System.err.println("where graph can be specified as one of the following:");
+			System.err.println(GraphIO.formatSpecificationMessage());
+			System.exit(1);
+		}
+
+		// read graph (with the transpose, the components are weak)
+		print("Reading graph in format " + args[0] + " " + args[1]);
+		final long readStart = System.nanoTime();
+		final ExplicitGraph<CCNode> g = hipg.format.GraphIO.readUndirected(MyLocalNode.class, CCNode.class, args[0],
+				args[1], Config.POOLSIZE);
+		final long readTime = System.nanoTime() - readStart;
+		print("Graph with " + g.getGlobalSize() + " nodes read in " + ConversionUtils.ns2sec(readTime) + "s");
+
+		// run connected components
+		final Components cc = new Components(g);
+		final long start = System.nanoTime();
+		Runtime.getRuntime().spawnAll(cc);
+		Runtime.getRuntime().barrier();
+		final long time = System.nanoTime() - start;
+
+		// print results
+		print("Found " + cc.components() + " components in " + cc.rounds() + " rounds, the largest with "
+				+ cc.sizes().maxElement() + " nodes");
+		print(cc.sizes().toString("", " components of size ", null));
+		print("Connected components on " + Config.POOLSIZE + " processors took " + ConversionUtils.ns2sec(time) + "s");
+	}
+}
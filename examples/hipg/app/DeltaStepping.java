@@ -0,0 +1,430 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package hipg.app;
+
+import hipg.BarrierAndReduce;
+import hipg.Config;
+import hipg.Node;
+import hipg.Reduce;
+import hipg.app.utils.RemoteMessageCombiner;
+import hipg.format.GraphCreationException;
+import hipg.format.GraphIO;
+import hipg.graph.ExplicitGraph;
+import hipg.graph.ExplicitLocalNode;
+import hipg.graph.ExplicitNodeReference;
+import hipg.runtime.Runtime;
+import hipg.runtime.Synchronizer;
+
+import myutils.ConversionUtils;
+
+/**
+ * Single-source shortest paths with delta-stepping (Meyer and Sanders). The nodes with tentative distance d wait in
+ * bucket d / delta; buckets are processed in order, the smallest non-empty one agreed on by all workers. Edges are
+ * split into light (weight at most delta) and heavy ones. The light edges of the nodes in the current bucket are
+ * relaxed in supersteps until the bucket stays empty, since they can put nodes back into it; the heavy edges cannot,
+ * so they are relaxed once, from all nodes settled in the bucket. A large delta gives few buckets with many
+ * re-relaxations (Bellman-Ford), a small one many buckets with little parallelism (Dijkstra).
+ * <p>
+ * Each worker keeps the buckets of its own nodes in a cyclic array of lists. Relaxations of the same remote node
+ * within a superstep are combined into one message carrying the minimal distance. The edge weights are the labels of
+ * the transitions (they must not be negative); on a graph without labels every edge has weight 1.
+ */
+public class DeltaStepping {
+
+	/** Distance of a node not reached. */
+	public static final long INF = Long.MAX_VALUE;
+	/** Bucket of a node not waiting in any bucket. */
+	private static final long NONE = -1;
+	/** Maximal number of lists in the cyclic array of buckets. */
+	private static final int MAX_SLOTS = 1 << 16;
+
+	/** Delta-stepping node interface. */
+	public static interface DSNode extends Node {
+		public void dsRelax(Stepper s, long dist);
+	}
+
+	/** Delta-stepping local node implementation. */
+	public static class DSLocalNode<TNode extends DSNode> extends ExplicitLocalNode<TNode> implements DSNode {
+		public DSLocalNode(ExplicitGraph<TNode> graph, int reference) {
+			super(graph, reference);
+		}
+
+		/** Relaxes the distance of this node. */
+		public final void dsRelax(Stepper s, long dist) {
+			s.relax(reference(), dist);
+		}
+
+		/** Sends a combined relaxation to a remote node. */
+		final void dsSend(Stepper s, long target, long dist) {
+			graph.globalNode(target).dsRelax(s, dist);
+		}
+	}
+
+	/** Computes the distances from a source node, executed by all workers. */
+	public static class Stepper extends Synchronizer {
+		/** The graph. */
+		private final ExplicitGraph<DSNode> g;
+		/** The source (null if not local). */
+		private final DSLocalNode<?> source;
+		/** True if the edge weights are the labels of the transitions. */
+		private final boolean labeled;
+		/** Bucket width (chosen from the weights if not positive). */
+		private long delta;
+		/** Local maximal edge weight and number of edges. */
+		private long maxWeight = 0, edges = 0;
+
+		/** Per local node: tentative distance, bucket it waits in (or NONE), settled in the current bucket. */
+		private final long[] dist, queued;
+		private final boolean[] settled;
+		/** Cyclic array of buckets: the nodes waiting in bucket b are in the list b % slots.length. */
+		private int[][] slots;
+		private int[] slotSize;
+		/** The current bucket, its nodes to relax in this superstep and its settled nodes. */
+		private long bucket = NONE;
+		private int[] frontier = new int[16], settledList = new int[16];
+		private int frontierSize = 0, settledSize = 0;
+		/** Nodes put back into the current bucket in this superstep. */
+		private long reinserted = 0;
+
+		/** Relaxations of remote nodes combined in this superstep, with the minimal distance of each. */
+		private long[] targetDist;
+		private final RemoteMessageCombiner combined = new RemoteMessageCombiner(1024) {
+			protected void allocate(int capacity) {
+				targetDist = new long[capacity];
+			}
+
+			protected void send(int slot, long target, int sender) {
+				((DSLocalNode<?>) g.node(sender)).dsSend(Stepper.this, target, targetDist[slot]);
+			}
+		};
+
+		/** Results. */
+		private long globalReached = 0, maxDistance = 0;
+		private int buckets = 0, supersteps = 0;
+
+		@SuppressWarnings("unchecked")
+		public <TNode extends DSNode> Stepper(ExplicitGraph<TNode> g, DSLocalNode<TNode> source, long delta) {
+			this.g = (ExplicitGraph<DSNode>) g;
+			this.source = source;
+			this.labeled = g.getTransitions().hasLabels();
+			this.delta = delta;
+			final int n = g.nodes();
+			this.dist = new long[n];
+			this.queued = new long[n];
+			this.settled = new boolean[n];
+			for (int i = 0; i < n; i++) {
+				dist[i] = INF;
+				queued[i] = NONE;
+				final ExplicitLocalNode<TNode> node = g.node(i);
+				for (int j = 0; node.hasNeighbor(j); j++) {
+					final long w = weight(node, j);
+					if (w < 0) {
+						throw new RuntimeException("Negative weight " + w + " of transition " + j + " of node "
+								+ ExplicitNodeReference.referenceToString(node.asReference()));
+					}
+					maxWeight = Math.max(maxWeight, w);
+				}
+				edges += node.outdegree();
+			}
+		}
+
+		/** Bucket width. */
+		public final long delta() {
+			return delta;
+		}
+
+		/** Number of processed buckets. */
+		public final int buckets() {
+			return buckets;
+		}
+
+		/** Number of supersteps (light and heavy). */
+		public final int supersteps() {
+			return supersteps;
+		}
+
+		/** Number of nodes reached from the source. */
+		public final long reached() {
+			return globalReached;
+		}
+
+		/** Largest distance of a reached node. */
+		public final long maxDistance() {
+			return maxDistance;
+		}
+
+		/** Distance of a local node from the source (INF if not reached). */
+		public final long distance(int id) {
+			return dist[id];
+		}
+
+		private long weight(ExplicitLocalNode<?> node, int j) {
+			return labeled ? node.neighborLabel(j) : 1;
+		}
+
+		private int slot(long b) {
+			return (int) (b % slots.length);
+		}
+
+		private static int[] append(int[] list, int size, int id) {
+			if (size == list.length) {
+				final int[] newList = new int[2 * list.length];
+				System.arraycopy(list, 0, newList, 0, size);
+				list = newList;
+			}
+			list[size] = id;
+			return list;
+		}
+
+		/** Lowers the tentative distance of a local node and moves it to its new bucket. */
+		final void relax(int id, long d) {
+			if (d < dist[id]) {
+				dist[id] = d;
+				final long b = d / delta;
+				if (queued[id] != b) {
+					queued[id] = b;
+					final int s = slot(b);
+					if (slots[s] == null) {
+						slots[s] = new int[16];
+					}
+					slots[s] = append(slots[s], slotSize[s]++, id);
+					if (b == bucket) {
+						reinserted++;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Takes the nodes waiting in the current bucket out of its list, keeping the nodes of later buckets that share
+		 * the list and dropping the stale entries of the nodes that moved.
+		 */
+		private void extract() {
+			final int s = slot(bucket);
+			final int[] list = slots[s];
+			int kept = 0;
+			frontierSize = 0;
+			for (int k = 0; k < slotSize[s]; k++) {
+				final int id = list[k];
+				final long b = queued[id];
+				if (b == bucket) {
+					queued[id] = NONE;
+					frontier = append(frontier, frontierSize++, id);
+					if (!settled[id]) {
+						settled[id] = true;
+						settledList = append(settledList, settledSize++, id);
+					}
+				} else if (b != NONE && slot(b) == s) {
+					list[kept++] = id;
+				}
+			}
+			slotSize[s] = kept;
+		}
+
+		/** Smallest bucket a local node waits in (INF if none), dropping the stale entries on the way. */
+		private long localNextBucket() {
+			long min = INF;
+			for (long k = bucket + 1; k <= bucket + slots.length && k <= min; k++) {
+				final int s = slot(k);
+				final int[] list = slots[s];
+				int kept = 0;
+				for (int i = 0; i < slotSize[s]; i++) {
+					final int id = list[i];
+					final long b = queued[id];
+					if (b != NONE && slot(b) == s) {
+						list[kept++] = id;
+						min = Math.min(min, b);
+					}
+				}
+				slotSize[s] = kept;
+			}
+			return min;
+		}
+
+		/** Relaxes the light or the heavy edges of a local node. */
+		private void relaxEdges(int id, boolean light) {
+			final ExplicitLocalNode<DSNode> node = g.node(id);
+			final long d = dist[id];
+			for (int j = 0; node.hasNeighbor(j); j++) {
+				final long w = weight(node, j);
+				if ((w <= delta) == light) {
+					if (node.isNeighborLocal(j)) {
+						relax(node.localNeighbor(j).reference(), d + w);
+					} else {
+						combine(node.neighborReference(j), id, d + w);
+					}
+				}
+			}
+		}
+
+		/** Combines a relaxation of a remote node with the other relaxations of it. */
+		private void combine(long target, int sender, long d) {
+			final int s = combined.slot(target, sender);
+			if (s < 0) {
+				targetDist[-1 - s] = d;
+			} else if (d < targetDist[s]) {
+				targetDist[s] = d;
+			}
+		}
+
+		/** Computes the maximal edge weight and the numbers of edges and nodes. */
+		@Reduce
+		public long[] GlobalWeights(long[] s) {
+			s[0] = Math.max(s[0], maxWeight);
+			s[1] += edges;
+			s[2] += g.nodes();
+			return s;
+		}
+
+		/** Counts the nodes put back into the current bucket by the light edges in this superstep. */
+		@BarrierAndReduce
+		public long LightStep(long s) {
+			final long r = reinserted;
+			reinserted = 0;
+			return s + r;
+		}
+
+		/** Finds the smallest non-empty bucket, after all relaxations of the current one were delivered. */
+		@BarrierAndReduce
+		public long NextBucket(long s) {
+			return Math.min(s, localNextBucket());
+		}
+
+		/** Computes the number of reached nodes and the largest distance. */
+		@Reduce
+		public long[] Results(long[] s) {
+			for (int i = 0; i < g.nodes(); i++) {
+				if (dist[i] != INF) {
+					s[0]++;
+					s[1] = Math.max(s[1], dist[i]);
+				}
+			}
+			return s;
+		}
+
+		public void run() {
+			final long[] weights = GlobalWeights(new long[3]);
+			if (delta <= 0) {
+				// the maximal weight divided by the average degree
+				delta = Math.max(1, weights[0] * weights[2] / Math.max(1, weights[1]));
+			}
+			slots = new int[(int) Math.min(weights[0] / delta + 2, MAX_SLOTS)][];
+			slotSize = new int[slots.length];
+
+			if (source != null) {
+				relax(source.reference(), 0);
+			}
+			bucket = NextBucket(INF);
+			while (bucket != INF) {
+				buckets++;
+				// light edges, until no node is put back into the bucket
+				long pending = 1;
+				while (pending > 0) {
+					extract();
+					for (int i = 0; i < frontierSize; i++) {
+						relaxEdges(frontier[i], true);
+					}
+					combined.flush();
+					pending = LightStep(0);
+					supersteps++;
+				}
+				// heavy edges, once from every node settled in the bucket
+				for (int i = 0; i < settledSize; i++) {
+					final int id = settledList[i];
+					settled[id] = false;
+					relaxEdges(id, false);
+				}
+				settledSize = 0;
+				combined.flush();
+				bucket = NextBucket(INF);
+				supersteps++;
+			}
+
+			final long[] results = Results(new long[2]);
+			globalReached = results[0];
+			maxDistance = results[1];
+		}
+	}
+
+	/** Plain node. */
+	public static class MyLocalNode extends DSLocalNode<DSNode> {
+		public MyLocalNode(ExplicitGraph<DSNode> graph, int reference) {
+			super(graph, reference);
+		}
+	}
+
+	private static void print(final String msg) {
+		if (Runtime.getRank() == 0) {
+			System.out.println(msg);
+			System.out.flush();
+		}
+	}
+
+	public static void main(String[] args) throws GraphCreationException {
+		if (args.length < 2) {
+			System.err.println(DeltaStepping.class.getName()
+					+ " <graph> [ -delta <bucket width> ] [ <source id> <source owner> ]");
+			System.err.println("where graph can be specified as one of the following:");
+			System.err.println(GraphIO.formatSpecificationMessage());
+			System.exit(1);
+		}
+		long delta = 0;
+		int sourceId = -1, sourceOwner = -1;
+		for (int i = 2; i < args.length; i++) {
+			if (args[i].equals("-delta") && i + 1 < args.length) {
+				delta = Long.parseLong(args[++i]);
+			} else if (sourceId < 0 && i + 1 < args.length) {
+				sourceId = Integer.parseInt(args[i]);
+				sourceOwner = Integer.parseInt(args[++i]);
+			} else {
+				throw new RuntimeException("Unrecognized argument: " + args[i]);
+			}
+		}
+
+		// read graph
+		print("Reading graph in format " + args[0] + " " + args[1]);
+		final long readStart = System.nanoTime();
+		final ExplicitGraph<DSNode> g = hipg.format.GraphIO.readLabeled(MyLocalNode.class, DSNode.class, args[0],
+				args[1], Config.POOLSIZE);
+		final long readTime = System.nanoTime() - readStart;
+		print("Graph with " + g.getGlobalSize() + " nodes read in " + ConversionUtils.ns2sec(readTime) + "s"
+				+ (g.getTransitions().hasLabels() ? "" : " (no labels, all weights are 1)"));
+
+		// run delta-stepping
+		final long src;
+		if (sourceId >= 0) {
+			src = ExplicitNodeReference.createReference(sourceId, sourceOwner);
+		} else if (g.root() != ExplicitNodeReference.NULL_NODE) {
+			src = g.root();
+		} else {
+			src = ExplicitNodeReference.createReference(0, 0);
+		}
+		print("Using source " + ExplicitNodeReference.referenceToString(src));
+		final MyLocalNode srcNode = (MyLocalNode) (ExplicitNodeReference.isLocal(src) && g.hasNode(src) ? g
+				.node(ExplicitNodeReference.getId(src)) : null);
+		final Stepper stepper = new Stepper(g, srcNode, delta);
+		final long start = System.nanoTime();
+		Runtime.getRuntime().spawnAll(stepper);
+		Runtime.getRuntime().barrier();
+		final long time = System.nanoTime() - start;
+
+		// print results
+		print("Reached " + stepper.reached() + " nodes, largest distance " + stepper.maxDistance() + ", delta "
+				+ stepper.delta() + ", " + stepper.buckets() + " buckets in " + stepper.supersteps() + " supersteps");
+		print("DeltaStepping on " + Config.POOLSIZE + " processors took " + ConversionUtils.ns2sec(time) + "s");
+	}
+}
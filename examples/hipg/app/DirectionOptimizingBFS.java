@@ -0,0 +1,346 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package hipg.app;
+
+import hipg.AllReduce;
+import hipg.BarrierAndReduce;
+import hipg.Config;
+import hipg.Node;
+import hipg.Reduce;
+import hipg.format.GraphCreationException;
+import hipg.format.GraphIO;
+import hipg.graph.ActiveSet;
+import hipg.graph.ExplicitGraph;
+import hipg.graph.ExplicitLocalNode;
+import hipg.graph.ExplicitNodeReference;
+import hipg.runtime.Runtime;
+import hipg.runtime.Synchronizer;
+import myutils.ConversionUtils;
+
+/**
+ * Direction-optimizing breadth-first search (Beamer et al.). A level is either expanded top-down, where the frontier
+ * pushes found() messages along its edges, or bottom-up, where every unvisited node checks whether one of its
+ * predecessors is in the frontier and stops at the first one it finds. The bottom-up check of remote predecessors uses
+ * a copy of the global frontier bitmap, gathered with an all-reduce, so it does not send any messages. The direction
+ * of each level is chosen from the frontier size and edge counts reduced at the end of the previous level.
+ * <p>
+ * The traversal can follow the edges forward or backward, and can be restricted to a subset of nodes (e.g. a slice of
+ * the graph in SCC decomposition) by overriding {@link BFSLocalNode#bfsEligible(Traversal)}. Bottom-up levels of
+ * forward traversals, and all levels of backward traversals, need the transpose of the graph (see
+ * {@link GraphIO#readUndirected}).
+ */
+public class DirectionOptimizingBFS {
+
+	/** Top-down to bottom-up switch: edges to check from the frontier > edges to check from the unvisited / ALPHA. */
+	public static final int ALPHA = 14;
+	/** Bottom-up to top-down switch: frontier shrinks and is smaller than the (eligible) nodes / BETA. */
+	public static final int BETA = 24;
+
+	/** BFS node interface. */
+	public static interface BFSNode extends Node {
+		public void bfsFound(Traversal t, int depth);
+	}
+
+	/** BFS local node implementation. */
+	public static class BFSLocalNode<TNode extends BFSNode> extends ExplicitLocalNode<TNode> implements BFSNode {
+		public BFSLocalNode(ExplicitGraph<TNode> graph, int reference) {
+			super(graph, reference);
+		}
+
+		/** Checks if this node takes part in a traversal (all nodes do by default). */
+		public boolean bfsEligible(Traversal t) {
+			return true;
+		}
+
+		/** Called when this node is reached by a traversal at the given depth. */
+		public void bfsVisited(Traversal t, int depth) {
+		}
+
+		/** Reached by a top-down step. */
+		public final void bfsFound(Traversal t, int depth) {
+			t.found(this, depth);
+		}
+
+		/** Expands the node top-down. */
+		final void bfsPush(Traversal t, int depth) {
+			if (t.forward) {
+				for (int j = 0; hasNeighbor(j); j++) {
+					neighbor(j).bfsFound(t, depth);
+				}
+			} else {
+				for (int j = 0; hasInNeighbor(j); j++) {
+					inNeighbor(j).bfsFound(t, depth);
+				}
+			}
+		}
+
+		/** Checks bottom-up if a predecessor of the node is in the frontier. */
+		final boolean bfsPull(Traversal t) {
+			if (t.forward) {
+				for (int j = 0; hasInNeighbor(j); j++) {
+					if (t.inFrontier(inNeighborOwner(j), inNeighborId(j))) {
+						return true;
+					}
+				}
+			} else {
+				for (int j = 0; hasNeighbor(j); j++) {
+					if (t.inFrontier(neighborOwner(j), neighborId(j))) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		final int bfsPushDegree(Traversal t) {
+			return t.forward ? outdegree() : indegree();
+		}
+
+		final int bfsPullDegree(Traversal t) {
+			return t.forward ? indegree() : outdegree();
+		}
+	}
+
+	/** A breadth-first traversal from a root node, executed by all workers. */
+	public static class Traversal extends Synchronizer {
+		/** The traversed graph. */
+		private final ExplicitGraph<BFSNode> g;
+		/** The root (null if not local). */
+		private final BFSLocalNode<?> root;
+		/** Direction of the traversal. */
+		final boolean forward;
+		/** True if levels can be expanded bottom-up. */
+		private final boolean canPull;
+		/** Visited local nodes. */
+		private final long[] visited;
+		/** Frontier (current) and the next frontier (activated). */
+		private ActiveSet<BFSNode> frontier;
+		/** Copy of the global frontier during a bottom-up level. */
+		private long[] globalFrontier;
+		/** First word of the part of each worker in the global frontier. */
+		private int[] firstWord;
+		/** Edges to check top-down from the next frontier. */
+		private long frontierEdges = 0;
+		/** Edges to check bottom-up from the unvisited eligible nodes. */
+		private long unvisitedEdges = 0;
+
+		/** Results. */
+		public long globalVisited = 0;
+		public int levels = 0;
+		public int topDownLevels = 0;
+		public int bottomUpLevels = 0;
+
+		@SuppressWarnings("unchecked")
+		public <TNode extends BFSNode> Traversal(ExplicitGraph<TNode> g, BFSLocalNode<TNode> root, boolean forward) {
+			this.g = (ExplicitGraph<BFSNode>) g;
+			this.root = root;
+			this.forward = forward;
+			this.canPull = (g.getInTransitions() != null);
+			if (!forward && !canPull) {
+				throw new RuntimeException("Backward traversal needs the transpose of the graph");
+			}
+			this.visited = new long[(g.nodes() + 63) >>> 6];
+		}
+
+		private boolean isVisited(int id) {
+			return (visited[id >>> 6] & (1L << id)) != 0;
+		}
+
+		final boolean inFrontier(int owner, int id) {
+			if (owner == Runtime.getRank()) {
+				return frontier.isActive(id);
+			}
+			return (globalFrontier[firstWord[owner] + (id >>> 6)] & (1L << id)) != 0;
+		}
+
+		final void found(BFSLocalNode<?> n, int depth) {
+			if (!isVisited(n.reference()) && n.bfsEligible(this)) {
+				visit(n, depth);
+			}
+		}
+
+		private void visit(BFSLocalNode<?> n, int depth) {
+			final int id = n.reference();
+			visited[id >>> 6] |= 1L << id;
+			frontier.activate(id);
+			frontierEdges += n.bfsPushDegree(this);
+			unvisitedEdges -= n.bfsPullDegree(this);
+			n.bfsVisited(this, depth);
+		}
+
+		/** Computes the sizes of the graph parts and the eligible nodes and their edges. */
+		@Reduce
+		public long[] GlobalSetup(long[] s) {
+			s[Runtime.getRank()] += g.nodes();
+			long eligible = 0;
+			for (int i = 0; i < g.nodes(); i++) {
+				final BFSLocalNode<?> n = (BFSLocalNode<?>) g.node(i);
+				if (n.bfsEligible(this)) {
+					eligible++;
+					unvisitedEdges += n.bfsPullDegree(this);
+				}
+			}
+			s[s.length - 2] += eligible;
+			s[s.length - 1] += unvisitedEdges;
+			return s;
+		}
+
+		/**
+		 * Makes the next frontier the frontier and computes its size, the edges to check from it top-down and the
+		 * edges to check from the unvisited nodes bottom-up. The frontier is advanced here, after all messages of the
+		 * level were delivered and before any message of the next level can arrive.
+		 */
+		@BarrierAndReduce
+		public long[] LevelStats(long[] s) {
+			s[0] += frontier.advance();
+			s[1] += frontierEdges;
+			s[2] += unvisitedEdges;
+			frontierEdges = 0;
+			return s;
+		}
+
+		/** Gathers the global frontier (the bits of the workers are disjoint, so their sum is their union). */
+		@AllReduce
+		public long[] GlobalFrontier(long[] bits) {
+			frontier.addTo(bits, firstWord[Runtime.getRank()]);
+			return bits;
+		}
+
+		public void run() {
+			frontier = activeSet(g);
+			final int poolSize = Runtime.getPoolSize();
+			final long[] setup = GlobalSetup(new long[poolSize + 2]);
+			firstWord = new int[poolSize + 1];
+			for (int i = 0; i < poolSize; i++) {
+				firstWord[i + 1] = firstWord[i] + (int) ((setup[i] + 63) >>> 6);
+			}
+			final long eligible = setup[poolSize];
+
+			if (root != null && root.bfsEligible(this)) {
+				visit(root, 0);
+			}
+			long[] stats = LevelStats(new long[3]);
+			boolean bottomUp = false;
+			boolean growing = true;
+			long frontierSize = stats[0];
+			globalVisited = frontierSize;
+
+			while (frontierSize > 0) {
+				// Choose direction.
+				if (!bottomUp) {
+					bottomUp = canPull && stats[1] > stats[2] / ALPHA;
+				} else if (!growing && frontierSize < eligible / BETA) {
+					bottomUp = false;
+				}
+
+				// Expand the frontier.
+				final int depth = levels + 1;
+				if (bottomUp) {
+					bottomUpLevels++;
+					if (poolSize > 1) {
+						globalFrontier = GlobalFrontier(new long[firstWord[poolSize]]);
+					}
+					for (int i = 0; i < g.nodes(); i++) {
+						if (!isVisited(i)) {
+							final BFSLocalNode<?> n = (BFSLocalNode<?>) g.node(i);
+							if (n.bfsEligible(this) && n.bfsPull(this)) {
+								visit(n, depth);
+							}
+						}
+					}
+					globalFrontier = null;
+				} else {
+					topDownLevels++;
+					final ActiveSet.Ids ids = frontier.ids();
+					for (int id = ids.next(); id >= 0; id = ids.next()) {
+						((BFSLocalNode<?>) g.node(id)).bfsPush(this, depth);
+					}
+				}
+				levels++;
+
+				// Next level.
+				stats = LevelStats(new long[3]);
+				growing = (stats[0] >= frontierSize);
+				frontierSize = stats[0];
+				globalVisited += frontierSize;
+			}
+			frontier.clear();
+		}
+	}
+
+	/** Node that remembers its depth. */
+	public static class MyLocalNode extends BFSLocalNode<BFSNode> {
+		private int dist = -1;
+
+		public MyLocalNode(ExplicitGraph<BFSNode> graph, int reference) {
+			super(graph, reference);
+		}
+
+		@Override
+		public void bfsVisited(Traversal t, int depth) {
+			dist = depth;
+		}
+	}
+
+	private static void print(final String msg) {
+		if (Runtime.getRank() == 0) {
+			System.out.println(msg);
+			System.out.flush();
+		}
+	}
+
+	public static void main(String[] args) throws GraphCreationException {
+		if (args.length < 2) {
+			System.err.println(DirectionOptimizingBFS.class.getName() + " <graph> [ <root id> <root owner> ]");
+			System.err.println("where graph can be specified as one of the following:");
+			System.err.println(GraphIO.formatSpecificationMessage());
+			System.exit(1);
+		}
+
+		// read graph (with the transpose for bottom-up levels)
+		print("Reading graph in format " + args[0] + " " + args[1]);
+		long readStart = System.nanoTime();
+		final ExplicitGraph<BFSNode> g = hipg.format.GraphIO.readUndirected(MyLocalNode.class, BFSNode.class,
+				args[0], args[1], Config.POOLSIZE);
+		final long readTime = System.nanoTime() - readStart;
+		print("Graph with " + g.getGlobalSize() + " nodes read in " + ConversionUtils.ns2sec(readTime) + "s");
+
+		// run BFS
+		final long src;
+		if (args.length >= 4) {
+			src = ExplicitNodeReference.createReference(Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+		} else if (g.root() != ExplicitNodeReference.NULL_NODE) {
+			src = g.root();
+		} else {
+			src = ExplicitNodeReference.createReference(0, 0);
+		}
+		print("Using root " + ExplicitNodeReference.referenceToString(src));
+		final MyLocalNode srcNode = (MyLocalNode) (ExplicitNodeReference.isLocal(src) && g.hasNode(src) ? g
+				.node(ExplicitNodeReference.getId(src)) : null);
+		final Traversal bfs = new Traversal(g, srcNode, true);
+		final long start = System.nanoTime();
+		Runtime.getRuntime().spawnAll(bfs);
+		Runtime.getRuntime().barrier();
+		final long time = System.nanoTime() - start;
+
+		// print results
+		print("Visited " + bfs.globalVisited + " nodes in " + bfs.levels + " levels (" + bfs.topDownLevels
+				+ " top-down, " + bfs.bottomUpLevels + " bottom-up)");
+		print("DirectionOptimizingBFS on " + Config.POOLSIZE + " processors took " + ConversionUtils.ns2sec(time)
+				+ "s");
+	}
+}
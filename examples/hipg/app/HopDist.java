@@ -2,9 +2,9 @@ package hipg.app;
 
 import hipg.Config;
 import hipg.Node;
-import hipg.Reduce;
 import hipg.format.GraphCreationException;
 import hipg.format.GraphIO;
+import hipg.graph.ActiveSet;
 import hipg.graph.ExplicitGraph;
 import hipg.graph.ExplicitLocalNode;
 import hipg.graph.ExplicitNodeReference;
@@ -26,7 +26,6 @@ public class HopDist {
 	public static final class MyLocalNode extends ExplicitLocalNode<MyNode> implements MyNode {
 		// Local variables
 		private int dist, dist_nxt;
-		private boolean updated, updated_nxt;
 
 		public MyLocalNode(ExplicitGraph<MyNode> graph, int reference) {
 			super(graph, reference);
@@ -34,9 +33,9 @@ public class HopDist {
 		
 		@Override
 		public void found(PathFinder ranker, int neighborDist) {
-			if (neighborDist < dist && neighborDist < dist_nxt) {
+			if (neighborDist < dist_nxt) {
 				dist_nxt = neighborDist;
-				updated_nxt = true;
+				ranker.active.activate(this);
 			}
 		}
 
@@ -53,32 +52,28 @@ public class HopDist {
 
 		private final ExplicitGraph<MyNode> g;
 		private final MyLocalNode root;
+		private ActiveSet<MyNode> active;
 
 		public PathFinder(ExplicitGraph<MyNode> g, MyLocalNode root) {
 			this.g = g;
 			this.root = root;
 		}
 
-		@Reduce
-		public boolean existsUpdated(boolean updated) {
-			for (int i = 0; i < g.nodes(); i++) {
-				updated = updated || ((MyLocalNode) g.node(i)).updated;
-			}
-			return updated;
-		}
-
 		@Override
 		public void run() {
+			active = activeSet(g);
 
 			// initialization of vertices
 			for (int i = 0; i < g.nodes(); i++) {
 				MyLocalNode n = (MyLocalNode) g.node(i);
 				n.dist = n == root ? 0 : Integer.MAX_VALUE;
-				n.updated = n == root ? true : false;
 				n.dist_nxt = n.dist;
-				n.updated_nxt = n.updated;
 				nice(i);
 			}
+			if (root != null) {
+				active.activate(root);
+			}
+			active.advance();
 			barrier();
 
 			// master loop
@@ -88,28 +83,26 @@ public class HopDist {
 				fin = true;
 				print("Step " + step);
 
-				// worker step
-				for (int i = 0; i < g.nodes(); i++) {
-					MyLocalNode n = (MyLocalNode) g.node(i);
-					if (n.updated) {
-						n.check(this);
-					}
+				// worker step: only the vertices updated in the previous step
+				ActiveSet.Ids ids = active.ids();
+				for (int i = 0, id = ids.next(); id >= 0; i++, id = ids.next()) {
+					((MyLocalNode) g.node(id)).check(this);
 					nice(i);
 				}
 				barrier();
 
 				// worker step
-				for (int i = 0; i < g.nodes(); i++) {
-					MyLocalNode n = (MyLocalNode) g.node(i);
+				active.advance();
+				ids = active.ids();
+				for (int i = 0, id = ids.next(); id >= 0; i++, id = ids.next()) {
+					MyLocalNode n = (MyLocalNode) g.node(id);
 					n.dist = n.dist_nxt;
-					n.updated = n.updated_nxt;
-					n.updated_nxt = false;
 					nice(i);
 				}
 				barrier();
 
 				// master step
-				fin = !existsUpdated(false);
+				fin = !anyActive(false);
 				barrier();
 
 				// master step
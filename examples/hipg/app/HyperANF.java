@@ -0,0 +1,322 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package hipg.app;
+
+import hipg.BarrierAndReduce;
+import hipg.Config;
+import hipg.Node;
+import hipg.format.GraphCreationException;
+import hipg.format.GraphIO;
+import hipg.graph.ActiveSet;
+import hipg.graph.ExplicitGraph;
+import hipg.graph.ExplicitLocalNode;
+import hipg.graph.ExplicitNodeReference;
+import hipg.runtime.Runtime;
+import hipg.runtime.Synchronizer;
+
+import myutils.ConversionUtils;
+import myutils.MathUtils;
+
+/**
+ * Approximate neighbourhood function (HyperANF). Every node keeps a HyperLogLog counter (an array of 2^b small
+ * registers) that estimates the size of its ball: the set of nodes within distance t from it. In round t every
+ * node whose counter changed in round t-1 sends its registers to its neighbors, which merge them with an
+ * element-wise maximum (the union of the balls). Merging is associative, commutative and idempotent, so messages
+ * can be applied in any order and a node whose counter did not change need not send it again. The sum of the
+ * estimates after round t is the number of pairs of nodes within distance t; the computation stops when no
+ * counter changes, i.e. after about as many rounds as the diameter, each costing about one PageRank step.
+ * <p>
+ * The counters are pushed along the edges, so a node collects the nodes from which it is reachable rather than
+ * the nodes it reaches. Both give the same number of pairs per distance.
+ */
+public class HyperANF {
+
+	/** Default logarithm of the number of registers per counter. */
+	public static final int DEFAULT_LOG2_REGISTERS = 6;
+
+	/** Fraction of the reachable pairs that defines the effective diameter. */
+	public static final double EFFECTIVE_DIAMETER_FRACTION = 0.9;
+
+	/** HyperANF node interface. */
+	public static interface ANFNode extends Node {
+		public void anfMerge(Counter c, byte[] registers);
+	}
+
+	/** HyperANF local node implementation. */
+	public static class ANFLocalNode<TNode extends ANFNode> extends ExplicitLocalNode<TNode> implements ANFNode {
+		public ANFLocalNode(ExplicitGraph<TNode> graph, int reference) {
+			super(graph, reference);
+		}
+
+		/** Merges the counter of a neighbor. */
+		public final void anfMerge(Counter c, byte[] registers) {
+			c.merge(this, registers);
+		}
+
+		/** Sends the counter to the neighbors. */
+		final void anfPush(Counter c, byte[] registers) {
+			for (int j = 0; hasNeighbor(j); j++) {
+				neighbor(j).anfMerge(c, registers);
+			}
+		}
+	}
+
+	/** Computes the neighbourhood function, executed by all workers. */
+	public static class Counter extends Synchronizer {
+		/** The graph. */
+		private final ExplicitGraph<ANFNode> g;
+		/** Logarithm of the number of registers and the number of registers per counter. */
+		private final int log2m, m;
+		/** Per local node: the registers of the current round and the registers being merged into. */
+		private final byte[][] current, merged;
+		/** Per local node: the estimate of the current counter. */
+		private final double[] estimate;
+		/** Sum of the estimates of the local nodes. */
+		private double estimateSum = 0.0;
+		/** Nodes whose counter changed in the previous round (current) and in this round (activated). */
+		private ActiveSet<ANFNode> changed;
+
+		/** Number of pairs of nodes within distance t, for t = 0 .. rounds. */
+		private double[] pairs = new double[16];
+		private int rounds = 0;
+
+		@SuppressWarnings("unchecked")
+		public <TNode extends ANFNode> Counter(ExplicitGraph<TNode> g, int log2m) {
+			if (log2m < 4 || log2m > 16) {
+				throw new RuntimeException("Number of registers must be between 2^4 and 2^16: 2^" + log2m);
+			}
+			this.g = (ExplicitGraph<ANFNode>) g;
+			this.log2m = log2m;
+			this.m = 1 << log2m;
+			this.current = new byte[g.nodes()][];
+			this.merged = new byte[g.nodes()][];
+			this.estimate = new double[g.nodes()];
+		}
+
+		/** Number of rounds after which no counter changed. */
+		public final int rounds() {
+			return rounds;
+		}
+
+		/** Estimated number of pairs of nodes within distance t. */
+		public final double pairs(int t) {
+			return pairs[Math.min(t, rounds)];
+		}
+
+		/** Relative standard deviation of the estimates. */
+		public final double relativeStandardDeviation() {
+			return 1.04 / Math.sqrt(m);
+		}
+
+		/** Estimated average distance between the pairs of connected nodes. */
+		public final double averageDistance() {
+			double sum = 0.0;
+			for (int t = 1; t <= rounds; t++) {
+				sum += t * (pairs[t] - pairs[t - 1]);
+			}
+			final double connected = pairs[rounds] - pairs[0];
+			return connected > 0 ? sum / connected : 0.0;
+		}
+
+		/**
+		 * Estimated effective diameter: the (interpolated) smallest distance within which the given fraction of the
+		 * connected pairs lies.
+		 */
+		public final double effectiveDiameter(double fraction) {
+			final double threshold = fraction * pairs[rounds];
+			int t = 0;
+			while (t < rounds && pairs[t] < threshold) {
+				t++;
+			}
+			if (t == 0 || pairs[t] == pairs[t - 1]) {
+				return t;
+			}
+			return t - 1 + (threshold - pairs[t - 1]) / (pairs[t] - pairs[t - 1]);
+		}
+
+		/** Initializes the counter of a node with the node itself. */
+		private void init(int id) {
+			final byte[] registers = new byte[m];
+			final long hash = mix(ExplicitNodeReference.createReference(id, Runtime.getRank()));
+			final int register = (int) (hash >>> (64 - log2m));
+			final long rest = (hash << log2m) | (1L << (log2m - 1));
+			registers[register] = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+			current[id] = registers;
+			merged[id] = new byte[m];
+			System.arraycopy(registers, 0, merged[id], 0, m);
+			estimate[id] = estimate(registers);
+			estimateSum += estimate[id];
+			changed.activate(id);
+		}
+
+		/** Merges the registers of a neighbor into the counter of a node. */
+		final void merge(ANFLocalNode<?> n, byte[] registers) {
+			final int id = n.reference();
+			final byte[] mine = merged[id];
+			boolean grew = false;
+			for (int j = 0; j < m; j++) {
+				if (registers[j] > mine[j]) {
+					mine[j] = registers[j];
+					grew = true;
+				}
+			}
+			if (grew) {
+				changed.activate(id);
+			}
+		}
+
+		/** HyperLogLog estimate of the number of elements in a counter. */
+		private double estimate(byte[] registers) {
+			double sum = 0.0;
+			int zeros = 0;
+			for (int j = 0; j < m; j++) {
+				sum += 1.0 / (1L << registers[j]);
+				if (registers[j] == 0) {
+					zeros++;
+				}
+			}
+			final double alpha;
+			if (m == 16) {
+				alpha = 0.673;
+			} else if (m == 32) {
+				alpha = 0.697;
+			} else if (m == 64) {
+				alpha = 0.709;
+			} else {
+				alpha = 0.7213 / (1.0 + 1.079 / m);
+			}
+			final double e = alpha * m * m / sum;
+			if (e <= 2.5 * m && zeros > 0) {
+				// small range correction (linear counting)
+				return m * Math.log((double) m / zeros);
+			}
+			return e;
+		}
+
+		/** Finalizer of the SplitMix64 generator, spreads the bits of a node reference. */
+		private static long mix(long z) {
+			z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+			z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+			return z ^ (z >>> 31);
+		}
+
+		/**
+		 * Makes the merged counters of the nodes that changed current and computes the sum of the estimates and the
+		 * number of nodes that changed. The counters are swapped here, after all messages of the round were
+		 * delivered and before any message of the next round can arrive.
+		 */
+		@BarrierAndReduce
+		public double[] Round(double[] s) {
+			s[1] += changed.advance();
+			final ActiveSet.Ids ids = changed.ids();
+			for (int id = ids.next(); id >= 0; id = ids.next()) {
+				final byte[] registers = merged[id];
+				merged[id] = current[id];
+				current[id] = registers;
+				System.arraycopy(registers, 0, merged[id], 0, m);
+				final double e = estimate(registers);
+				estimateSum += e - estimate[id];
+				estimate[id] = e;
+			}
+			s[0] += estimateSum;
+			return s;
+		}
+
+		/** Records the number of pairs within the distance of the current round. */
+		private void record(double p) {
+			if (rounds == pairs.length) {
+				final double[] newPairs = new double[2 * pairs.length];
+				System.arraycopy(pairs, 0, newPairs, 0, pairs.length);
+				pairs = newPairs;
+			}
+			pairs[rounds] = p;
+		}
+
+		public void run() {
+			changed = activeSet(g);
+			for (int i = 0; i < g.nodes(); i++) {
+				init(i);
+			}
+			double[] stats = Round(new double[2]);
+			rounds = 0;
+			record(stats[0]);
+			while (true) {
+				final ActiveSet.Ids ids = changed.ids();
+				for (int id = ids.next(); id >= 0; id = ids.next()) {
+					((ANFLocalNode<?>) g.node(id)).anfPush(this, current[id]);
+				}
+				stats = Round(new double[2]);
+				if (stats[1] == 0) {
+					break;
+				}
+				rounds++;
+				record(stats[0]);
+			}
+			changed.clear();
+		}
+	}
+
+	/** Plain node. */
+	public static class MyLocalNode extends ANFLocalNode<ANFNode> {
+		public MyLocalNode(ExplicitGraph<ANFNode> graph, int reference) {
+			super(graph, reference);
+		}
+	}
+
+	private static void print(final String msg) {
+		if (Runtime.getRank() == 0) {
+			System.out.println(msg);
+			System.out.flush();
+		}
+	}
+
+	public static void main(String[] args) throws GraphCreationException {
+		if (args.length < 2) {
+			System.err.println(HyperANF.class.getName() + " <graph> [ <log2 of registers per node, default "
+					+ DEFAULT_LOG2_REGISTERS + "> ]");
+			System.err.println("where graph can be specified as one of the following:");
+			System.err.println(GraphIO.formatSpecificationMessage());
+			System.exit(1);
+		}
+
+		// read graph
+		print("Reading graph in format " + args[0] + " " + args[1]);
+		final long readStart = System.nanoTime();
+		final ExplicitGraph<ANFNode> g = hipg.format.GraphIO.read(MyLocalNode.class, ANFNode.class, args[0], args[1],
+				Config.POOLSIZE);
+		final long readTime = System.nanoTime() - readStart;
+		print("Graph with " + g.getGlobalSize() + " nodes read in " + ConversionUtils.ns2sec(readTime) + "s");
+
+		// run HyperANF
+		final int log2m = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_LOG2_REGISTERS;
+		final Counter anf = new Counter(g, log2m);
+		print("Starting HyperANF with " + (1 << log2m) + " registers per node (relative standard deviation "
+				+ MathUtils.round3(anf.relativeStandardDeviation()) + ")");
+		final long start = System.nanoTime();
+		Runtime.getRuntime().spawnAll(anf);
+		Runtime.getRuntime().barrier();
+		final long time = System.nanoTime() - start;
+
+		// print results
+		for (int t = 0; t <= anf.rounds(); t++) {
+			print("N(" + t + ") = " + MathUtils.round(anf.pairs(t)));
+		}
+		print("Effective diameter = " + MathUtils.round3(anf.effectiveDiameter(EFFECTIVE_DIAMETER_FRACTION))
+				+ ", average distance = " + MathUtils.round3(anf.averageDistance()));
+		print("HyperANF on " + Config.POOLSIZE + " processors took " + ConversionUtils.ns2sec(time) + "s");
+	}
+}
\ No newline at end of file
@@ -0,0 +1,287 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package hipg.app;
+
+import hipg.AllReduce;
+import hipg.BarrierAndReduce;
+import hipg.Config;
+import hipg.Node;
+import hipg.format.GraphCreationException;
+import hipg.format.GraphIO;
+import hipg.graph.ActiveSet;
+import hipg.graph.ExplicitGraph;
+import hipg.graph.ExplicitLocalNode;
+import hipg.graph.ExplicitNodeReference;
+import hipg.runtime.Runtime;
+import hipg.runtime.Synchronizer;
+
+import myutils.ConversionUtils;
+import myutils.MathUtils;
+
+/**
+ * Multi-source bit-parallel breadth-first search (MS-BFS). Up to 64 sources are traversed at once: every node keeps a
+ * bitmask of the sources that have seen it and of the sources for which it is in the frontier, and a node in the
+ * frontier sends a single message per edge with the OR of its frontier bits. More sources are traversed in batches
+ * of 64. The traversal amortizes the scans and the messages of up to 64 BFSs over one, e.g. for hop statistics from
+ * many sources or for reachability from several pivots.
+ * <p>
+ * The traversal can follow the edges forward or backward (the latter needs the transpose of the graph, see
+ * {@link GraphIO#readUndirected}), and can be restricted to a subset of nodes by overriding
+ * {@link MSLocalNode#msEligible(Traversal)}.
+ */
+public class MultiSourceBFS {
+
+	/** Number of sources traversed at once. */
+	public static final int BATCH = 64;
+
+	/** MS-BFS node interface. */
+	public static interface MSNode extends Node {
+		public void msFound(Traversal t, long sources);
+	}
+
+	/** MS-BFS local node implementation. */
+	public static class MSLocalNode<TNode extends MSNode> extends ExplicitLocalNode<TNode> implements MSNode {
+		public MSLocalNode(ExplicitGraph<TNode> graph, int reference) {
+			super(graph, reference);
+		}
+
+		/** Checks if this node takes part in a traversal (all nodes do by default). */
+		public boolean msEligible(Traversal t) {
+			return true;
+		}
+
+		/**
+		 * Called when this node is reached at the given depth from new sources (bit i stands for the source
+		 * t.batch() + i).
+		 */
+		public void msVisited(Traversal t, long sources, int depth) {
+		}
+
+		/** Reached from the given sources. */
+		public final void msFound(Traversal t, long sources) {
+			t.found(this, sources);
+		}
+
+		/** Expands the node for the given sources. */
+		final void msPush(Traversal t, long sources) {
+			if (t.forward) {
+				for (int j = 0; hasNeighbor(j); j++) {
+					neighbor(j).msFound(t, sources);
+				}
+			} else {
+				for (int j = 0; hasInNeighbor(j); j++) {
+					inNeighbor(j).msFound(t, sources);
+				}
+			}
+		}
+	}
+
+	/** A breadth-first traversal from a list of sources, executed by all workers. */
+	public static class Traversal extends Synchronizer {
+		/** The traversed graph. */
+		private final ExplicitGraph<MSNode> g;
+		/** Global references of the sources. */
+		private final long[] sources;
+		/** Direction of the traversal. */
+		final boolean forward;
+		/** Per local node: sources that have seen the node, that have it in the frontier and in the next frontier. */
+		private final long[] seen, visit, next;
+		/** Nodes in the frontier (current) and in the next frontier (activated). */
+		private ActiveSet<MSNode> frontier;
+		/** First source of the current batch. */
+		private int batch = 0;
+		/** Depth of the frontier. */
+		private int level = -1;
+
+		/** Per source: nodes reached, sum of their depths and the largest depth. */
+		public final long[] reached, depthSum;
+		public final int[] eccentricity;
+
+		@SuppressWarnings("unchecked")
+		public <TNode extends MSNode> Traversal(ExplicitGraph<TNode> g, long[] sources, boolean forward) {
+			this.g = (ExplicitGraph<MSNode>) g;
+			this.sources = sources;
+			this.forward = forward;
+			if (!forward && g.getInTransitions() == null) {
+				throw new RuntimeException("Backward traversal needs the transpose of the graph");
+			}
+			this.seen = new long[g.nodes()];
+			this.visit = new long[g.nodes()];
+			this.next = new long[g.nodes()];
+			this.reached = new long[sources.length];
+			this.depthSum = new long[sources.length];
+			this.eccentricity = new int[sources.length];
+		}
+
+		/** First source of the current batch. */
+		public final int batch() {
+			return batch;
+		}
+
+		final void found(MSLocalNode<?> n, long bits) {
+			final int id = n.reference();
+			final long newBits = bits & ~seen[id];
+			if (newBits != 0 && n.msEligible(this)) {
+				visit(n, newBits, level + 1);
+			}
+		}
+
+		private void visit(MSLocalNode<?> n, long newBits, int depth) {
+			final int id = n.reference();
+			seen[id] |= newBits;
+			next[id] |= newBits;
+			frontier.activate(id);
+			for (long b = newBits; b != 0; b &= b - 1) {
+				final int source = batch + Long.numberOfTrailingZeros(b);
+				reached[source]++;
+				depthSum[source] += depth;
+				eccentricity[source] = depth;
+			}
+			n.msVisited(this, newBits, depth);
+		}
+
+		/**
+		 * Makes the next frontier the frontier and computes its size. The frontier is advanced here, after all
+		 * messages of the level were delivered and before any message of the next level can arrive.
+		 */
+		@BarrierAndReduce
+		public long GlobalFrontierSize(long s) {
+			final int size = frontier.advance();
+			final ActiveSet.Ids ids = frontier.ids();
+			for (int id = ids.next(); id >= 0; id = ids.next()) {
+				visit[id] = next[id];
+				next[id] = 0;
+			}
+			level++;
+			return s + size;
+		}
+
+		/** Computes the global number of nodes reached and the global sum of their depths per source. */
+		@AllReduce
+		public long[] GlobalReached(long[] s) {
+			for (int i = 0; i < sources.length; i++) {
+				s[i] += reached[i];
+				s[sources.length + i] += depthSum[i];
+			}
+			return s;
+		}
+
+		/** Computes the global eccentricity of each source. */
+		@AllReduce(AllReduce.MAX)
+		public int[] GlobalEccentricity(int[] s) {
+			for (int i = 0; i < sources.length; i++) {
+				s[i] = Math.max(s[i], eccentricity[i]);
+			}
+			return s;
+		}
+
+		public void run() {
+			frontier = activeSet(g);
+			for (batch = 0; batch < sources.length; batch += BATCH) {
+				for (int i = 0; i < seen.length; i++) {
+					seen[i] = next[i] = 0L;
+				}
+				level = -1;
+				final int batchEnd = Math.min(sources.length, batch + BATCH);
+				for (int i = batch; i < batchEnd; i++) {
+					final long source = sources[i];
+					if (ExplicitNodeReference.isLocal(source) && g.hasNode(source)) {
+						final MSLocalNode<?> n = (MSLocalNode<?>) g.node(ExplicitNodeReference.getId(source));
+						if (n.msEligible(this)) {
+							visit(n, (1L << (i - batch)) & ~seen[n.reference()], 0);
+						}
+					}
+				}
+				long frontierSize = GlobalFrontierSize(0);
+				while (frontierSize > 0) {
+					final ActiveSet.Ids ids = frontier.ids();
+					for (int id = ids.next(); id >= 0; id = ids.next()) {
+						((MSLocalNode<?>) g.node(id)).msPush(this, visit[id]);
+					}
+					frontierSize = GlobalFrontierSize(0);
+				}
+			}
+			frontier.clear();
+
+			// Combine the statistics.
+			final long[] globalReached = GlobalReached(new long[2 * sources.length]);
+			System.arraycopy(globalReached, 0, reached, 0, sources.length);
+			System.arraycopy(globalReached, sources.length, depthSum, 0, sources.length);
+			final int[] globalEccentricity = GlobalEccentricity(new int[sources.length]);
+			System.arraycopy(globalEccentricity, 0, eccentricity, 0, sources.length);
+		}
+	}
+
+	/** Plain node. */
+	public static class MyLocalNode extends MSLocalNode<MSNode> {
+		public MyLocalNode(ExplicitGraph<MSNode> graph, int reference) {
+			super(graph, reference);
+		}
+	}
+
+	private static void print(final String msg) {
+		if (Runtime.getRank() == 0) {
+			System.out.println(msg);
+			System.out.flush();
+		}
+	}
+
+	public static void main(String[] args) throws GraphCreationException {
+		if (args.length < 2) {
+			System.err.println(MultiSourceBFS.class.getName() + " <graph> [ <number of sources, default 64> ]");
+			System.err.println("where graph can be specified as one of the following:");
+			System.err.println(GraphIO.formatSpecificationMessage());
+			System.exit(1);
+		}
+
+		// read graph
+		print("Reading graph in format " + args[0] + " " + args[1]);
+		final long readStart = System.nanoTime();
+		final ExplicitGraph<MSNode> g = hipg.format.GraphIO.read(MyLocalNode.class, MSNode.class, args[0], args[1],
+				Config.POOLSIZE);
+		final long readTime = System.nanoTime() - readStart;
+		print("Graph with " + g.getGlobalSize() + " nodes read in " + ConversionUtils.ns2sec(readTime) + "s");
+
+		// choose sources: the first nodes of every worker
+		final int numSources = args.length > 2 ? Integer.parseInt(args[2]) : BATCH;
+		final int poolSize = Runtime.getPoolSize();
+		final long[] sources = new long[numSources];
+		for (int i = 0; i < numSources; i++) {
+			sources[i] = ExplicitNodeReference.createReference(i / poolSize, i % poolSize);
+		}
+
+		// run MS-BFS
+		print("Starting MS-BFS from " + numSources + " sources");
+		final Traversal bfs = new Traversal(g, sources, true);
+		final long start = System.nanoTime();
+		Runtime.getRuntime().spawnAll(bfs);
+		Runtime.getRuntime().barrier();
+		final long time = System.nanoTime() - start;
+
+		// print results
+		long reached = 0, depthSum = 0;
+		int diameter = 0;
+		for (int i = 0; i < numSources; i++) {
+			reached += bfs.reached[i];
+			depthSum += bfs.depthSum[i];
+			diameter = Math.max(diameter, bfs.eccentricity[i]);
+		}
+		print("Average reached = " + MathUtils.round((double) reached / numSources) + ", average depth = "
+				+ MathUtils.round((double) depthSum / Math.max(1, reached)) + ", largest eccentricity = " + diameter);
+		print("MS-BFS on " + Config.POOLSIZE + " processors took " + ConversionUtils.ns2sec(time) + "s");
+	}
+}
@@ -31,56 +31,329 @@ import myutils.ConversionUtils;
 import myutils.IOUtils;
 import myutils.Serializable;
 
+/**
+ * Counts the triangles in the undirected version of a graph (an edge connects two nodes if one is a neighbor of the
+ * other). The edges are oriented from the lower to the higher end in the order of (degree, owner, id), so every
+ * node has at most sqrt(2m) higher neighbors, also the hubs. Every node ships the sorted list of its higher
+ * neighbors once to every worker that owns some of them, and there each of these neighbors intersects the list with
+ * its own list of higher neighbors. Every common neighbor closes a triangle, which is counted once, at its middle
+ * node, and credited to all three nodes. Unlike earlier versions, which followed the transitions and counted the
+ * directed 3-cycles, the directions of the transitions do not matter. The counting needs the neighbors sorted, which
+ * the application asks the graph for after reading it, and the transpose of the graph.
+ * 
+ * @author ela -- ekr@cs.vu.nl
+ */
 public class TriangleCounting {
 
+	/** Lists shorter than 1/GALLOP_RATIO of the other list are intersected by binary search. */
+	private static final int GALLOP_RATIO = 16;
+
 	public static interface MyNode extends Node {
-		public void hop1(TriangleCounter s, int srcId, int srcOwner);
+		public void degree(TriangleCounter c, long neighbor, int degree);
 
-		public void hop2(TriangleCounter s, int srcId, int srcOwner);
+		public void higher(TriangleCounter c, long source, long[] higher);
 
-		public void triangle(TriangleCounter s);
+		public void triangles(TriangleCounter c, int count);
 	}
 
 	public static class MyLocalNode extends ExplicitLocalNode<MyNode> implements MyNode {
 
 		private int triangles = 0;
 
+		/** Neighbors in the undirected graph (packed owner and id, sorted) and the edges leading to them. */
+		private long[] neighbors;
+		private int[] edges;
+		/** Degrees of the neighbors. */
+		private int[] degrees;
+		/** Higher neighbors (sorted), the edges leading to them and the triangles to credit them with. */
+		private long[] higher;
+		private int[] higherEdges;
+		private int[] higherTriangles;
+
 		public MyLocalNode(ExplicitGraph<MyNode> graph, int reference) {
 			super(graph, reference);
 		}
 
-		final public void init(TriangleCounter c) {
-			for (int i = 0; hasNeighbor(i); i++) {
-				neighbor(i).hop1(c, reference(), owner());
+		/** This node packed as a neighbor: owner and id. */
+		final long key() {
+			return pack(owner(), reference());
+		}
+
+		/** Builds the sorted list of neighbors. */
+		final void init(TriangleCounter c) {
+			final long[] out = new long[outdegree()];
+			for (int j = 0; j < out.length; j++) {
+				out[j] = pack(neighborOwner(j), neighborId(j));
+			}
+			final long[] in = new long[indegree()];
+			for (int j = 0; j < in.length; j++) {
+				in[j] = pack(inNeighborOwner(j), inNeighborId(j));
+			}
+			final int[] outOrder = sortedOrder(out, localOutdegree(), owner());
+			final int[] inOrder = sortedOrder(in, localIndegree(), owner());
+
+			// merge out and in neighbors, skip duplicates and self-loops
+			final long self = key();
+			neighbors = new long[out.length + in.length];
+			edges = new int[out.length + in.length];
+			int count = 0, i = 0, j = 0;
+			while (i < out.length || j < in.length) {
+				final long next;
+				final int edge;
+				if (j >= in.length || (i < out.length && out[outOrder[i]] <= in[inOrder[j]])) {
+					next = out[outOrder[i]];
+					edge = outOrder[i++];
+				} else {
+					next = in[inOrder[j]];
+					edge = -1 - inOrder[j++];
+				}
+				if (next != self && (count == 0 || neighbors[count - 1] != next)) {
+					neighbors[count] = next;
+					edges[count++] = edge;
+				}
+			}
+			neighbors = shrink(neighbors, count);
+			edges = shrink(edges, count);
+			degrees = new int[count];
+		}
+
+		/** Sends the degree to the neighbors. */
+		final void sendDegree(TriangleCounter c) {
+			final long key = key();
+			final int count = neighbors.length;
+			for (int k = 0; k < count; k++) {
+				if (edges[k] >= 0) {
+					neighbor(edges[k]).degree(c, key, count);
+				} else {
+					inNeighbor(-1 - edges[k]).degree(c, key, count);
+				}
+			}
+		}
+
+		public void degree(TriangleCounter c, long neighbor, int degree) {
+			degrees[indexOf(neighbors, 0, neighbors.length, neighbor)] = degree;
+		}
+
+		/** Selects the neighbors higher in the order of (degree, owner, id). */
+		final void orient(TriangleCounter c) {
+			final long key = key();
+			final int degree = neighbors.length;
+			int count = 0;
+			for (int k = 0; k < neighbors.length; k++) {
+				if (degrees[k] > degree || (degrees[k] == degree && neighbors[k] > key)) {
+					count++;
+				}
+			}
+			higher = new long[count];
+			higherEdges = new int[count];
+			higherTriangles = new int[count];
+			count = 0;
+			for (int k = 0; k < neighbors.length; k++) {
+				if (degrees[k] > degree || (degrees[k] == degree && neighbors[k] > key)) {
+					higher[count] = neighbors[k];
+					higherEdges[count++] = edges[k];
+				}
+			}
+			degrees = null;
+		}
+
+		/** Ships the higher neighbors to the first higher neighbor on every worker. */
+		final void ship(TriangleCounter c) {
+			if (higher.length < 2) {
+				return;
+			}
+			final long key = key();
+			for (int k = 0; k < higher.length; k++) {
+				if (k == 0 || ownerOf(higher[k]) != ownerOf(higher[k - 1])) {
+					if (higherEdges[k] >= 0) {
+						neighbor(higherEdges[k]).higher(c, key, higher);
+					} else {
+						inNeighbor(-1 - higherEdges[k]).higher(c, key, higher);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Receives the higher neighbors of a lower neighbor. Every such neighbor on this worker counts the triangles
+		 * with the source and the source is credited with them.
+		 */
+		public void higher(TriangleCounter c, long source, long[] sourceHigher) {
+			final int rank = owner();
+			int found = 0;
+			int k = indexOfOwner(sourceHigher, rank);
+			while (k < sourceHigher.length && ownerOf(sourceHigher[k]) == rank) {
+				final MyLocalNode middle = (MyLocalNode) c.graph.node(idOf(sourceHigher[k++]));
+				found += middle.intersect(sourceHigher);
+			}
+			if (found > 0) {
+				final int edge = edges[indexOf(neighbors, 0, neighbors.length, source)];
+				if (edge >= 0) {
+					neighbor(edge).triangles(c, found);
+				} else {
+					inNeighbor(-1 - edge).triangles(c, found);
+				}
 			}
 		}
 
-		public void hop1(TriangleCounter c, final int srcId, final int srcOwner) {
-			for (int i = 0; hasNeighbor(i); i++) {
-				neighbor(i).hop2(c, reference(), owner());
+		/**
+		 * Intersects a list of nodes with the higher neighbors of this node, counts the triangles and remembers to
+		 * credit the common neighbors.
+		 */
+		final int intersect(long[] other) {
+			final long[] mine = higher;
+			int found = 0;
+			if (mine.length * GALLOP_RATIO < other.length) {
+				for (int i = 0, from = 0; i < mine.length && from < other.length; i++) {
+					final int k = indexOf(other, from, other.length, mine[i]);
+					if (k >= 0) {
+						higherTriangles[i]++;
+						found++;
+						from = k + 1;
+					} else {
+						from = -1 - k;
+					}
+				}
+			} else if (other.length * GALLOP_RATIO < mine.length) {
+				for (int j = 0, from = 0; j < other.length && from < mine.length; j++) {
+					final int k = indexOf(mine, from, mine.length, other[j]);
+					if (k >= 0) {
+						higherTriangles[k]++;
+						found++;
+						from = k + 1;
+					} else {
+						from = -1 - k;
+					}
+				}
+			} else {
+				int i = 0, j = 0;
+				while (i < mine.length && j < other.length) {
+					if (mine[i] < other[j]) {
+						i++;
+					} else if (mine[i] > other[j]) {
+						j++;
+					} else {
+						higherTriangles[i++]++;
+						j++;
+						found++;
+					}
+				}
 			}
+			triangles += found;
+			return found;
 		}
 
-		public void hop2(TriangleCounter c, final int srcId, final int srcOwner) {
-			for (int i = 0; hasNeighbor(i); i++) {
-				final int dstId = neighborId(i);
-				final int dstOwner = neighborOwner(i);
-				if (srcId == dstId && srcOwner == dstOwner) {
-					triangle(c);
+		/** Credits the higher neighbors with the triangles they close. */
+		final void credit(TriangleCounter c) {
+			for (int k = 0; k < higher.length; k++) {
+				if (higherTriangles[k] > 0) {
+					if (higherEdges[k] >= 0) {
+						neighbor(higherEdges[k]).triangles(c, higherTriangles[k]);
+					} else {
+						inNeighbor(-1 - higherEdges[k]).triangles(c, higherTriangles[k]);
+					}
 				}
 			}
+			neighbors = null;
+			edges = null;
+			higher = null;
+			higherEdges = null;
+			higherTriangles = null;
 		}
 
-		public void triangle(TriangleCounter c) {
-			triangles++;
+		public void triangles(TriangleCounter c, int count) {
+			triangles += count;
 		}
 	}
 
+	/** Neighbor packed so that the neighbors sort by owner and then by id. */
+	private static long pack(int owner, int id) {
+		return ((long) owner << 32) | id;
+	}
+
+	private static int ownerOf(long key) {
+		return (int) (key >>> 32);
+	}
+
+	private static int idOf(long key) {
+		return (int) key;
+	}
+
+	/**
+	 * Computes the order of the neighbors of a node, given the number of local ones. The local neighbors and the
+	 * remote ones are each sorted, so the remote neighbors of lower owners come first, then the local ones and then
+	 * the remote ones of higher owners.
+	 */
+	private static int[] sortedOrder(long[] keys, int local, int rank) {
+		final int[] order = new int[keys.length];
+		int split = local;
+		while (split < keys.length && ownerOf(keys[split]) < rank) {
+			split++;
+		}
+		int k = 0;
+		for (int j = local; j < split; j++) {
+			order[k++] = j;
+		}
+		for (int j = 0; j < local; j++) {
+			order[k++] = j;
+		}
+		for (int j = split; j < keys.length; j++) {
+			order[k++] = j;
+		}
+		for (int j = 1; j < keys.length; j++) {
+			if (keys[order[j - 1]] > keys[order[j]]) {
+				throw new RuntimeException("Neighbors not sorted, call ExplicitGraph.sortNeighbors()");
+			}
+		}
+		return order;
+	}
+
+	/** Binary search in a sorted part of an array; returns the index of the key or -1-(insertion point). */
+	private static int indexOf(long[] a, int from, int to, long key) {
+		int lo = from, hi = to - 1;
+		while (lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			if (a[mid] < key) {
+				lo = mid + 1;
+			} else if (a[mid] > key) {
+				hi = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1 - lo;
+	}
+
+	/** Index of the first node of a given owner in a sorted list. */
+	private static int indexOfOwner(long[] a, int owner) {
+		final int k = indexOf(a, 0, a.length, pack(owner, 0));
+		return k >= 0 ? k : -1 - k;
+	}
+
+	private static long[] shrink(long[] a, int length) {
+		if (a.length == length) {
+			return a;
+		}
+		final long[] b = new long[length];
+		System.arraycopy(a, 0, b, 0, length);
+		return b;
+	}
+
+	private static int[] shrink(int[] a, int length) {
+		if (a.length == length) {
+			return a;
+		}
+		final int[] b = new int[length];
+		System.arraycopy(a, 0, b, 0, length);
+		return b;
+	}
+
 	public static class TriangleCounter extends Synchronizer {
 
 		private ExplicitGraph<MyNode> graph;
 		private int maxTrianglesCount;
 		private TopTriangleCounts globalMaxTriangles;
+		private long globalTriangles;
 
 		public TriangleCounter(ExplicitGraph<MyNode> graph, int maxTrianglesCount) {
 			this.graph = graph;
@@ -98,15 +371,37 @@ public class TriangleCounting {
 			return maxTriangles;
 		}
 
+		@Reduce
+		public long SumTriangles(long sum) {
+			for (int i = 0; i < graph.nodes(); i++) {
+				sum += ((MyLocalNode) graph.node(i)).triangles;
+			}
+			return sum;
+		}
+
 		public void run() {
 			for (int i = 0; i < graph.nodes(); i++) {
-				MyLocalNode node = (MyLocalNode) graph.node(i);
-				node.init(this);
-				if (i % 500 == 0)
-					Runtime.nice();
+				((MyLocalNode) graph.node(i)).init(this);
+			}
+			barrier();
+			for (int i = 0; i < graph.nodes(); i++) {
+				((MyLocalNode) graph.node(i)).sendDegree(this);
+			}
+			barrier();
+			for (int i = 0; i < graph.nodes(); i++) {
+				((MyLocalNode) graph.node(i)).orient(this);
+			}
+			barrier();
+			for (int i = 0; i < graph.nodes(); i++) {
+				((MyLocalNode) graph.node(i)).ship(this);
+			}
+			barrier();
+			for (int i = 0; i < graph.nodes(); i++) {
+				((MyLocalNode) graph.node(i)).credit(this);
 			}
 			barrier();
 			globalMaxTriangles = MaxTriangles(null);
+			globalTriangles = SumTriangles(0) / 3;
 		}
 
 	}
@@ -121,17 +416,21 @@ public class TriangleCounting {
 	public static void main(String[] args) throws GraphCreationException {
 		if (args.length < 2) {
 			System.err.println(TriangleCounter.class.getName() + " <graph>  [ <max top triangles, default 10> ]");
+			System.err.println("counts the triangles of the undirected graph: nodes a, b, c form a triangle");
+			System.err.println("if each pair is connected by a transition in either direction");
+			System.err.println("(not the directed 3-cycles a->b->c->a)");
 			System.err.println("where graph can be specifiec as one of the following:");
 			System.err.println(GraphIO.formatSpecificationMessage());
 			System.exit(1);
 		}
 		int topTrianglesCount = args.length > 2 ? Integer.parseInt(args[2]) : 10;
 
-		// read graph
+		// read graph (with the transpose, triangles are counted in the undirected graph)
 		print("Reading graph in format " + args[0] + " " + args[1]);
 		final long readStart = System.nanoTime();
-		final ExplicitGraph<MyNode> graph = hipg.format.GraphIO.read(MyLocalNode.class, MyNode.class, args[0], args[1],
-				Config.POOLSIZE);
+		final ExplicitGraph<MyNode> graph = hipg.format.GraphIO.readUndirected(MyLocalNode.class, MyNode.class,
+				args[0], args[1], Config.POOLSIZE);
+		graph.sortNeighbors();
 		final long readTime = System.nanoTime() - readStart;
 		print("Graph read in " + ConversionUtils.ns2sec(readTime) + "s with " + graph.getGlobalSize());
 
@@ -144,6 +443,7 @@ public class TriangleCounting {
 		final long time = System.nanoTime() - start;
 
 		// print results
+		print("Found " + triangleCounter.globalTriangles + " triangles");
 		print(triangleCounter.globalMaxTriangles.toString());
 		print("TriangleCounter on " + Runtime.getPoolSize() + " processors took " + ConversionUtils.ns2sec(time) + "s");
 	}
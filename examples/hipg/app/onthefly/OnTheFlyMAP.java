@@ -33,7 +33,6 @@
 package hipg.app.onthefly;
 
 import hipg.BarrierAndReduce;
-import hipg.Config;
 import hipg.LocalNode;
 import hipg.app.onthefly.SpinJadi.SpinjaAlgorithm;
 import hipg.app.onthefly.SpinJadi.SpinjaLocalNode;
@@ -229,15 +228,8 @@ public class OnTheFlyMAP {
 			} while (globalAccepting > 0);
 			barrier();
 			SpinJadi.EndTime = System.currentTimeMillis();
-			globalStored = GlobalStoredNodes(new long[Config.POOLSIZE]);
-			globalNotStored = GlobalNotStoredNodes(0);
-			globalMatched = GlobalMatched(0);
-			globalMaxStateLen = GlobalMaxStateLen(-1);
-			globalMaxDepth = GlobalMaxDepth(-1);
-			globalMemory = GlobalMemory(0);
-			globalHashConflicts = GlobalHashConflicts(0);
-			globalHashtableLen = GlobalHashtableLength(0);
-			globalRealAtomic = GlobalRealAtomics(0);
+			final long[] statistics = GlobalStatistics(newStatistics());
+			setGlobalStatistics(statistics);
 			globalAccepting = GlobalAccepting(0);
 		}
 
@@ -88,15 +88,8 @@ public class OnTheFlyVisitor {
 			}
 			barrier();
 			SpinJadi.EndTime = System.currentTimeMillis();
-			globalStored = GlobalStoredNodes(new long[Runtime.getPoolSize()]);
-			globalNotStored = GlobalNotStoredNodes(0);
-			globalMatched = GlobalMatched(0);
-			globalMaxStateLen = GlobalMaxStateLen(-1);
-			globalMaxDepth = GlobalMaxDepth(-1);
-			globalMemory = GlobalMemory(0);
-			globalHashConflicts = GlobalHashConflicts(0);
-			globalHashtableLen = GlobalHashtableLength(0);
-			globalRealAtomic = GlobalRealAtomics(0);
+			final long[] statistics = GlobalStatistics(newStatistics());
+			setGlobalStatistics(statistics);
 		}
 	}
 
@@ -214,29 +214,23 @@ public class SpinJadi {
 			stopped = true;
 		}
 
-		@Reduce
-		protected long[] GlobalStoredNodes(long[] arr) {
-			arr[Runtime.getRank()] = g.nodes();
-			return arr;
-		}
-
-		@Reduce
-		protected long GlobalNotStoredNodes(long s) {
-			return s + g.getNotStoredNodesCount();
-		}
+		/* Slots of the statistics computed by GlobalStatistics. */
+		private static final int NOT_STORED = 0, MATCHED = 1, MAX_STATE_LEN = 2, MAX_DEPTH = 3, MEMORY = 4,
+				HASH_CONFLICTS = 5, HASHTABLE_LEN = 6, REAL_ATOMIC = 7, STORED = 8;
 
-		@Reduce
-		protected long GlobalMatched(long s) {
-			return s + (long) g.getMatchedNodesCount();
+		/** Creates the initial value for GlobalStatistics. */
+		protected static long[] newStatistics() {
+			return new long[STORED + Runtime.getPoolSize()];
 		}
 
+		/**
+		 * Computes all the search statistics in a single reduction (one token pass instead of one per statistic).
+		 */
 		@Reduce
-		public int GlobalMaxDepth(int maxDepth) {
-			return (maxDepth > this.maxDepth ? maxDepth : this.maxDepth);
-		}
-
-		@Reduce
-		protected int GlobalMaxStateLen(int maxLen) {
+		protected long[] GlobalStatistics(long[] s) {
+			s[NOT_STORED] += g.getNotStoredNodesCount();
+			s[MATCHED] += (long) g.getMatchedNodesCount();
+			int maxLen = (int) s[MAX_STATE_LEN];
 			PairIterator<byte[], LocalNode<TNode>> iter = g.map().stateNodeIterator();
 			while (iter.hasNext()) {
 				byte[] key = iter.next();
@@ -244,28 +238,29 @@ public class SpinJadi {
 					maxLen = key.length;
 				}
 			}
-			return maxLen;
-		}
-
-		@Reduce
-		protected long GlobalMemory(long s) {
+			s[MAX_STATE_LEN] = maxLen;
+			s[MAX_DEPTH] = Math.max(s[MAX_DEPTH], maxDepth);
 			final java.lang.Runtime r = java.lang.Runtime.getRuntime();
-			return s + (r.totalMemory() - r.freeMemory());
-		}
-
-		@Reduce
-		protected long GlobalHashConflicts(long s) {
-			return s + g.map().conflicts();
+			s[MEMORY] += (r.totalMemory() - r.freeMemory());
+			s[HASH_CONFLICTS] += g.map().conflicts();
+			s[HASHTABLE_LEN] += g.map().capacity();
+			s[REAL_ATOMIC] += realAtomic;
+			s[STORED + Runtime.getRank()] = g.nodes();
+			return s;
 		}
 
-		@Reduce
-		protected long GlobalHashtableLength(long s) {
-			return s + g.map().capacity();
-		}
-
-		@Reduce
-		protected long GlobalRealAtomics(long s) {
-			return s + realAtomic;
+		/** Stores the statistics computed by GlobalStatistics. */
+		protected void setGlobalStatistics(long[] s) {
+			globalNotStored = s[NOT_STORED];
+			globalMatched = s[MATCHED];
+			globalMaxStateLen = (int) s[MAX_STATE_LEN];
+			globalMaxDepth = (int) s[MAX_DEPTH];
+			globalMemory = s[MEMORY];
+			globalHashConflicts = s[HASH_CONFLICTS];
+			globalHashtableLen = s[HASHTABLE_LEN];
+			globalRealAtomic = s[REAL_ATOMIC];
+			globalStored = new long[s.length - STORED];
+			System.arraycopy(s, STORED, globalStored, 0, globalStored.length);
 		}
 
 		public void printStats() {
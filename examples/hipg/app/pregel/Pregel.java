@@ -0,0 +1,445 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package hipg.app.pregel;
+
+import hipg.BarrierAndReduce;
+import hipg.Node;
+import hipg.app.utils.RemoteMessageCombiner;
+import hipg.graph.ActiveSet;
+import hipg.graph.ExplicitGraph;
+import hipg.graph.ExplicitLocalNode;
+import hipg.graph.ExplicitNodeReference;
+import hipg.runtime.Runtime;
+import hipg.runtime.Synchronizer;
+
+/**
+ * Vertex-centric (Pregel-style) programs. A program is a subclass of {@link Vertex} whose
+ * {@link Vertex#compute(Computation, Messages)} is called in supersteps; it reads the messages sent to the vertex in
+ * the previous superstep, updates the fields of the vertex, sends messages and may vote to halt. A halted vertex is
+ * not computed until a message arrives for it, and the computation ends when all vertices halted and no messages are
+ * in flight (or after a given number of supersteps).
+ * <p>
+ * The {@link Computation} owns the superstep loop: the inboxes (double-buffered, so messages of a superstep are read
+ * in the next one), the active set of vertices that did not halt or received a message, and the barriers. Messages
+ * are longs (doubles can be sent with their bits). With a {@link Combiner}, a vertex keeps a single combined value
+ * instead of a list of messages, and messages to the same remote vertex within a superstep are combined before they
+ * are sent. Aggregators combine a double from any vertex into a global value (sum, minimum or maximum) that all
+ * vertices read in the next superstep.
+ */
+public class Pregel {
+
+	/** Aggregation operations. */
+	public static final int SUM = 0, MIN = 1, MAX = 2;
+
+	/** Pregel node interface. */
+	public static interface PregelNode extends Node {
+		public void pregelReceive(Computation c, long message);
+	}
+
+	/** A vertex program. */
+	public static abstract class Vertex<TNode extends PregelNode> extends ExplicitLocalNode<TNode> implements
+			PregelNode {
+		public Vertex(ExplicitGraph<TNode> graph, int reference) {
+			super(graph, reference);
+		}
+
+		/** Computes the vertex in a superstep, given the messages sent to it in the previous superstep. */
+		public abstract void compute(Computation c, Messages messages);
+
+		/** Receives a message (for the next superstep). */
+		public final void pregelReceive(Computation c, long message) {
+			c.receive(reference(), message);
+		}
+
+		/** Sends a message to a remote vertex. */
+		final void pregelSend(Computation c, long target, long message) {
+			graph.globalNode(target).pregelReceive(c, message);
+		}
+	}
+
+	/** Combines two messages to the same vertex into one; must be commutative and associative. */
+	public static abstract class Combiner {
+		public abstract long combine(long m1, long m2);
+	}
+
+	/** Keeps the smallest message. */
+	public static final class MinCombiner extends Combiner {
+		public long combine(long m1, long m2) {
+			return Math.min(m1, m2);
+		}
+	}
+
+	/** Keeps the largest message. */
+	public static final class MaxCombiner extends Combiner {
+		public long combine(long m1, long m2) {
+			return Math.max(m1, m2);
+		}
+	}
+
+	/** Adds the messages. */
+	public static final class SumCombiner extends Combiner {
+		public long combine(long m1, long m2) {
+			return m1 + m2;
+		}
+	}
+
+	/** Adds the messages, sent as doubles. */
+	public static final class DoubleSumCombiner extends Combiner {
+		public long combine(long m1, long m2) {
+			return toLong(toDouble(m1) + toDouble(m2));
+		}
+	}
+
+	public static final Combiner MIN_COMBINER = new MinCombiner();
+	public static final Combiner MAX_COMBINER = new MaxCombiner();
+	public static final Combiner SUM_COMBINER = new SumCombiner();
+	public static final Combiner DOUBLE_SUM_COMBINER = new DoubleSumCombiner();
+
+	/** Message carrying a double. */
+	public static long toLong(double value) {
+		return Double.doubleToRawLongBits(value);
+	}
+
+	/** Double carried by a message. */
+	public static double toDouble(long message) {
+		return Double.longBitsToDouble(message);
+	}
+
+	/** The messages sent to a vertex in the previous superstep (one, if combined). */
+	public static final class Messages {
+		private long[] values;
+		private int size, next;
+
+		void reset(long[] values, int size) {
+			this.values = values;
+			this.size = size;
+			this.next = 0;
+		}
+
+		/** Number of messages. */
+		public int size() {
+			return size;
+		}
+
+		public boolean hasNext() {
+			return next < size;
+		}
+
+		public long next() {
+			return values[next++];
+		}
+
+		public double nextDouble() {
+			return toDouble(values[next++]);
+		}
+	}
+
+	/** Runs a vertex program in supersteps, executed by all workers. */
+	public static class Computation extends Synchronizer {
+		/** The graph. */
+		private final ExplicitGraph<PregelNode> g;
+		/** Combiner of the messages (null if none). */
+		private final Combiner combiner;
+		/** Operations of the aggregators. */
+		private final int[] aggregators;
+		/** Supersteps after which the computation stops (non-positive if it runs until all vertices halt). */
+		private final int maxSupersteps;
+
+		/** Vertices computed in this superstep (current) and in the next one (activated). */
+		private ActiveSet<PregelNode> active;
+		/** Inboxes with a combiner: combined message of each vertex and if it has one (this and next superstep). */
+		private long[] value, nextValue;
+		private boolean[] has, nextHas;
+		/** Inboxes without a combiner: messages of each vertex (this and next superstep). */
+		private long[][] inbox, nextInbox;
+		private int[] inboxSize, nextInboxSize;
+		private final long[] single = new long[1];
+		private final Messages messages = new Messages();
+
+		/** The current superstep, and if the current vertex voted to halt. */
+		private int superstep = -1;
+		private boolean halted;
+		/** Aggregated values of this superstep (local), of the previous one and of all supersteps (global). */
+		private final double[] aggregate, aggregated, total;
+		/** Messages sent in this superstep (after combining). */
+		private long sent = 0;
+
+		/** Messages to remote vertices combined in this superstep (with a combiner). */
+		private long[] targetMessage;
+		private final RemoteMessageCombiner combined = new RemoteMessageCombiner(1024) {
+			protected void allocate(int capacity) {
+				targetMessage = new long[capacity];
+			}
+
+			protected void send(int slot, long target, int sender) {
+				((Vertex<?>) g.node(sender)).pregelSend(Computation.this, target, targetMessage[slot]);
+				sent++;
+			}
+		};
+
+		/** Results. */
+		private long globalMessages = 0;
+
+		/**
+		 * Creates a computation.
+		 * 
+		 * @param g
+		 *            The graph, whose nodes are vertices
+		 * @param combiner
+		 *            Combiner of the messages or null
+		 * @param maxSupersteps
+		 *            Number of supersteps after which the computation stops, or 0 to run until all vertices halt
+		 * @param aggregators
+		 *            Operations of the aggregators ({@link Pregel#SUM}, {@link Pregel#MIN} or {@link Pregel#MAX})
+		 */
+		@SuppressWarnings("unchecked")
+		public <TNode extends PregelNode> Computation(ExplicitGraph<TNode> g, Combiner combiner, int maxSupersteps,
+				int... aggregators) {
+			this.g = (ExplicitGraph<PregelNode>) g;
+			this.combiner = combiner;
+			this.maxSupersteps = maxSupersteps;
+			this.aggregators = aggregators;
+			for (int op : aggregators) {
+				if (op != SUM && op != MIN && op != MAX) {
+					throw new RuntimeException("Unknown aggregation operation " + op);
+				}
+			}
+			this.aggregate = new double[aggregators.length];
+			this.aggregated = new double[aggregators.length];
+			this.total = new double[aggregators.length];
+			for (int a = 0; a < aggregators.length; a++) {
+				aggregate[a] = aggregated[a] = total[a] = identity(aggregators[a]);
+			}
+			final int n = g.nodes();
+			if (combiner != null) {
+				this.value = new long[n];
+				this.nextValue = new long[n];
+				this.has = new boolean[n];
+				this.nextHas = new boolean[n];
+			} else {
+				this.inbox = new long[n][];
+				this.nextInbox = new long[n][];
+				this.inboxSize = new int[n];
+				this.nextInboxSize = new int[n];
+			}
+		}
+
+		/** The current superstep (after the computation: the number of supersteps). */
+		public final int superstep() {
+			return superstep;
+		}
+
+		/** Number of supersteps after which the computation stops (non-positive if it runs until all vertices halt). */
+		public final int maxSupersteps() {
+			return maxSupersteps;
+		}
+
+		/** Number of messages sent by all vertices (after combining). */
+		public final long messages() {
+			return globalMessages;
+		}
+
+		/** Stops computing the current vertex until a message arrives for it. */
+		public final void voteToHalt() {
+			halted = true;
+		}
+
+		/** Adds a value to an aggregator (read by all vertices in the next superstep). */
+		public final void aggregate(int a, double v) {
+			aggregate[a] = aggregate(aggregators[a], aggregate[a], v);
+		}
+
+		/** Global value of an aggregator in the previous superstep (after the computation: in the last one). */
+		public final double aggregated(int a) {
+			return aggregated[a];
+		}
+
+		/** Global value of an aggregator over all supersteps so far. */
+		public final double total(int a) {
+			return total[a];
+		}
+
+		private static double identity(int op) {
+			return op == SUM ? 0.0 : (op == MIN ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY);
+		}
+
+		private static double aggregate(int op, double v1, double v2) {
+			return op == SUM ? v1 + v2 : (op == MIN ? Math.min(v1, v2) : Math.max(v1, v2));
+		}
+
+		/** Sends a message to a vertex given by its global reference. */
+		public final void sendTo(Vertex<?> from, long target, long message) {
+			if (ExplicitNodeReference.getOwner(target) == Runtime.getRank()) {
+				sent++;
+				receive(ExplicitNodeReference.getId(target), message);
+			} else {
+				sendRemote(from, target, message);
+			}
+		}
+
+		/** Sends a message to the j-th neighbor of a vertex. */
+		public final void sendToNeighbor(Vertex<?> from, int j, long message) {
+			if (from.isNeighborLocal(j)) {
+				sent++;
+				receive(from.localNeighbor(j).reference(), message);
+			} else {
+				sendRemote(from, from.neighborReference(j), message);
+			}
+		}
+
+		/** Sends a message to all neighbors of a vertex. */
+		public final void sendToNeighbors(Vertex<?> from, long message) {
+			for (int j = 0; from.hasNeighbor(j); j++) {
+				sendToNeighbor(from, j, message);
+			}
+		}
+
+		/** Sends a double to all neighbors of a vertex. */
+		public final void sendDoubleToNeighbors(Vertex<?> from, double value) {
+			sendToNeighbors(from, toLong(value));
+		}
+
+		private void sendRemote(Vertex<?> from, long target, long message) {
+			if (combiner != null) {
+				combine(target, from.reference(), message);
+			} else {
+				sent++;
+				from.pregelSend(this, target, message);
+			}
+		}
+
+		/** Puts a message into the inbox of a local vertex for the next superstep, and activates the vertex. */
+		final void receive(int id, long message) {
+			if (combiner != null) {
+				if (nextHas[id]) {
+					nextValue[id] = combiner.combine(nextValue[id], message);
+				} else {
+					nextValue[id] = message;
+					nextHas[id] = true;
+				}
+			} else {
+				long[] list = nextInbox[id];
+				final int size = nextInboxSize[id]++;
+				if (list == null || size == list.length) {
+					final long[] newList = new long[list == null ? 4 : 2 * list.length];
+					if (list != null) {
+						System.arraycopy(list, 0, newList, 0, size);
+					}
+					list = nextInbox[id] = newList;
+				}
+				list[size] = message;
+			}
+			active.activate(id);
+		}
+
+		/** Computes a vertex with its messages. */
+		private void compute(int id) {
+			if (combiner != null) {
+				if (has[id]) {
+					has[id] = false;
+					single[0] = value[id];
+					messages.reset(single, 1);
+				} else {
+					messages.reset(single, 0);
+				}
+			} else {
+				messages.reset(inbox[id], inboxSize[id]);
+				inboxSize[id] = 0;
+			}
+			halted = false;
+			((Vertex<?>) g.node(id)).compute(this, messages);
+			if (!halted) {
+				active.activate(id);
+			}
+		}
+
+		/** Combines a message to a remote vertex with the other messages to it. */
+		private void combine(long target, int sender, long message) {
+			final int s = combined.slot(target, sender);
+			if (s < 0) {
+				targetMessage[-1 - s] = message;
+			} else {
+				targetMessage[s] = combiner.combine(targetMessage[s], message);
+			}
+		}
+
+		/** Initial value of the reduction of a superstep: counts, followed by the aggregators. */
+		private double[] superstepInit() {
+			final double[] s = new double[2 + aggregators.length];
+			for (int a = 0; a < aggregators.length; a++) {
+				s[2 + a] = identity(aggregators[a]);
+			}
+			return s;
+		}
+
+		/**
+		 * Makes the vertices activated in this superstep active and swaps the inboxes, after all messages of the
+		 * superstep were delivered and before any message of the next one can arrive. Counts the active vertices and
+		 * the sent messages and aggregates the values of the superstep.
+		 */
+		@BarrierAndReduce
+		public double[] Superstep(double[] s) {
+			s[0] += active.advance();
+			s[1] += sent;
+			sent = 0;
+			for (int a = 0; a < aggregators.length; a++) {
+				s[2 + a] = aggregate(aggregators[a], s[2 + a], aggregate[a]);
+				aggregate[a] = identity(aggregators[a]);
+			}
+			if (combiner != null) {
+				final long[] v = value;
+				value = nextValue;
+				nextValue = v;
+				final boolean[] h = has;
+				has = nextHas;
+				nextHas = h;
+			} else {
+				final long[][] l = inbox;
+				inbox = nextInbox;
+				nextInbox = l;
+				final int[] ls = inboxSize;
+				inboxSize = nextInboxSize;
+				nextInboxSize = ls;
+			}
+			return s;
+		}
+
+		public void run() {
+			active = activeSet(g);
+			for (int i = 0; i < g.nodes(); i++) {
+				active.activate(i);
+			}
+			double[] stats = Superstep(superstepInit());
+			superstep = 0;
+			while (stats[0] > 0 && (maxSupersteps <= 0 || superstep < maxSupersteps)) {
+				final ActiveSet.Ids ids = active.ids();
+				for (int id = ids.next(); id >= 0; id = ids.next()) {
+					compute(id);
+				}
+				combined.flush();
+				stats = Superstep(superstepInit());
+				globalMessages += (long) stats[1];
+				for (int a = 0; a < aggregators.length; a++) {
+					aggregated[a] = stats[2 + a];
+					total[a] = aggregate(aggregators[a], total[a], aggregated[a]);
+				}
+				superstep++;
+			}
+			active.clear();
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package hipg.app.pregel;
+
+import hipg.Config;
+import hipg.app.pregel.Pregel.Computation;
+import hipg.app.pregel.Pregel.Messages;
+import hipg.app.pregel.Pregel.PregelNode;
+import hipg.app.pregel.Pregel.Vertex;
+import hipg.format.GraphCreationException;
+import hipg.format.GraphIO;
+import hipg.graph.ExplicitGraph;
+import hipg.graph.ExplicitNodeReference;
+import hipg.runtime.Runtime;
+
+import myutils.ConversionUtils;
+
+/**
+ * Hop distances from a root as a vertex program (see {@link hipg.app.HopDist}). A vertex whose distance decreases
+ * sends the distance plus one to its neighbors; the messages are combined by taking the minimum. All vertices vote
+ * to halt in every superstep, so only the vertices that received a distance are computed.
+ */
+public class PregelHopDist {
+
+	/** Aggregators: number of reached vertices and largest distance. */
+	private static final int REACHED = 0, DEPTH = 1;
+
+	public static final class DistVertex extends Vertex<PregelNode> {
+		private long dist = Long.MAX_VALUE;
+
+		public DistVertex(ExplicitGraph<PregelNode> graph, int reference) {
+			super(graph, reference);
+		}
+
+		@Override
+		public void compute(Computation c, Messages messages) {
+			final long d = messages.hasNext() ? messages.next() : dist;
+			if (d < dist || (c.superstep() == 0 && d == 0)) {
+				dist = d;
+				c.aggregate(REACHED, 1);
+				c.aggregate(DEPTH, d);
+				c.sendToNeighbors(this, d + 1);
+			}
+			c.voteToHalt();
+		}
+	}
+
+	private static void print(String msg) {
+		if (Runtime.getRank() == 0) {
+			System.out.println(msg);
+			System.out.flush();
+		}
+	}
+
+	public static void main(String[] args) throws GraphCreationException {
+		if (args.length < 2) {
+			System.err.println(PregelHopDist.class.getName() + " <graph> [ <root id> <root owner> ]");
+			System.err.println("where graph can be specified as one of the following:");
+			System.err.println(GraphIO.formatSpecificationMessage());
+			System.exit(1);
+		}
+
+		// read graph
+		print("Reading graph in format " + args[0] + " " + args[1]);
+		final long readStart = System.nanoTime();
+		final ExplicitGraph<PregelNode> g = hipg.format.GraphIO.read(DistVertex.class, PregelNode.class, args[0],
+				args[1], Config.POOLSIZE);
+		final long readTime = System.nanoTime() - readStart;
+		print("Graph with " + g.getGlobalSize() + " nodes read in " + ConversionUtils.ns2sec(readTime) + "s");
+
+		// the root starts at distance 0
+		final long src;
+		if (args.length >= 4) {
+			src = ExplicitNodeReference.createReference(Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+		} else if (g.root() != ExplicitNodeReference.NULL_NODE) {
+			src = g.root();
+		} else {
+			src = ExplicitNodeReference.createReference(0, 0);
+		}
+		print("Using root " + ExplicitNodeReference.referenceToString(src));
+		if (ExplicitNodeReference.isLocal(src) && g.hasNode(src)) {
+			((DistVertex) g.node(ExplicitNodeReference.getId(src))).dist = 0;
+		}
+
+		// run HopDist
+		final Computation c = new Computation(g, Pregel.MIN_COMBINER, 0, Pregel.SUM, Pregel.MAX);
+		final long start = System.nanoTime();
+		Runtime.getRuntime().spawnAll(c);
+		Runtime.getRuntime().barrier();
+		final long time = System.nanoTime() - start;
+
+		// print results
+		print("Reached " + (long) c.total(REACHED) + " nodes, largest distance " + (long) c.total(DEPTH) + ", in "
+				+ c.superstep() + " supersteps, " + c.messages() + " messages");
+		print("PregelHopDist on " + Runtime.getPoolSize() + " processors took " + ConversionUtils.ns2sec(time) + "s");
+	}
+}
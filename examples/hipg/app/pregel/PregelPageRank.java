@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package hipg.app.pregel;
+
+import hipg.Config;
+import hipg.app.pregel.Pregel.Computation;
+import hipg.app.pregel.Pregel.Messages;
+import hipg.app.pregel.Pregel.PregelNode;
+import hipg.app.pregel.Pregel.Vertex;
+import hipg.format.GraphCreationException;
+import hipg.format.GraphIO;
+import hipg.graph.ExplicitGraph;
+import hipg.runtime.Runtime;
+
+import myutils.ConversionUtils;
+import myutils.MathUtils;
+
+/**
+ * PageRank as a vertex program (see {@link hipg.app.PageRank}). In every superstep a vertex sets its rank from the
+ * sum of the ranks sent to it, which a combiner adds up before they are sent, and sends its rank divided by its
+ * outdegree to its neighbors. In the last superstep the vertices aggregate the minimal, maximal and total rank.
+ */
+public class PregelPageRank {
+
+	private static final double D = 0.85;
+
+	/** Aggregators. */
+	private static final int MIN_RANK = 0, MAX_RANK = 1, SUM_RANK = 2;
+
+	public static final class RankVertex extends Vertex<PregelNode> {
+		private double rank = 1.0;
+
+		public RankVertex(ExplicitGraph<PregelNode> graph, int reference) {
+			super(graph, reference);
+		}
+
+		@Override
+		public void compute(Computation c, Messages messages) {
+			if (c.superstep() > 0) {
+				double sum = 0.0;
+				while (messages.hasNext()) {
+					sum += messages.nextDouble();
+				}
+				rank = (1 - D) + D * sum;
+			}
+			if (c.superstep() < c.maxSupersteps() - 1) {
+				if (outdegree() > 0) {
+					c.sendDoubleToNeighbors(this, rank / outdegree());
+				}
+			} else {
+				c.aggregate(MIN_RANK, rank);
+				c.aggregate(MAX_RANK, rank);
+				c.aggregate(SUM_RANK, rank);
+				c.voteToHalt();
+			}
+		}
+	}
+
+	private static void print(String msg) {
+		if (Runtime.getRank() == 0) {
+			System.out.println(msg);
+			System.out.flush();
+		}
+	}
+
+	public static void main(String[] args) throws GraphCreationException {
+		if (args.length < 2) {
+			System.err.println(PregelPageRank.class.getName() + " <graph> [<steps>]");
+			System.err.println("where graph can be specified as one of the following:");
+			System.err.println(GraphIO.formatSpecificationMessage());
+			System.exit(1);
+		}
+		final int steps = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+		// read graph
+		print("Reading graph in format " + args[0] + " " + args[1]);
+		final long readStart = System.nanoTime();
+		final ExplicitGraph<PregelNode> g = hipg.format.GraphIO.read(RankVertex.class, PregelNode.class, args[0],
+				args[1], Config.POOLSIZE);
+		final long readTime = System.nanoTime() - readStart;
+		print("Graph with " + g.getGlobalSize() + " nodes read in " + ConversionUtils.ns2sec(readTime) + "s");
+
+		// run PageRank: the ranks are sent in steps supersteps and computed in one more
+		final Computation c = new Computation(g, Pregel.DOUBLE_SUM_COMBINER, steps + 1, Pregel.MIN, Pregel.MAX,
+				Pregel.SUM);
+		final long start = System.nanoTime();
+		Runtime.getRuntime().spawnAll(c);
+		Runtime.getRuntime().barrier();
+		final long time = System.nanoTime() - start;
+
+		// print results
+		final long N = g.getGlobalSize();
+		print("Computed ranks in interval [" + MathUtils.round3(c.aggregated(MIN_RANK)) + ", "
+				+ MathUtils.round3(c.aggregated(MAX_RANK)) + "] with average "
+				+ MathUtils.round3(c.aggregated(SUM_RANK) / N) + ", sum " + MathUtils.round3(c.aggregated(SUM_RANK))
+				+ ", for graph with global size " + N);
+		print(c.superstep() + " supersteps, " + c.messages() + " messages");
+		print("PregelPageRank on " + Runtime.getPoolSize() + " processors took " + ConversionUtils.ns2sec(time) + "s");
+	}
+}
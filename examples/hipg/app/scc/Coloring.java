@@ -0,0 +1,366 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package hipg.app.scc;
+
+import hipg.BarrierAndReduce;
+import hipg.Config;
+import hipg.Reduce;
+import hipg.app.scc.Trim.LocalTrimNode;
+import hipg.app.scc.Trim.TrimNode;
+import hipg.app.scc.Trim.Trimmer;
+import hipg.app.utils.SccStructure;
+import hipg.format.GraphCreationException;
+import hipg.format.GraphIO;
+import hipg.graph.ActiveSet;
+import hipg.graph.ExplicitGraph;
+import hipg.graph.ExplicitNodeReference;
+import hipg.runtime.Runtime;
+import hipg.runtime.Synchronizer;
+
+import myutils.ConversionUtils;
+import myutils.storage.LongValuePairIterator;
+import myutils.storage.map.LongKeyHashMap;
+
+/**
+ * Coloring SCC decomposition (Orzan). Every remaining node starts with its own reference as color and the colors are
+ * propagated forward with a maximum, so that the color of a node becomes the largest reference of a node that reaches
+ * it. A node that keeps its own color is the root of an SCC: the SCC consists of the nodes of its color that reach it,
+ * found by a backward search from the root restricted to that color. All colors are processed at once: both the
+ * propagation and the backward searches run in bulk supersteps, in which only the nodes whose color changed (or that
+ * were just reached) send messages. The SCCs found are removed and the next iteration colors the remaining nodes.
+ * <p>
+ * Optionally, the graph is trimmed first ({@link Trim}), which removes most of the trivial SCCs, for which coloring
+ * would need an iteration each on a chain. The result is an {@link SccStructure} with a component per SCC, identified
+ * by its root, except the trimmed SCCs of size one, which are only counted. The graph must have its transpose.
+ */
+public class Coloring {
+
+	/** Colored node interface. */
+	public static interface ColorNode extends TrimNode {
+		public void colorMax(Colorer c, long color);
+
+		public void colorBwd(Colorer c, long color);
+
+		public void colorSize(Colorer c, long size);
+	}
+
+	/** Colored local node implementation. */
+	public static class LocalColorNode<TNode extends ColorNode> extends LocalTrimNode<TNode> implements ColorNode {
+		public LocalColorNode(ExplicitGraph<TNode> graph, int reference) {
+			super(graph, reference);
+		}
+
+		/** An in-neighbor offers its color. */
+		public final void colorMax(Colorer c, long color) {
+			c.max(reference(), color);
+		}
+
+		/** An out-neighbor of the given color reaches the root of that color. */
+		public final void colorBwd(Colorer c, long color) {
+			c.bwd(reference(), color);
+		}
+
+		/** Members of the SCC rooted at this node were found on another worker. */
+		public final void colorSize(Colorer c, long size) {
+			c.size(reference(), size);
+		}
+
+		/** Offers a color to the out-neighbors. */
+		final void colorPush(Colorer c, long color) {
+			for (int j = 0; hasNeighbor(j); j++) {
+				neighbor(j).colorMax(c, color);
+			}
+		}
+
+		/** Extends the backward search of a color to the in-neighbors. */
+		final void colorPull(Colorer c, long color) {
+			for (int j = 0; hasInNeighbor(j); j++) {
+				inNeighbor(j).colorBwd(c, color);
+			}
+		}
+
+		/** Reports the members of an SCC to its root. */
+		final void colorReport(Colorer c, long root, long size) {
+			graph.globalNode(root).colorSize(c, size);
+		}
+	}
+
+	/** Decomposes a graph into SCCs by coloring, executed by all workers. */
+	public static class Colorer extends Synchronizer {
+		/** Marks a node removed by trimming. */
+		private static final long TRIMMED = -2;
+
+		/** The graph. */
+		private final ExplicitGraph<ColorNode> g;
+		/** The trimmer that ran before, or null. */
+		private final Trimmer trimmer;
+		/** Per local node: its color, the root of its SCC (or NULL_NODE if not found yet) and the size of the SCC. */
+		private final long[] color, scc, size;
+		/** Local nodes whose SCC is not found yet. */
+		private final int[] remaining;
+		private int remainingCount = 0;
+		/** Nodes whose color changed, or that were reached by a backward search. */
+		private ActiveSet<ColorNode> changed;
+
+		/** The SCCs found on this worker. */
+		private final SccStructure structure = new SccStructure();
+		/** All SCCs found. */
+		private SccStructure globalStructure;
+		private int iterations = 0, supersteps = 0;
+
+		@SuppressWarnings("unchecked")
+		public <TNode extends ColorNode> Colorer(ExplicitGraph<TNode> g, Trimmer trimmer) {
+			if (g.getInTransitions() == null) {
+				throw new RuntimeException("Coloring needs the transpose of the graph");
+			}
+			this.g = (ExplicitGraph<ColorNode>) g;
+			this.trimmer = trimmer;
+			final int n = g.nodes();
+			this.color = new long[n];
+			this.scc = new long[n];
+			this.size = new long[n];
+			this.remaining = new int[n];
+		}
+
+		/** The root of the SCC of a local node, or NULL_NODE if it was trimmed. */
+		public final long component(int id) {
+			return scc[id] == TRIMMED ? ExplicitNodeReference.NULL_NODE : scc[id];
+		}
+
+		/** The SCCs found, except the trimmed SCCs of size one. */
+		public final SccStructure structure() {
+			return globalStructure;
+		}
+
+		/** Number of trimmed SCCs of size one. */
+		public final long trivial() {
+			return trimmer == null ? 0 : trimmer.trivial();
+		}
+
+		/** Number of coloring iterations. */
+		public final int iterations() {
+			return iterations;
+		}
+
+		/** Number of supersteps of all iterations. */
+		public final int supersteps() {
+			return supersteps;
+		}
+
+		private long ref(int id) {
+			return ExplicitNodeReference.createReference(id, Runtime.getRank());
+		}
+
+		/** Colors a local node with the larger of its color and the given one. */
+		final void max(int id, long c) {
+			if (scc[id] == ExplicitNodeReference.NULL_NODE && c > color[id]) {
+				color[id] = c;
+				changed.activate(id);
+			}
+		}
+
+		/** Adds a local node of the given color to the SCC rooted at that color. */
+		final void bwd(int id, long c) {
+			if (scc[id] == ExplicitNodeReference.NULL_NODE && color[id] == c) {
+				scc[id] = c;
+				changed.activate(id);
+			}
+		}
+
+		/** Adds members to the SCC rooted at a local node. */
+		final void size(int id, long s) {
+			size[id] += s;
+		}
+
+		/** Makes the nodes activated in this superstep current, and counts them. */
+		@BarrierAndReduce
+		public long Superstep(long s) {
+			return s + changed.advance();
+		}
+
+		/**
+		 * Drops the nodes whose SCC was found and counts the remaining ones, which start the next iteration colored
+		 * with their own reference. The colors are reset here, before a color of the next iteration can arrive.
+		 */
+		@BarrierAndReduce
+		public long Remaining(long s) {
+			int k = 0;
+			for (int r = 0; r < remainingCount; r++) {
+				final int id = remaining[r];
+				if (scc[id] == ExplicitNodeReference.NULL_NODE) {
+					remaining[k++] = id;
+					color[id] = ref(id);
+					changed.activate(id);
+				}
+			}
+			remainingCount = k;
+			changed.advance();
+			return s + remainingCount;
+		}
+
+		@Reduce
+		public SccStructure GlobalStructure(SccStructure s) {
+			return s.combine(structure);
+		}
+
+		/** Reports the members of the SCCs found on this worker to their roots. */
+		private void report() {
+			// per remote root: the number of local members and a member that sends the report
+			final LongKeyHashMap<int[]> reports = new LongKeyHashMap<int[]>();
+			for (int i = 0; i < g.nodes(); i++) {
+				final long root = scc[i];
+				if (root == TRIMMED) {
+					continue;
+				}
+				if (ExplicitNodeReference.isLocal(root)) {
+					size[ExplicitNodeReference.getId(root)]++;
+				} else {
+					final int[] report = reports.get(root);
+					if (report == null) {
+						reports.put(root, new int[] { 1, i });
+					} else {
+						report[0]++;
+					}
+				}
+			}
+			final LongValuePairIterator<int[]> iter = reports.iterator();
+			while (iter.hasNext()) {
+				final long root = iter.next();
+				final int[] report = iter.value();
+				((LocalColorNode<?>) g.node(report[1])).colorReport(this, root, report[0]);
+			}
+		}
+
+		public void run() {
+			changed = activeSet(g);
+			for (int i = 0; i < g.nodes(); i++) {
+				if (trimmer == null || trimmer.isResidual(i)) {
+					scc[i] = ExplicitNodeReference.NULL_NODE;
+					remaining[remainingCount++] = i;
+				} else {
+					scc[i] = TRIMMED;
+				}
+			}
+			while (Remaining(0) > 0) {
+				iterations++;
+
+				// propagate the colors until they do not change
+				do {
+					final ActiveSet.Ids ids = changed.ids();
+					for (int id = ids.next(); id >= 0; id = ids.next()) {
+						((LocalColorNode<?>) g.node(id)).colorPush(this, color[id]);
+					}
+					supersteps++;
+				} while (Superstep(0) > 0);
+
+				// search backward from all roots at once, within their colors
+				for (int r = 0; r < remainingCount; r++) {
+					final int id = remaining[r];
+					if (color[id] == ref(id)) {
+						bwd(id, color[id]);
+					}
+				}
+				while (Superstep(0) > 0) {
+					final ActiveSet.Ids ids = changed.ids();
+					for (int id = ids.next(); id >= 0; id = ids.next()) {
+						((LocalColorNode<?>) g.node(id)).colorPull(this, scc[id]);
+					}
+					supersteps++;
+				}
+			}
+			changed.clear();
+
+			// count the members of every SCC at its root
+			report();
+			barrier();
+			for (int i = 0; i < g.nodes(); i++) {
+				if (scc[i] == ref(i)) {
+					structure.addComponent(scc[i], size[i]);
+				} else if (scc[i] == TRIMMED && trimmer.isPairLeader(i)) {
+					structure.addComponent(ref(i), 2);
+				}
+			}
+			globalStructure = GlobalStructure(new SccStructure());
+		}
+	}
+
+	/** Plain node. */
+	public static class MyLocalNode extends LocalColorNode<ColorNode> {
+		public MyLocalNode(ExplicitGraph<ColorNode> graph, int reference) {
+			super(graph, reference);
+		}
+	}
+
+	private static void print(final String msg) {
+		if (Runtime.getRank() == 0) {
+			System.out.println(msg);
+			System.out.flush();
+		}
+	}
+
+	public static void main(String[] args) throws GraphCreationException {
+		if (args.length < 2) {
+			System.err.println(Coloring.class.getName() + " <graph> [ -trim | -trim1 ]");
+			System.err.println("where graph can be specified as one of the following:");
+			System.err.println(GraphIO.formatSpecificationMessage());
+			System.err.println("and -trim removes the SCCs of size one and two before coloring "
+					+ "(-trim1 of size one only)");
+			System.exit(1);
+		}
+		boolean trim = false, trim2 = false;
+		for (int i = 2; i < args.length; i++) {
+			if ("-trim".equals(args[i])) {
+				trim = trim2 = true;
+			} else if ("-trim1".equals(args[i])) {
+				trim = true;
+				trim2 = false;
+			} else {
+				throw new RuntimeException("Unrecognized argument: " + args[i]);
+			}
+		}
+
+		// read graph
+		print("Reading graph in format " + args[0] + " " + args[1]);
+		final long readStart = System.nanoTime();
+		final ExplicitGraph<ColorNode> g = hipg.format.GraphIO.readUndirected(MyLocalNode.class, ColorNode.class,
+				args[0], args[1], Config.POOLSIZE);
+		final long readTime = System.nanoTime() - readStart;
+		print("Graph with " + g.getGlobalSize() + " nodes read in " + ConversionUtils.ns2sec(readTime) + "s");
+		final long start = System.nanoTime();
+
+		// trim
+		Trimmer trimmer = null;
+		if (trim) {
+			trimmer = new Trimmer(g, trim2);
+			Runtime.getRuntime().spawnAll(trimmer);
+			Runtime.getRuntime().barrier();
+			print("Trimmed " + trimmer.trivial() + " SCCs of size 1 and " + trimmer.pairs() + " of size 2 in "
+					+ trimmer.rounds() + " supersteps, " + trimmer.residual() + " nodes remain");
+		}
+
+		// color
+		final Colorer colorer = new Colorer(g, trimmer);
+		Runtime.getRuntime().spawnAll(colorer);
+		Runtime.getRuntime().barrier();
+		final long time = System.nanoTime() - start;
+
+		// print results
+		print(colorer.structure().toString(colorer.trivial()));
+		print("Coloring took " + colorer.iterations() + " iterations and " + colorer.supersteps() + " supersteps");
+		print("Coloring on " + Runtime.getPoolSize() + " processors took " + ConversionUtils.ns2sec(time) + "s");
+	}
+}
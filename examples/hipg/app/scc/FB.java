@@ -22,6 +22,7 @@ import hipg.Reduce;
 import hipg.app.scc.Quotient.LocalQuotientNode;
 import hipg.app.scc.Quotient.QuotientNode;
 import hipg.app.scc.Quotient.Quotientable;
+import hipg.app.scc.Trim.Trimmer;
 import hipg.app.utils.Histogram;
 import hipg.format.GraphCreationException;
 import hipg.format.GraphIO;
@@ -37,6 +38,7 @@ import myutils.tuple.pair.FastIntPair;
 public class FB {
 
 	private static final int NOT_VISITED = -1;
+	private static final int TRIMMED = -2;
 	private static final int CHUNK_SIZE = 1024 * 4;
 	private static final ObjectCache<MyLocalNode[]> cache = new ObjectCache<MyLocalNode[]>(1024);
 	private static final Histogram SCCs = new Histogram();
@@ -174,24 +176,57 @@ public class FB {
 
 	public static void main(String[] args) throws GraphCreationException {
 		if (args.length < 2) {
-			System.err.println(FB.class.getName() + " <graph>");
+			System.err.println(FB.class.getName() + " <graph> [ -trim | -trim1 ]");
 			System.err.println("where graph can be specifiec as one of the following:");
 			System.err.println(GraphIO.formatSpecificationMessage());
+			System.err.println("and -trim removes the SCCs of size one and two before FB (-trim1 of size one only)");
 			System.exit(1);
 		}
+		boolean trim = false, trim2 = false;
+		for (int i = 2; i < args.length; i++) {
+			if ("-trim".equals(args[i])) {
+				trim = trim2 = true;
+			} else if ("-trim1".equals(args[i])) {
+				trim = true;
+				trim2 = false;
+			} else {
+				throw new RuntimeException("Unrecognized argument: " + args[i]);
+			}
+		}
 
 		// read graph
 		print("Reading graph in format " + args[0] + " " + args[1]);
 		ExplicitGraph<MyNode> g = hipg.format.GraphIO.readUndirected(MyLocalNode.class, MyNode.class, args[0], args[1],
 				Config.POOLSIZE);
 		print("Graph read");
+		long start = System.nanoTime();
 
-		// run FB
+		// trim
 		BigQueue<MyLocalNode> V = new BigQueue<MyLocalNode>(CHUNK_SIZE, g.nodes() / CHUNK_SIZE, cache);
-		for (int i = 0; i < g.nodes(); i++)
-			V.enqueue((MyLocalNode) g.node(i));
+		if (trim) {
+			Trimmer trimmer = new Trimmer(g, trim2);
+			Runtime.getRuntime().spawnAll(trimmer);
+			Runtime.getRuntime().barrier();
+			for (int i = 0; i < g.nodes(); i++) {
+				MyLocalNode n = (MyLocalNode) g.node(i);
+				if (trimmer.isResidual(i)) {
+					V.enqueue(n);
+				} else {
+					n.labelF = n.labelB = TRIMMED;
+				}
+			}
+			if (Runtime.getRank() == 0) {
+				trimmer.addTo(SCCs);
+			}
+			print("Trimmed " + trimmer.trivial() + " SCCs of size 1 and " + trimmer.pairs() + " of size 2 in "
+					+ trimmer.rounds() + " supersteps, " + trimmer.residual() + " nodes remain");
+		} else {
+			for (int i = 0; i < g.nodes(); i++)
+				V.enqueue((MyLocalNode) g.node(i));
+		}
+
+		// run FB
 		FBSynchronizer fb = new FBSynchronizer(g, V, NOT_VISITED, NOT_VISITED);
-		long start = System.nanoTime();
 		Runtime.getRuntime().spawnAll(fb);
 		Runtime.getRuntime().barrier();
 		long time = System.nanoTime() - start;
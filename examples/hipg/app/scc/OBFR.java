@@ -332,7 +332,7 @@ public class OBFR {
 		print("Graph read");
 
 		// run OBFR-MP
-		long start = System.currentTimeMillis();
+		long start = System.nanoTime();
 		java.util.LinkedList<SccLocalNode> V = new java.util.LinkedList<SccLocalNode>(
 		/* CHUNK_SIZE, g.nodes() / CHUNK_SIZE, cache */);
 		for (int i = 0; i < g.nodes(); i++)
@@ -340,7 +340,7 @@ public class OBFR {
 		Explorer explorer = new Explorer(g, NOT_EXPLORED, NOT_SLICED, V);
 		Runtime.getRuntime().spawnAll(explorer);
 		Runtime.getRuntime().barrier();
-		long time = System.currentTimeMillis() - start;
+		long time = System.nanoTime() - start;
 
 		// print results
 		print(SCCs.toString());
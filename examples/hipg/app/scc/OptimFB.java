@@ -18,13 +18,14 @@ package hipg.app.scc;
 
 import hipg.BarrierAndReduce;
 import hipg.Config;
-import hipg.Node;
 import hipg.Reduce;
+import hipg.app.scc.Trim.LocalTrimNode;
+import hipg.app.scc.Trim.TrimNode;
+import hipg.app.scc.Trim.Trimmer;
 import hipg.app.utils.Histogram;
 import hipg.format.GraphCreationException;
 import hipg.format.GraphIO;
 import hipg.graph.ExplicitGraph;
-import hipg.graph.ExplicitLocalNode;
 import hipg.graph.ExplicitNodeReference;
 import hipg.runtime.Runtime;
 import hipg.runtime.Synchronizer;
@@ -43,6 +44,7 @@ public class OptimFB {
 	private static final int PV_BmF = 5;
 	private static final int PV_VmFmB = 6;
 	private static final int NOT_VISITED = -1;
+	private static final int TRIMMED = -2;
 	private static final long NULL_PIVOT = ExplicitNodeReference.NULL_NODE;
 
 	private static final boolean verbose = false;
@@ -50,13 +52,13 @@ public class OptimFB {
 	private static long searchTime = 0L;
 	private static Histogram SCCs = new Histogram();
 
-	public static interface MyNode extends Node {
+	public static interface MyNode extends TrimNode {
 		public void fwd(OpFB fb);
 
 		public void bwd(OpFB fb);
 	}
 
-	public static class MyLocalNode extends ExplicitLocalNode<MyNode> implements MyNode {
+	public static class MyLocalNode extends LocalTrimNode<MyNode> implements MyNode {
 		private int labelF = NOT_VISITED, labelB = NOT_VISITED;
 
 		public MyLocalNode(ExplicitGraph<MyNode> graph, int reference) {
@@ -78,7 +80,7 @@ public class OptimFB {
 						fb.VmFmBpivot = null;
 					if (fb.VmFmBpivot == null) {
 						for (int j = 0; hasInNeighbor(j); j++) {
-							if (isNeighborLocal(j)) {
+							if (isInNeighborLocal(j)) {
 								MyLocalNode n = (MyLocalNode) localInNeighbor(j);
 								if (n.labelF == fb.labelF && n.labelB == fb.labelB) {
 									fb.VmFmBpivot = n;
@@ -273,21 +275,54 @@ public class OptimFB {
 
 	public static void main(String[] args) throws GraphCreationException {
 		if (args.length < 2) {
-			System.err.println(OpFB.class.getName() + " <graph>");
+			System.err.println(OpFB.class.getName() + " <graph> [ -trim | -trim1 ]");
 			System.err.println("where graph can be specifiec as one of the following:");
 			System.err.println(GraphIO.formatSpecificationMessage());
+			System.err.println("and -trim removes the SCCs of size one and two before FB (-trim1 of size one only)");
 			System.exit(1);
 		}
+		boolean trim = false, trim2 = false;
+		for (int i = 2; i < args.length; i++) {
+			if ("-trim".equals(args[i])) {
+				trim = trim2 = true;
+			} else if ("-trim1".equals(args[i])) {
+				trim = true;
+				trim2 = false;
+			} else {
+				throw new RuntimeException("Unrecognized argument: " + args[i]);
+			}
+		}
 		// read graph
 		ExplicitGraph<MyNode> g = hipg.format.GraphIO.readUndirected(MyLocalNode.class, MyNode.class, args[0], args[1],
 				Config.POOLSIZE);
 		print("Graph read");
+		long start = System.nanoTime();
+
+		// trim
+		long Vsize = g.nodes(), pivot = g.root();
+		if (trim) {
+			Trimmer trimmer = new Trimmer(g, trim2);
+			Runtime.getRuntime().spawnAll(trimmer);
+			Runtime.getRuntime().barrier();
+			for (int i = 0; i < g.nodes(); i++) {
+				if (!trimmer.isResidual(i)) {
+					MyLocalNode n = (MyLocalNode) g.node(i);
+					n.labelF = n.labelB = TRIMMED;
+				}
+			}
+			trimmer.addTo(SCCs);
+			Vsize = trimmer.localResidual();
+			pivot = trimmer.pivot();
+			print("Trimmed " + trimmer.trivial() + " SCCs of size 1 and " + trimmer.pairs() + " of size 2 in "
+					+ trimmer.rounds() + " supersteps, " + trimmer.residual() + " nodes remain");
+		}
 
 		// run OptimFB
-		OpFB fb = new OpFB(g, NOT_VISITED, NOT_VISITED, g.nodes(), g.root());
-		long start = System.nanoTime();
-		Runtime.getRuntime().spawnAll(fb);
-		Runtime.getRuntime().barrier();
+		if (pivot != NULL_PIVOT) {
+			OpFB fb = new OpFB(g, NOT_VISITED, NOT_VISITED, Vsize, pivot);
+			Runtime.getRuntime().spawnAll(fb);
+			Runtime.getRuntime().barrier();
+		}
 		long time = System.nanoTime() - start;
 
 		// print results
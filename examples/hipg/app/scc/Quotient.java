@@ -18,8 +18,8 @@
 package hipg.app.scc;
 
 import hipg.Reduce;
-import hipg.app.Bigraph.BiLocalNode;
-import hipg.app.Bigraph.BiNode;
+import hipg.app.scc.Trim.LocalTrimNode;
+import hipg.app.scc.Trim.TrimNode;
 import hipg.app.utils.SccStructure;
 import hipg.graph.ExplicitGraph;
 import hipg.runtime.Runtime;
@@ -31,11 +31,11 @@ public class Quotient {
 		long getComponentId();
 	}
 
-	public static interface QuotientNode extends BiNode {
+	public static interface QuotientNode extends TrimNode {
 		public void sccDep(QuotientComputer q, long componentId);
 	}
 
-	public static abstract class LocalQuotientNode<TNode extends QuotientNode> extends BiLocalNode<TNode> implements
+	public static abstract class LocalQuotientNode<TNode extends QuotientNode> extends LocalTrimNode<TNode> implements
 			QuotientNode, Quotientable {
 		public LocalQuotientNode(ExplicitGraph<TNode> graph, int reference) {
 			super(graph, reference);
@@ -0,0 +1,382 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package hipg.app.scc;
+
+import hipg.BarrierAndReduce;
+import hipg.app.Bigraph.BiLocalNode;
+import hipg.app.Bigraph.BiNode;
+import hipg.app.utils.Histogram;
+import hipg.app.utils.RemoteMessageCombiner;
+import hipg.graph.ActiveSet;
+import hipg.graph.ExplicitGraph;
+import hipg.graph.ExplicitLocalNode;
+import hipg.graph.ExplicitNodeReference;
+import hipg.runtime.Runtime;
+import hipg.runtime.Synchronizer;
+
+/**
+ * Trimming stage for SCC decompositions. A node without remaining in-neighbors or without remaining out-neighbors
+ * (or whose only remaining in- or out-neighbor is itself) is an SCC on its own, and removing it may expose more such
+ * nodes (trim-1). Two nodes that are each other's only remaining in-neighbor, or each other's only remaining
+ * out-neighbor, form an SCC of size two (trim-2). On most graphs the bulk of the SCCs are trivial and are removed by
+ * trimming in a few supersteps, so that the SCC algorithm that follows needs far fewer pivot rounds.
+ * <p>
+ * The remaining in- and out-degree of every node is kept in primitive arrays, together with the sum of the references
+ * of the remaining neighbors (which is the reference of the only remaining neighbor when the degree drops to one).
+ * Decrements destined for the same remote node within a superstep are combined into a single message.
+ * <p>
+ * The result is the residual subgraph, given as a mask ({@link Trimmer#isResidual(int)}), and the number of SCCs of
+ * size one and two removed. The graph must have its transpose.
+ */
+public class Trim {
+
+	/** Trimmed node interface. */
+	public static interface TrimNode extends BiNode {
+		public void trimDecrement(Trimmer t, int inCount, long inSum, int outCount, long outSum);
+
+		public void trimPairIn(Trimmer t, long partner);
+
+		public void trimPairOut(Trimmer t, long partner);
+	}
+
+	/** Trimmed local node implementation. */
+	public static class LocalTrimNode<TNode extends TrimNode> extends BiLocalNode<TNode> implements TrimNode {
+		public LocalTrimNode(ExplicitGraph<TNode> graph, int reference) {
+			super(graph, reference);
+		}
+
+		/** Removed in-neighbors (inCount of them, with references summing to inSum) and out-neighbors. */
+		public final void trimDecrement(Trimmer t, int inCount, long inSum, int outCount, long outSum) {
+			t.decrement(reference(), inCount, inSum, outCount, outSum);
+		}
+
+		/** The only remaining in-neighbor asks whether this node's only remaining in-neighbor is it. */
+		public final void trimPairIn(Trimmer t, long partner) {
+			t.pairIn(reference(), partner);
+		}
+
+		/** The only remaining out-neighbor asks whether this node's only remaining out-neighbor is it. */
+		public final void trimPairOut(Trimmer t, long partner) {
+			t.pairOut(reference(), partner);
+		}
+
+		/** Sends combined decrements to a remote node. */
+		final void trimSend(Trimmer t, long target, int inCount, long inSum, int outCount, long outSum) {
+			graph.globalNode(target).trimDecrement(t, inCount, inSum, outCount, outSum);
+		}
+
+		/** Asks the only remaining in-neighbor and the only remaining out-neighbor whether they pair with this node. */
+		final void trimQuery(Trimmer t, long inPartner, long outPartner) {
+			if (inPartner != ExplicitNodeReference.NULL_NODE) {
+				graph.globalNode(inPartner).trimPairIn(t, asReference());
+			}
+			if (outPartner != ExplicitNodeReference.NULL_NODE) {
+				graph.globalNode(outPartner).trimPairOut(t, asReference());
+			}
+		}
+	}
+
+	/** Trims a graph, executed by all workers. */
+	public static class Trimmer extends Synchronizer {
+		/** The graph. */
+		private final ExplicitGraph<TrimNode> g;
+		/** True if size-two SCCs are removed as well. */
+		private final boolean trim2;
+		/** Per local node: remaining in- and out-degree. */
+		private final int[] in, out;
+		/** Per local node: sum of the references of the remaining in- and out-neighbors. */
+		private final long[] inSum, outSum;
+		/** Per local node: true if removed, true if found in a size-two SCC, true if the smaller node of its pair. */
+		private final boolean[] removed, paired, leader;
+		/** Nodes that may have become removable (or that were paired). */
+		private ActiveSet<TrimNode> changed;
+
+		/** Decrements to remote nodes combined in this superstep. */
+		private int[] targetInCount, targetOutCount;
+		private long[] targetInSum, targetOutSum;
+		private final RemoteMessageCombiner combined = new RemoteMessageCombiner(1024) {
+			protected void allocate(int capacity) {
+				targetInCount = new int[capacity];
+				targetOutCount = new int[capacity];
+				targetInSum = new long[capacity];
+				targetOutSum = new long[capacity];
+			}
+
+			protected void send(int slot, long target, int sender) {
+				((LocalTrimNode<?>) g.node(sender)).trimSend(Trimmer.this, target, targetInCount[slot],
+						targetInSum[slot], targetOutCount[slot], targetOutSum[slot]);
+				targetInCount[slot] = 0;
+				targetInSum[slot] = 0;
+				targetOutCount[slot] = 0;
+				targetOutSum[slot] = 0;
+			}
+		};
+
+		/** Local counts: removed SCCs of size one and two, residual nodes. */
+		private long trivial = 0, pairs = 0, residual = 0;
+		/** Global counts and a residual node. */
+		private long globalTrivial, globalPairs, globalResidual, pivot = ExplicitNodeReference.NULL_NODE;
+		private int rounds = 0;
+
+		@SuppressWarnings("unchecked")
+		public <TNode extends TrimNode> Trimmer(ExplicitGraph<TNode> g, boolean trim2) {
+			if (g.getInTransitions() == null) {
+				throw new RuntimeException("Trimming needs the transpose of the graph");
+			}
+			this.g = (ExplicitGraph<TrimNode>) g;
+			this.trim2 = trim2;
+			final int n = g.nodes();
+			this.in = new int[n];
+			this.out = new int[n];
+			this.inSum = new long[n];
+			this.outSum = new long[n];
+			this.removed = new boolean[n];
+			this.paired = new boolean[n];
+			this.leader = new boolean[n];
+		}
+
+		/** Checks if a local node remains after trimming. */
+		public final boolean isResidual(int id) {
+			return !removed[id];
+		}
+
+		/** Checks if a local node was removed in a size-two SCC whose other node has a larger reference. */
+		public final boolean isPairLeader(int id) {
+			return leader[id];
+		}
+
+		/** Number of local nodes that remain after trimming. */
+		public final long localResidual() {
+			return residual;
+		}
+
+		/** Number of nodes that remain after trimming. */
+		public final long residual() {
+			return globalResidual;
+		}
+
+		/** Number of SCCs of size one removed. */
+		public final long trivial() {
+			return globalTrivial;
+		}
+
+		/** Number of SCCs of size two removed. */
+		public final long pairs() {
+			return globalPairs;
+		}
+
+		/** A node that remains after trimming, or {@link ExplicitNodeReference#NULL_NODE} if none does. */
+		public final long pivot() {
+			return pivot;
+		}
+
+		/** Number of trimming supersteps. */
+		public final int rounds() {
+			return rounds;
+		}
+
+		/** Adds the removed SCCs to a histogram of SCC sizes. */
+		public final void addTo(Histogram sccs) {
+			sccs.add(1, globalTrivial);
+			sccs.add(2, globalPairs);
+		}
+
+		private long ref(int id) {
+			return ExplicitNodeReference.createReference(id, Runtime.getRank());
+		}
+
+		private boolean removable(int id) {
+			return in[id] == 0 || out[id] == 0 || (in[id] == 1 && inSum[id] == ref(id))
+					|| (out[id] == 1 && outSum[id] == ref(id));
+		}
+
+		/** Removes neighbors of a local node. */
+		final void decrement(int id, int inCount, long inRefs, int outCount, long outRefs) {
+			if (!removed[id]) {
+				in[id] -= inCount;
+				inSum[id] -= inRefs;
+				out[id] -= outCount;
+				outSum[id] -= outRefs;
+				if (removable(id)) {
+					changed.activate(id);
+				}
+			}
+		}
+
+		/** Pairs a local node with its only remaining in-neighbor if that is the partner. */
+		final void pairIn(int id, long partner) {
+			if (!removed[id] && in[id] == 1 && inSum[id] == partner) {
+				pair(id, partner);
+			}
+		}
+
+		/** Pairs a local node with its only remaining out-neighbor if that is the partner. */
+		final void pairOut(int id, long partner) {
+			if (!removed[id] && out[id] == 1 && outSum[id] == partner) {
+				pair(id, partner);
+			}
+		}
+
+		private void pair(int id, long partner) {
+			if (!paired[id]) {
+				paired[id] = true;
+				changed.activate(id);
+				// the partner pairs as well, the pair is counted once
+				if (ref(id) < partner) {
+					leader[id] = true;
+					pairs++;
+				}
+			}
+		}
+
+		/** Combines a decrement to a remote node with the other decrements to it. */
+		private void combine(long target, int sender, int inCount, long inRefs, int outCount, long outRefs) {
+			int s = combined.slot(target, sender);
+			if (s < 0) {
+				s = -1 - s;
+			}
+			targetInCount[s] += inCount;
+			targetInSum[s] += inRefs;
+			targetOutCount[s] += outCount;
+			targetOutSum[s] += outRefs;
+		}
+
+		/** Removes a local node and decrements the degrees of its neighbors. */
+		private void remove(int id) {
+			removed[id] = true;
+			final long ref = ref(id);
+			final ExplicitLocalNode<TrimNode> node = g.node(id);
+			for (int j = 0; node.hasNeighbor(j); j++) {
+				if (node.isNeighborLocal(j)) {
+					decrement(node.localNeighbor(j).reference(), 1, ref, 0, 0);
+				} else {
+					combine(node.neighborReference(j), id, 1, ref, 0, 0);
+				}
+			}
+			for (int j = 0; node.hasInNeighbor(j); j++) {
+				if (node.isInNeighborLocal(j)) {
+					decrement(node.localInNeighbor(j).reference(), 0, 0, 1, ref);
+				} else {
+					combine(node.inNeighborReference(j), id, 0, 0, 1, ref);
+				}
+			}
+		}
+
+		/** Counts the remaining neighbors of the local nodes. */
+		private void init() {
+			for (int i = 0; i < g.nodes(); i++) {
+				final ExplicitLocalNode<TrimNode> node = g.node(i);
+				in[i] = node.indegree();
+				out[i] = node.outdegree();
+				for (int j = 0; node.hasNeighbor(j); j++) {
+					outSum[i] += node.neighborReference(j);
+				}
+				for (int j = 0; node.hasInNeighbor(j); j++) {
+					inSum[i] += node.inNeighborReference(j);
+				}
+				if (removable(i)) {
+					changed.activate(i);
+				}
+			}
+		}
+
+		/** Makes the nodes activated in this superstep current, and counts them. */
+		@BarrierAndReduce
+		public long Superstep(long s) {
+			return s + changed.advance();
+		}
+
+		/** Computes the global counts and selects a residual node. */
+		@BarrierAndReduce
+		public long[] Counts(long[] s) {
+			s[0] += trivial;
+			s[1] += pairs;
+			s[2] += residual;
+			if (s[3] == ExplicitNodeReference.NULL_NODE) {
+				for (int i = 0; i < g.nodes(); i++) {
+					if (!removed[i]) {
+						s[3] = ref(i);
+						break;
+					}
+				}
+			}
+			return s;
+		}
+
+		public void run() {
+			changed = activeSet(g);
+			init();
+			long active = Superstep(0);
+			while (true) {
+				// trim-1
+				while (active > 0) {
+					final ActiveSet.Ids ids = changed.ids();
+					for (int id = ids.next(); id >= 0; id = ids.next()) {
+						if (!removed[id] && removable(id)) {
+							remove(id);
+							trivial++;
+						}
+					}
+					combined.flush();
+					active = Superstep(0);
+					rounds++;
+				}
+				if (!trim2) {
+					break;
+				}
+				// trim-2: find the pairs, then remove them
+				for (int i = 0; i < g.nodes(); i++) {
+					if (!removed[i]) {
+						final long self = ref(i);
+						final long inPartner = (in[i] == 1 && inSum[i] != self ? inSum[i]
+								: ExplicitNodeReference.NULL_NODE);
+						final long outPartner = (out[i] == 1 && outSum[i] != self ? outSum[i]
+								: ExplicitNodeReference.NULL_NODE);
+						if (inPartner != ExplicitNodeReference.NULL_NODE
+								|| outPartner != ExplicitNodeReference.NULL_NODE) {
+							((LocalTrimNode<?>) g.node(i)).trimQuery(this, inPartner, outPartner);
+						}
+					}
+				}
+				if (Superstep(0) == 0) {
+					break;
+				}
+				final ActiveSet.Ids ids = changed.ids();
+				for (int id = ids.next(); id >= 0; id = ids.next()) {
+					if (paired[id] && !removed[id]) {
+						remove(id);
+					}
+				}
+				combined.flush();
+				active = Superstep(0);
+				rounds++;
+			}
+			changed.clear();
+
+			for (int i = 0; i < g.nodes(); i++) {
+				if (!removed[i]) {
+					residual++;
+				}
+			}
+			final long[] counts = Counts(new long[] { 0, 0, 0, ExplicitNodeReference.NULL_NODE });
+			globalTrivial = counts[0];
+			globalPairs = counts[1];
+			globalResidual = counts[2];
+			pivot = counts[3];
+		}
+	}
+}
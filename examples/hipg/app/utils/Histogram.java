@@ -210,9 +210,9 @@ public final class Histogram implements Serializable, LongPairIterable {
 				bigElements[idx] = element;
 				bigCounts[idx] = count;
 				bigLength++;
-				bigCount += count;
 			}
 		}
+		bigCount += count;
 		if (bigCounts[idx] > maxCount) {
 			maxCount = bigCounts[idx];
 		}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package hipg.app.utils;
+
+import hipg.graph.ExplicitNodeReference;
+
+/**
+ * Combines the messages sent to remote nodes within a superstep, so that a remote node receives at most one message
+ * from a worker (the runtime does not combine messages). The remote nodes are kept in an open-addressing table, each
+ * with the local node that sends the combined message; subclasses keep the combined values in arrays indexed by the
+ * slots of the table, and send them in {@link #send}. When half of the slots are used, the messages are sent and the
+ * table grows, up to {@link #MAX_CAPACITY} slots.
+ */
+public abstract class RemoteMessageCombiner {
+
+	/** Maximal number of slots. */
+	public static final int MAX_CAPACITY = 1 << 20;
+
+	/** Number of slots of the table when first used (a power of two). */
+	private final int initialCapacity;
+	/** Remote nodes (or null nodes in free slots) and the local nodes that send their messages. */
+	private long[] targets;
+	private int[] senders;
+	/** Used slots. */
+	private int[] used;
+	private int usedCount = 0;
+
+	/** Creates a combiner; its table, with a given number of slots (a power of two), is created when first used. */
+	protected RemoteMessageCombiner(int initialCapacity) {
+		if (initialCapacity < 2 || (initialCapacity & (initialCapacity - 1)) != 0) {
+			throw new RuntimeException("Capacity " + initialCapacity + " is not a power of two");
+		}
+		this.initialCapacity = initialCapacity;
+	}
+
+	/** Allocates the arrays of combined values for a table with a given number of slots (all values reset). */
+	protected abstract void allocate(int capacity);
+
+	/** Sends the combined message of a slot to its remote node and resets the values of the slot. */
+	protected abstract void send(int slot, long target, int sender);
+
+	/**
+	 * Returns the slot of a remote node. If the node is not in the table yet, adds it with the local node that sends
+	 * its message (sending the messages first if the table is full) and returns -1-(slot).
+	 */
+	public final int slot(long target, int sender) {
+		if (targets == null) {
+			create(initialCapacity);
+		}
+		int s = find(target);
+		if (targets[s] == ExplicitNodeReference.NULL_NODE) {
+			if (usedCount == used.length) {
+				flush();
+				s = find(target);
+			}
+			targets[s] = target;
+			senders[s] = sender;
+			used[usedCount++] = s;
+			return -1 - s;
+		}
+		return s;
+	}
+
+	/** Sends the combined messages and empties the table. */
+	public final void flush() {
+		if (targets == null) {
+			return;
+		}
+		for (int k = 0; k < usedCount; k++) {
+			final int s = used[k];
+			send(s, targets[s], senders[s]);
+			targets[s] = ExplicitNodeReference.NULL_NODE;
+		}
+		if (usedCount == used.length && targets.length < MAX_CAPACITY) {
+			create(2 * targets.length);
+		}
+		usedCount = 0;
+	}
+
+	/** Number of remote nodes with a combined message. */
+	public final int size() {
+		return usedCount;
+	}
+
+	private void create(int capacity) {
+		targets = new long[capacity];
+		for (int s = 0; s < capacity; s++) {
+			targets[s] = ExplicitNodeReference.NULL_NODE;
+		}
+		senders = new int[capacity];
+		used = new int[capacity / 2];
+		usedCount = 0;
+		allocate(capacity);
+	}
+
+	private int find(long target) {
+		final int mask = targets.length - 1;
+		int s = (int) (target ^ (target >>> 29)) * 0x9e3779b1 & mask;
+		while (targets[s] != ExplicitNodeReference.NULL_NODE && targets[s] != target) {
+			s = (s + 1) & mask;
+		}
+		return s;
+	}
+}
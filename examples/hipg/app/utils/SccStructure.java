@@ -28,7 +28,6 @@ import java.util.Vector;
 import myutils.IOUtils;
 import myutils.Serializable;
 import myutils.StringUtils;
-import myutils.storage.LongPairIterator;
 import myutils.storage.LongValuePairIterator;
 import myutils.storage.map.LongKeyHashMap;
 import myutils.storage.map.LongToLongHashMap;
@@ -331,28 +330,39 @@ public final class SccStructure implements Serializable {
 	public String toString(long trivialComponents) {
 		final LongToLongHashMap componentsBySize = componentsBySizeMap();
 		final StringBuilder sb = new StringBuilder();
-		LongPairIterator iter = componentsBySize.iterator();
-		if (!iter.hasNext() && trivialComponents <= 0) {
+		if (components.isEmpty() && trivialComponents <= 0) {
 			sb.append("No components found");
 		} else {
+			/*
+			 * the iterator of LongToLongHashMap skips entries that share a bucket, so the sizes are taken from the
+			 * components and each is printed when first seen
+			 */
 			boolean trivialPrinted = false;
-			while (iter.hasNext()) {
-				final long componentSize = iter.next();
-				long componentCount = iter.value();
+			final LongValuePairIterator<Scc> componentsIterator = components.iterator();
+			while (componentsIterator.hasNext()) {
+				componentsIterator.next();
+				final long componentSize = componentsIterator.value().getSize();
+				long componentCount = componentsBySize.remove(componentSize);
+				if (componentCount <= 0) {
+					continue;
+				}
 				if (componentSize == 1) {
 					componentCount += trivialComponents;
 					trivialPrinted = true;
 				}
+				if (sb.length() > 0) {
+					sb.append("\n");
+				}
 				sb.append("Found ");
 				sb.append(componentCount);
 				sb.append(" components of size ");
 				sb.append(componentSize);
-				if (iter.hasNext()) {
-					sb.append("\n");
-				}
 			}
 			if (!trivialPrinted && trivialComponents > 0) {
-				sb.append("\nFound " + trivialComponents + " components of size 1");
+				if (sb.length() > 0) {
+					sb.append("\n");
+				}
+				sb.append("Found " + trivialComponents + " components of size 1");
 			}
 		}
 		return sb.toString();
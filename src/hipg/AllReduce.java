@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package hipg;
+
+/**
+ * Marks a synchronizer method as a global all-reduction of an array of numbers (int, long, float or double), whose
+ * elements are combined element-wise with the given operation. Like in a {@link Reduce}, the method is called on every
+ * worker; here it adds the local contribution to the given array. The runtime then combines the contributions. Large
+ * arrays (see hipg.allReduceThreshold) are split in chunks, so that the reduction does not have to move the whole
+ * array around all workers.
+ * <p>
+ * The initial value must be an array of the same length on all workers, and the method must not change its length. For
+ * a sum, the initial value is added only once.
+ */
+public @interface AllReduce {
+
+	/* Element-wise combine operations. */
+	public static final byte SUM = 0;
+	public static final byte MIN = 1;
+	public static final byte MAX = 2;
+
+	/** Element-wise combine operation. */
+	byte value() default SUM;
+}
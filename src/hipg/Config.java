@@ -61,6 +61,41 @@ public final class Config {
 	/** Maximum number of workers. */
 	public static final int POOLSIZE = properties.getIntProperty("hipg.poolSize", 0);
 
+	/**
+	 * Send a user message with the same synchronizer, graph and method as the previous user message in the same
+	 * buffer with a compact (4-byte) header.
+	 */
+	public static final boolean COMPACT_USER_MESSAGES = properties.getBooleanProperty("hipg.compactUserMessages",
+			true);
+
+	/** Compression of flushed blocks sent over the network: none or deflate. */
+	public static final String COMPRESSION = properties.getProperty("hipg.compression", "none");
+
+	/** Minimal size of a flushed block to be compressed. */
+	public static final int COMPRESSION_THRESHOLD = properties.getIntProperty("hipg.compressionThreshold", 4096);
+
+	/** Transport: ibis (needs a registry server), nio (plain sockets, needs a host file) or loopback (one process). */
+	public static final String TRANSPORT = properties.getProperty("hipg.transport", "ibis");
+
+	/** Host file with a host:port line for each process (for the nio transport). */
+	public static final String HOST_FILE = properties.getProperty("hipg.hostFile", null);
+
+	/** Rank of this process (for the nio transport, if not set it is found in the host file). */
+	public static final int RANK = properties.getIntProperty("hipg.rank", -1);
+
+	/** Size of the (direct) buffer into which the nio transport reads from each incoming connection. */
+	public static final int NIO_RECEIVE_BUFFER_SIZE = properties.getIntProperty("hipg.nioReceiveBufferSize",
+			256 * 1024);
+
+	/** Open a connection to a process when the first message is sent to it, rather than to all processes at startup. */
+	public static final boolean LAZY_CONNECTIONS = properties.getBooleanProperty("hipg.lazyConnections", true);
+
+	/**
+	 * Allocate send buffers on demand from a pool shared by all destinations, rather than preallocating the send
+	 * buffers for each destination at startup.
+	 */
+	public static final boolean LAZY_BUFFERS = properties.getBooleanProperty("hipg.lazyBuffers", true);
+
 	/** Message size (main buffer). */
 	public static final int MESSAGE_BUF_SIZE = properties.getIntProperty("hipg.messageBufSize", 4 * 8 * 1024 * 1024);
 
@@ -75,6 +110,45 @@ public final class Config {
 	public static final int YIELD_BEFORE_SENDING_SMALL_MESSAGE = properties.getIntProperty(
 			"hipg.yieldBeforeSendingSmallMessage", -1);
 
+	/** Park an idle worker in a barrier instead of busy-polling for messages. */
+	public static final boolean PARK_WHEN_IDLE = properties.getBooleanProperty("hipg.parkWhenIdle", true);
+
+	/**
+	 * Maximum number of idle barrier loops before the worker parks, even if messages seem to be arriving frequently.
+	 */
+	public static final int MAX_SPIN_BEFORE_PARK = properties.getIntProperty("hipg.maxSpinBeforePark", 1000);
+
+	/** Maximum time (in microseconds) an idle worker stays parked before polling again. */
+	public static final int MAX_PARK_MICROS = properties.getIntProperty("hipg.maxParkMicros", 1000);
+
+	/**
+	 * Automatic preemption points (inserted by the rewriter into the loops of synchronizers): every PREEMPT_INTERVAL
+	 * passes the worker processes messages and flushes buffers if PREEMPT_BUDGET_MICROS passed since it last did or if
+	 * at least PREEMPT_FULL_SEND_MESSAGES full send buffers are waiting.
+	 */
+	public static final boolean PREEMPT = properties.getBooleanProperty("hipg.preempt", true);
+	public static final int PREEMPT_INTERVAL = properties.getIntProperty("hipg.preemptInterval", 1024);
+	public static final int PREEMPT_BUDGET_MICROS = properties.getIntProperty("hipg.preemptBudgetMicros", 1000);
+	public static final int PREEMPT_FULL_SEND_MESSAGES = properties.getIntProperty("hipg.preemptFullSendMessages",
+			4);
+
+	/** Send messages to processes on the same host through shared memory. */
+	public static final boolean SHARED_MEMORY = properties.getBooleanProperty("hipg.sharedMemory", true);
+
+	/** Directory in which shared memory rings are created. */
+	public static final String SHARED_MEMORY_DIR = properties.getProperty("hipg.sharedMemoryDir", "/dev/shm");
+
+	/**
+	 * Id of this run, the same in all its processes and unique for each run (the scripts in bin use the pool name),
+	 * which names the shared memory rings so that rings left by a crashed run are never used. Shared memory is not
+	 * used if not set.
+	 */
+	public static final String RUN_ID = properties.getProperty("hipg.runId", null);
+
+	/** Size of a shared memory ring (one for each pair of processes on the same host). */
+	public static final int SHARED_MEMORY_RING_SIZE = properties.getIntProperty("hipg.sharedMemoryRingSize",
+			4 * 1024 * 1024);
+
 	/** Number of preallocated send buffers. */
 	public static final int INIT_SEND_BUFFERS = properties.getIntProperty("hipg.initSendBuffers", 50);
 
@@ -90,8 +164,52 @@ public final class Config {
 	public static final int SYNCHRONIZER_QUEUE_MEM_CACHE_SIZE = properties.getIntProperty(
 			"hipg.synchronizerQueueMemCacheSize", 0);
 
+	/**
+	 * Depth up to which calls to local nodes are invoked immediately before they are queued, only in classes
+	 * rewritten with -hipgcc-no-work-list (by default, these calls go through the work-list of the runtime).
+	 */
 	public static final int MAX_METHODS_IMMEDIATE = properties.getIntProperty("hipg.maxMethodsImmediate", 100);
 
+	/** Initial number of entries in the work-list of methods invoked on local nodes (grows when needed). */
+	public static final int LOCAL_WORK_LIST_SIZE = properties.getIntProperty("hipg.localWorkListSize", 1024);
+
+	/**
+	 * Active sets keep a list of their nodes (next to the bitmap) while at most 1/ACTIVE_SET_SPARSE_RATIO of the
+	 * nodes are active.
+	 */
+	public static final int ACTIVE_SET_SPARSE_RATIO = properties.getIntProperty("hipg.activeSetSparseRatio", 64);
+
+	/**
+	 * Sort the neighbors of every node (local ones by id, remote ones by owner and id) when a graph is created.
+	 * Applications that need sorted neighbors can also call ExplicitGraph.sortNeighbors().
+	 */
+	public static final boolean SORT_TRANSITIONS = properties.getBooleanProperty("hipg.sortTransitions", false);
+
+	/**
+	 * Decode runs of received user messages to explicit nodes first and then execute them in the order of their
+	 * targets.
+	 */
+	public static final boolean BATCHED_DISPATCH = properties.getBooleanProperty("hipg.batchedDispatch", false);
+
+	/** Minimal number of batched messages to sort them (smaller batches are executed in the arrival order). */
+	public static final int BATCHED_DISPATCH_SORT_MIN = properties.getIntProperty("hipg.batchedDispatchSortMin", 64);
+
+	/**
+	 * Minimal size (in bytes) of the value of an all-reduce, for which the value is split and reduced with
+	 * reduce-scatter and all-gather. Smaller values are reduced with a token, as in a normal reduce.
+	 */
+	public static final int ALLREDUCE_THRESHOLD = properties.getIntProperty("hipg.allReduceThreshold", 64 * 1024);
+
+	/** Fan-out of the tree along which notifications are broadcast. */
+	public static final int NOTIFICATION_FANOUT = properties.getIntProperty("hipg.notificationFanout", 4);
+
+	/**
+	 * Send and execute a notification only once if it is issued again (with the same value) before anything has been
+	 * sent since. Off by default, as it changes how many times a notification runs.
+	 */
+	public static final boolean COALESCE_NOTIFICATIONS = properties.getBooleanProperty(
+			"hipg.coalesceNotifications", false);
+
 	public static final boolean OBJECT_SERIALIZATION = properties.getBooleanProperty("hipg.objectSerialization", true);
 	
 	public static final boolean FLUSH_BIGGEST = properties.getBooleanProperty("hipg.flushBiggest", false);
@@ -101,6 +219,10 @@ public final class Config {
 			printConfiguration();
 			throw new RuntimeException("Pool size not specified");
 		}
+		if (NOTIFICATION_FANOUT <= 0) {
+			printConfiguration();
+			throw new RuntimeException("Notification fan-out must be positive");
+		}
 	}
 
 	public static int getSendBufferSize() {
@@ -116,12 +238,21 @@ public final class Config {
 	}
 
 	public static int getNumSendBuffers() {
+		if (LAZY_BUFFERS) {
+			return Config.INIT_SEND_BUFFERS;
+		}
 		return Config.INIT_SEND_BUFFERS * (Config.POOLSIZE - 1);
 	}
 
 	public static void printConfiguration() {
 		System.err.println("Configuration:");
 		System.err.println("    POOLSIZE                                = " + POOLSIZE);
+		System.err.println("    TRANSPORT                               = " + TRANSPORT);
+		System.err.println("    HOST_FILE                               = " + HOST_FILE);
+		System.err.println("    RANK                                    = " + RANK);
+		System.err.println("    NIO_RECEIVE_BUFFER_SIZE                 = " + (NIO_RECEIVE_BUFFER_SIZE / 1024) + " KB");
+		System.err.println("    LAZY_CONNECTIONS                        = " + LAZY_CONNECTIONS);
+		System.err.println("    LAZY_BUFFERS                            = " + LAZY_BUFFERS);
 		System.err.println("    ERRCHECK                                = " + ERRCHECK);
 		System.err.println("    FINEDEBUG                               = " + FINEDEBUG);
 		System.err.println("    FINE_TIMING                             = " + TIMING);
@@ -134,10 +265,32 @@ public final class Config {
 		System.err.println("    SYNCHRONIZER_QUEUE_INITIAL_CHUNKS       = " + SYNCHRONIZER_QUEUE_INITIAL_CHUNKS);
 		System.err.println("    SYNCHRONIZER_QUEUE_MEM_CACHE_SIZE       = " + SYNCHRONIZER_QUEUE_MEM_CACHE_SIZE);
 		System.err.println("    MAX_METHODS_IMMEDIATE                   = " + MAX_METHODS_IMMEDIATE);
+		System.err.println("    LOCAL_WORK_LIST_SIZE                    = " + LOCAL_WORK_LIST_SIZE);
+		System.err.println("    ACTIVE_SET_SPARSE_RATIO                 = " + ACTIVE_SET_SPARSE_RATIO);
+		System.err.println("    SORT_TRANSITIONS                        = " + SORT_TRANSITIONS);
+		System.err.println("    BATCHED_DISPATCH                        = " + BATCHED_DISPATCH);
+		System.err.println("    BATCHED_DISPATCH_SORT_MIN               = " + BATCHED_DISPATCH_SORT_MIN);
+		System.err.println("    ALLREDUCE_THRESHOLD                     = " + ALLREDUCE_THRESHOLD);
+		System.err.println("    NOTIFICATION_FANOUT                     = " + NOTIFICATION_FANOUT);
+		System.err.println("    COALESCE_NOTIFICATIONS                  = " + COALESCE_NOTIFICATIONS);
+		System.err.println("    COMPACT_USER_MESSAGES                   = " + COMPACT_USER_MESSAGES);
+		System.err.println("    COMPRESSION                             = " + COMPRESSION);
+		System.err.println("    COMPRESSION_THRESHOLD                   = " + COMPRESSION_THRESHOLD);
 		System.err.println("    OBJECT_SERIALIZATION                    = " + OBJECT_SERIALIZATION);
 		System.err.println("    PREFERRED_MINIMAL_MESSAGE_SIZE          = " + PREFERRED_MINIMAL_MESSAGE_SIZE);
 		System.err.println("    SKIP_STEPS_BEFORE_SENDING_SMALL_MESSAGE = " + SKIP_STEPS_BEFORE_SENDING_SMALL_MESSAGE);
 		System.err.println("    YIELD_BEFORE_SENDING_SMALL_MESSAGE      = " + YIELD_BEFORE_SENDING_SMALL_MESSAGE);
+		System.err.println("    PARK_WHEN_IDLE                          = " + PARK_WHEN_IDLE);
+		System.err.println("    MAX_SPIN_BEFORE_PARK                    = " + MAX_SPIN_BEFORE_PARK);
+		System.err.println("    MAX_PARK_MICROS                         = " + MAX_PARK_MICROS);
+		System.err.println("    PREEMPT                                 = " + PREEMPT);
+		System.err.println("    PREEMPT_INTERVAL                        = " + PREEMPT_INTERVAL);
+		System.err.println("    PREEMPT_BUDGET_MICROS                   = " + PREEMPT_BUDGET_MICROS);
+		System.err.println("    PREEMPT_FULL_SEND_MESSAGES              = " + PREEMPT_FULL_SEND_MESSAGES);
+		System.err.println("    SHARED_MEMORY                           = " + SHARED_MEMORY);
+		System.err.println("    SHARED_MEMORY_DIR                       = " + SHARED_MEMORY_DIR);
+		System.err.println("    RUN_ID                                  = " + RUN_ID);
+		System.err.println("    SHARED_MEMORY_RING_SIZE                 = " + (SHARED_MEMORY_RING_SIZE / 1024) + " KB");
 		System.err.println("    FLUSH_BIGGEST                           = " + FLUSH_BIGGEST);
 
 		if (REPORT_FILE_BASE_NAME != null && !STATISTICS) {
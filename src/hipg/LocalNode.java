@@ -19,6 +19,7 @@
 package hipg;
 
 import myutils.storage.bigarray.BigByteQueue;
+import hipg.runtime.LocalWorkList;
 import hipg.runtime.Runtime;
 
 public abstract class LocalNode<TNode extends Node> implements Node {
@@ -62,4 +63,9 @@ public abstract class LocalNode<TNode extends Node> implements Node {
 				+ getClass().getSimpleName() + "! " + "Did you apply the rewriter?");
 	}
 
+	public void hipg_execute(final short methodId, final hipg.Synchronizer synchronizer, final LocalWorkList parameters) {
+		throw new RuntimeException("hipg_execute(method,synchronizer,work-list " + "of params) not defined on class "
+				+ getClass().getSimpleName() + "! " + "Did you apply the rewriter?");
+	}
+
 }
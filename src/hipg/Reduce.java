@@ -18,5 +18,14 @@
 
 package hipg;
 
+/**
+ * Marks a synchronizer method as a global reduction. The method is called on every worker with the value computed so
+ * far, in a single token pass around all workers.
+ * <p>
+ * Each call is a separate token pass. Several values needed at the same point should therefore be computed by a
+ * single reduction over an array of primitives (or a serializable tuple), rather than by consecutive reduce calls.
+ * 
+ * @author ela, ekr@cs.vu.nl
+ */
 public @interface Reduce {
 }
@@ -38,7 +38,10 @@ public class ClassRepository {
 	public static final String FastMessageClassName = "hipg.runtime.FastMessage";
 	public static final String PairUtilsClassName = "myutils.tuple.pair.FastIntPair";
 	public static final String IOUtilsClassName = "myutils.IOUtils";
+	public static final String CodecClassName = "hipg.runtime.Codec";
 	public static final String BigQueueClassName = "myutils.storage.bigarray.BigByteQueue";
+	public static final String LocalWorkListClassName = "hipg.runtime.LocalWorkList";
+	public static final String NodeFactoryClassName = "hipg.graph.NodeFactory";
 	public static final String SerializableInterfaceName = "myutils.Serializable";
 
 	public static final ObjectType RuntimeType = new ObjectType(RuntimeClassName);
@@ -46,10 +49,13 @@ public class ClassRepository {
 	public static final ObjectType SynchronizerType = new ObjectType(SynchronizerClassName);
 	public static final ObjectType SynchronizerInterfaceType = new ObjectType(SynchronizerInterfaceName);
 	public static final ObjectType BigQueueType = new ObjectType(BigQueueClassName);
+	public static final ObjectType LocalWorkListType = new ObjectType(LocalWorkListClassName);
 	public static final ObjectType FastMessageType = new ObjectType(FastMessageClassName);
 	public static final ObjectType LocalNodeType = new ObjectType(LocalNodeClassName);
 	public static final ObjectType ExplicitGraphType = new ObjectType(ExplicitGraphClassName);
 	public static final ObjectType OnTheFlyGraphType = new ObjectType(OnTheFlyGraphClassName);
+	public static final ObjectType ExplicitLocalNodeType = new ObjectType(ExplicitLocalNodeClassName);
+	public static final ObjectType OnTheFlyLocalNodeType = new ObjectType(OnTheFlyLocalNodeClassName);
 	public static final ObjectType GraphType = new ObjectType(GraphInterfaceName);
 	public static final ObjectType SerializableType = new ObjectType(SerializableInterfaceName);
 
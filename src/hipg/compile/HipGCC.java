@@ -49,6 +49,9 @@ public class HipGCC extends IbiscComponent {
 	private boolean hipGCCverbose = false;
 	private boolean hipGCCdebugCode = false;
 	private boolean hipGCCdebugExe = false;
+	private boolean hipGCCpreempt = true;
+	private boolean hipGCCnodeFactories = true;
+	private boolean hipGCCworkList = true;
 
 	private RE classRegex = null;
 
@@ -115,6 +118,14 @@ public class HipGCC extends IbiscComponent {
 		return hipGCCdebugExe;
 	}
 
+	/**
+	 * If calls to local nodes go through the work-list of the runtime, rather than being invoked immediately up to
+	 * hipg.maxMethodsImmediate deep and then queued.
+	 */
+	boolean workList() {
+		return hipGCCworkList;
+	}
+
 	/** Processes all classes discovered by Ibisc. */
 	@Override
 	public void process(Iterator<?> classes) {
@@ -176,6 +187,8 @@ public class HipGCC extends IbiscComponent {
 		final LocalNodeRewriter localNodeRewriter = new LocalNodeRewriter(this, NodeInterfaces, NodeMethods);
 		final SynchronizerRewriter synchronizerRewriter = new SynchronizerRewriter(this);
 		final SerializableRewriter serializableRewriter = new SerializableRewriter();
+		final PreemptionRewriter preemptionRewriter = new PreemptionRewriter(this);
+		final NodeFactoryGenerator nodeFactoryGenerator = new NodeFactoryGenerator(this);
 		RewrittenSynchronizerClass r;
 
 		for (JavaClass cl : SerializableClasses) {
@@ -194,6 +207,9 @@ public class HipGCC extends IbiscComponent {
 			info("Rewriting synchronizer " + cl.getClassName());
 			try {
 				final ClassGen cg = new ClassGen(cl);
+				if (hipGCCpreempt) {
+					preemptionRewriter.processSynchronizer(cl, cg);
+				}
 				nodeRewriter.process(cl, cg);
 				r = synchronizerRewriter.process(cl, cg);
 				RewrittenSynchronizerClasses.put(cg.getClassName(), r);
@@ -211,6 +227,9 @@ public class HipGCC extends IbiscComponent {
 				nodeRewriter.process(cl, cg);
 				localNodeRewriter.process(cl, cg);
 				modifiedClass(cl, cg);
+				if (hipGCCnodeFactories) {
+					addedClass(nodeFactoryGenerator.generate(cl), cl);
+				}
 			} catch (Throwable t) {
 				t.printStackTrace();
 				System.exit(1);
@@ -276,10 +295,31 @@ public class HipGCC extends IbiscComponent {
 		}
 	}
 
+	public void addedClass(JavaClass newClass, JavaClass fromClass) {
+		if (wrapper == null)
+			throw new RuntimeException("Cannot add class " + fromClass.getClassName() + " : no wrapper");
+		if (newClass != null) {
+			Repository.addClass(newClass);
+			addEntry(wrapper.getInfo(newClass), fromClass.getClassName());
+			if (hipGCCverifyLevel >= 0) {
+				if (!verifyClass(newClass, hipGCCverifyLevel)) {
+					if (hipGCCverifyStopOnError) {
+						error("Class " + newClass.getClassName() + " failed verification to level: "
+								+ hipGCCverifyLevel);
+					}
+				}
+			}
+		}
+	}
+
 	public RewrittenSynchronizerClass getRewrittenSynchronizerClass(String className) {
 		return RewrittenSynchronizerClasses.get(className);
 	}
 
+	ArrayList<JavaClass> getLocalNodeClasses() {
+		return LocalNodeClasses;
+	}
+
 	public boolean verifyClass(JavaClass cl, int maxLevel) {
 		Verifier verifier = VerifierFactory.getVerifier(cl.getClassName());
 		boolean verificationFailed = false;
@@ -328,7 +368,8 @@ public class HipGCC extends IbiscComponent {
 	public String getUsageString() {
 		return programName + " -hipgcc <class-list regexp> [-hipgcc-verbose] "
 				+ "[-hipgcc-info] [-hipgcc-debug-code] [-hipgcc-debug-exe] "
-				+ "[-hipgcc-[no-]verify] [-hipgcc-verify-N] [hipgcc-verify-no-stop-on-error]";
+				+ "[-hipgcc-[no-]verify] [-hipgcc-verify-N] [hipgcc-verify-no-stop-on-error] "
+				+ "[-hipgcc-[no-]preempt] [-hipgcc-[no-]node-factories] [-hipgcc-[no-]work-list]";
 	}
 
 	/** Process arguments (as indicated by the usage info). */
@@ -366,6 +407,24 @@ public class HipGCC extends IbiscComponent {
 			} else if (arg.equals("-hipgcc-info")) {
 				hipGCCinfo = true;
 				iter.remove();
+			} else if (arg.equals("-hipgcc-preempt")) {
+				hipGCCpreempt = true;
+				iter.remove();
+			} else if (arg.equals("-hipgcc-no-preempt")) {
+				hipGCCpreempt = false;
+				iter.remove();
+			} else if (arg.equals("-hipgcc-node-factories")) {
+				hipGCCnodeFactories = true;
+				iter.remove();
+			} else if (arg.equals("-hipgcc-no-node-factories")) {
+				hipGCCnodeFactories = false;
+				iter.remove();
+			} else if (arg.equals("-hipgcc-work-list")) {
+				hipGCCworkList = true;
+				iter.remove();
+			} else if (arg.equals("-hipgcc-no-work-list")) {
+				hipGCCworkList = false;
+				iter.remove();
 			} else if (arg.equals("-hipgcc-no-verify")) {
 				hipGCCverifyLevel = 0;
 				iter.remove();
@@ -23,23 +23,20 @@ import hipg.utils.BCELUtils;
 import java.util.ArrayList;
 import java.util.Map;
 
-import myutils.IOUtils;
 
 import org.apache.bcel.Constants;
 import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.ArrayType;
-import org.apache.bcel.generic.BranchInstruction;
 import org.apache.bcel.generic.ClassGen;
 import org.apache.bcel.generic.ConstantPoolGen;
 import org.apache.bcel.generic.DUP;
 import org.apache.bcel.generic.IADD;
+import org.apache.bcel.generic.IINC;
 import org.apache.bcel.generic.InstructionFactory;
 import org.apache.bcel.generic.InstructionHandle;
 import org.apache.bcel.generic.InstructionList;
 import org.apache.bcel.generic.MethodGen;
-import org.apache.bcel.generic.NOP;
-import org.apache.bcel.generic.POP;
 import org.apache.bcel.generic.PUSH;
 import org.apache.bcel.generic.ReferenceType;
 import org.apache.bcel.generic.TABLESWITCH;
@@ -123,6 +120,12 @@ public final class LocalNodeRewriter {
 		final MethodGen hipgExecuteQue = (MyNodeMethods.size() == 0 ? null
 				: createHipgExecuteQue(cg, fc, MyNodeMethods));
 
+		/*
+		 * create hipg_execute method (with parameters in a local work-list)
+		 */
+		final MethodGen hipgExecuteWork = (MyNodeMethods.size() == 0 ? null : createHipgExecuteWork(cg, fc,
+				MyNodeMethods));
+
 		/*
 		 * finalize
 		 */
@@ -141,19 +144,25 @@ public final class LocalNodeRewriter {
 			hipgExecuteQue.setMaxStack();
 			cg.addMethod(hipgExecuteQue.getMethod());
 		}
+		if (hipgExecuteWork != null) {
+			hipgExecuteWork.setMaxLocals();
+			hipgExecuteWork.setMaxStack();
+			cg.addMethod(hipgExecuteWork.getMethod());
+		}
 	}
 
 	/**
-	 * Creates and adds a method (int)hipg_parameters(short methodId) to the
-	 * class. This method returns a number of parameters used by a method that
-	 * can be executed remotely.
+	 * Creates a method (int)hipg_parameters(short methodId, byte[] buf, int
+	 * offset) for the class. This method returns the number of bytes taken by
+	 * the parameters of a message to a method that can be executed remotely,
+	 * stored in order at the offset. Batched dispatch uses it to skip messages.
 	 * 
 	 * @param cg
 	 *            Class to add a method to
 	 * @param nodeMethods
 	 *            Methods that can be executed remotely
 	 */
-	private MethodGen createHipgParameters(ClassGen cg, InstructionFactory fc, ArrayList<Method> NodeMethods) {
+	MethodGen createHipgParameters(ClassGen cg, InstructionFactory fc, ArrayList<Method> NodeMethods) {
 
 		hipGCC.verbose(tab + "creating hipg_parameters for " + NodeMethods.size() + " methods");
 
@@ -190,68 +199,25 @@ public final class LocalNodeRewriter {
 				first = il.append(new PUSH(cpg, 0));
 			} else {
 				first = il.append(new PUSH(cpg, 0));
-				for (int j = types.length - 1; j >= 1; j--) {
+				// parameters are stored in order, the lengths of the variable-size ones are read from the buffer
+				for (int j = 1; j < types.length; j++) {
 					final Type t = types[j];
 					if (Serialization.isPrimitive(t)) {
 						il.append(new PUSH(cpg, Serialization.staticTypeSizeInBytes(t)));
 						il.append(new IADD());
+						il.append(new IINC(offsetIndex, Serialization.staticTypeSizeInBytes(t)));
 					} else if (Serialization.isString(t) || Serialization.isArrayOfPrimitiveType(t)
 							|| Serialization.implementsSerializable(t)) {
-						
-						// stack = empty; 
-						// Serialization.readLength(buf, offset)
-						il.append(InstructionFactory.createLoad(bufType, bufIndex));
-						il.append(InstructionFactory.createLoad(Type.INT, offsetIndex));
-						il.append(fc.createInvoke(ClassRepository.IOUtilsClassName, "readLength", Type.INT,
-								new Type[] { bufType, Type.INT }, Constants.INVOKESTATIC));
-						
-						// stack = len
-						// offset += LENGTH_LENGTH
-						il.append(InstructionFactory.createLoad(Type.INT, offsetIndex));
-						il.append(new PUSH(cpg, IOUtils.LENGTH_BYTES));
-						il.append(new IADD());
-						il.append(InstructionFactory.createStore(Type.INT, offsetIndex));
-						
-						// stack: len
-						// if length == NULL_ARRAY_LENGTH
-						il.append(new DUP());
-						il.append(new PUSH(cpg, -1));
-						final BranchInstruction ifnonull = InstructionFactory.createBranchInstruction(
-								Constants.IF_ICMPNE, null);
-						il.append(ifnonull);
-						
-						// stack: len
-						// { length == NULL_ARRAY_LENGTH } pop, done
-						il.append(new POP());
-						final BranchInstruction gotodone = InstructionFactory.createBranchInstruction(Constants.GOTO,
-								null);
-						il.append(gotodone);
-						
-						// stack: len
-						// { length != NULL_ARRAY_LENGTH } offset += getLength()
-						final InstructionHandle getLen = il.append(new NOP());
-						if (Serialization.isString(t)) {
-							Serialization.getNrOfBytesNeededToStoreString(t, il, cg, fc);
-						} else if (Serialization.isArrayOfPrimitiveType(t)) {
-							Serialization.getNrOfBytesNeededToStorePrimitiveTypeArray(t, il, cg, fc);
-						} else {
-							Serialization.getNrOfBytesNeededToStoreSerializable(t, il, cg, fc);
-						}
-						
-						// stack: bytes
+						// stack: size
+						Serialization.getNrOfBytesStoredInBuf(t, bufIndex, offsetIndex, fc, cg, il);
+						// stack: size bytes
+						// offset += bytes
 						il.append(new DUP());
 						il.append(InstructionFactory.createLoad(Type.INT, offsetIndex));
 						il.append(new IADD());
 						il.append(InstructionFactory.createStore(Type.INT, offsetIndex));
-						
-						// stack: bytes
 						il.append(new IADD());
-						// stack: empty
-						
-						// done:
-						InstructionHandle done = il.append(new NOP());
-						ifnonull.setTarget(getLen);
-						gotodone.setTarget(done);
+						// stack: size
 					} else {
 						throw new RuntimeException(t + " not serializable");
 					}
@@ -421,4 +387,70 @@ public final class LocalNodeRewriter {
 		return mg;
 	}
 
+	/**
+	 * Creates and adds a method (void)hipg_execute(short methodId,synchronizer,local work-list) to the given class.
+	 * This method executes a method invoked on a local node and consumes its parameters from the work-list.
+	 * 
+	 * @param cg
+	 *            Class to add a method to
+	 * @param nodeMethods
+	 *            Methods that can be executed remotely
+	 */
+	private MethodGen createHipgExecuteWork(ClassGen cg, InstructionFactory fc, ArrayList<Method> NodeMethods) {
+
+		hipGCC.verbose(tab + "creating hipg_execute(work-list)");
+
+		final ConstantPoolGen cpg = cg.getConstantPool();
+		final InstructionList il = new InstructionList();
+
+		/*
+		 * create method
+		 */
+		final MethodGen mg = new MethodGen(Constants.ACC_PUBLIC, Type.VOID, new Type[] { Type.SHORT,
+				ClassRepository.SynchronizerInterfaceType, ClassRepository.LocalWorkListType }, new String[] {
+				"methodId", "synchronizer", "work" }, "hipg_execute", cg.getClassName(), il, cpg);
+
+		/*
+		 * create cases
+		 */
+		final InstructionHandle[] targets = new InstructionHandle[NodeMethods.size()];
+		final int[] matches = new int[NodeMethods.size()];
+
+		final int methodIdIndex = 1;
+		final int synchronizerIndex = 2;
+		final int workIndex = 3;
+
+		for (int i = 0; i < NodeMethods.size(); i++) {
+			final Method m = NodeMethods.get(i);
+			final Type[] types = m.getArgumentTypes();
+
+			matches[i] = i;
+			targets[i] = il.append(InstructionFactory.createThis());
+
+			il.append(InstructionFactory.createLoad(ClassRepository.SynchronizerType, synchronizerIndex));
+			il.append(fc.createCheckCast((ReferenceType) types[0]));
+			for (int l = 1; l < types.length; l++) {
+				Serialization.createReadFromWorkList(types[l], workIndex, il, fc);
+			}
+			// invoke the method
+			il.append(fc.createInvoke(cg.getClassName(), m.getName(), m.getReturnType(), m.getArgumentTypes(),
+					Constants.INVOKEVIRTUAL));
+			il.append(InstructionFactory.createReturn(Type.VOID));
+		}
+
+		/*
+		 * create tableswitch
+		 */
+		if (NodeMethods.size() > 1) {
+			final InstructionList throwIl = BCELUtils.createThrowRuntimeException(fc, cpg, "Unrecognized method ",
+					methodIdIndex);
+			final InstructionHandle defaultTarget = il.append(throwIl);
+			il.insert(new TABLESWITCH(matches, targets, defaultTarget));
+			il.insert(InstructionFactory.createLoad(Type.SHORT, methodIdIndex));
+			throwIl.dispose();
+		}
+
+		return mg;
+	}
+
 }
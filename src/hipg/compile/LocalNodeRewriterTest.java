@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package hipg.compile;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+
+import myutils.IOUtils;
+
+import org.apache.bcel.Constants;
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.InstructionFactory;
+import org.apache.bcel.generic.MethodGen;
+import org.junit.Test;
+
+public class LocalNodeRewriterTest {
+
+	/** Remote methods of a node: the first parameter is the synchronizer, the others are sent. */
+	public static class Messages {
+		public void primitives(Object s, int a, long b) {
+		}
+
+		public void arrayAfterPrimitive(Object s, int a, byte[] b, long c, int[] d) {
+		}
+	}
+
+	private static class Loader extends ClassLoader {
+		Loader() {
+			super(LocalNodeRewriterTest.class.getClassLoader());
+		}
+
+		Class<?> define(JavaClass cl) {
+			final byte[] bytes = cl.getBytes();
+			return defineClass(cl.getClassName(), bytes, 0, bytes.length);
+		}
+	}
+
+	/** Creates an object with a hipg_parameters method for the methods of the Messages class. */
+	private static Object createParameters(String... names) throws Exception {
+		final JavaClass messages = Repository.lookupClass(Messages.class);
+		final ArrayList<Method> methods = new ArrayList<Method>();
+		for (String name : names) {
+			for (Method m : messages.getMethods()) {
+				if (m.getName().equals(name)) {
+					methods.add(m);
+				}
+			}
+		}
+		final ClassGen cg = new ClassGen("hipg.compile.GeneratedParameters", "java.lang.Object",
+				"GeneratedParameters.java", Constants.ACC_PUBLIC, null);
+		cg.addEmptyConstructor(Constants.ACC_PUBLIC);
+		final MethodGen mg = new LocalNodeRewriter(new HipGCC(), null, null).createHipgParameters(cg,
+				new InstructionFactory(cg), methods);
+		mg.setMaxStack();
+		mg.setMaxLocals();
+		cg.addMethod(mg.getMethod());
+		return new Loader().define(cg.getJavaClass()).getDeclaredConstructor().newInstance();
+	}
+
+	private static int parameters(Object o, int methodId, byte[] buf, int offset) throws Exception {
+		final java.lang.reflect.Method m = o.getClass().getMethod("hipg_parameters", short.class, byte[].class,
+				int.class);
+		return (Integer) m.invoke(o, (short) methodId, buf, offset);
+	}
+
+	@Test
+	public void testPrimitives() throws Exception {
+		final Object o = createParameters("primitives", "arrayAfterPrimitive");
+		assertEquals(IOUtils.INT_BYTES + IOUtils.LONG_BYTES, parameters(o, 0, new byte[16], 0));
+	}
+
+	@Test
+	public void testArrayAfterPrimitive() throws Exception {
+		final Object o = createParameters("primitives", "arrayAfterPrimitive");
+		// a message as batched by the sender: a header followed by the parameters, in order
+		final byte[] buf = new byte[256];
+		final int start = 5;
+		int offset = start;
+		IOUtils.writeInt(7, buf, offset);
+		offset += IOUtils.INT_BYTES;
+		IOUtils.writeByteArray(new byte[] { 1, 2, 3 }, buf, offset);
+		offset += IOUtils.bytesByteArray(3);
+		IOUtils.writeLong(11L, buf, offset);
+		offset += IOUtils.LONG_BYTES;
+		IOUtils.writeIntArray(new int[] { 1, 2, 3, 4, 5 }, buf, offset);
+		offset += IOUtils.bytesIntArray(5);
+		assertEquals(offset - start, parameters(o, 1, buf, start));
+	}
+
+	@Test
+	public void testNullArrayAfterPrimitive() throws Exception {
+		final Object o = createParameters("primitives", "arrayAfterPrimitive");
+		final byte[] buf = new byte[256];
+		int offset = 0;
+		IOUtils.writeInt(7, buf, offset);
+		offset += IOUtils.INT_BYTES;
+		IOUtils.writeInt(-1, buf, offset);
+		offset += IOUtils.LENGTH_BYTES;
+		IOUtils.writeLong(11L, buf, offset);
+		offset += IOUtils.LONG_BYTES;
+		IOUtils.writeIntArray(new int[] { 1, 2 }, buf, offset);
+		offset += IOUtils.bytesIntArray(2);
+		assertEquals(offset, parameters(o, 1, buf, 0));
+	}
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package hipg.compile;
+
+import hipg.graph.NodeFactory;
+
+import org.apache.bcel.Constants;
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.ClassFormatException;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.generic.ArrayType;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.InstructionConstants;
+import org.apache.bcel.generic.InstructionFactory;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.ObjectType;
+import org.apache.bcel.generic.ReferenceType;
+import org.apache.bcel.generic.Type;
+
+/**
+ * Generates a node factory for a local node class: a subclass of {@link NodeFactory} that creates nodes by calling
+ * the (graph, id) or the (graph, state) constructor of the class directly instead of through reflection.
+ */
+public final class NodeFactoryGenerator {
+
+	private final static String tab = "  ";
+	private final static ArrayType stateType = new ArrayType(Type.BYTE, 1);
+
+	/** The compiler. */
+	private final HipGCC hipGCC;
+
+	/** Creates a new node factory generator. */
+	public NodeFactoryGenerator(HipGCC hipGCC) {
+		this.hipGCC = hipGCC;
+	}
+
+	/**
+	 * Generates a node factory for a local node class.
+	 * 
+	 * @return The factory or null if the class is abstract or has no suitable constructor
+	 * @throws ClassNotFoundException
+	 */
+	public JavaClass generate(JavaClass cl) throws ClassNotFoundException {
+		if (cl.isAbstract() || cl.isInterface()) {
+			return null;
+		}
+		final boolean explicit = cl.instanceOf(ClassRepository.getExplicitLocalNodeClass());
+		final boolean onTheFly = cl.instanceOf(ClassRepository.getOnTheFlyLocalNodeClass());
+		Method explicitConstructor = null;
+		Method onTheFlyConstructor = null;
+		for (Method m : cl.getMethods()) {
+			if (m.getName().equals(Constants.CONSTRUCTOR_NAME) && !m.isPrivate()) {
+				final Type[] types = m.getArgumentTypes();
+				if (types.length == 2 && types[0] instanceof ObjectType) {
+					if (explicit && explicitConstructor == null && types[1].equals(Type.INT)
+							&& isGraphType((ObjectType) types[0], ClassRepository.getExplicitGraphClass())) {
+						explicitConstructor = m;
+					} else if (onTheFly && onTheFlyConstructor == null
+							&& (types[1].equals(stateType) || types[1].equals(Type.OBJECT))
+							&& isGraphType((ObjectType) types[0], ClassRepository.getOnTheFlyGraphClass())) {
+						onTheFlyConstructor = m;
+					}
+				}
+			}
+		}
+		if (explicitConstructor == null && onTheFlyConstructor == null) {
+			hipGCC.verbose(tab + "no node constructor found in " + cl.getClassName() + ", not generating a factory");
+			return null;
+		}
+
+		final String factoryName = NodeFactory.factoryClassName(cl.getClassName());
+		hipGCC.verbose(tab + "generating node factory " + factoryName);
+		final ClassGen cg = new ClassGen(factoryName, ClassRepository.NodeFactoryClassName, "<generated>",
+				Constants.ACC_PUBLIC | Constants.ACC_FINAL | Constants.ACC_SUPER, new String[0]);
+		cg.addEmptyConstructor(Constants.ACC_PUBLIC);
+		final InstructionFactory fc = new InstructionFactory(cg);
+		if (explicitConstructor != null) {
+			cg.addMethod(createFactoryMethod(cl, cg, fc, explicitConstructor, ClassRepository.ExplicitLocalNodeType,
+					ClassRepository.ExplicitGraphType, Type.INT));
+		}
+		if (onTheFlyConstructor != null) {
+			cg.addMethod(createFactoryMethod(cl, cg, fc, onTheFlyConstructor, ClassRepository.OnTheFlyLocalNodeType,
+					ClassRepository.OnTheFlyGraphType, stateType));
+		}
+		return cg.getJavaClass();
+	}
+
+	/**
+	 * Checks if a constructor parameter of the given type can take a graph of the given class: the type is a graph
+	 * type (it implements the graph interface) and the graph can be cast to it.
+	 */
+	private static boolean isGraphType(ObjectType type, JavaClass graphClass) {
+		if (type.getClassName().equals(graphClass.getClassName())) {
+			return true;
+		}
+		try {
+			final JavaClass cl = Repository.lookupClass(type.getClassName());
+			return cl.instanceOf(ClassRepository.getGraphInterface())
+					&& (cl.instanceOf(graphClass) || graphClass.instanceOf(cl));
+		} catch (ClassNotFoundException e) {
+			return false;
+		} catch (ClassFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Creates a method (node)createNode(graph,argument) that returns {@code new Node((G)graph, (A)argument)}, where G
+	 * and A are the types of the parameters of the given constructor.
+	 */
+	private Method createFactoryMethod(JavaClass cl, ClassGen cg, InstructionFactory fc, Method constructor,
+			ObjectType nodeType, ObjectType graphType, Type argumentType) {
+		final ConstantPoolGen cpg = cg.getConstantPool();
+		final InstructionList il = new InstructionList();
+		final MethodGen mg = new MethodGen(Constants.ACC_PUBLIC | Constants.ACC_FINAL, nodeType, new Type[] {
+				graphType, argumentType }, new String[] { "graph", "argument" }, "createNode", cg.getClassName(), il,
+				cpg);
+		final Type[] types = constructor.getArgumentTypes();
+		final ObjectType localNodeType = new ObjectType(cl.getClassName());
+
+		il.append(fc.createNew(localNodeType));
+		il.append(InstructionConstants.DUP);
+		il.append(InstructionFactory.createLoad(graphType, 1));
+		if (!types[0].equals(graphType)) {
+			il.append(fc.createCheckCast((ReferenceType) types[0]));
+		}
+		il.append(InstructionFactory.createLoad(argumentType, 2));
+		if (!types[1].equals(argumentType) && !types[1].equals(Type.OBJECT)) {
+			il.append(fc.createCheckCast((ReferenceType) types[1]));
+		}
+		il.append(fc.createInvoke(cl.getClassName(), Constants.CONSTRUCTOR_NAME, Type.VOID, types,
+				Constants.INVOKESPECIAL));
+		il.append(InstructionFactory.createReturn(nodeType));
+
+		mg.setMaxStack();
+		mg.setMaxLocals();
+		final Method m = mg.getMethod();
+		il.dispose();
+		return m;
+	}
+
+}
@@ -381,19 +381,80 @@ public class NodeRewriter {
 
 	}
 
+	/**
+	 * Determines the ids of the remote methods of a node class or interface: the methods of its node interfaces in
+	 * declaration order, each interface after its super-interfaces and a class after its superclass. The ids of the
+	 * methods of an interface are thus the same in all its sub-interfaces and implementations along a chain of
+	 * interfaces, so that a call made in a generic node class (e.g. on a neighbor of type TNode extends SomeNode)
+	 * reaches the same method in any subclass. Where they are not (e.g. in the second of two unrelated interfaces),
+	 * {@link #findMethodIdConflict} finds the implementations that disagree.
+	 */
 	public static ArrayList<Method> determineMethodsOrder(JavaClass cl, Map<String, JavaClass> NodeInterfaces,
 			Map<JavaClass, ArrayList<Method>> NodeMethods) throws ClassNotFoundException {
+		final ArrayList<JavaClass> nodeInterfaces = new ArrayList<JavaClass>();
+		addNodeInterfaces(cl, NodeInterfaces, nodeInterfaces);
 		final ArrayList<Method> orderedMethods = new ArrayList<Method>();
-		final JavaClass[] allInterfaces = cl.getAllInterfaces();
-		for (JavaClass iface : allInterfaces) {
-			if (NodeInterfaces.get(iface.getClassName()) != null) {
-				orderedMethods.addAll(NodeMethods.get(iface));
-			}
+		for (JavaClass iface : nodeInterfaces) {
+			orderedMethods.addAll(NodeMethods.get(iface));
 		}
-		// Collections.reverse(orderedMethods);
 		return orderedMethods;
 	}
 
+	private static void addNodeInterfaces(JavaClass cl, Map<String, JavaClass> NodeInterfaces,
+			ArrayList<JavaClass> nodeInterfaces) throws ClassNotFoundException {
+		if (!cl.isInterface()) {
+			final JavaClass superClass = cl.getSuperClass();
+			if (superClass != null) {
+				addNodeInterfaces(superClass, NodeInterfaces, nodeInterfaces);
+			}
+		}
+		for (JavaClass iface : cl.getInterfaces()) {
+			addNodeInterfaces(iface, NodeInterfaces, nodeInterfaces);
+		}
+		if (cl.isInterface() && NodeInterfaces.get(cl.getClassName()) != null) {
+			for (JavaClass added : nodeInterfaces) {
+				if (added.getClassName().equals(cl.getClassName())) {
+					return;
+				}
+			}
+			nodeInterfaces.add(cl);
+		}
+	}
+
+	/**
+	 * Finds a class among the given ones that implements a node class or interface but gives one of its remote
+	 * methods another id, so that a call made on the node class would execute another method. Returns null if there
+	 * is none.
+	 */
+	public static JavaClass findMethodIdConflict(JavaClass nodeClass, int methodId, Iterable<JavaClass> classes,
+			Map<String, JavaClass> NodeInterfaces, Map<JavaClass, ArrayList<Method>> NodeMethods)
+			throws ClassNotFoundException {
+		final Method method = determineMethodsOrder(nodeClass, NodeInterfaces, NodeMethods).get(methodId);
+		for (JavaClass cl : classes) {
+			if (!cl.getClassName().equals(nodeClass.getClassName()) && cl.instanceOf(nodeClass)) {
+				final ArrayList<Method> methods = determineMethodsOrder(cl, NodeInterfaces, NodeMethods);
+				final Method m = methods.get(methodId);
+				if (!m.getName().equals(method.getName()) || !m.getSignature().equals(method.getSignature())) {
+					return cl;
+				}
+			}
+		}
+		return null;
+	}
+
+	/** Stops with an error if a remote method of a node class has another id in some local node class. */
+	private void checkMethodId(JavaClass nodeClass, int methodId) throws ClassNotFoundException {
+		final JavaClass conflict = findMethodIdConflict(nodeClass, methodId, hipGCC.getLocalNodeClasses(),
+				NodeInterfaces, NodeMethods);
+		if (conflict != null) {
+			final Method method = determineMethodsOrder(nodeClass, NodeInterfaces, NodeMethods).get(methodId);
+			hipGCC.error("Remote method " + method.getName() + "() of " + nodeClass.getClassName()
+					+ " has another id in " + conflict.getClassName() + ": the node interfaces of "
+					+ conflict.getClassName() + " do not extend those of " + nodeClass.getClassName()
+					+ " in one chain; call the method on " + conflict.getClassName() + " or on an interface it extends");
+		}
+	}
+
 	private void rewriteRemoteNeighborCall(MethodGen mg, ClassGen cg, InstructionFactory fc, RemoteCall rc)
 			throws ClassNotFoundException {
 
@@ -658,44 +719,60 @@ public class NodeRewriter {
 		// stack: neigh x
 
 		/* local call */
+		BranchInstruction gotoDone;
+		BranchInstruction gotoDone2 = null;
 
-		BranchInstruction iftoodeep = null;
-
-		if (REWRITE_IMMEDIATE_CALLS) {
+		if (hipGCC.workList()) {
+			// append local call to the work-list and drain it
 			// stack: neigh x
-			// if (Runtime.getRuntime().ImmediateDepth())
-			il.append(fc.createInvoke(ClassRepository.RuntimeClassName, "incImmediateDepth", Type.BOOLEAN,
-					Type.NO_ARGS, Constants.INVOKESTATIC));
-			il.append(new PUSH(cpg, 0));
-			iftoodeep = InstructionFactory.createBranchInstruction(Constants.IF_ICMPEQ, null);
-			il.append(iftoodeep);
-		}
+			if (hipGCC.debugCode())
+				BCELUtils.appendFlag(60, il, cpg);
+			final InstructionList workListCall = createWorkListLocalCall(mg, cg, fc, rc, freeVarIndex);
+			il.append(workListCall);
+			workListCall.dispose();
+			gotoDone = InstructionFactory.createBranchInstruction(Constants.GOTO, null);
+			il.append(gotoDone);
+			// stack: empty
+		} else {
 
-		// invoke local call
-		// stack: neigh x
-		if (hipGCC.debugCode())
-			BCELUtils.appendFlag(60, il, cpg);
-		il.append(rc.getInvokeRemoteCall().copy());
-		if (REWRITE_IMMEDIATE_CALLS) {
-			il.append(fc.createInvoke(ClassRepository.RuntimeClassName, "decImmediateDepth", Type.VOID, Type.NO_ARGS,
-					Constants.INVOKESTATIC));
-		}
-		BranchInstruction gotoDone = InstructionFactory.createBranchInstruction(Constants.GOTO, null);
-		il.append(gotoDone);
-		// stack: empty
+			BranchInstruction iftoodeep = null;
 
-		// store local call on the stack
-		// stack: neigh x
-		if (hipGCC.debugCode())
-			BCELUtils.appendFlag(70, il, cpg);
-		final InstructionList storeLocalCall = createStoreLocalCall(mg, cg, fc, rc, neighborStr, freeVarIndex);
-		InstructionHandle toodeep = il.append(storeLocalCall);
-		storeLocalCall.dispose();
-		if (REWRITE_IMMEDIATE_CALLS) {
-			iftoodeep.setTarget(toodeep);
+			if (REWRITE_IMMEDIATE_CALLS) {
+				// stack: neigh x
+				// if (Runtime.getRuntime().ImmediateDepth())
+				il.append(fc.createInvoke(ClassRepository.RuntimeClassName, "incImmediateDepth", Type.BOOLEAN,
+						Type.NO_ARGS, Constants.INVOKESTATIC));
+				il.append(new PUSH(cpg, 0));
+				iftoodeep = InstructionFactory.createBranchInstruction(Constants.IF_ICMPEQ, null);
+				il.append(iftoodeep);
+			}
+
+			// invoke local call
+			// stack: neigh x
+			if (hipGCC.debugCode())
+				BCELUtils.appendFlag(60, il, cpg);
+			il.append(rc.getInvokeRemoteCall().copy());
+			if (REWRITE_IMMEDIATE_CALLS) {
+				il.append(fc.createInvoke(ClassRepository.RuntimeClassName, "decImmediateDepth", Type.VOID,
+						Type.NO_ARGS, Constants.INVOKESTATIC));
+			}
+			gotoDone = InstructionFactory.createBranchInstruction(Constants.GOTO, null);
+			il.append(gotoDone);
+			// stack: empty
+
+			// store local call on the stack
+			// stack: neigh x
+			if (hipGCC.debugCode())
+				BCELUtils.appendFlag(70, il, cpg);
+			final InstructionList storeLocalCall = createStoreLocalCall(mg, cg, fc, rc, neighborStr, freeVarIndex);
+			InstructionHandle toodeep = il.append(storeLocalCall);
+			storeLocalCall.dispose();
+			if (REWRITE_IMMEDIATE_CALLS) {
+				iftoodeep.setTarget(toodeep);
+			}
+			gotoDone2 = InstructionFactory.createBranchInstruction(Constants.GOTO, null);
+			il.append(gotoDone2);
 		}
-		BranchInstruction gotoDone2 = InstructionFactory.createBranchInstruction(Constants.GOTO, null);
-		il.append(gotoDone2);
 
 		/* remote call */
 		if (hipGCC.debugCode())
@@ -720,7 +797,9 @@ public class NodeRewriter {
 		ifremote.setTarget(remoteStart);
 		InstructionHandle done = il.append(new NOP());
 		gotoDone.setTarget(done);
-		gotoDone2.setTarget(done);
+		if (gotoDone2 != null) {
+			gotoDone2.setTarget(done);
+		}
 
 		return il;
 	}
@@ -752,43 +831,59 @@ public class NodeRewriter {
 		// stack: node x
 
 		/* local call */
-		BranchInstruction iftoodeep = null;
+		BranchInstruction gotoDone;
+		BranchInstruction gotoDone2 = null;
 
-		if (REWRITE_IMMEDIATE_CALLS) {
-			// stack: node x
-			// if (Runtime.getRuntime().ImmediateDepth())
-			il.append(fc.createInvoke(ClassRepository.RuntimeClassName, "incImmediateDepth", Type.BOOLEAN,
-					Type.NO_ARGS, Constants.INVOKESTATIC));
-			il.append(new PUSH(cpg, 0));
-			iftoodeep = InstructionFactory.createBranchInstruction(Constants.IF_ICMPEQ, null);
-			il.append(iftoodeep);
-		}
+		if (hipGCC.workList()) {
+			// append local call to the work-list and drain it
+			// stack: neigh x
+			if (hipGCC.debugCode())
+				BCELUtils.appendFlag(110, il, cpg);
+			final InstructionList workListCall = createWorkListLocalCall(mg, cg, fc, rc, freeVarIndex);
+			il.append(workListCall);
+			workListCall.dispose();
+			gotoDone = InstructionFactory.createBranchInstruction(Constants.GOTO, null);
+			il.append(gotoDone);
+			// stack: empty
+		} else {
+			BranchInstruction iftoodeep = null;
 
-		// invoke local call
-		// stack: node x
-		if (hipGCC.debugCode())
-			BCELUtils.appendFlag(110, il, cpg);
-		il.append(rc.getInvokeRemoteCall().copy());
-		if (REWRITE_IMMEDIATE_CALLS) {
-			il.append(fc.createInvoke(ClassRepository.RuntimeClassName, "decImmediateDepth", Type.VOID, Type.NO_ARGS,
-					Constants.INVOKESTATIC));
-		}
-		BranchInstruction gotoDone = InstructionFactory.createBranchInstruction(Constants.GOTO, null);
-		il.append(gotoDone);
-		// stack: empty
+			if (REWRITE_IMMEDIATE_CALLS) {
+				// stack: node x
+				// if (Runtime.getRuntime().ImmediateDepth())
+				il.append(fc.createInvoke(ClassRepository.RuntimeClassName, "incImmediateDepth", Type.BOOLEAN,
+						Type.NO_ARGS, Constants.INVOKESTATIC));
+				il.append(new PUSH(cpg, 0));
+				iftoodeep = InstructionFactory.createBranchInstruction(Constants.IF_ICMPEQ, null);
+				il.append(iftoodeep);
+			}
 
-		// store local call on the stack
-		// stack: neigh x
-		if (hipGCC.debugCode())
-			BCELUtils.appendFlag(120, il, cpg);
-		final InstructionList storeLocalCall = createStoreLocalCall(mg, cg, fc, rc, neighborStr, freeVarIndex);
-		InstructionHandle toodeep = il.append(storeLocalCall);
-		storeLocalCall.dispose();
-		if (REWRITE_IMMEDIATE_CALLS) {
-			iftoodeep.setTarget(toodeep);
+			// invoke local call
+			// stack: node x
+			if (hipGCC.debugCode())
+				BCELUtils.appendFlag(110, il, cpg);
+			il.append(rc.getInvokeRemoteCall().copy());
+			if (REWRITE_IMMEDIATE_CALLS) {
+				il.append(fc.createInvoke(ClassRepository.RuntimeClassName, "decImmediateDepth", Type.VOID,
+						Type.NO_ARGS, Constants.INVOKESTATIC));
+			}
+			gotoDone = InstructionFactory.createBranchInstruction(Constants.GOTO, null);
+			il.append(gotoDone);
+			// stack: empty
+
+			// store local call on the stack
+			// stack: neigh x
+			if (hipGCC.debugCode())
+				BCELUtils.appendFlag(120, il, cpg);
+			final InstructionList storeLocalCall = createStoreLocalCall(mg, cg, fc, rc, neighborStr, freeVarIndex);
+			InstructionHandle toodeep = il.append(storeLocalCall);
+			storeLocalCall.dispose();
+			if (REWRITE_IMMEDIATE_CALLS) {
+				iftoodeep.setTarget(toodeep);
+			}
+			gotoDone2 = InstructionFactory.createBranchInstruction(Constants.GOTO, null);
+			il.append(gotoDone2);
 		}
-		BranchInstruction gotoDone2 = InstructionFactory.createBranchInstruction(Constants.GOTO, null);
-		il.append(gotoDone2);
 
 		/* remote call */
 		if (hipGCC.debugCode())
@@ -812,7 +907,9 @@ public class NodeRewriter {
 		ifremote.setTarget(remoteStart);
 		InstructionHandle done = il.append(new NOP());
 		gotoDone.setTarget(done);
-		gotoDone2.setTarget(done);
+		if (gotoDone2 != null) {
+			gotoDone2.setTarget(done);
+		}
 
 		return il;
 	}
@@ -884,6 +981,7 @@ public class NodeRewriter {
 		if (methodId >= methods.size()) {
 			hipGCC.error("Method " + remoteMethodName + "() was not found among remote methods. This is a bug!(1)");
 		}
+		checkMethodId(nodeClass, methodId);
 
 		/* assume: stack contains the object and parameters of the remote method */
 
@@ -922,11 +1020,11 @@ public class NodeRewriter {
 				il.append(InstructionFactory.createDup(varType.getSize()));
 				il.append(InstructionFactory.createStore(varType, storeIdx));
 				Serialization.getRequiredBufferSizeToStoreType(varType, cg, fc, il);
-				// il.append(InstructionFactory.createPop(varType.getSize()));//??should
-				// this be here
 				il.append(InstructionFactory.createLoad(Type.INT, paramCountIndex));
 				il.append(new IADD());
 				il.append(InstructionFactory.createStore(Type.INT, paramCountIndex));
+				// the size computation leaves the argument on the stack
+				il.append(InstructionFactory.createPop(varType.getSize()));
 			}
 			remoteArgumentIndices[j] = storeIdx;
 			newVarIndex += varType.getSize();
@@ -1005,7 +1103,12 @@ public class NodeRewriter {
 			il.append(new SWAP());
 		}
 		// stack: msg (empty OR state)
-		il.append(InstructionFactory.createLoad(bufType, bufIndex));
+		if (nodeImplementationType == Runtime.GRAPH_EXPLICIT) {
+			// the message writes the header itself (it may write a compact one)
+			il.append(new DUP());
+		} else {
+			il.append(InstructionFactory.createLoad(bufType, bufIndex));
+		}
 		il.append(InstructionFactory.createLoad(Type.INT, positionIndex));
 		il.append(InstructionFactory.createLoad(Type.OBJECT, synchIndex));
 		il.append(new DUP());
@@ -1047,10 +1150,10 @@ public class NodeRewriter {
 				il.append(fc.createInvoke(ExplicitNodeReference.class.getName(), "getId", Type.INT,
 						new Type[] { Type.LONG }, Constants.INVOKESTATIC));
 			}
-			il.append(fc.createInvoke(ClassRepository.SerializationClassName, "writeExplicitUserMessage", Type.VOID,
-					new Type[] { bufType, Type.INT, Type.INT, Type.INT, Type.SHORT, Type.SHORT, Type.INT },
-					Constants.INVOKESTATIC));
-			il.append(new PUSH(cpg, 3 * IOUtils.INT_BYTES + 2 * IOUtils.SHORT_BYTES));
+			// stack: msg msg position synchOwner synchId graphId methodId target
+			il.append(fc.createInvoke(ClassRepository.FastMessageClassName, "writeExplicitUserMessage", Type.INT,
+					new Type[] { Type.INT, Type.INT, Type.INT, Type.SHORT, Type.SHORT, Type.INT },
+					Constants.INVOKEVIRTUAL));
 		} else if (nodeImplementationType == Runtime.GRAPH_ONTHEFLY) {
 			if (hipGCC.debugCode())
 				BCELUtils.appendFlag(207, il, cpg);
@@ -1141,6 +1244,7 @@ public class NodeRewriter {
 		if (methodId >= methods.size()) {
 			hipGCC.error("Method " + calledMethodName + "() was not found among remote methods. This is a bug!(2)");
 		}
+		checkMethodId(ClassRepository.lookupClass(nodeType), methodId);
 		/* compute indices */
 		int newVarIndex = freeVarIndex + Type.INT.getSize();
 		newVarIndex += Type.INT.getSize();
@@ -1199,6 +1303,83 @@ public class NodeRewriter {
 		return il;
 	}
 
+	private InstructionList createWorkListLocalCall(MethodGen mg, ClassGen cg, InstructionFactory fc, RemoteCall rc,
+			int freeVarIndex) throws ClassNotFoundException {
+
+		InstructionList il = new InstructionList();
+		ConstantPoolGen cpg = cg.getConstantPool();
+
+		InvokeInstruction invokeRemote = rc.getInvokeRemoteCall();
+		String calledMethodName = invokeRemote.getMethodName(cpg);
+		String calledMethodSignature = invokeRemote.getSignature(cpg);
+		Type[] calledArgumentTypes = invokeRemote.getArgumentTypes(cpg);
+		int calledArguments = (calledArgumentTypes == null ? 0 : calledArgumentTypes.length);
+		int[] calledArgumentIndices = new int[calledArguments];
+		ObjectType nodeType = (ObjectType) rc.getInvokeRemoteCall().getReferenceType(cpg);
+
+		/* determine node methods order */
+		ArrayList<Method> methods = determineMethodsOrder(ClassRepository.lookupClass(nodeType), NodeInterfaces,
+				NodeMethods);
+
+		/* determine method id */
+		int methodId = 0;
+		while (methodId < methods.size()) {
+			Method m = methods.get(methodId);
+			if (m.getName().equals(calledMethodName) && m.getSignature().equals(calledMethodSignature)) {
+				break;
+			}
+			methodId++;
+		}
+		if (methodId >= methods.size()) {
+			hipGCC.error("Method " + calledMethodName + "() was not found among remote methods. This is a bug!(3)");
+		}
+		checkMethodId(ClassRepository.lookupClass(nodeType), methodId);
+
+		/* compute indices */
+		int newVarIndex = freeVarIndex + Type.INT.getSize();
+		newVarIndex += Type.INT.getSize();
+		newVarIndex += bufType.getSize();
+		newVarIndex += Type.INT.getSize();
+		newVarIndex += Type.DOUBLE.getSize();
+
+		/* store parameters from stack into local variables. effect: pops all parameters */
+		// stack: neigh x
+		// where x = (x0,x1...x{n-1}) n=calledArguments
+		for (int i = 0; i < calledArguments; i++) {
+			int j = calledArguments - 1 - i;
+			Type t = calledArgumentTypes[j];
+			int storeIdx = newVarIndex;
+			il.append(InstructionFactory.createStore(t, storeIdx));
+			calledArgumentIndices[j] = storeIdx;
+			newVarIndex += t.getSize();
+		}
+		final int synchronizerIndex = calledArgumentIndices[0];
+
+		// stack: neigh
+		il.append(fc.createCast(nodeType, ClassRepository.LocalNodeType));
+		// stack: localNode
+		il.append(fc.createInvoke(ClassRepository.RuntimeClassName, "getLocalWorkList",
+				ClassRepository.LocalWorkListType, Type.NO_ARGS, Constants.INVOKESTATIC));
+		il.append(new SWAP());
+		// stack: work localNode
+		il.append(InstructionFactory.createLoad(Type.OBJECT, synchronizerIndex));
+		il.append(new PUSH(cpg, methodId));
+		// stack: work localNode synchronizer methodId
+		il.append(fc.createInvoke(ClassRepository.LocalWorkListClassName, "add", ClassRepository.LocalWorkListType,
+				new Type[] { ClassRepository.LocalNodeType, ClassRepository.SynchronizerInterfaceType, Type.SHORT },
+				Constants.INVOKEVIRTUAL));
+		// stack: work
+		for (int i = 1; i < calledArguments; i++) {
+			Serialization.createWriteToWorkListOnStack(calledArgumentTypes[i], calledArgumentIndices[i], il, fc);
+		}
+		// stack: work
+		il.append(fc.createInvoke(ClassRepository.LocalWorkListClassName, "drain", Type.VOID, Type.NO_ARGS,
+				Constants.INVOKEVIRTUAL));
+		// stack: empty
+
+		return il;
+	}
+
 	private void rewriteNotificationCall(MethodGen mg, ClassGen cg, InstructionFactory fc, NotificationCall nc)
 			throws ClassNotFoundException {
 
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package hipg.compile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import hipg.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.junit.Test;
+
+public class NodeRewriterTest {
+
+	public static interface A extends Node {
+		public void a(Object s);
+	}
+
+	public static interface B extends A {
+		public void b(Object s);
+	}
+
+	public static interface Zed extends Node {
+		public void z(Object s);
+	}
+
+	public static interface Alpha extends Node {
+		public void x(Object s);
+	}
+
+	public static abstract class Base implements B {
+	}
+
+	public static abstract class Sub extends Base implements Zed {
+	}
+
+	public static abstract class Both implements Zed, Alpha {
+	}
+
+	public static interface Diamond extends Zed, Alpha, B {
+	}
+
+	private final Map<String, JavaClass> NodeInterfaces = new HashMap<String, JavaClass>();
+	private final Map<JavaClass, ArrayList<Method>> NodeMethods = new HashMap<JavaClass, ArrayList<Method>>();
+
+	public NodeRewriterTest() throws ClassNotFoundException {
+		for (Class<?> c : new Class<?>[] { A.class, B.class, Zed.class, Alpha.class, Diamond.class }) {
+			final JavaClass cl = Repository.lookupClass(c);
+			NodeInterfaces.put(cl.getClassName(), cl);
+			NodeMethods.put(cl, NodeRewriter.discoverMethods(cl));
+		}
+	}
+
+	private List<String> order(Class<?> c) throws ClassNotFoundException {
+		final ArrayList<String> names = new ArrayList<String>();
+		for (Method m : NodeRewriter.determineMethodsOrder(Repository.lookupClass(c), NodeInterfaces, NodeMethods)) {
+			names.add(m.getName());
+		}
+		return names;
+	}
+
+	private JavaClass conflict(Class<?> nodeClass, int methodId) throws ClassNotFoundException {
+		final ArrayList<JavaClass> classes = new ArrayList<JavaClass>();
+		for (Class<?> c : new Class<?>[] { Base.class, Sub.class, Both.class }) {
+			classes.add(Repository.lookupClass(c));
+		}
+		return NodeRewriter.findMethodIdConflict(Repository.lookupClass(nodeClass), methodId, classes,
+				NodeInterfaces, NodeMethods);
+	}
+
+	@Test
+	public void testSuperInterfacesFirst() throws ClassNotFoundException {
+		assertEquals(Arrays.asList("a"), order(A.class));
+		assertEquals(Arrays.asList("a", "b"), order(B.class));
+		assertEquals(Arrays.asList("a", "b"), order(Base.class));
+	}
+
+	@Test
+	public void testSuperClassFirst() throws ClassNotFoundException {
+		assertEquals(Arrays.asList("a", "b", "z"), order(Sub.class));
+	}
+
+	@Test
+	public void testDeclarationOrder() throws ClassNotFoundException {
+		// not sorted by name
+		assertEquals(Arrays.asList("z", "x"), order(Both.class));
+		assertEquals(Arrays.asList("z", "x", "a", "b"), order(Diamond.class));
+	}
+
+	@Test
+	public void testNoConflictAlongChain() throws ClassNotFoundException {
+		assertNull(conflict(A.class, 0));
+		assertNull(conflict(B.class, 1));
+		assertNull(conflict(Base.class, 1));
+	}
+
+	@Test
+	public void testConflictInSecondInterface() throws ClassNotFoundException {
+		assertSame(Repository.lookupClass(Both.class), conflict(Alpha.class, 0));
+		// the methods of Zed follow those of the superclass in Sub
+		assertSame(Repository.lookupClass(Sub.class), conflict(Zed.class, 0));
+	}
+}
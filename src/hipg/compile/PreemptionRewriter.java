@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package hipg.compile;
+
+import java.util.ArrayList;
+
+import org.apache.bcel.Constants;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.generic.BranchInstruction;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.InstructionFactory;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.Select;
+import org.apache.bcel.generic.Type;
+
+/**
+ * Inserts automatic preemption points into loops: a call to Runtime.preempt() before every backward branch of the
+ * run() method of a synchronizer. The call is a counter check and only now and then processes messages and flushes
+ * buffers, so that applications need not call Runtime.nice() in long loops. Node methods are not instrumented: they
+ * run to completion, and processing messages in the middle of one could execute another node method on the same node.
+ */
+public final class PreemptionRewriter {
+
+	private final static String tab = "  ";
+
+	/** The compiler. */
+	private final HipGCC hipGCC;
+
+	/** Creates a new preemption rewriter. */
+	public PreemptionRewriter(HipGCC hipGCC) {
+		this.hipGCC = hipGCC;
+	}
+
+	/** Inserts preemption points into the run() method of a synchronizer. */
+	public void processSynchronizer(JavaClass cl, ClassGen cg) {
+		final ArrayList<Method> methods = new ArrayList<Method>();
+		for (Method m : cg.getMethods()) {
+			if (m.getName().equals("run") && m.getArgumentTypes().length == 0 && !m.isAbstract()) {
+				methods.add(m);
+			}
+		}
+		process(cl, cg, methods);
+	}
+
+	private void process(JavaClass cl, ClassGen cg, ArrayList<Method> methods) {
+		final String className = cl.getClassName();
+		final ConstantPoolGen cpg = cg.getConstantPool();
+		final InstructionFactory fc = new InstructionFactory(cg);
+		for (Method m : methods) {
+			final MethodGen mg = new MethodGen(m, className, cpg);
+			final InstructionList il = mg.getInstructionList();
+			if (il == null) {
+				continue;
+			}
+			il.setPositions();
+			int points = 0;
+			for (InstructionHandle ih : il.getInstructionHandles()) {
+				if (ih.getInstruction() instanceof BranchInstruction && !(ih.getInstruction() instanceof Select)) {
+					final InstructionHandle target = ((BranchInstruction) ih.getInstruction()).getTarget();
+					if (target.getPosition() <= ih.getPosition()) {
+						// backward branch closes a loop; operands of the branch stay on the stack
+						il.insert(ih, fc.createInvoke(ClassRepository.RuntimeClassName, "preempt", Type.VOID,
+								Type.NO_ARGS, Constants.INVOKESTATIC));
+						points++;
+					}
+				}
+			}
+			if (points > 0) {
+				hipGCC.verbose(tab + "inserted " + points + " preemption points in method " + m.getName());
+				mg.setMaxStack();
+				mg.setMaxLocals();
+				cg.replaceMethod(m, mg.getMethod());
+			}
+			il.dispose();
+		}
+	}
+
+}
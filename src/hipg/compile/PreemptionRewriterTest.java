@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+
+package hipg.compile;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.InvokeInstruction;
+import org.apache.bcel.generic.MethodGen;
+import org.junit.Test;
+
+public class PreemptionRewriterTest {
+
+	public static class Looping {
+		int sum;
+
+		public void run() {
+			int s = 0;
+			for (int i = 0; i < 10; i++) {
+				for (int j = 0; j < i; j++) {
+					s += j;
+				}
+			}
+			sum = s;
+		}
+
+		public void straight(int x) {
+			sum = (x > 0 ? x : -x);
+		}
+
+		public void visit(int n) {
+			while (n > 0) {
+				n--;
+			}
+			sum = n;
+		}
+	}
+
+	private static int countPreemptionPoints(ClassGen cg, String name) {
+		final ConstantPoolGen cpg = cg.getConstantPool();
+		int count = 0;
+		for (Method m : cg.getMethods()) {
+			if (m.getName().equals(name)) {
+				final MethodGen mg = new MethodGen(m, cg.getClassName(), cpg);
+				for (InstructionHandle ih : mg.getInstructionList().getInstructionHandles()) {
+					if (ih.getInstruction() instanceof InvokeInstruction) {
+						final InvokeInstruction invoke = (InvokeInstruction) ih.getInstruction();
+						if (invoke.getReferenceType(cpg).toString().equals(ClassRepository.RuntimeClassName)
+								&& invoke.getMethodName(cpg).equals("preempt")) {
+							count++;
+						}
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void testSynchronizerRun() throws ClassNotFoundException {
+		final JavaClass cl = Repository.lookupClass(Looping.class);
+		final ClassGen cg = new ClassGen(cl);
+		new PreemptionRewriter(new HipGCC()).processSynchronizer(cl, cg);
+		assertEquals(2, countPreemptionPoints(cg, "run"));
+		assertEquals(0, countPreemptionPoints(cg, "straight"));
+		assertEquals(0, countPreemptionPoints(cg, "visit"));
+	}
+
+}
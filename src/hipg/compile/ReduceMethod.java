@@ -18,9 +18,12 @@
 
 package hipg.compile;
 
+import hipg.AllReduce;
 import myutils.StringUtils;
 
+import org.apache.bcel.Constants;
 import org.apache.bcel.classfile.Method;
+import org.apache.bcel.generic.ArrayType;
 import org.apache.bcel.generic.Type;
 
 public class ReduceMethod {
@@ -28,11 +31,17 @@ public class ReduceMethod {
 	private final Method method;
 	private final int id;
 	private String annotationClassName;
+	private final byte combine;
 
 	public ReduceMethod(Method method, int id, String annotationClassName) {
+		this(method, id, annotationClassName, (byte) -1);
+	}
+
+	public ReduceMethod(Method method, int id, String annotationClassName, byte combine) {
 		this.method = method;
 		this.id = id;
 		this.annotationClassName = annotationClassName;
+		this.combine = combine;
 	}
 
 	public static final String checkReduceMethod(Method method) {
@@ -48,6 +57,22 @@ public class ReduceMethod {
 		return null;
 	}
 
+	public static final String checkAllReduceMethod(Method method, byte combine) {
+		final String errMsg = checkReduceMethod(method);
+		if (errMsg != null)
+			return errMsg;
+		final Type type = method.getReturnType();
+		if (!(type instanceof ArrayType) || ((ArrayType) type).getDimensions() != 1)
+			return "All-reduce method " + method.getName() + " should reduce an array";
+		final byte elementType = ((ArrayType) type).getBasicType().getType();
+		if (elementType != Constants.T_INT && elementType != Constants.T_LONG && elementType != Constants.T_FLOAT
+				&& elementType != Constants.T_DOUBLE)
+			return "All-reduce method " + method.getName() + " should reduce an array of int, long, float or double";
+		if (combine != AllReduce.SUM && combine != AllReduce.MIN && combine != AllReduce.MAX)
+			return "All-reduce method " + method.getName() + " has unknown combine operation " + combine;
+		return null;
+	}
+
 	public final Method getMethod() {
 		return method;
 	}
@@ -60,6 +85,20 @@ public class ReduceMethod {
 		return annotationClassName;
 	}
 
+	public final boolean isAllReduce() {
+		return annotationClassName.equals(AllReduce.class.getName());
+	}
+
+	/** Element-wise combine operation of an all-reduce. */
+	public final byte getCombine() {
+		return combine;
+	}
+
+	/** Type of elements of the array reduced by an all-reduce. */
+	public final byte getElementType() {
+		return ((ArrayType) method.getReturnType()).getBasicType().getType();
+	}
+
 	public final String getName() {
 		return method.getName();
 	}
@@ -237,12 +237,50 @@ public class Serialization {
 		// resulting stack: nrOfBytes
 	}
 
-	public static void getNrOfBytesNeededToStoreSerializable(final Type t, final InstructionList il, final ClassGen cg,
-			final InstructionFactory fc) {
-		if (!implementsSerializable(t)) {
-			throw new RuntimeException(t + " is not serializable");
+	/**
+	 * Creates code to compute the number of bytes taken by a string, an array of a primitive type or a serializable
+	 * object stored in a buffer at a given offset, as written by a remote call. Nothing is assumed on stack; the
+	 * resulting stack is the number of bytes.
+	 */
+	public static void getNrOfBytesStoredInBuf(final Type t, final int bufIndex, final int offsetIndex,
+			final InstructionFactory fc, final ClassGen cg, final InstructionList il) {
+		final ConstantPoolGen cpg = cg.getConstantPool();
+		il.append(InstructionFactory.createLoad(ByteArrayType, bufIndex));
+		il.append(InstructionFactory.createLoad(Type.INT, offsetIndex));
+		if (implementsSerializable(t)) {
+			// the length of a serializable is only known after reading it
+			il.append(fc.createInvoke(ClassRepository.IOUtilsClassName, "readSerializable",
+					ClassRepository.SerializableType, new Type[] { ByteArrayType, Type.INT }, Constants.INVOKESTATIC));
+			il.append(fc.createInvoke(ClassRepository.IOUtilsClassName, "bytesSerializable", Type.INT,
+					new Type[] { ClassRepository.SerializableType }, Constants.INVOKESTATIC));
+			return;
 		}
-		// assume on stack: length
+		if (!isString(t) && !isArrayOfPrimitiveType(t)) {
+			throw new RuntimeException(t + " is not a string nor an array of primitive type");
+		}
+		il.append(fc.createInvoke(ClassRepository.IOUtilsClassName, "readInt", Type.INT, new Type[] { ByteArrayType,
+				Type.INT }, Constants.INVOKESTATIC));
+		// stack: len
+		il.append(new DUP());
+		il.append(new PUSH(cpg, -1));
+		final BranchInstruction ifnonnull = InstructionFactory.createBranchInstruction(Constants.IF_ICMPNE, null);
+		il.append(ifnonnull);
+		// { len == NULL_LENGTH } only the length is stored
+		il.append(new POP());
+		il.append(new PUSH(cpg, IOUtils.LENGTH_BYTES));
+		final BranchInstruction done = InstructionFactory.createBranchInstruction(Constants.GOTO, null);
+		il.append(done);
+		// { len != NULL_LENGTH }
+		final InstructionHandle getLen = il.append(new NOP());
+		if (isString(t)) {
+			getNrOfBytesNeededToStoreString(t, il, cg, fc);
+		} else {
+			getNrOfBytesNeededToStorePrimitiveTypeArray(t, il, cg, fc);
+		}
+		final InstructionHandle last = il.append(new NOP());
+		ifnonnull.setTarget(getLen);
+		done.setTarget(last);
+		// resulting stack: bytes
 	}
 
 	private static void getSerializableLength(final Type t, final ClassGen cg, final InstructionFactory fc,
@@ -291,6 +329,17 @@ public class Serialization {
 		}
 	}
 
+	/**
+	 * Returns the class with the methods to write a type to and read it from a buffer. Arrays of primitive types
+	 * (except booleans, which are packed in bits) are copied in bulk by the codec, other types by IOUtils.
+	 */
+	private static String createBufCodecClassName(Type t) {
+		if (isArrayOfPrimitiveType(t) && !((ArrayType) t).getBasicType().equals(Type.BOOLEAN)) {
+			return ClassRepository.CodecClassName;
+		}
+		return ClassRepository.IOUtilsClassName;
+	}
+
 	public static int createTypeId(Type t) {
 		if (isPrimitive(t)) {
 			if (t.equals(Type.BOOLEAN)) {
@@ -368,7 +417,7 @@ public class Serialization {
 		// on stack: value to serialize
 		il.append(InstructionFactory.createLoad(ByteArrayType, bufIndex));
 		il.append(InstructionFactory.createLoad(Type.INT, positionIndex));
-		il.append(fc.createInvoke(ClassRepository.IOUtilsClassName, "write" + createTypeName(varType), Type.VOID,
+		il.append(fc.createInvoke(createBufCodecClassName(varType), "write" + createTypeName(varType), Type.VOID,
 				new Type[] { createVarType(varType), ByteArrayType, Type.INT }, Constants.INVOKESTATIC));
 		getRequiredBufferSizeToStoreType(varType, cg, fc, il);
 		il.append(InstructionFactory.createLoad(Type.INT, positionIndex));
@@ -384,7 +433,7 @@ public class Serialization {
 		final ConstantPoolGen cpg = cg.getConstantPool();
 		il.append(InstructionFactory.createLoad(ByteArrayType, bufIndex));
 		il.append(InstructionFactory.createLoad(Type.INT, positionIndex));
-		il.append(fc.createInvoke(ClassRepository.IOUtilsClassName, "read" + createTypeName(varType),
+		il.append(fc.createInvoke(createBufCodecClassName(varType), "read" + createTypeName(varType),
 				createVarType(varType), new Type[] { ByteArrayType, Type.INT }, Constants.INVOKESTATIC));
 		if (implementsSerializable(varType)) {
 			il.append(fc.createCast(ClassRepository.SerializableType, varType));
@@ -398,6 +447,8 @@ public class Serialization {
 			il.append(InstructionFactory.createDup(varType.getSize()));
 			il.append(fc.createInvoke(ClassRepository.IOUtilsClassName, "bytes" + createTypeName(varType), Type.INT,
 					new Type[] { createVarType(varType) }, Constants.INVOKESTATIC));
+			il.append(InstructionFactory.createLoad(Type.INT, positionIndex));
+			il.append(new IADD());
 		}
 		il.append(InstructionFactory.createStore(Type.INT, positionIndex));
 	}
@@ -409,6 +460,54 @@ public class Serialization {
 				new Type[] { ClassRepository.BigQueueType }, Constants.INVOKESTATIC));
 	}
 
+	/**
+	 * Creates code to append a variable to a local work-list. The work-list is on stack and stays there. The variable
+	 * is under the given index and with given type. Primitives are widened to int or long, references are kept as
+	 * they are.
+	 */
+	public static void createWriteToWorkListOnStack(final Type varType, final int varIndex, final InstructionList il,
+			final InstructionFactory fc) {
+		il.append(InstructionFactory.createLoad(varType, varIndex));
+		final Type workType = createWorkListType(varType);
+		il.append(fc.createInvoke(ClassRepository.LocalWorkListClassName, "add" + createWorkListTypeName(workType),
+				ClassRepository.LocalWorkListType, new Type[] { workType }, Constants.INVOKEVIRTUAL));
+	}
+
+	/**
+	 * Creates code to read a variable appended to a local work-list (stored under the given index) and leave it on
+	 * stack.
+	 */
+	public static void createReadFromWorkList(final Type varType, final int workIndex, final InstructionList il,
+			final InstructionFactory fc) {
+		il.append(InstructionFactory.createLoad(ClassRepository.LocalWorkListType, workIndex));
+		final Type workType = createWorkListType(varType);
+		il.append(fc.createInvoke(ClassRepository.LocalWorkListClassName, "next" + createWorkListTypeName(workType),
+				workType, Type.NO_ARGS, Constants.INVOKEVIRTUAL));
+		if (varType.equals(Type.BYTE)) {
+			il.append(InstructionConstants.I2B);
+		} else if (varType.equals(Type.SHORT)) {
+			il.append(InstructionConstants.I2S);
+		} else if (varType.equals(Type.CHAR)) {
+			il.append(InstructionConstants.I2C);
+		} else if (!isPrimitive(varType)) {
+			il.append(fc.createCheckCast((ReferenceType) varType));
+		}
+	}
+
+	private static Type createWorkListType(final Type t) {
+		if (t.equals(Type.LONG) || t.equals(Type.FLOAT) || t.equals(Type.DOUBLE)) {
+			return t;
+		} else if (isPrimitive(t)) {
+			return Type.INT;
+		}
+		return Type.OBJECT;
+	}
+
+	private static String createWorkListTypeName(final Type workType) {
+		return (workType.equals(Type.OBJECT) ? "Object" : StringUtils
+				.UppercaseFirstLetter(Constants.TYPE_NAMES[workType.getType()]));
+	}
+
 	public static final void writeExplicitUserMessage(final byte[] buf, int offset, final int synchOwner,
 			final int synchId, final short graphId, final short methodId, final int target) {
 		IOUtils.write2Ints(synchOwner, synchId, buf, offset);
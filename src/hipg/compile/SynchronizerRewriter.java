@@ -18,6 +18,7 @@
 
 package hipg.compile;
 
+import hipg.AllReduce;
 import hipg.BarrierAndReduce;
 import hipg.Notification;
 import hipg.Reduce;
@@ -35,10 +36,12 @@ import myutils.tuple.pair.IntValuePair;
 
 import org.apache.bcel.Constants;
 import org.apache.bcel.classfile.AnnotationEntry;
+import org.apache.bcel.classfile.ElementValuePair;
 import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.LocalVariable;
 import org.apache.bcel.classfile.LocalVariableTable;
 import org.apache.bcel.classfile.Method;
+import org.apache.bcel.classfile.SimpleElementValue;
 import org.apache.bcel.generic.ARRAYLENGTH;
 import org.apache.bcel.generic.ArrayType;
 import org.apache.bcel.generic.ClassGen;
@@ -645,11 +648,21 @@ public class SynchronizerRewriter {
 				BCELUtils.appendFlag(1190, il, cpg);
 			}
 			// stack: s
-			// call reduce(methodId, buf)
+			// call reduce(methodId, buf) or allReduce(methodId, type, combine, buf)
 			il.append(new PUSH(cpg, rm.getId()));
-			il.append(InstructionFactory.createLoad(bufType, bufIndex));
-			il.append(fc.createInvoke(ClassRepository.SynchronizerClassName, rm.getSynchronizerReduceMethodName(),
-					Type.VOID, new Type[] { Type.SHORT, bufType }, Constants.INVOKEVIRTUAL));
+			if (rm.isAllReduce()) {
+				il.append(new PUSH(cpg, rm.getElementType()));
+				il.append(new PUSH(cpg, rm.getCombine()));
+				il.append(InstructionFactory.createLoad(bufType, bufIndex));
+				il.append(fc.createInvoke(ClassRepository.SynchronizerClassName,
+						rm.getSynchronizerReduceMethodName(), Type.VOID, new Type[] { Type.SHORT, Type.BYTE,
+								Type.BYTE, bufType }, Constants.INVOKEVIRTUAL));
+			} else {
+				il.append(InstructionFactory.createLoad(bufType, bufIndex));
+				il.append(fc.createInvoke(ClassRepository.SynchronizerClassName,
+						rm.getSynchronizerReduceMethodName(), Type.VOID, new Type[] { Type.SHORT, bufType },
+						Constants.INVOKEVIRTUAL));
+			}
 			hipGCC.verbose(ttab + ttab + "inserted reduce invocation " + "with parameter of type " + varType);
 			if (hipGCC.debugCode())
 				BCELUtils.appendFlag(1200, il, cpg);
@@ -1000,12 +1013,14 @@ public class SynchronizerRewriter {
 					final AnnotationEntry[] annotations = method.getAnnotationEntries();
 					if (annotations != null && annotations.length > 0) {
 						String reduceAnnotationClassName = null;
+						byte combine = -1;
 						for (AnnotationEntry annotation : annotations) {
 							final String annotationType = annotation.getAnnotationType();
 							final String annotationClassName = annotationType.substring(1, annotationType.length() - 1)
 									.replace("/", ".");
 							if (annotationClassName.equals(Reduce.class.getName())
-									|| annotationClassName.equals(BarrierAndReduce.class.getName())) {
+									|| annotationClassName.equals(BarrierAndReduce.class.getName())
+									|| annotationClassName.equals(AllReduce.class.getName())) {
 								if (reduceAnnotationClassName != null) {
 									hipGCC.error("method " + methodName + " with signature " + method.getSignature()
 											+ " in class " + className + ": multiple reduce annotations, "
@@ -1013,15 +1028,25 @@ public class SynchronizerRewriter {
 									return null;
 								}
 								reduceAnnotationClassName = annotationClassName;
+								if (annotationClassName.equals(AllReduce.class.getName())) {
+									combine = AllReduce.SUM;
+									for (ElementValuePair pair : annotation.getElementValuePairs()) {
+										if (pair.getNameString().equals("value")) {
+											combine = ((SimpleElementValue) pair.getValue()).getValueByte();
+										}
+									}
+								}
 							}
 						}
 						if (reduceAnnotationClassName != null) {
-							final String errMsg = ReduceMethod.checkReduceMethod(method);
+							final String errMsg = (combine < 0 ? ReduceMethod.checkReduceMethod(method)
+									: ReduceMethod.checkAllReduceMethod(method, combine));
 							if (errMsg != null) {
 								hipGCC.error(errMsg);
 							} else {
 								int methodId = reduceMethods.size();
-								reduceMethods.add(new ReduceMethod(method, methodId, reduceAnnotationClassName));
+								reduceMethods.add(new ReduceMethod(method, methodId, reduceAnnotationClassName,
+										combine));
 							}
 						}
 					}
@@ -218,9 +218,25 @@ public class GraphIO {
 		return read(TLocalNodeClass, TNodeClass, format, details, true, poolSize);
 	}
 
+	/** Reads a graph with the labels of its transitions (if it has any; only graphs read from files do). */
+	@SuppressWarnings("unchecked")
+	public static <TNode extends Node> ExplicitGraph<TNode> readLabeled(
+			@SuppressWarnings("rawtypes") final Class<? extends LocalNode> TLocalNodeClass,
+			final Class<TNode> TNodeClass, String format, final String details, final int poolSize)
+			throws GraphCreationException {
+		return read(TLocalNodeClass, TNodeClass, format, details, false, true, poolSize);
+	}
+
 	public static <TNode extends Node, TLocalNode extends LocalNode<TNode>> ExplicitGraph<TNode> read(
 			final Class<TLocalNode> TLocalNodeClass, final Class<TNode> TNodeClass, final String format,
 			final String formatDetail, final boolean transpose, final int poolSize) throws GraphCreationException {
+		return read(TLocalNodeClass, TNodeClass, format, formatDetail, transpose, false, poolSize);
+	}
+
+	public static <TNode extends Node, TLocalNode extends LocalNode<TNode>> ExplicitGraph<TNode> read(
+			final Class<TLocalNode> TLocalNodeClass, final Class<TNode> TNodeClass, final String format,
+			final String formatDetail, final boolean transpose, final boolean labeled, final int poolSize)
+			throws GraphCreationException {
 		if (format == null) {
 			throw new RuntimeException("Format null");
 		}
@@ -228,9 +244,10 @@ public class GraphIO {
 		final ExplicitGraph<TNode> g;
 
 		if (format.equals("svc-ii") || format.equals("svcii")) {
-			g = SVCIIReader.read(TLocalNodeClass, TNodeClass, formatDetail, rank, transpose, true);
+			g = SVCIIReader.read(TLocalNodeClass, TNodeClass, formatDetail, rank, transpose, labeled, true);
 		} else if (format.equals("hip")) {
-			g = HipReader.read(TLocalNodeClass, TNodeClass, formatDetail, rank, Runtime.getPoolSize(), transpose);
+			g = HipReader.read(TLocalNodeClass, TNodeClass, formatDetail, rank, Runtime.getPoolSize(), transpose,
+					labeled);
 		} else {
 			SyntheticGraph sg = null;
 			Partition partition = null;
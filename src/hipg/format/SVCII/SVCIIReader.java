@@ -18,20 +18,18 @@
 
 package hipg.format.SVCII;
 
-import hipg.Graph;
 import hipg.LocalNode;
 import hipg.Node;
 import hipg.format.GraphCreationException;
 import hipg.graph.ExplicitGraph;
 import hipg.graph.ExplicitLocalNode;
 import hipg.graph.ExplicitNodeReference;
-import hipg.utils.ReflectionUtils;
+import hipg.graph.NodeFactory;
 
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
-import java.lang.reflect.Constructor;
 
 import myutils.ConsoleProgress;
 import myutils.ConversionUtils;
@@ -52,11 +50,14 @@ public class SVCIIReader {
 	/** Logging facilities. */
 	private static final Logger logger = LoggerFactory.getLogger(SVCIIReader.class);
 
-	/** Reads a directed graph in SVC-II format. */
+	/** Number of nodes created at once. */
+	private static final int CREATE_NODES_CHUNK = 64 * 1024;
+
+	/** Reads a directed graph in SVC-II format, with the labels of the transitions if asked for and present. */
 	public static <TNode extends Node> ExplicitGraph<TNode> read(
 			@SuppressWarnings("rawtypes") final Class<? extends LocalNode> TLocalNodeClass,
 			final Class<TNode> TNodeClass, final String path, final int rank, final boolean transpose,
-			final boolean saveMemory) throws GraphCreationException {
+			final boolean labeled, final boolean saveMemory) throws GraphCreationException {
 
 		String loggerPrefix = "(Ibis " + rank + ") ";
 		if (rank == 0)
@@ -129,10 +130,9 @@ public class SVCIIReader {
 			long labels = IOUtils.readInt(header);
 			if (logger.isDebugEnabled())
 				logger.debug(loggerPrefix + "Labels: " + labels);
-			hasLabels = (labels > 1);
-			if (hasLabels) {
-				logger.warn(loggerPrefix + "Labels not supported yet, will be ignored");
-			}
+			hasLabels = (labels > 1 && labeled);
+			if (labels > 1 && !labeled && logger.isDebugEnabled())
+				logger.debug(loggerPrefix + "Labels not asked for, will be ignored");
 
 			// tau
 			long tau = IOUtils.readInt(header);
@@ -245,9 +245,9 @@ public class SVCIIReader {
 		g.setRoot(root);
 
 		/* create nodes */
-		Constructor<TNode> constructor = findConstructor(TLocalNodeClass);
+		final NodeFactory factory = NodeFactory.forClass(TLocalNodeClass);
 		final long startCreateNodes = System.nanoTime();
-		createNodes(g, myStateCount, constructor, loggerPrefix);
+		createNodes(g, myStateCount, factory, loggerPrefix);
 		final long timeCreateNodes = System.nanoTime() - startCreateNodes;
 
 		/* allocate and create transitions without keeping order and sort them
@@ -256,7 +256,7 @@ public class SVCIIReader {
 		long timeCreateTrans = 0L;
 		long startCreateTrans = System.nanoTime();
 		allocateAndCreateTransitions(g, mySegment, segmentCount, stateCount, myLocalTransitionCount,
-				myRemoteTransitionCount, transitionSizes, path, true, loggerPrefix);
+				myRemoteTransitionCount, transitionSizes, path, true, hasLabels, loggerPrefix);
 		timeCreateTrans = System.nanoTime() - startCreateTrans;
 
 		/* debug */
@@ -271,32 +271,33 @@ public class SVCIIReader {
 		/* read transpose */
 		if (transpose) {
 			readTranspose(g, TLocalNodeClass, TNodeClass, path, rank, mySegment, segmentCount, myStateCount,
-					stateCount, myLocalInTransitionCount, myRemoteInTransitionCount, transitionSizes, saveMemory,
-					loggerPrefix);
+					stateCount, myLocalInTransitionCount, myRemoteInTransitionCount, transitionSizes, hasLabels,
+					saveMemory, loggerPrefix);
 		}
 		logger.debug("Reading done");
 		return g;
 	}
 
-	@SuppressWarnings("unchecked")
 	private static <TNode extends Node> void createNodes(ExplicitGraph<TNode> g, int myStateCount,
-			Constructor<TNode> constructor, String loggerPrefix) throws GraphCreationException {
+			NodeFactory factory, String loggerPrefix) throws GraphCreationException {
 		ConsoleProgress np = new ConsoleProgress(logger, loggerPrefix + "Creating nodes", myStateCount);
-		for (int i = 0; i < myStateCount; i++) {
+		for (int created = 0; created < myStateCount; created += CREATE_NODES_CHUNK) {
+			final int count = Math.min(CREATE_NODES_CHUNK, myStateCount - created);
 			try {
-				g.addNode((ExplicitLocalNode<TNode>) constructor.newInstance(g, g.nextNodeId()));
+				factory.createNodes(g, count);
 			} catch (Throwable e) {
-				throw new GraphCreationException("Could not create node with the constructor " + constructor + ": "
+				throw new GraphCreationException("Could not create nodes with the factory " + factory + ": "
 						+ e.getMessage(), e);
 			}
-			np.advance();
+			np.advance(count);
 		}
 		np.finish();
 	}
 
 	private static <TNode extends Node> void allocateAndCreateTransitions(ExplicitGraph<TNode> g, int mySegment,
 			int segmentCount, int[] stateCount, int myLocalTransitionCount, int myRemoteTransitionsCount,
-			int[][] transitionSizes, String path, boolean outgoing, String loggerPrefix) throws GraphCreationException {
+			int[][] transitionSizes, String path, boolean outgoing, boolean hasLabels, String loggerPrefix)
+			throws GraphCreationException {
 
 		ConsoleProgress tpcreate = new ConsoleProgress(logger, loggerPrefix + "Creating "
 				+ (outgoing ? "outgoing" : "incoming") + " transitions", myLocalTransitionCount
@@ -307,16 +308,24 @@ public class SVCIIReader {
 			int dstSegment = (outgoing ? segment : mySegment);
 			String srcPath = path + File.separator + "src-" + srcSegment + "-" + dstSegment;
 			String dstPath = path + File.separator + "dest-" + srcSegment + "-" + dstSegment;
+			String labPath = path + File.separator + "label-" + srcSegment + "-" + dstSegment;
 			BufferedMultiFileReader reader = null;
 			try {
-				reader = new BufferedMultiFileReader(srcPath, dstPath);
+				reader = (hasLabels ? new BufferedMultiFileReader(srcPath, dstPath, labPath)
+						: new BufferedMultiFileReader(srcPath, dstPath));
 				int[] buf = reader.getBuf();
 				for (long t = 0; t < transitionSizes[srcSegment][dstSegment]; t++) {
 					reader.readToBuf();
 					int sourceId = (outgoing ? buf[0] : buf[1]);
 					int targetId = (outgoing ? buf[1] : buf[0]);
 					ExplicitLocalNode<TNode> sourceNode = g.node(sourceId);
-					if (outgoing) {
+					if (hasLabels) {
+						if (outgoing) {
+							sourceNode.addTransition(dstSegment, targetId, buf[2]);
+						} else {
+							sourceNode.addInTransition(segment, targetId, buf[2]);
+						}
+					} else if (outgoing) {
 						sourceNode.addTransition(dstSegment, targetId);
 					} else {
 						sourceNode.addInTransition(segment, targetId);
@@ -324,8 +333,8 @@ public class SVCIIReader {
 					tpcreate.advance();
 				}
 			} catch (Throwable t) {
-				throw new GraphCreationException("Could not read transitions from " + srcPath + " or " + dstPath + ": "
-						+ t.getMessage(), t);
+				throw new GraphCreationException("Could not read transitions from " + srcPath + ", " + dstPath
+						+ (hasLabels ? " or " + labPath : "") + ": " + t.getMessage(), t);
 			} finally {
 				if (reader != null) {
 					try {
@@ -349,7 +358,7 @@ public class SVCIIReader {
 			final Class<?> TLocalNodeClass, final Class<TNode> TNodeClass, final String path, final int rank,
 			final int mySegment, final int segmentCount, final int myStateCount, int[] stateCount,
 			final int myLocalInTransitionCount, final int myRemoteInTransitionCount, final int[][] transitionSizes,
-			boolean saveMemory, String loggerPrefix) throws GraphCreationException {
+			boolean hasLabels, boolean saveMemory, String loggerPrefix) throws GraphCreationException {
 
 		if (rank == 0)
 			logger.info(loggerPrefix + "Reading transpose of SVC-II dir " + path + ", segment " + mySegment);
@@ -362,7 +371,7 @@ public class SVCIIReader {
 		long startCreateTrans = System.nanoTime();
 
 		allocateAndCreateTransitions(g, mySegment, segmentCount, stateCount, myLocalInTransitionCount,
-				myRemoteInTransitionCount, transitionSizes, path, false, loggerPrefix);
+				myRemoteInTransitionCount, transitionSizes, path, false, hasLabels, loggerPrefix);
 
 		timeCreateTrans = System.nanoTime() - startCreateTrans;
 
@@ -373,21 +382,4 @@ public class SVCIIReader {
 					+ ConversionUtils.ns2sec(timeCreateTrans));
 	}
 
-	@SuppressWarnings("unchecked")
-	private static <TNode extends Node> Constructor<TNode> findConstructor(Class<?> TLocalNodeClass)
-			throws GraphCreationException {
-		Constructor<?> constructor = ReflectionUtils.findConstructor(TLocalNodeClass, Graph.class, int.class);
-		if (constructor == null)
-			throw new GraphCreationException("Could not find constructor for the node class "
-					+ TLocalNodeClass.getName());
-		Constructor<TNode> nodeConstructor = null;
-		try {
-			nodeConstructor = (Constructor<TNode>) constructor;
-		} catch (Throwable t) {
-			throw new GraphCreationException("Found constructor for the class " + TLocalNodeClass.getName()
-					+ " is not a node constructor");
-		}
-		return nodeConstructor;
-	}
-
 }
@@ -40,6 +40,8 @@ public class HipHeader {
 	private final static int MAGIC = 17;
 	final static int FORMAT_NORMAL = 0;
 	final static int FORMAT_COMPACT = 1;
+	/** Normal format with the labels of the transitions in a separate file. */
+	final static int FORMAT_LABELED = 2;
 
 	/** Version of the graph. */
 	private final int magic;
@@ -272,6 +274,16 @@ public class HipHeader {
 		return segments;
 	}
 
+	/** Checks if the transitions carry labels. */
+	public boolean hasLabels() {
+		for (HipSegment segment : segments) {
+			if (segment.hasLabels()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder("Graph '" + info + "' with root " + rootOffset + "@" + rootSegment
@@ -314,6 +326,10 @@ public class HipHeader {
 		return path + File.separator + (transpose ? "in-" : "") + "own-" + segment;
 	}
 
+	public static String labPath(String path, int segment, boolean transpose) {
+		return path + File.separator + (transpose ? "in-" : "") + "lab-" + segment;
+	}
+
 	public static String headerPath(String path) {
 		return path + File.separator + "info";
 	}
@@ -324,6 +340,8 @@ public class HipHeader {
 			return "Normal";
 		case FORMAT_COMPACT:
 			return "Compact";
+		case FORMAT_LABELED:
+			return "Labeled";
 		default:
 			return "UNRECOGNIZED";
 		}
@@ -57,10 +57,12 @@ public final class HipMaker implements GraphMaker {
 	private final byte[][] sources, indestinations;
 	private final byte[][] destowners, insrcowners;
 	private final byte[][] destinations, insources;
+	private final byte[][] labels, inlabels;
 	private int segmentRR = 0;
 	private int lastseg = 0;
 	private final int colocationCnt;
 	private final boolean random;
+	private final boolean labeled;
 	private int addedTransitions = 0;
 	private final Random rand = new Random(System.currentTimeMillis());
 
@@ -79,13 +81,17 @@ public final class HipMaker implements GraphMaker {
 	 *            Directory where the graph will be created
 	 * @param segments
 	 *            The number of chunks the graph will be partitioned into
-	 * @param sort
-	 *            If the transitions should be sorted after creation
+	 * @param colocationCnt
+	 *            Number of consecutive nodes placed in the same segment (when not random)
 	 * @param verbose
 	 *            Switch verbose mode
+	 * @param random
+	 *            If the nodes should be placed in random segments
+	 * @param labeled
+	 *            If the labels of the transitions should be stored
 	 * @throws GraphCreationException
 	 */
-	public HipMaker(String path, int segments, int colocationCnt, boolean verbose, boolean random, boolean bels)
+	public HipMaker(String path, int segments, int colocationCnt, boolean verbose, boolean random, boolean labeled)
 			throws GraphCreationException {
 		this.transpose = true;
 		this.verbose = verbose;
@@ -101,6 +107,7 @@ public final class HipMaker implements GraphMaker {
 		}
 		this.colocationCnt = colocationCnt;
 		this.random = random;
+		this.labeled = labeled;
 		byte[][][] tab = determineMaxMemory(segments);
 		debug("Determined memory size: " + tab[0][0].length);
 		this.sources = tab[0];
@@ -115,6 +122,13 @@ public final class HipMaker implements GraphMaker {
 			this.insrcowners = null;
 			this.insources = null;
 		}
+		if (labeled) {
+			this.labels = tab[transpose ? 6 : 3];
+			this.inlabels = (transpose ? tab[7] : null);
+		} else {
+			this.labels = null;
+			this.inlabels = null;
+		}
 		start();
 	}
 
@@ -122,7 +136,7 @@ public final class HipMaker implements GraphMaker {
 		final int sizeof_int = 4;
 		final long totalMemory = Runtime.getRuntime().totalMemory();
 		final int perSegmentMemory = (int) ((double) totalMemory / (double) (segments));
-		final int cnt = (transpose ? 6 : 3);
+		final int cnt = (transpose ? 6 : 3) + (labeled ? (transpose ? 2 : 1) : 0);
 		final int startSize = (int) ((double) perSegmentMemory / (double) cnt / (double) sizeof_int);
 		byte[][][] tab = null;
 		for (int size = startSize; size >= 1; size--) {
@@ -222,6 +236,8 @@ public final class HipMaker implements GraphMaker {
 		decomposeInt(fromId, sources[fromOwner], index);
 		decomposeInt(toOwner, destowners[fromOwner], index);
 		decomposeInt(toId, destinations[fromOwner], index);
+		if (labeled)
+			decomposeInt(label, labels[fromOwner], index);
 		if (index + 4 >= sources[fromOwner].length)
 			sync(fromOwner, false);
 		if (transpose) {
@@ -230,6 +246,8 @@ public final class HipMaker implements GraphMaker {
 			decomposeInt(toId, indestinations[toOwner], tindex);
 			decomposeInt(fromId, insources[toOwner], tindex);
 			decomposeInt(fromOwner, insrcowners[toOwner], tindex);
+			if (labeled)
+				decomposeInt(label, inlabels[toOwner], tindex);
 			if (tindex + 4 >= indestinations[toOwner].length)
 				sync(toOwner, true);
 		}
@@ -243,6 +261,7 @@ public final class HipMaker implements GraphMaker {
 		final String srcPath = HipHeader.srcPath(path, segment, transpose);
 		final String dstPath = HipHeader.dstPath(path, segment, transpose);
 		final String ownPath = HipHeader.ownPath(path, segment, transpose);
+		final String labPath = HipHeader.labPath(path, segment, transpose);
 		final int count;
 		if (transpose) {
 			count = inTransitionsCount[segment];
@@ -250,6 +269,8 @@ public final class HipMaker implements GraphMaker {
 			appendFile(dstPath, indestinations[segment], len);
 			appendFile(ownPath, insrcowners[segment], len);
 			appendFile(srcPath, insources[segment], len);
+			if (labeled)
+				appendFile(labPath, inlabels[segment], len);
 			inTransitionsCount[segment] = 0;
 		} else {
 			count = transitionsCount[segment];
@@ -257,6 +278,8 @@ public final class HipMaker implements GraphMaker {
 			appendFile(srcPath, sources[segment], len);
 			appendFile(ownPath, destowners[segment], len);
 			appendFile(dstPath, destinations[segment], len);
+			if (labeled)
+				appendFile(labPath, labels[segment], len);
 			transitionsCount[segment] = 0;
 		}
 	}
@@ -266,6 +289,7 @@ public final class HipMaker implements GraphMaker {
 		final String srcPath1 = HipHeader.srcPath(path, segment, transpose);
 		final String dstPath1 = HipHeader.dstPath(path, segment, transpose);
 		final String ownPath = HipHeader.ownPath(path, segment, transpose);
+		final String labPath = HipHeader.labPath(path, segment, transpose);
 
 		final String locPath = (transpose ? dstPath1 : srcPath1);
 		final String conPath = (transpose ? srcPath1 : dstPath1);
@@ -279,6 +303,7 @@ public final class HipMaker implements GraphMaker {
 			byte[] loc = readFile(locPath);
 			byte[] own = readFile(ownPath);
 			byte[] con = readFile(conPath);
+			byte[] lab = (labeled ? readFile(labPath) : null);
 
 			verboseIns("read", start);
 
@@ -287,10 +312,13 @@ public final class HipMaker implements GraphMaker {
 				throw new GraphCreationException("Files " + locPath + ", " + ownPath + " and " + conPath
 						+ " differ in length");
 			}
+			if (lab != null && lab.length != loc.length) {
+				throw new GraphCreationException("Files " + locPath + " and " + labPath + " differ in length");
+			}
 
 			// sort
 			start = System.nanoTime();
-			Quicksort.quicksort(new QuicksortableArrayOfIntPairs(loc, own, con), null);
+			Quicksort.quicksort(new QuicksortableArrayOfIntPairs(loc, own, con, lab), null);
 			verboseIns("sort", start);
 
 			// double check
@@ -333,6 +361,15 @@ public final class HipMaker implements GraphMaker {
 			verboseIns("own", start);
 			own = null;
 
+			// rewrite 'lab'
+			if (lab != null) {
+				start = System.nanoTime();
+				deleteFile(labPath);
+				writeFile(labPath, lab);
+				verboseIns("lab", start);
+				lab = null;
+			}
+
 			// rewrite 'con' (dst-like)
 			start = System.nanoTime();
 			deleteFile(conPath);
@@ -364,8 +401,9 @@ public final class HipMaker implements GraphMaker {
 				outTransitions[j] = globalTransitionsCount[i][j];
 				inTransitions[j] = globalTransitionsCount[j][i];
 			}
+			final int format = (labeled ? HipHeader.FORMAT_LABELED : HipHeader.FORMAT_NORMAL);
 			segments.add(new HipSegment(i, globalStatesCount[i], outTransitions, inTransitions, "localhost", path,
-					HipHeader.FORMAT_NORMAL, HipHeader.FORMAT_NORMAL));
+					format, format));
 		}
 		HipHeader header = new HipHeader("Generated by HipG", ExplicitNodeReference.getOwner(root),
 				ExplicitNodeReference.getId(root), segments);
@@ -836,11 +874,13 @@ public final class HipMaker implements GraphMaker {
 		private final byte[] loc;
 		private final byte[] own;
 		private final byte[] con;
+		private final byte[] lab;
 
-		public QuicksortableArrayOfIntPairs(final byte[] loc, final byte[] own, final byte[] con) {
+		public QuicksortableArrayOfIntPairs(final byte[] loc, final byte[] own, final byte[] con, final byte[] lab) {
 			this.loc = loc;
 			this.own = own;
 			this.con = con;
+			this.lab = lab;
 		}
 
 		public int length() {
@@ -888,6 +928,8 @@ public final class HipMaker implements GraphMaker {
 			_swap4(loc, i, j);
 			_swap4(own, i, j);
 			_swap4(con, i, j);
+			if (lab != null)
+				_swap4(lab, i, j);
 		}
 
 	}
@@ -20,7 +20,6 @@ package hipg.format.hip;
 
 import hipg.Config;
 
-import hipg.Graph;
 import hipg.LocalNode;
 import hipg.Node;
 import hipg.format.GraphCreationException;
@@ -28,11 +27,10 @@ import hipg.format.hip.HipSegment.TransitionHandler;
 import hipg.graph.ExplicitGraph;
 import hipg.graph.ExplicitLocalNode;
 import hipg.graph.ExplicitNodeReference;
+import hipg.graph.NodeFactory;
 import hipg.runtime.Runtime;
-import hipg.utils.ReflectionUtils;
 
 import java.io.File;
-import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 
 import myutils.ConsoleProgress;
@@ -46,11 +44,14 @@ public class HipReader {
 	/** Logging facilities. */
 	private static final Logger logger = LoggerFactory.getLogger(HipReader.class);
 
-	/** Reads a directed graph in Hip format. */
+	/** Number of nodes created at once. */
+	private static final int CREATE_NODES_CHUNK = 64 * 1024;
+
+	/** Reads a directed graph in Hip format, with the labels of the transitions if asked for and present. */
 	public static <TNode extends Node> ExplicitGraph<TNode> read(
 			@SuppressWarnings("rawtypes") final Class<? extends LocalNode> TLocalNodeClass,
 			final Class<TNode> TNodeClass, final String path, final int rank, final int poolSize,
-			final boolean transpose) throws GraphCreationException {
+			final boolean transpose, final boolean labeled) throws GraphCreationException {
 
 		final String loggerPrefix = "(Ibis " + rank + ") ";
 		if (rank == 0)
@@ -130,20 +131,22 @@ public class HipReader {
 		int rootOffset = manager.offset(header.getRootOffset(), header.getRootSegment());
 		long root = ExplicitNodeReference.createReference(rootOffset, rootOwner);
 
+		// the transpose is initialized after the outgoing transitions are read
 		ExplicitGraph<TNode> g = new ExplicitGraph<TNode>(myStates, globalStates, false, myLocalOutTransitionCount,
-				myRemoteOutTransitionCount, transpose, false, myLocalInTransitionCount, myRemoteInTransitionCount);
+				myRemoteOutTransitionCount, false, false, 0, 0);
 
 		g.setRoot(root);
 
 		/* create nodes */
-		Constructor<TNode> constructor = findConstructor(TLocalNodeClass);
+		final NodeFactory factory = NodeFactory.forClass(TLocalNodeClass);
 		long startCreateNodes = System.nanoTime();
-		createNodes(g, myStates, constructor, loggerPrefix);
+		createNodes(g, myStates, factory, loggerPrefix);
 		long timeCreateNodes = System.nanoTime() - startCreateNodes;
 		logger.debug(loggerPrefix + "Created nodes in " + ConversionUtils.ns2sec(timeCreateNodes) + "s");
 
 		/* read transitions */
-		MyTransitionHandler<TNode> outHandler = new MyTransitionHandler<TNode>(g, manager, false,
+		final boolean readLabels = (labeled && header.hasLabels());
+		MyTransitionHandler<TNode> outHandler = new MyTransitionHandler<TNode>(g, manager, false, readLabels,
 				myLocalOutTransitionCount, myRemoteOutTransitionCount);
 		final long startRead = System.nanoTime();
 		for (HipSegment segment : mySegments) {
@@ -158,7 +161,7 @@ public class HipReader {
 
 		/* read transposed transitions */
 		if (transpose) {
-			MyTransitionHandler<TNode> inHandler = new MyTransitionHandler<TNode>(g, manager, true,
+			MyTransitionHandler<TNode> inHandler = new MyTransitionHandler<TNode>(g, manager, true, readLabels,
 					myLocalInTransitionCount, myRemoteInTransitionCount);
 			g.initTranspose(false, myLocalInTransitionCount, myRemoteInTransitionCount);
 			final long startReadTranspose = System.nanoTime();
@@ -183,17 +186,19 @@ public class HipReader {
 		private final ExplicitGraph<TNode> g;
 		private final HipSegmentManager manager;
 		private final boolean transpose;
+		private final boolean labeled;
 
 		public MyTransitionHandler(final ExplicitGraph<TNode> g, final HipSegmentManager manager, boolean transpose,
-				final int myLocalTransitionCount, final int myRemoteTransitionsCount) {
+				boolean labeled, final int myLocalTransitionCount, final int myRemoteTransitionsCount) {
 			this.g = g;
 			this.manager = manager;
 			this.transpose = transpose;
+			this.labeled = labeled;
 		}
 
 		@Override
-		public void handle(final int locOwner, final int locOffset, final int conOwner, final int conOffset)
-				throws GraphCreationException {
+		public void handle(final int locOwner, final int locOffset, final int conOwner, final int conOffset,
+				final int label) throws GraphCreationException {
 
 			if (Config.ERRCHECK) {
 				final int absLocOwner = manager.owner(locOwner);
@@ -214,7 +219,13 @@ public class HipReader {
 				throw new GraphCreationException("Node " + locOffset + " not found in segment " + locOwner);
 			}
 
-			if (transpose) {
+			if (labeled) {
+				if (transpose) {
+					node.addInTransition(absConOwner, absConOffset, label);
+				} else {
+					node.addTransition(absConOwner, absConOffset, label);
+				}
+			} else if (transpose) {
 				// node.allocateInTransition(local);
 				node.addInTransition(absConOwner, absConOffset);
 			} else {
@@ -233,36 +244,19 @@ public class HipReader {
 		}
 	}
 
-	@SuppressWarnings("unchecked")
 	private static <TNode extends Node> void createNodes(ExplicitGraph<TNode> g, int myStateCount,
-			Constructor<TNode> constructor, String loggerPrefix) throws GraphCreationException {
+			NodeFactory factory, String loggerPrefix) throws GraphCreationException {
 		ConsoleProgress progress = new ConsoleProgress(logger, loggerPrefix + "Creating nodes", myStateCount);
-		for (int i = 0; i < myStateCount; i++) {
+		for (int created = 0; created < myStateCount; created += CREATE_NODES_CHUNK) {
+			final int count = Math.min(CREATE_NODES_CHUNK, myStateCount - created);
 			try {
-				g.addNode((ExplicitLocalNode<TNode>) constructor.newInstance(g, g.nextNodeId()));
+				factory.createNodes(g, count);
 			} catch (Throwable e) {
-				throw new GraphCreationException("Could not create node " + "with the constructor " + constructor
-						+ ": " + e.getMessage(), e);
+				throw new GraphCreationException("Could not create nodes with the factory " + factory + ": "
+						+ e.getMessage(), e);
 			}
-			progress.advance();
+			progress.advance(count);
 		}
 		progress.finish();
 	}
-
-	@SuppressWarnings("unchecked")
-	private static <TNode extends Node> Constructor<TNode> findConstructor(Class<?> TLocalNodeClass)
-			throws GraphCreationException {
-		Constructor<?> constructor = ReflectionUtils.findConstructor(TLocalNodeClass, Graph.class, int.class);
-		if (constructor == null)
-			throw new GraphCreationException("Could not find constructor " + "for the node class "
-					+ TLocalNodeClass.getName());
-		Constructor<TNode> nodeConstructor = null;
-		try {
-			nodeConstructor = (Constructor<TNode>) constructor;
-		} catch (Throwable t) {
-			throw new GraphCreationException("Found constructor for the class " + TLocalNodeClass.getName()
-					+ " is not a node constructor");
-		}
-		return nodeConstructor;
-	}
 }
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package hipg.format.hip;
+
+import static org.junit.Assert.assertEquals;
+import hipg.Node;
+import hipg.graph.ExplicitGraph;
+import hipg.graph.ExplicitLocalNode;
+
+import java.io.File;
+
+import org.junit.Test;
+
+public class HipReaderTest {
+
+	public static class MyLocalNode extends ExplicitLocalNode<Node> {
+		public MyLocalNode(ExplicitGraph<Node> graph, int reference) {
+			super(graph, reference);
+		}
+	}
+
+	private static void delete(File file) {
+		final File[] files = file.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				delete(f);
+			}
+		}
+		file.delete();
+	}
+
+	@Test
+	public void testReadTranspose() throws Exception {
+		final File dir = File.createTempFile("hipg-hip", null);
+		dir.delete();
+		try {
+			// a ring of 10 nodes with a chord from every node to node 0
+			final int n = 10;
+			final HipMaker maker = new HipMaker(dir.getPath(), 2, 1, false, false, false);
+			final long[] nodes = new long[n];
+			for (int i = 0; i < n; i++) {
+				nodes[i] = maker.addNode();
+			}
+			for (int i = 0; i < n; i++) {
+				maker.addTransition(nodes[i], nodes[(i + 1) % n], 0);
+				if (i != 0 && i != n - 1) {
+					maker.addTransition(nodes[i], nodes[0], 0);
+				}
+			}
+			maker.finish(nodes[0]);
+			final ExplicitGraph<Node> graph = HipReader.read(MyLocalNode.class, Node.class, dir.getPath(), 0, 1,
+					true, false);
+			int transitions = 0;
+			int inTransitions = 0;
+			for (int i = 0; i < graph.nodes(); i++) {
+				final ExplicitLocalNode<Node> node = graph.node(i);
+				transitions += node.outdegree();
+				inTransitions += node.indegree();
+				if (node.asReference() == nodes[0]) {
+					assertEquals(n - 1, node.indegree());
+				} else {
+					assertEquals(1, node.indegree());
+				}
+			}
+			assertEquals(2 * n - 2, transitions);
+			assertEquals(transitions, inTransitions);
+		} finally {
+			delete(dir);
+		}
+	}
+}
@@ -81,6 +81,11 @@ public class HipSegment {
 		return inFormat;
 	}
 
+	/** Checks if the transitions of the segment carry labels. */
+	public boolean hasLabels() {
+		return format == HipHeader.FORMAT_LABELED || inFormat == HipHeader.FORMAT_LABELED;
+	}
+
 	public int getLocalOutTransitionsCount() {
 		return outTransitions[getId()];
 	}
@@ -130,19 +135,22 @@ public class HipSegment {
 
 		final String locPath = (transpose ? dstPath1 : srcPath1);
 		final String conPath = (transpose ? srcPath1 : dstPath1);
+		final boolean labeled = (transpose ? inFormat : format) == HipHeader.FORMAT_LABELED;
+		final String labPath = HipHeader.labPath(path, id, transpose);
 
 		final BufferedMultiFileReader reader;
 		try {
-			reader = new BufferedMultiFileReader(locPath, conPath);
+			reader = (labeled ? new BufferedMultiFileReader(locPath, conPath, labPath) : new BufferedMultiFileReader(
+					locPath, conPath));
 		} catch (FileNotFoundException e) {
-			throw new GraphCreationException(
-					"Could not read files " + locPath + ", " + conPath + ": " + e.getMessage(), e);
+			throw new GraphCreationException("Could not read files " + locPath + ", " + conPath
+					+ (labeled ? ", " + labPath : "") + ": " + e.getMessage(), e);
 		}
 
 		final int t;
 		try {
-			if (format == HipHeader.FORMAT_NORMAL) {
-				t = readNormal(reader, transitions, handler, transitionCounts);
+			if (format == HipHeader.FORMAT_NORMAL || format == HipHeader.FORMAT_LABELED) {
+				t = readNormal(reader, transitions, handler, transitionCounts, labeled);
 			} else if (format == HipHeader.FORMAT_COMPACT) {
 				t = readCompacted(reader, transitions, handler, transitionCounts);
 			} else {
@@ -189,7 +197,7 @@ public class HipSegment {
 				if (!reader.readToBuf(false, true, false))
 					throw new RuntimeException("Unexpected end of file " + " when only " + t + " out of "
 							+ expectedTransitions + " transitions read");
-				handler.handle(id, src, currSeg, buf[1]);
+				handler.handle(id, src, currSeg, buf[1], 0);
 				srcCount--;
 				currTrans--;
 			}
@@ -198,7 +206,8 @@ public class HipSegment {
 	}
 
 	private int readNormal(final BufferedMultiFileReader reader, final int expectedTransitions,
-			final TransitionHandler handler, final int[] transitionCounts) throws IOException, GraphCreationException {
+			final TransitionHandler handler, final int[] transitionCounts, final boolean labeled) throws IOException,
+			GraphCreationException {
 		final int[] buf = reader.getBuf();
 		int trans = 0, currSeg = 0, currTrans = transitionCounts[0];
 		while (trans < expectedTransitions) {
@@ -210,17 +219,18 @@ public class HipSegment {
 				}
 				currTrans = transitionCounts[currSeg];
 			}
-			if (!reader.readToBuf(true, true, false))
+			if (!reader.readToBuf(true, true, labeled))
 				throw new RuntimeException("Unexpected end of file " + "when only " + trans + " out of "
 						+ expectedTransitions + " transitions read");
 			trans++;
 			currTrans--;
-			handler.handle(id, buf[0], currSeg, buf[1]);
+			handler.handle(id, buf[0], currSeg, buf[1], labeled ? buf[2] : 0);
 		}
 		return trans;
 	}
 
 	public static interface TransitionHandler {
-		public void handle(int locOwner, int locOffset, int conOwner, int conOffset) throws GraphCreationException;
+		public void handle(int locOwner, int locOffset, int conOwner, int conOffset, int label)
+				throws GraphCreationException;
 	}
 }
@@ -17,24 +17,19 @@
 
 package hipg.format.synthetic;
 
-import hipg.Graph;
-
 import hipg.Node;
 import hipg.runtime.Runtime;
 import hipg.format.GraphCreationException;
 import hipg.graph.ExplicitGraph;
 import hipg.graph.ExplicitLocalNode;
 import hipg.graph.ExplicitNodeReference;
-import hipg.utils.ReflectionUtils;
-
-import java.lang.reflect.Constructor;
+import hipg.graph.NodeFactory;
 
 import myutils.system.MonitorThread;
 
 public final class SyntheticGraphMaker<TNode extends Node, TLocalNode extends ExplicitLocalNode<TNode>> implements
 		AbstractSyntheticGraphMaker<TNode, TLocalNode> {
-	private final Class<TLocalNode> TLocalNodeClass;
-	private final Constructor<TLocalNode> LocalNodeConstructor;
+	private final NodeFactory factory;
 	private final ExplicitGraph<TNode> graph;
 	private final Partition partition;
 	private final boolean transpose;
@@ -48,8 +43,7 @@ public final class SyntheticGraphMaker<TNode extends Node, TLocalNode extends Ex
 			final boolean transpose, final int rank, final int poolSize, final long estimateNodes,
 			final long estimateAllTransitions, final boolean orderedAdding) throws GraphCreationException {
 
-		this.TLocalNodeClass = TLocalNodeClass;
-		this.LocalNodeConstructor = findConstructor();
+		this.factory = NodeFactory.forClass(TLocalNodeClass);
 
 		this.partition = partition;
 		this.rank = rank;
@@ -205,26 +199,9 @@ public final class SyntheticGraphMaker<TNode extends Node, TLocalNode extends Ex
 		return numGlobalNodes;
 	}
 
-	private final TLocalNode createNode() {
-		try {
-			return (TLocalNode) LocalNodeConstructor.newInstance(graph, graph.nextNodeId());
-		} catch (Throwable e) {
-			throw new RuntimeException("Could not create node with constructor " + LocalNodeConstructor + ": "
-					+ e.getMessage(), e);
-		}
-	}
-
 	@SuppressWarnings("unchecked")
-	private Constructor<TLocalNode> findConstructor() throws GraphCreationException {
-		final Constructor<?> constructor = ReflectionUtils.findConstructor(TLocalNodeClass, Graph.class, int.class);
-		if (constructor == null) {
-			throw new GraphCreationException("Could not find constructor for " + TLocalNodeClass.getName());
-		}
-		try {
-			return (Constructor<TLocalNode>) constructor;
-		} catch (Throwable t) {
-			throw new GraphCreationException("Constructor " + constructor + " is not a node constructor");
-		}
+	private final TLocalNode createNode() {
+		return (TLocalNode) factory.createNode(graph, graph.nextNodeId());
 	}
 
 	public static <TNode extends Node, TLocalNode extends ExplicitLocalNode<TNode>> ExplicitGraph<TNode> create(
@@ -0,0 +1,277 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package hipg.graph;
+
+import hipg.Config;
+import hipg.Node;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of active local nodes of an explicit graph, for computations organized in supersteps in which only some nodes
+ * have work to do. Node methods mark nodes to be active in the next superstep with {@link #activate(int)}, and
+ * {@link #advance()} makes them the active nodes of the current superstep. Iterating over the active nodes, counting
+ * them and advancing costs time proportional to the number of active nodes rather than to the size of the graph.
+ * <p>
+ * Each generation is kept in a bitmap, which makes activation idempotent. While a generation is small (at most
+ * 1/hipg.activeSetSparseRatio of the nodes), its nodes are also kept in a list, which is iterated and cleared instead
+ * of the bitmap. Active nodes are always iterated in the order of their ids.
+ * <p>
+ * Active sets are obtained with {@link hipg.runtime.Synchronizer#activeSet(ExplicitGraph)}. They are not
+ * thread-safe, as they are used by the worker only.
+ * 
+ * @param <TNode>
+ */
+public final class ActiveSet<TNode extends Node> implements Iterable<ExplicitLocalNode<TNode>> {
+
+	/** Graph, whose nodes are in the set. */
+	private final ExplicitGraph<TNode> graph;
+
+	/** Active nodes of the current superstep. */
+	private long[] bits;
+	private int[] list;
+	private int size = 0;
+	private boolean sparse = true;
+
+	/** Nodes activated for the next superstep. */
+	private long[] nextBits;
+	private int[] nextList;
+	private int nextSize = 0;
+	private boolean nextSparse = true;
+
+	/** Creates an empty active set of the nodes of a graph. */
+	public ActiveSet(ExplicitGraph<TNode> graph) {
+		this.graph = graph;
+		final int words = words(graph.nodes());
+		this.bits = new long[words];
+		this.nextBits = new long[words];
+		this.list = new int[sparseLimit(graph.nodes())];
+		this.nextList = new int[list.length];
+	}
+
+	private static int words(int nodes) {
+		return (nodes + 63) >>> 6;
+	}
+
+	private static int sparseLimit(int nodes) {
+		return Math.max(1, nodes / Math.max(1, Config.ACTIVE_SET_SPARSE_RATIO));
+	}
+
+	/** Graph, whose nodes are in the set. */
+	public ExplicitGraph<TNode> getGraph() {
+		return graph;
+	}
+
+	/** Activates a node in the next superstep. */
+	public void activate(ExplicitLocalNode<TNode> node) {
+		activate(node.reference());
+	}
+
+	/** Activates the node with a given id in the next superstep. Activating a node again has no effect. */
+	public void activate(int id) {
+		final int word = id >>> 6;
+		if (word >= nextBits.length) {
+			grow(id);
+		}
+		final long mask = 1L << id;
+		final long w = nextBits[word];
+		if ((w & mask) == 0) {
+			nextBits[word] = w | mask;
+			if (nextSparse) {
+				if (nextSize < nextList.length) {
+					nextList[nextSize] = id;
+				} else {
+					nextSparse = false;
+				}
+			}
+			nextSize++;
+		}
+	}
+
+	/** Resizes the bitmaps after nodes were added to the graph. */
+	private void grow(int id) {
+		final int words = words(Math.max(id + 1, graph.nodes()));
+		bits = Arrays.copyOf(bits, words);
+		nextBits = Arrays.copyOf(nextBits, words);
+	}
+
+	/** Checks if a node is active in the current superstep. */
+	public boolean isActive(int id) {
+		final int word = id >>> 6;
+		return word < bits.length && (bits[word] & (1L << id)) != 0;
+	}
+
+	/** Checks if a node has been activated for the next superstep. */
+	public boolean isActivated(int id) {
+		final int word = id >>> 6;
+		return word < nextBits.length && (nextBits[word] & (1L << id)) != 0;
+	}
+
+	/** Number of active nodes in the current superstep. */
+	public int size() {
+		return size;
+	}
+
+	/** Checks if no nodes are active in the current superstep. */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Number of nodes activated for the next superstep. */
+	public int activated() {
+		return nextSize;
+	}
+
+	/**
+	 * Starts the next superstep: the activated nodes become the active nodes and no nodes are activated.
+	 * 
+	 * @return The number of active nodes
+	 */
+	public int advance() {
+		clear(bits, list, size, sparse);
+		final long[] b = bits;
+		bits = nextBits;
+		nextBits = b;
+		final int[] l = list;
+		list = nextList;
+		nextList = l;
+		size = nextSize;
+		sparse = nextSparse;
+		nextSize = 0;
+		nextSparse = true;
+		if (sparse && size > 1) {
+			Arrays.sort(list, 0, size);
+		}
+		return size;
+	}
+
+	/** Deactivates all nodes, in the current and in the next superstep. */
+	public void clear() {
+		clear(bits, list, size, sparse);
+		clear(nextBits, nextList, nextSize, nextSparse);
+		size = nextSize = 0;
+		sparse = nextSparse = true;
+	}
+
+	private static void clear(long[] bits, int[] list, int size, boolean sparse) {
+		if (sparse) {
+			for (int i = 0; i < size; i++) {
+				bits[list[i] >>> 6] = 0L;
+			}
+		} else {
+			Arrays.fill(bits, 0L);
+		}
+	}
+
+	/**
+	 * Sets the bits of the nodes active in the current superstep in a bitmap, in which the bit of the node with id 0
+	 * is the lowest bit of the given word.
+	 */
+	public void addTo(long[] bitmap, int firstWord) {
+		if (sparse) {
+			for (int i = 0; i < size; i++) {
+				final int id = list[i];
+				bitmap[firstWord + (id >>> 6)] |= 1L << id;
+			}
+		} else {
+			for (int i = 0; i < bits.length; i++) {
+				bitmap[firstWord + i] |= bits[i];
+			}
+		}
+	}
+
+	/** Iterates over the ids of the active nodes, see {@link #ids()}. */
+	public static final class Ids {
+		private final ActiveSet<?> set;
+		private int index = 0;
+		private int word = -1;
+		private long remaining = 0L;
+
+		private Ids(ActiveSet<?> set) {
+			this.set = set;
+		}
+
+		/**
+		 * Returns the id of the next active node.
+		 * 
+		 * @return The id or -1 if there are no more active nodes
+		 */
+		public int next() {
+			if (set.sparse) {
+				return index < set.size ? set.list[index++] : -1;
+			}
+			final long[] bits = set.bits;
+			while (remaining == 0L) {
+				if (++word >= bits.length) {
+					word = bits.length;
+					return -1;
+				}
+				remaining = bits[word];
+			}
+			final int bit = Long.numberOfTrailingZeros(remaining);
+			remaining &= remaining - 1;
+			return (word << 6) | bit;
+		}
+	}
+
+	/**
+	 * Returns an iterator over the ids of the active nodes in the current superstep. Nodes activated in the next
+	 * superstep during the iteration do not disturb it.
+	 */
+	public Ids ids() {
+		return new Ids(this);
+	}
+
+	/** Iterates over the active nodes in the current superstep. */
+	@Override
+	public Iterator<ExplicitLocalNode<TNode>> iterator() {
+		return new Iterator<ExplicitLocalNode<TNode>>() {
+			private final Ids ids = ids();
+			private int next = ids.next();
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public ExplicitLocalNode<TNode> next() {
+				if (next < 0) {
+					throw new NoSuchElementException();
+				}
+				final ExplicitLocalNode<TNode> node = graph.node(next);
+				next = ids.next();
+				return node;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return "ActiveSet(active=" + size + (sparse ? " sparse" : " dense") + ", activated=" + nextSize + ")";
+	}
+
+}
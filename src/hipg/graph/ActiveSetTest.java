@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+
+package hipg.graph;
+
+import hipg.Node;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class ActiveSetTest {
+
+	private static ExplicitGraph<Node> createGraph(int nodes) {
+		final ExplicitGraph<Node> graph = new ExplicitGraph<Node>(nodes, nodes, false, 0, 0, false, false, 0, 0);
+		NodeFactory.forClass(ExplicitLocalNode.class).createNodes(graph, nodes);
+		return graph;
+	}
+
+	private static ArrayList<Integer> ids(ActiveSet<Node> set) {
+		final ArrayList<Integer> ids = new ArrayList<Integer>();
+		final ActiveSet.Ids it = set.ids();
+		for (int id = it.next(); id >= 0; id = it.next()) {
+			ids.add(id);
+		}
+		return ids;
+	}
+
+	@Test
+	public void testEmpty() {
+		final ActiveSet<Node> set = new ActiveSet<Node>(createGraph(100));
+		Assert.assertTrue(set.isEmpty());
+		Assert.assertEquals(0, set.advance());
+		Assert.assertFalse(set.iterator().hasNext());
+		Assert.assertEquals(-1, set.ids().next());
+	}
+
+	@Test
+	public void testActivateInNextSuperstep() {
+		final ExplicitGraph<Node> graph = createGraph(100);
+		final ActiveSet<Node> set = new ActiveSet<Node>(graph);
+		set.activate(5);
+		set.activate(graph.node(3));
+		set.activate(5);
+		Assert.assertEquals(0, set.size());
+		Assert.assertEquals(2, set.activated());
+		Assert.assertTrue(set.isActivated(5));
+		Assert.assertFalse(set.isActive(5));
+		Assert.assertEquals(2, set.advance());
+		Assert.assertTrue(set.isActive(3));
+		Assert.assertTrue(set.isActive(5));
+		Assert.assertFalse(set.isActive(4));
+		Assert.assertEquals(0, set.activated());
+		final Iterator<ExplicitLocalNode<Node>> it = set.iterator();
+		Assert.assertSame(graph.node(3), it.next());
+		Assert.assertSame(graph.node(5), it.next());
+		Assert.assertFalse(it.hasNext());
+		Assert.assertEquals(0, set.advance());
+		Assert.assertFalse(set.isActive(3));
+	}
+
+	private void testRandom(int nodes, int active, int steps) {
+		final ActiveSet<Node> set = new ActiveSet<Node>(createGraph(nodes));
+		final Random rand = new Random(nodes * 31 + active);
+		for (int step = 0; step < steps; step++) {
+			final TreeSet<Integer> expected = new TreeSet<Integer>();
+			for (int i = 0; i < active; i++) {
+				final int id = rand.nextInt(nodes);
+				expected.add(id);
+				set.activate(id);
+			}
+			Assert.assertEquals(expected.size(), set.activated());
+			Assert.assertEquals(expected.size(), set.advance());
+			Assert.assertEquals(new ArrayList<Integer>(expected), ids(set));
+			for (int id = 0; id < nodes; id++) {
+				Assert.assertEquals(expected.contains(id), set.isActive(id));
+			}
+		}
+		set.clear();
+		Assert.assertEquals(0, set.size());
+		Assert.assertEquals(0, set.advance());
+		Assert.assertTrue(ids(set).isEmpty());
+	}
+
+	@Test
+	public void testSparse() {
+		testRandom(10000, 20, 10);
+	}
+
+	@Test
+	public void testDense() {
+		testRandom(10000, 5000, 10);
+	}
+
+	@Test
+	public void testAlternating() {
+		final ActiveSet<Node> set = new ActiveSet<Node>(createGraph(1000));
+		for (int step = 0; step < 10; step++) {
+			final int count = (step % 2 == 0 ? 900 : 3);
+			for (int i = 0; i < count; i++) {
+				set.activate(i);
+			}
+			Assert.assertEquals(count, set.advance());
+			Assert.assertEquals(count, ids(set).size());
+		}
+	}
+
+	@Test
+	public void testAddTo() {
+		for (int active : new int[] { 3, 600 }) {
+			final ActiveSet<Node> set = new ActiveSet<Node>(createGraph(1000));
+			for (int i = 0; i < active; i++) {
+				set.activate(i * 7 % 1000);
+			}
+			set.advance();
+			final long[] bitmap = new long[2 + 16];
+			bitmap[0] = 1L;
+			set.addTo(bitmap, 2);
+			Assert.assertEquals(1L, bitmap[0]);
+			int count = 0;
+			for (int id = 0; id < 1000; id++) {
+				final boolean bit = (bitmap[2 + (id >>> 6)] & (1L << id)) != 0;
+				Assert.assertEquals(set.isActive(id), bit);
+				count += bit ? 1 : 0;
+			}
+			Assert.assertEquals(set.size(), count);
+		}
+	}
+
+	@Test
+	public void testActivateAddedNode() {
+		final ExplicitGraph<Node> graph = createGraph(10);
+		final ActiveSet<Node> set = new ActiveSet<Node>(graph);
+		NodeFactory.forClass(ExplicitLocalNode.class).createNodes(graph, 1000);
+		set.activate(900);
+		Assert.assertEquals(1, set.advance());
+		Assert.assertTrue(set.isActive(900));
+		Assert.assertSame(graph.node(900), set.iterator().next());
+	}
+
+}
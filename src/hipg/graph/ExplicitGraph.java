@@ -114,7 +114,7 @@ public final class ExplicitGraph<TNode extends Node> extends Graph<TNode> {
 	}
 
 	public final boolean hasNode(int reference) {
-		return reference >= 0 && reference <= nodes.length;
+		return reference >= 0 && reference < numNodes;
 	}
 
 	private final static int increaseLength(final int len, final boolean parity) {
@@ -144,6 +144,17 @@ public final class ExplicitGraph<TNode extends Node> extends Graph<TNode> {
 		nodes = newNodes;
 	}
 
+	/** Makes room for the given number of nodes to be added at once. */
+	final void ensureLocalNodesSpace(final int moreNodes) {
+		final int needed = numNodes + moreNodes;
+		if (needed > nodes.length) {
+			final ExplicitLocalNode<TNode>[] newNodes = createLocalNodesArray(Math.max(needed,
+					increaseLength(nodes.length, false)));
+			System.arraycopy(nodes, 0, newNodes, 0, numNodes);
+			nodes = newNodes;
+		}
+	}
+
 	public final int nextNodeId() {
 		return numNodes;
 	}
@@ -179,6 +190,22 @@ public final class ExplicitGraph<TNode extends Node> extends Graph<TNode> {
 		return incoming.getRemoteTransitionOwner(start, index);
 	}
 
+	public final int getLocalNeighborLabel(long start, int index) {
+		return outgoing.getLocalTransitionLabel(start, index);
+	}
+
+	public final int getRemoteNeighborLabel(long start, int index) {
+		return outgoing.getRemoteTransitionLabel(start, index);
+	}
+
+	public final int getLocalInNeighborLabel(long start, int index) {
+		return incoming.getLocalTransitionLabel(start, index);
+	}
+
+	public final int getRemoteInNeighborLabel(long start, int index) {
+		return incoming.getRemoteTransitionLabel(start, index);
+	}
+
 	public final ExplicitJoinedTransitions<TNode> getTransitions() {
 		return outgoing;
 	}
@@ -194,6 +221,17 @@ public final class ExplicitGraph<TNode extends Node> extends Graph<TNode> {
 			incoming.finish();
 	}
 
+	/**
+	 * Sorts the neighbors of every node (local ones by id, remote ones by owner and id), which is done at creation
+	 * only if hipg.sortTransitions is set.
+	 */
+	public final void sortNeighbors() {
+		if (outgoing != null)
+			outgoing.sortNeighbors();
+		if (incoming != null)
+			incoming.sortNeighbors();
+	}
+
 	public final Iterator<LocalNode<TNode>> iterator() {
 		return new ExplicitGraphIterator<TNode>(this);
 	}
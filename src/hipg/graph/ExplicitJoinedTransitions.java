@@ -26,6 +26,8 @@ import myutils.Quicksort;
 import myutils.storage.bigarray.BigArray;
 import myutils.storage.bigarray.BigIntArray;
 
+import java.util.Arrays;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,6 +62,9 @@ public final class ExplicitJoinedTransitions<TNode extends Node> {
 	private BigIntArray remoteTransitionsDst;
 	private long numRemoteTransitions;
 
+	/** Labels of the transitions to local and to remote nodes (null if the transitions are not labeled). */
+	private BigIntArray localLabels, remoteLabels;
+
 	/** For ordered constructions. */
 	ExplicitLocalNode<TNode> lastNodeWithAddedTransition = null;
 
@@ -104,6 +109,11 @@ public final class ExplicitJoinedTransitions<TNode extends Node> {
 		return numRemoteTransitions;
 	}
 
+	/** Checks if the transitions carry labels (e.g. edge weights). */
+	public boolean hasLabels() {
+		return localLabels != null;
+	}
+
 	BigArray<ExplicitLocalNode<TNode>> getLocalTransitions() {
 		return localTransitions;
 	}
@@ -133,6 +143,23 @@ public final class ExplicitJoinedTransitions<TNode extends Node> {
 		return remoteTransitions.get(start + (index << 1) + 1L);
 	}
 
+	/** Label of a transition to a local node, 0 if the transitions are not labeled. */
+	int getLocalTransitionLabel(final long start, final int index) {
+		if (Config.ERRCHECK && inCreation) {
+			throw new RuntimeException("Cannot access graph: still in creation");
+		}
+		return localLabels == null ? 0 : localLabels.get(start + index);
+	}
+
+	/** Label of a transition to a remote node, 0 if the transitions are not labeled. */
+	int getRemoteTransitionLabel(final long start, final int index) {
+		if (Config.ERRCHECK && inCreation) {
+			throw new RuntimeException("Cannot access graph: still in creation");
+		}
+		// remote transitions are stored as (owner, id) pairs, their labels are not
+		return remoteLabels == null ? 0 : remoteLabels.get((start >> 1) + index);
+	}
+
 	void addLocalTransition(final ExplicitLocalNode<TNode> source, final ExplicitLocalNode<TNode> target)
 			throws GraphCreationException {
 		if (Config.ERRCHECK && !inCreation) {
@@ -161,6 +188,9 @@ public final class ExplicitJoinedTransitions<TNode extends Node> {
 		if (!ordered) {
 			localTransitionsSrc.addBack(source.reference());
 		}
+		if (localLabels != null) {
+			localLabels.addBack(0);
+		}
 	}
 
 	void addRemoteTransition(final ExplicitLocalNode<TNode> source, final int remoteOwner, final int remoteId)
@@ -192,6 +222,34 @@ public final class ExplicitJoinedTransitions<TNode extends Node> {
 		if (!ordered) {
 			remoteTransitionsDst.addBack(source.reference);
 		}
+		if (remoteLabels != null) {
+			remoteLabels.addBack(0);
+		}
+	}
+
+	/**
+	 * Labels the last added transition to a local or to a remote node. The transitions added before the first label
+	 * are labeled 0.
+	 */
+	void labelLastTransition(final boolean local, final int label) {
+		if (Config.ERRCHECK && !inCreation) {
+			throw new RuntimeException("Cannot label transition: Graph not in creation");
+		}
+		if (localLabels == null) {
+			localLabels = new BigIntArray(10240, 1).ensureCapacity(localTransitions.capacity());
+			for (long t = 0; t < numLocalTransitions; t++) {
+				localLabels.addBack(0);
+			}
+			remoteLabels = new BigIntArray(10240, 1).ensureCapacity(remoteTransitions.capacity() / 2);
+			for (long t = 0; t < numRemoteTransitions; t++) {
+				remoteLabels.addBack(0);
+			}
+		}
+		if (local) {
+			localLabels.set(numLocalTransitions - 1, label);
+		} else {
+			remoteLabels.set(numRemoteTransitions - 1, label);
+		}
 	}
 
 	public void finish() {
@@ -208,6 +266,9 @@ public final class ExplicitJoinedTransitions<TNode extends Node> {
 			sortAndRelease();
 			ordered = true;
 		}
+		if (Config.SORT_TRANSITIONS) {
+			sortNeighbors();
+		}
 		lastNodeWithAddedTransition = null;
 		if (Config.ERRCHECK) {
 			for (ExplicitLocalNode<TNode> node : localTransitions) {
@@ -237,6 +298,10 @@ public final class ExplicitJoinedTransitions<TNode extends Node> {
 	}
 
 	private void sortAndRelease() {
+		if (localLabels != null) {
+			sortLabeledAndRelease();
+			return;
+		}
 		logger.debug(loggerPrefix + "Sorting local transitions");
 		Quicksort.quicksortWithFollowerObjectArray(localTransitionsSrc, localTransitions, numLocalTransitions);
 		localTransitionsSrc = null;
@@ -246,6 +311,200 @@ public final class ExplicitJoinedTransitions<TNode extends Node> {
 		logger.debug(loggerPrefix + "Sorting done");
 	}
 
+	/**
+	 * Sorts labeled transitions by their sources: sorts the positions of the transitions and moves the targets and
+	 * the labels to the sorted positions.
+	 */
+	private void sortLabeledAndRelease() {
+		logger.debug(loggerPrefix + "Sorting labeled local transitions");
+		BigIntArray order = positions(numLocalTransitions);
+		Quicksort.quicksortWithFollowerArray(localTransitionsSrc, order, numLocalTransitions);
+		localTransitionsSrc = null;
+		final BigArray<ExplicitLocalNode<TNode>> sortedLocal = createLocalNodeArray(numLocalTransitions);
+		final BigIntArray sortedLocalLabels = new BigIntArray(10240, 1).ensureCapacity(numLocalTransitions);
+		for (long t = 0; t < numLocalTransitions; t++) {
+			sortedLocal.addBack(localTransitions.get(order.get(t)));
+			sortedLocalLabels.addBack(localLabels.get(order.get(t)));
+		}
+		localTransitions = sortedLocal;
+		localLabels = sortedLocalLabels;
+
+		logger.debug(loggerPrefix + "Sorting labeled remote transitions");
+		order = positions(numRemoteTransitions);
+		Quicksort.quicksortWithFollowerArray(remoteTransitionsDst, order, numRemoteTransitions);
+		remoteTransitionsDst = null;
+		final BigIntArray sortedRemote = new BigIntArray(10240, 1).ensureCapacity(numRemoteTransitions * 2);
+		final BigIntArray sortedRemoteLabels = new BigIntArray(10240, 1).ensureCapacity(numRemoteTransitions);
+		for (long t = 0; t < numRemoteTransitions; t++) {
+			final long from = order.get(t);
+			sortedRemote.addBack(remoteTransitions.get(2 * from));
+			sortedRemote.addBack(remoteTransitions.get(2 * from + 1));
+			sortedRemoteLabels.addBack(remoteLabels.get(from));
+		}
+		remoteTransitions = sortedRemote;
+		remoteLabels = sortedRemoteLabels;
+		logger.debug(loggerPrefix + "Sorting done");
+	}
+
+	/** Array of the positions 0 .. count - 1. */
+	private static BigIntArray positions(final long count) {
+		final BigIntArray positions = new BigIntArray(10240, 1).ensureCapacity(count);
+		for (long t = 0; t < count; t++) {
+			positions.addBack((int) t);
+		}
+		return positions;
+	}
+
+	/**
+	 * Sorts the transitions of every node: the local ones by the id of the target, the remote ones by the owner and
+	 * the id of the target. Applications can then intersect or merge neighbor lists in linear time.
+	 */
+	public void sortNeighbors() {
+		if (inCreation) {
+			throw new RuntimeException("Cannot sort: Graph in creation");
+		}
+		if (localLabels != null) {
+			sortLabeledNeighbors();
+			return;
+		}
+		logger.debug(loggerPrefix + "Sorting neighbors");
+		int[] ids = new int[16];
+		long[] targets = new long[16];
+		for (int i = 0; i < graph.nodes(); i++) {
+			final ExplicitLocalNode<TNode> n = graph.node(i);
+			final long localStart = (isTranspose ? n.localInNeighborsStart : n.localNeighborsStart);
+			final int localCount = (isTranspose ? n.localInNeighborsCount : n.localNeighborsCount);
+			final long remoteStart = (isTranspose ? n.remoteInNeighborsStart : n.remoteNeighborsStart);
+			final int remoteCount = (isTranspose ? n.remoteInNeighborsCount : n.remoteNeighborsCount);
+
+			// local transitions
+			boolean sorted = true;
+			for (int j = 1; j < localCount && sorted; j++) {
+				sorted = localTransitions.get(localStart + j - 1).reference() <= localTransitions.get(localStart + j)
+						.reference();
+			}
+			if (!sorted) {
+				if (ids.length < localCount) {
+					ids = new int[Math.max(localCount, 2 * ids.length)];
+				}
+				for (int j = 0; j < localCount; j++) {
+					ids[j] = localTransitions.get(localStart + j).reference();
+				}
+				Arrays.sort(ids, 0, localCount);
+				for (int j = 0; j < localCount; j++) {
+					localTransitions.set(localStart + j, graph.node(ids[j]));
+				}
+			}
+
+			// remote transitions (stored as owner, id)
+			sorted = true;
+			for (int j = 1; j < remoteCount && sorted; j++) {
+				sorted = remoteTarget(remoteStart, j - 1) <= remoteTarget(remoteStart, j);
+			}
+			if (!sorted) {
+				if (targets.length < remoteCount) {
+					targets = new long[Math.max(remoteCount, 2 * targets.length)];
+				}
+				for (int j = 0; j < remoteCount; j++) {
+					targets[j] = remoteTarget(remoteStart, j);
+				}
+				Arrays.sort(targets, 0, remoteCount);
+				for (int j = 0; j < remoteCount; j++) {
+					remoteTransitions.set(remoteStart + 2 * j, (int) (targets[j] >>> 32));
+					remoteTransitions.set(remoteStart + 2 * j + 1, (int) targets[j]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sorts the labeled transitions of every node like {@link #sortNeighbors()}, moving the labels with the targets.
+	 * The targets are sorted together with their positions, which give the position of the label to move.
+	 */
+	private void sortLabeledNeighbors() {
+		logger.debug(loggerPrefix + "Sorting labeled neighbors");
+		final TargetsWithPositions sorted = new TargetsWithPositions();
+		int[] labels = new int[16];
+		for (int i = 0; i < graph.nodes(); i++) {
+			final ExplicitLocalNode<TNode> n = graph.node(i);
+			final long localStart = (isTranspose ? n.localInNeighborsStart : n.localNeighborsStart);
+			final int localCount = (isTranspose ? n.localInNeighborsCount : n.localNeighborsCount);
+			final long remoteStart = (isTranspose ? n.remoteInNeighborsStart : n.remoteNeighborsStart);
+			final int remoteCount = (isTranspose ? n.remoteInNeighborsCount : n.remoteNeighborsCount);
+			final int count = Math.max(localCount, remoteCount);
+			sorted.ensureCapacity(count);
+			if (labels.length < count) {
+				labels = new int[Math.max(count, 2 * labels.length)];
+			}
+
+			// local transitions: (id, position)
+			sorted.length = localCount;
+			for (int j = 0; j < localCount; j++) {
+				sorted.targets[j] = localTransitions.get(localStart + j).reference();
+				sorted.positions[j] = j;
+				labels[j] = localLabels.get(localStart + j);
+			}
+			Quicksort.quicksort(sorted);
+			for (int j = 0; j < localCount; j++) {
+				localTransitions.set(localStart + j, graph.node((int) sorted.targets[j]));
+				localLabels.set(localStart + j, labels[sorted.positions[j]]);
+			}
+
+			// remote transitions: (owner and id, position)
+			final long remoteLabelStart = remoteStart >> 1;
+			sorted.length = remoteCount;
+			for (int j = 0; j < remoteCount; j++) {
+				sorted.targets[j] = remoteTarget(remoteStart, j);
+				sorted.positions[j] = j;
+				labels[j] = remoteLabels.get(remoteLabelStart + j);
+			}
+			Quicksort.quicksort(sorted);
+			for (int j = 0; j < remoteCount; j++) {
+				remoteTransitions.set(remoteStart + 2 * j, (int) (sorted.targets[j] >>> 32));
+				remoteTransitions.set(remoteStart + 2 * j + 1, (int) sorted.targets[j]);
+				remoteLabels.set(remoteLabelStart + j, labels[sorted.positions[j]]);
+			}
+		}
+	}
+
+	/** Targets of the transitions of a node and their original positions, sorted by the targets. */
+	private static final class TargetsWithPositions implements Quicksort.QuicksortableArray {
+		private long[] targets = new long[16];
+		private int[] positions = new int[16];
+		private int length;
+
+		private void ensureCapacity(final int capacity) {
+			if (targets.length < capacity) {
+				targets = new long[Math.max(capacity, 2 * targets.length)];
+				positions = new int[targets.length];
+			}
+		}
+
+		public int length() {
+			return length;
+		}
+
+		public boolean less(final int i, final int j) {
+			return targets[i] < targets[j];
+		}
+
+		public void swap(final int i, final int j) {
+			final long t = targets[i];
+			targets[i] = targets[j];
+			targets[j] = t;
+			final int p = positions[i];
+			positions[i] = positions[j];
+			positions[j] = p;
+		}
+	}
+
+	/** Owner and id of a remote transition, packed in the order of the owners and then of the ids. */
+	private long remoteTarget(final long start, final int index) {
+		final long owner = remoteTransitions.get(start + 2 * index);
+		final long id = remoteTransitions.get(start + 2 * index + 1);
+		return (owner << 32) | id;
+	}
+
 	private BigArray<ExplicitLocalNode<TNode>> createLocalNodeArray(final long size) {
 		return new BigArray<ExplicitLocalNode<TNode>>(10240, 1).ensureCapacity(size);
 	}
@@ -584,4 +584,142 @@ public class ExplicitJoinedTransitionsTest {
 	public void testOrderedMedTranspose4() throws GraphCreationException {
 		createOrdered(4, 100, 2297, 1425, 535, 355);
 	}
+
+	private static ExplicitGraph<Node> sorted(final ExplicitGraph<Node> graph) {
+		graph.sortNeighbors();
+		return graph;
+	}
+
+	private static void assertSortedNeighbors(final ExplicitGraph<Node> graph, final boolean transpose) {
+		for (int i = 0; i < graph.nodes(); i++) {
+			final ExplicitLocalNode<Node> node = graph.node(i);
+			for (int j = 1; j < node.localOutdegree(); j++) {
+				Assert.assertTrue(node.localNeighbor(j - 1).reference() <= node.localNeighbor(j).reference());
+			}
+			for (int j = node.localOutdegree() + 1; node.hasNeighbor(j); j++) {
+				final int owner0 = node.neighborOwner(j - 1), owner1 = node.neighborOwner(j);
+				Assert.assertTrue(owner0 < owner1
+						|| (owner0 == owner1 && node.neighborId(j - 1) <= node.neighborId(j)));
+			}
+			if (transpose) {
+				for (int j = 1; j < node.localIndegree(); j++) {
+					Assert.assertTrue(node.localInNeighbor(j - 1).reference() <= node.localInNeighbor(j).reference());
+				}
+				for (int j = node.localIndegree() + 1; node.hasInNeighbor(j); j++) {
+					final int owner0 = node.inNeighborOwner(j - 1), owner1 = node.inNeighborOwner(j);
+					Assert.assertTrue(owner0 < owner1
+							|| (owner0 == owner1 && node.inNeighborId(j - 1) <= node.inNeighborId(j)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSortedNeighbors() throws GraphCreationException {
+		assertSortedNeighbors(sorted(createNonOrdered(4, 100, 2937, 5743, 0, 0)), false);
+		assertSortedNeighbors(sorted(createNonOrdered(4, 100, 2297, 1425, 535, 355)), true);
+	}
+
+	@Test
+	public void testOrderedSortedNeighbors() throws GraphCreationException {
+		assertSortedNeighbors(sorted(createOrdered(4, 100, 2937, 5743, 0, 0)), false);
+		assertSortedNeighbors(sorted(createOrdered(4, 100, 2297, 1425, 535, 355)), true);
+	}
+
+	/** Label of a transition, determined by its ends, so it can be checked in any order of the transitions. */
+	private static int label(final int source, final int owner, final int target) {
+		return source * 7919 + owner * 104729 + target;
+	}
+
+	private static ExplicitGraph<Node> createLabeled(final boolean ordered, final int poolSize, final int nodes,
+			final int transitions) throws GraphCreationException {
+		final ExplicitGraph<Node> graph = new ExplicitGraph<Node>(nodes, nodes * poolSize, ordered, transitions,
+				transitions, true, ordered, transitions, transitions);
+		for (int i = 0; i < nodes; i++) {
+			graph.addNode(new ExplicitLocalNode<Node>(graph, graph.nextNodeId()));
+		}
+		final Random rand = new Random(System.nanoTime());
+		final int[] sources = new int[transitions];
+		for (int i = 0; i < transitions; i++) {
+			sources[i] = rand.nextInt(nodes);
+		}
+		if (ordered) {
+			Arrays.sort(sources);
+		}
+		for (int i = 0; i < transitions; i++) {
+			final int owner = rand.nextInt(poolSize);
+			final int target = rand.nextInt(nodes);
+			graph.node(sources[i]).addTransition(owner, target, label(sources[i], owner, target));
+		}
+		for (int i = 0; i < transitions; i++) {
+			final int owner = rand.nextInt(poolSize);
+			final int source = rand.nextInt(nodes);
+			graph.node(sources[i]).addInTransition(owner, source, label(sources[i], owner, source));
+		}
+		graph.finishCreation();
+		return graph;
+	}
+
+	private static void assertLabels(final ExplicitGraph<Node> graph) {
+		Assert.assertTrue(graph.getTransitions().hasLabels());
+		Assert.assertTrue(graph.getInTransitions().hasLabels());
+		for (int i = 0; i < graph.nodes(); i++) {
+			final ExplicitLocalNode<Node> node = graph.node(i);
+			for (int j = 0; node.hasNeighbor(j); j++) {
+				Assert.assertEquals(label(i, node.neighborOwner(j), node.neighborId(j)), node.neighborLabel(j));
+			}
+			for (int j = 0; node.hasInNeighbor(j); j++) {
+				Assert.assertEquals(label(i, node.inNeighborOwner(j), node.inNeighborId(j)), node.inNeighborLabel(j));
+			}
+		}
+	}
+
+	@Test
+	public void testLabels() throws GraphCreationException {
+		assertLabels(createLabeled(false, 1, 100, 2937));
+		assertLabels(createLabeled(false, 4, 100, 2937));
+		assertLabels(createLabeled(false, 4, 10, 20));
+	}
+
+	@Test
+	public void testOrderedLabels() throws GraphCreationException {
+		assertLabels(createLabeled(true, 1, 100, 2937));
+		assertLabels(createLabeled(true, 4, 100, 2937));
+	}
+
+	@Test
+	public void testLabelsOfHub() throws GraphCreationException {
+		// more than 2^16 local and remote transitions of one node
+		final int nodes = 1000, degree = 140000;
+		final ExplicitGraph<Node> graph = new ExplicitGraph<Node>(nodes, nodes * 4, true, degree, degree, true,
+				true, degree, degree);
+		for (int i = 0; i < nodes; i++) {
+			graph.addNode(new ExplicitLocalNode<Node>(graph, graph.nextNodeId()));
+		}
+		final Random rand = new Random(System.nanoTime());
+		for (int j = 0; j < degree; j++) {
+			final int owner = (j % 2 == 0 ? 0 : 1 + rand.nextInt(3));
+			final int target = rand.nextInt(nodes);
+			graph.node(0).addTransition(owner, target, label(0, owner, target));
+			graph.node(0).addInTransition(owner, target, label(0, owner, target));
+		}
+		graph.finishCreation();
+		graph.sortNeighbors();
+		Assert.assertTrue(graph.node(0).localOutdegree() > 65535);
+		Assert.assertTrue(graph.node(0).outdegree() - graph.node(0).localOutdegree() > 65535);
+		assertLabels(graph);
+		assertSortedNeighbors(graph, true);
+	}
+
+	@Test
+	public void testNoLabels() throws GraphCreationException {
+		final ExplicitGraph<Node> graph = createNonOrdered(4, 100, 297, 145, 535, 355);
+		Assert.assertFalse(graph.getTransitions().hasLabels());
+		Assert.assertFalse(graph.getInTransitions().hasLabels());
+		for (int i = 0; i < graph.nodes(); i++) {
+			for (int j = 0; graph.node(i).hasNeighbor(j); j++) {
+				Assert.assertEquals(0, graph.node(i).neighborLabel(j));
+			}
+		}
+	}
 }
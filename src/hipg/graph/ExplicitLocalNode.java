@@ -28,13 +28,13 @@ public class ExplicitLocalNode<TNode extends Node> extends LocalNode<TNode> {
 	protected final int reference;
 
 	/** Number of local neighbors. */
-	short localNeighborsCount;
+	int localNeighborsCount;
 	/** Number of remote neighbors. */
-	short remoteNeighborsCount;
+	int remoteNeighborsCount;
 	/** Number of local in-neighbors. */
-	short localInNeighborsCount;
+	int localInNeighborsCount;
 	/** Number of remote in-neighbors. */
-	short remoteInNeighborsCount;
+	int remoteInNeighborsCount;
 
 	/** Location of the first local neighbor. */
 	long localNeighborsStart = -1;
@@ -167,7 +167,7 @@ public class ExplicitLocalNode<TNode extends Node> extends LocalNode<TNode> {
 
 	public final long inNeighborReference(int index) {
 		if (index < localInNeighborsCount) {
-			return graph.getLocalInNeighbor(localInNeighborsStart, index).reference();
+			return graph.getLocalInNeighbor(localInNeighborsStart, index).asReference();
 		} else {
 			final int index2 = index - localInNeighborsCount;
 			final int id = graph.getRemoteInNeighborId(remoteInNeighborsStart, index2);
@@ -176,6 +176,24 @@ public class ExplicitLocalNode<TNode extends Node> extends LocalNode<TNode> {
 		}
 	}
 
+	/** Label of an outgoing transition (e.g. its weight), 0 if the transitions are not labeled. */
+	public final int neighborLabel(int index) {
+		if (index < localNeighborsCount) {
+			return graph.getLocalNeighborLabel(localNeighborsStart, index);
+		} else {
+			return graph.getRemoteNeighborLabel(remoteNeighborsStart, index - localNeighborsCount);
+		}
+	}
+
+	/** Label of an incoming transition, 0 if the transitions are not labeled. */
+	public final int inNeighborLabel(int index) {
+		if (index < localInNeighborsCount) {
+			return graph.getLocalInNeighborLabel(localInNeighborsStart, index);
+		} else {
+			return graph.getRemoteInNeighborLabel(remoteInNeighborsStart, index - localInNeighborsCount);
+		}
+	}
+
 	public final TNode neighbor(int index) {
 		throw new UnsupportedOperationException("ExplicitLocalNode: TNode neighbor(index) should never be executed");
 	}
@@ -211,35 +229,48 @@ public class ExplicitLocalNode<TNode extends Node> extends LocalNode<TNode> {
 	public final void addTransition(final int owner, final int id) throws GraphCreationException {
 		final boolean local = owner == hipg.runtime.Runtime.getRank();
 		if (local) {
-			if (localNeighborsCount == Short.MAX_VALUE)
-				throw new GraphCreationException("Cannot handle more than " + Short.MAX_VALUE
+			if (localNeighborsCount == Integer.MAX_VALUE)
+				throw new GraphCreationException("Cannot handle more than " + Integer.MAX_VALUE
 						+ " local outgoing transitions per node");
 			localNeighborsCount++;
 			graph.getTransitions().addLocalTransition(this, graph.node(id));
 		} else {
-			if (remoteNeighborsCount == Short.MAX_VALUE)
-				throw new GraphCreationException("Cannot handle more than " + Short.MAX_VALUE
+			if (remoteNeighborsCount == Integer.MAX_VALUE)
+				throw new GraphCreationException("Cannot handle more than " + Integer.MAX_VALUE
 						+ " remote outgoing transitions per node");
 			remoteNeighborsCount++;
 			graph.getTransitions().addRemoteTransition(this, owner, id);
 		}
 	}
 
+	/** Adds a labeled outgoing transition. */
+	public final void addTransition(final int owner, final int id, final int label) throws GraphCreationException {
+		addTransition(owner, id);
+		graph.getTransitions().labelLastTransition(owner == hipg.runtime.Runtime.getRank(), label);
+	}
+
 	public final void addInTransition(final int sourceOwner, final int sourceId) throws GraphCreationException {
 		final boolean local = sourceOwner == hipg.runtime.Runtime.getRank();
 		if (local) {
-			if (localInNeighborsCount == Short.MAX_VALUE)
-				throw new GraphCreationException("Cannot handle more than " + Short.MAX_VALUE
+			if (localInNeighborsCount == Integer.MAX_VALUE)
+				throw new GraphCreationException("Cannot handle more than " + Integer.MAX_VALUE
 						+ " local incoming transitions per node");
 			localInNeighborsCount++;
 			graph.getInTransitions().addLocalTransition(this, graph.node(sourceId));
 		} else {
-			if (remoteNeighborsCount == Short.MAX_VALUE)
-				throw new GraphCreationException("Cannot handle more than " + Short.MAX_VALUE
+			if (remoteInNeighborsCount == Integer.MAX_VALUE)
+				throw new GraphCreationException("Cannot handle more than " + Integer.MAX_VALUE
 						+ " remote incoming transitions per node");
 			remoteInNeighborsCount++;
 			graph.getInTransitions().addRemoteTransition(this, sourceOwner, sourceId);
 		}
 	}
 
+	/** Adds a labeled incoming transition. */
+	public final void addInTransition(final int sourceOwner, final int sourceId, final int label)
+			throws GraphCreationException {
+		addInTransition(sourceOwner, sourceId);
+		graph.getInTransitions().labelLastTransition(sourceOwner == hipg.runtime.Runtime.getRank(), label);
+	}
+
 }
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package hipg.graph;
+
+import hipg.Graph;
+import hipg.Node;
+import hipg.utils.ReflectionUtils;
+
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates local nodes of a given class. HipGCC generates a subclass named after the local node class with the
+ * {@link #FACTORY_SUFFIX} that calls the node's constructor directly; for classes that were not rewritten, a factory
+ * calling the constructor through reflection is used instead. Graph readers and on-the-fly graphs obtain factories
+ * through {@link #forClass(Class)}.
+ */
+public abstract class NodeFactory {
+
+	/** Suffix of the name of a generated factory. */
+	public static final String FACTORY_SUFFIX = "_NodeFactory";
+
+	/** Factories created so far. */
+	private static final Map<Class<?>, NodeFactory> factories = new HashMap<Class<?>, NodeFactory>();
+
+	/** Creates a node of an explicit graph with the given id. */
+	public ExplicitLocalNode<?> createNode(ExplicitGraph<?> graph, int id) {
+		throw new RuntimeException("Factory " + getClass().getName() + " cannot create nodes of explicit graphs");
+	}
+
+	/** Creates a node of an on-the-fly graph with the given state. */
+	public OnTheFlyLocalNode<?> createNode(OnTheFlyGraph<?> graph, byte[] state) {
+		throw new RuntimeException("Factory " + getClass().getName() + " cannot create nodes of on-the-fly graphs");
+	}
+
+	/** Creates the given number of nodes with consecutive ids and adds them to an explicit graph. */
+	@SuppressWarnings("unchecked")
+	public final <TNode extends Node> void createNodes(ExplicitGraph<TNode> graph, int count) {
+		graph.ensureLocalNodesSpace(count);
+		for (int i = 0; i < count; i++) {
+			graph.addNode((ExplicitLocalNode<TNode>) createNode(graph, graph.nextNodeId()));
+		}
+	}
+
+	/** Returns the name of the factory generated for a local node class. */
+	public static String factoryClassName(String localNodeClassName) {
+		return localNodeClassName + FACTORY_SUFFIX;
+	}
+
+	/** Returns a factory for a local node class. */
+	public static NodeFactory forClass(Class<?> TLocalNodeClass) {
+		synchronized (factories) {
+			NodeFactory factory = factories.get(TLocalNodeClass);
+			if (factory == null) {
+				factory = createFactory(TLocalNodeClass);
+				factories.put(TLocalNodeClass, factory);
+			}
+			return factory;
+		}
+	}
+
+	private static NodeFactory createFactory(Class<?> TLocalNodeClass) {
+		final String factoryName = factoryClassName(TLocalNodeClass.getName());
+		try {
+			final Class<?> factoryClass = Class.forName(factoryName, true, TLocalNodeClass.getClassLoader());
+			return (NodeFactory) factoryClass.getDeclaredConstructor().newInstance();
+		} catch (ClassNotFoundException e) {
+			return new ReflectiveNodeFactory(TLocalNodeClass);
+		} catch (Throwable t) {
+			throw new RuntimeException("Could not create node factory " + factoryName + ": " + t.getMessage(), t);
+		}
+	}
+
+	/** Factory of nodes of classes that were not rewritten. */
+	private static final class ReflectiveNodeFactory extends NodeFactory {
+
+		private final Class<?> TLocalNodeClass;
+		private final Constructor<?> explicitConstructor;
+		private final Constructor<?> onTheFlyConstructor;
+
+		ReflectiveNodeFactory(Class<?> TLocalNodeClass) {
+			this.TLocalNodeClass = TLocalNodeClass;
+			this.explicitConstructor = accessible(ReflectionUtils.findConstructor(TLocalNodeClass, Graph.class,
+					int.class));
+			this.onTheFlyConstructor = accessible(ReflectionUtils.findConstructor(TLocalNodeClass, Graph.class,
+					Object.class));
+		}
+
+		private static Constructor<?> accessible(Constructor<?> constructor) {
+			if (constructor != null) {
+				constructor.setAccessible(true);
+			}
+			return constructor;
+		}
+
+		@Override
+		public ExplicitLocalNode<?> createNode(ExplicitGraph<?> graph, int id) {
+			if (explicitConstructor == null) {
+				throw new RuntimeException("Could not find constructor for the node class " + TLocalNodeClass.getName()
+						+ " with arguments (graph, id)");
+			}
+			try {
+				return (ExplicitLocalNode<?>) explicitConstructor.newInstance(graph, id);
+			} catch (Throwable e) {
+				throw new RuntimeException("Cannot create node of class " + TLocalNodeClass.getName()
+						+ " with the constructor: " + explicitConstructor + ": " + e.getMessage(), e);
+			}
+		}
+
+		@Override
+		public OnTheFlyLocalNode<?> createNode(OnTheFlyGraph<?> graph, byte[] state) {
+			if (onTheFlyConstructor == null) {
+				throw new RuntimeException("Could not find constructor for the node class " + TLocalNodeClass.getName()
+						+ " with arguments (graph, state)");
+			}
+			try {
+				return (OnTheFlyLocalNode<?>) onTheFlyConstructor.newInstance(graph, state);
+			} catch (Throwable e) {
+				throw new RuntimeException("Cannot create node of class " + TLocalNodeClass.getName()
+						+ " with the constructor: " + onTheFlyConstructor + ": " + e.getMessage(), e);
+			}
+		}
+	}
+
+}
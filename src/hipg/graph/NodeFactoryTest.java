@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+
+package hipg.graph;
+
+import hipg.Node;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class NodeFactoryTest {
+
+	public static class MyLocalNode extends ExplicitLocalNode<Node> {
+		public MyLocalNode(ExplicitGraph<Node> graph, int reference) {
+			super(graph, reference);
+		}
+	}
+
+	private static ExplicitGraph<Node> createGraph(int nodes) {
+		return new ExplicitGraph<Node>(nodes, nodes, false, 0, 0, false, false, 0, 0);
+	}
+
+	@Test
+	public void testFactoryIsCached() {
+		final NodeFactory factory = NodeFactory.forClass(MyLocalNode.class);
+		Assert.assertNotNull(factory);
+		Assert.assertSame(factory, NodeFactory.forClass(MyLocalNode.class));
+	}
+
+	@Test
+	public void testFactoryClassName() {
+		Assert.assertEquals("a.B$C_NodeFactory", NodeFactory.factoryClassName("a.B$C"));
+	}
+
+	@Test
+	public void testCreateNode() {
+		final ExplicitGraph<Node> graph = createGraph(1);
+		final ExplicitLocalNode<?> node = NodeFactory.forClass(MyLocalNode.class).createNode(graph, 7);
+		Assert.assertTrue(node instanceof MyLocalNode);
+		Assert.assertEquals(7, node.reference());
+	}
+
+	@Test
+	public void testCreateNodes() {
+		final int count = 1000;
+		final ExplicitGraph<Node> graph = createGraph(10);
+		final NodeFactory factory = NodeFactory.forClass(MyLocalNode.class);
+		factory.createNodes(graph, count / 2);
+		factory.createNodes(graph, count / 2);
+		Assert.assertEquals(count, graph.nodes());
+		for (int i = 0; i < count; i++) {
+			Assert.assertTrue(graph.node(i) instanceof MyLocalNode);
+			Assert.assertEquals(i, graph.node(i).reference());
+		}
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testCreateOnTheFlyNodeOfExplicitClass() {
+		NodeFactory.forClass(MyLocalNode.class).createNode((OnTheFlyGraph<?>) null, new byte[0]);
+	}
+
+}
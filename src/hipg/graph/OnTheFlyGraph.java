@@ -18,21 +18,13 @@
 
 package hipg.graph;
 
-import hipg.Graph;
 import hipg.LocalNode;
 import hipg.Node;
-import hipg.utils.ReflectionUtils;
-
-import java.lang.reflect.Constructor;
-import java.util.Arrays;
 
 public class OnTheFlyGraph<TNode extends Node> extends MapGraph<TNode, byte[]> {
 
-	/** Node class. */
-	private final Class<?> TLocalNodeClass;
-
-	/** Constructor to create nodes on-the-fly. */
-	private final Constructor<TNode> nodeConstructor;
+	/** Factory to create nodes on-the-fly. */
+	private final NodeFactory factory;
 
 	/** Hash function used to hash states. */
 	private final OnTheFlyHash hash;
@@ -48,9 +40,8 @@ public class OnTheFlyGraph<TNode extends Node> extends MapGraph<TNode, byte[]> {
 		if (TLocalNodeClass == null) {
 			throw new NullPointerException();
 		}
-		this.TLocalNodeClass = TLocalNodeClass;
 		this.hash = hash;
-		this.nodeConstructor = findNodeConstructor(TLocalNodeClass, Graph.class, Object.class);
+		this.factory = NodeFactory.forClass(TLocalNodeClass);
 	}
 
 	public OnTheFlyHash hash() {
@@ -82,27 +73,6 @@ public class OnTheFlyGraph<TNode extends Node> extends MapGraph<TNode, byte[]> {
 
 	@SuppressWarnings("unchecked")
 	private OnTheFlyLocalNode<TNode> createNode(byte[] state) {
-		try {
-			return (OnTheFlyLocalNode<TNode>) nodeConstructor.newInstance(this, state);
-		} catch (Throwable e) {
-			throw new RuntimeException("Cannot create node of class " + TLocalNodeClass.getName()
-					+ " with the constructor: " + nodeConstructor + ": " + e.getMessage(), e);
-		}
-	}
-
-	@SuppressWarnings("unchecked")
-	private static <TNode extends Node> Constructor<TNode> findNodeConstructor(Class<?> TLocalNodeClass,
-			Class<?>... args) {
-		Constructor<?> constructor = ReflectionUtils.findConstructor(TLocalNodeClass, args);
-		if (constructor == null) {
-			throw new RuntimeException("Could not find constructor " + "for the node class "
-					+ TLocalNodeClass.getName() + " with arguments " + Arrays.deepToString(args));
-		}
-		try {
-			return (Constructor<TNode>) constructor;
-		} catch (Throwable t) {
-			throw new RuntimeException("Found constructor for the class " + TLocalNodeClass.getName()
-					+ " is not a node constructor");
-		}
+		return (OnTheFlyLocalNode<TNode>) factory.createNode(this, state);
 	}
 }
@@ -0,0 +1,298 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package hipg.runtime;
+
+import hipg.Config;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+import myutils.IOUtils;
+import myutils.StringUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Distributed all-reduce of a large array of numbers with an element-wise combine. The array is split into one chunk
+ * per worker, the chunks are reduced with a ring reduce-scatter and then distributed with a ring all-gather. Each
+ * worker sends and receives 2 (P-1) / P times the size of the array, instead of P times the size in a token ring.
+ */
+public final class AllReduce {
+
+	/* Element types (as in the newarray instruction). */
+	public static final byte FLOAT = 6;
+	public static final byte DOUBLE = 7;
+	public static final byte INT = 10;
+	public static final byte LONG = 11;
+
+	/* Element-wise combine operations. */
+	public static final byte SUM = hipg.AllReduce.SUM;
+	public static final byte MIN = hipg.AllReduce.MIN;
+	public static final byte MAX = hipg.AllReduce.MAX;
+
+	/** Logging utilities. */
+	private static final Logger logger = LoggerFactory.getLogger(AllReduce.class);
+	private final String loggerPrefix;
+
+	/** All-reduce issuer. */
+	private final Synchronizer issuer;
+	/** Owner. */
+	private final boolean owner;
+	/** Rank and pool size. */
+	private final int rank, poolSize;
+	/** Initialized all-reduces. */
+	private int initialized = 0;
+	/** Finished all-reduces. */
+	private int done = 0;
+	/** Current all-reduce: reduce method, element type and combine operation. */
+	private short reduceMethodId = -1;
+	private byte type, op;
+	/** Current all-reduce: initial value. */
+	private byte[] initialValue;
+	/** Current all-reduce: partial value. */
+	private byte[] value;
+	/** Current all-reduce: number of elements. */
+	private int elements;
+	/** Current all-reduce: next step to receive. */
+	private int step;
+	/** Current all-reduce: result. */
+	private byte[] result;
+	/** Chunks received before they could be used. */
+	private final LinkedList<Object[]> stored = new LinkedList<Object[]>();
+	/** Sends chunks to the next worker (null to send them through the communication). */
+	private final ChunkSender sender;
+
+	/** Sends the chunks of an all-reduce to the next worker in the ring. */
+	interface ChunkSender {
+		void sendChunk(int allReduce, int step, byte[] value, int offset, int length);
+	}
+
+	public AllReduce(Synchronizer issuer) {
+		this(issuer, Runtime.getCommunication().getRank() == (issuer.getMaster()), Runtime.getRank(), Runtime
+				.getPoolSize(), Runtime.getCommunication().getName(), null);
+	}
+
+	/** Creates an all-reduce of the given worker, which sends its chunks with the given sender (used in tests). */
+	AllReduce(Synchronizer issuer, boolean owner, int rank, int poolSize, String name, ChunkSender sender) {
+		this.issuer = issuer;
+		this.owner = owner;
+		this.rank = rank;
+		this.poolSize = poolSize;
+		this.sender = sender;
+		this.loggerPrefix = "(" + name + ") " + issuer.name() + " ";
+		if (Config.STATISTICS) {
+			Statistics.newAllReduce();
+		}
+	}
+
+	/** Checks if the element type and the combine operation are supported. */
+	public static boolean supports(byte type, byte op) {
+		return (type == INT || type == LONG || type == FLOAT || type == DOUBLE)
+				&& (op == SUM || op == MIN || op == MAX);
+	}
+
+	public static int elementBytes(byte type) {
+		switch (type) {
+		case INT:
+			return IOUtils.INT_BYTES;
+		case LONG:
+			return IOUtils.LONG_BYTES;
+		case FLOAT:
+			return IOUtils.FLOAT_BYTES;
+		case DOUBLE:
+			return IOUtils.DOUBLE_BYTES;
+		default:
+			throw new RuntimeException("Unsupported all-reduce element type " + type);
+		}
+	}
+
+	public void set(short reduceMethodId, byte type, byte op, byte[] initialValue) {
+		if (!supports(type, op)) {
+			throw new RuntimeException("Unsupported all-reduce of type " + type + " with operation " + op);
+		}
+		this.reduceMethodId = reduceMethodId;
+		this.type = type;
+		this.op = op;
+		this.initialValue = initialValue;
+		this.result = null;
+	}
+
+	public void init() {
+		initialized++;
+		if (Config.FINEDEBUG) {
+			logger.debug(loggerPrefix + "Initializing all-reduce " + initialized);
+		}
+
+		// Compute the local contribution. The initial value is accounted for only once, by the owner (unless the
+		// combine is idempotent).
+		byte[] local = Arrays.copyOf(initialValue, initialValue.length);
+		if (op == SUM && !owner) {
+			Arrays.fill(local, IOUtils.LENGTH_BYTES, local.length, (byte) 0);
+		}
+		local = issuer.hipg_reduce(reduceMethodId, local);
+		if (local == null || local.length != initialValue.length) {
+			throw new RuntimeException("All-reduce method " + reduceMethodId + " of " + issuer.name()
+					+ " changed the length of the reduced array");
+		}
+		if (Config.STATISTICS) {
+			Statistics.allReduceInitialized(local.length);
+		}
+		value = local;
+		elements = (local.length - IOUtils.LENGTH_BYTES) / elementBytes(type);
+		step = 0;
+		sendChunk(rank);
+		progress();
+	}
+
+	public void received(int allReduce, int step, byte[] chunk) {
+		if (allReduce != initialized || step != this.step || isDone()) {
+			store(allReduce, step, chunk);
+		} else {
+			combine(chunk);
+			progress();
+		}
+	}
+
+	/** Consumes a chunk received in the current step and forwards the resulting chunk. */
+	private void combine(byte[] chunk) {
+		final int P = poolSize;
+		final int c;
+		if (step < P - 1) {
+			// reduce-scatter
+			c = (rank - step - 1 + P) % P;
+			combine(chunk, chunkStart(c));
+		} else {
+			// all-gather
+			c = (rank - (step - P + 1) + P) % P;
+			System.arraycopy(chunk, 0, value, chunkStart(c), chunk.length);
+		}
+		step++;
+		if (step == 2 * (P - 1)) {
+			result = value;
+			value = null;
+			setDone();
+		} else {
+			sendChunk(c);
+		}
+	}
+
+	private void combine(final byte[] chunk, final int start) {
+		int p = start;
+		switch (type) {
+		case INT:
+			for (int q = 0; q < chunk.length; q += IOUtils.INT_BYTES, p += IOUtils.INT_BYTES) {
+				final int a = IOUtils.readInt(value, p), b = IOUtils.readInt(chunk, q);
+				IOUtils.writeInt(op == SUM ? a + b : (op == MIN ? Math.min(a, b) : Math.max(a, b)), value, p);
+			}
+			break;
+		case LONG:
+			for (int q = 0; q < chunk.length; q += IOUtils.LONG_BYTES, p += IOUtils.LONG_BYTES) {
+				final long a = IOUtils.readLong(value, p), b = IOUtils.readLong(chunk, q);
+				IOUtils.writeLong(op == SUM ? a + b : (op == MIN ? Math.min(a, b) : Math.max(a, b)), value, p);
+			}
+			break;
+		case FLOAT:
+			for (int q = 0; q < chunk.length; q += IOUtils.FLOAT_BYTES, p += IOUtils.FLOAT_BYTES) {
+				final float a = IOUtils.readFloat(value, p), b = IOUtils.readFloat(chunk, q);
+				IOUtils.writeFloat(op == SUM ? a + b : (op == MIN ? Math.min(a, b) : Math.max(a, b)), value, p);
+			}
+			break;
+		case DOUBLE:
+			for (int q = 0; q < chunk.length; q += IOUtils.DOUBLE_BYTES, p += IOUtils.DOUBLE_BYTES) {
+				final double a = IOUtils.readDouble(value, p), b = IOUtils.readDouble(chunk, q);
+				IOUtils.writeDouble(op == SUM ? a + b : (op == MIN ? Math.min(a, b) : Math.max(a, b)), value, p);
+			}
+			break;
+		}
+	}
+
+	/** Position of the first byte of a chunk in the value. */
+	private int chunkStart(int c) {
+		return IOUtils.LENGTH_BYTES + (int) ((long) elements * c / poolSize) * elementBytes(type);
+	}
+
+	private void sendChunk(int c) {
+		final int start = chunkStart(c);
+		final int end = chunkStart(c + 1);
+		if (Config.FINEDEBUG) {
+			logger.debug(loggerPrefix + "Sending chunk " + c + " in step " + step + " of all-reduce " + initialized);
+		}
+		if (sender != null) {
+			sender.sendChunk(initialized, step, value, start, end - start);
+		} else {
+			Runtime.getCommunication().sendAllReduceChunk(issuer.getOwner(), issuer.getId(), initialized, step,
+					value, start, end - start);
+		}
+	}
+
+	private void setDone() {
+		done++;
+		if (Config.FINEDEBUG) {
+			logger.debug(loggerPrefix + "All-reduce " + done + " done with result " + StringUtils.print(result));
+		}
+	}
+
+	public byte[] result() {
+		return result;
+	}
+
+	public int initialized() {
+		return initialized;
+	}
+
+	public int done() {
+		return done;
+	}
+
+	public boolean isDone() {
+		return done >= initialized;
+	}
+
+	private void store(int allReduce, int step, byte[] chunk) {
+		if (Config.FINEDEBUG) {
+			logger.debug(loggerPrefix + "Storing chunk of step " + step + " of all-reduce " + allReduce
+					+ " since current all-reduce is " + initialized + " in step " + this.step);
+		}
+		stored.add(new Object[] { allReduce, step, chunk });
+	}
+
+	/** Consumes stored chunks that became usable. */
+	public boolean progress() {
+		boolean progressed = false;
+		boolean found = true;
+		while (found && !isDone()) {
+			found = false;
+			for (Object[] chunk : stored) {
+				if ((Integer) chunk[0] == initialized && (Integer) chunk[1] == step) {
+					stored.remove(chunk);
+					combine((byte[]) chunk[2]);
+					progressed = found = true;
+					break;
+				}
+			}
+		}
+		return progressed;
+	}
+
+	public String toString() {
+		return "AllReduce(initialized=" + initialized + ",done=" + done + ",step=" + step + ",stored="
+				+ stored.size() + ")";
+	}
+
+}
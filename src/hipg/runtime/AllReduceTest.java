@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package hipg.runtime;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import myutils.IOUtils;
+
+import org.junit.Test;
+
+public class AllReduceTest {
+
+	/** A worker of a simulated pool: chunks go through a loopback transport and are consumed by the worker thread. */
+	private static final class Worker extends Synchronizer implements Transport.Receiver, AllReduce.ChunkSender {
+		private final int rank, poolSize;
+		private final LoopbackTransport transport;
+		private final AllReduce allReduce;
+		private final LinkedBlockingQueue<byte[]> chunks = new LinkedBlockingQueue<byte[]>();
+		private byte op;
+		private long[] contribution;
+
+		Worker(final String pool, final int rank, final int poolSize) {
+			this.rank = rank;
+			this.poolSize = poolSize;
+			this.transport = new LoopbackTransport(pool, rank, poolSize);
+			this.allReduce = new AllReduce(this, rank == 0, rank, poolSize, transport.getName(), this);
+		}
+
+		public void run() {
+		}
+
+		/** Combines the reduced value with the contribution of this worker. */
+		public byte[] hipg_reduce(final short reduceMethodId, final byte[] param) {
+			final long[] value = IOUtils.readLongArray(param, 0);
+			for (int i = 0; i < value.length; i++) {
+				value[i] = combine(op, value[i], contribution[i]);
+			}
+			IOUtils.writeLongArray(value, param, 0);
+			return param;
+		}
+
+		public void received(final int size, final Transport.Input input) throws IOException {
+			final byte[] chunk = new byte[size];
+			input.read(chunk, 0, size);
+			chunks.add(chunk);
+		}
+
+		public void sendChunk(final int allReduce, final int step, final byte[] value, final int offset,
+				final int length) {
+			final byte[] chunk = new byte[IOUtils.INT_BYTES * 2 + length];
+			IOUtils.writeInt(allReduce, chunk, 0);
+			IOUtils.writeInt(step, chunk, IOUtils.INT_BYTES);
+			System.arraycopy(value, offset, chunk, IOUtils.INT_BYTES * 2, length);
+			try {
+				transport.send((rank + 1) % poolSize, chunk, 0, chunk.length);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		long[] allReduce(final byte op, final long[] initial, final long[] contribution) throws InterruptedException {
+			this.op = op;
+			this.contribution = contribution;
+			final byte[] initialValue = new byte[IOUtils.bytesLongArray(initial.length)];
+			IOUtils.writeLongArray(initial, initialValue, 0);
+			allReduce.set((short) 0, AllReduce.LONG, op, initialValue);
+			allReduce.init();
+			while (!allReduce.isDone()) {
+				final byte[] chunk = chunks.poll(10, TimeUnit.SECONDS);
+				if (chunk == null) {
+					throw new RuntimeException("All-reduce stuck at " + rank + ": " + allReduce);
+				}
+				allReduce.received(IOUtils.readInt(chunk, 0), IOUtils.readInt(chunk, IOUtils.INT_BYTES),
+						Arrays.copyOfRange(chunk, IOUtils.INT_BYTES * 2, chunk.length));
+			}
+			return IOUtils.readLongArray(allReduce.result(), 0);
+		}
+	}
+
+	private static long combine(final byte op, final long a, final long b) {
+		return op == AllReduce.SUM ? a + b : (op == AllReduce.MIN ? Math.min(a, b) : Math.max(a, b));
+	}
+
+	/** Runs the given all-reduces back-to-back in a pool and checks the results of all workers. */
+	private static void check(final String pool, final int poolSize, final byte[] ops, final int[] lengths)
+			throws Exception {
+		final Random random = new Random(pool.hashCode());
+		final long[][] initial = new long[ops.length][];
+		final long[][][] contributions = new long[ops.length][poolSize][];
+		final long[][] expected = new long[ops.length][];
+		for (int k = 0; k < ops.length; k++) {
+			initial[k] = new long[lengths[k]];
+			expected[k] = new long[lengths[k]];
+			for (int i = 0; i < lengths[k]; i++) {
+				expected[k][i] = initial[k][i] = random.nextInt(1000) - 500;
+			}
+			for (int r = 0; r < poolSize; r++) {
+				contributions[k][r] = new long[lengths[k]];
+				for (int i = 0; i < lengths[k]; i++) {
+					contributions[k][r][i] = random.nextInt(1000) - 500;
+					expected[k][i] = combine(ops[k], expected[k][i], contributions[k][r][i]);
+				}
+			}
+		}
+
+		final long[][][] results = new long[poolSize][ops.length][];
+		final Throwable[] errors = new Throwable[poolSize];
+		final Thread[] threads = new Thread[poolSize];
+		for (int r = 0; r < poolSize; r++) {
+			final int rank = r;
+			threads[r] = new Thread() {
+				public void run() {
+					final Worker worker = new Worker(pool, rank, poolSize);
+					try {
+						worker.transport.start(worker);
+						worker.transport.enableReceiving();
+						for (int k = 0; k < ops.length; k++) {
+							results[rank][k] = worker.allReduce(ops[k], initial[k], contributions[k][rank]);
+						}
+					} catch (Throwable t) {
+						errors[rank] = t;
+					} finally {
+						worker.transport.close();
+					}
+				}
+			};
+			threads[r].start();
+		}
+		for (int r = 0; r < poolSize; r++) {
+			threads[r].join();
+			if (errors[r] != null) {
+				throw new RuntimeException("Worker " + r + " failed", errors[r]);
+			}
+		}
+		for (int r = 0; r < poolSize; r++) {
+			for (int k = 0; k < ops.length; k++) {
+				assertArrayEquals("all-reduce " + k + " at " + r, expected[k], results[r][k]);
+			}
+		}
+	}
+
+	@Test
+	public void testOperations() throws Exception {
+		final byte[] ops = { AllReduce.SUM, AllReduce.MIN, AllReduce.MAX };
+		check("allReduceOps", 3, ops, new int[] { 30, 30, 30 });
+	}
+
+	@Test
+	public void testUnevenLengths() throws Exception {
+		final byte[] ops = { AllReduce.SUM, AllReduce.MIN, AllReduce.MAX, AllReduce.SUM };
+		check("allReduceUneven", 4, ops, new int[] { 1001, 7, 13, 10 });
+	}
+
+	@Test
+	public void testShorterThanPool() throws Exception {
+		final byte[] ops = { AllReduce.SUM, AllReduce.MIN, AllReduce.MAX };
+		check("allReduceShort", 5, ops, new int[] { 3, 1, 4 });
+	}
+
+	@Test
+	public void testBackToBack() throws Exception {
+		final byte[] ops = new byte[20];
+		final int[] lengths = new int[ops.length];
+		for (int k = 0; k < ops.length; k++) {
+			ops[k] = (k % 3 == 0 ? AllReduce.SUM : (k % 3 == 1 ? AllReduce.MIN : AllReduce.MAX));
+			lengths[k] = 1 + (k * 37) % 50;
+		}
+		check("allReduceBackToBack", 3, ops, lengths);
+		check("allReduceBackToBack2", 2, ops, lengths);
+	}
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package hipg.runtime;
+
+import hipg.Config;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import myutils.IOUtils;
+
+/**
+ * Compression of whole flushed blocks. A compressed block starts with the {@link FastMessage#COMPRESSED} opcode and
+ * the length of the original block, followed by the compressed data. Blocks that do not compress are sent as they
+ * are. Instances are not thread-safe.
+ */
+final class BlockCompression {
+
+	/** Length of the header of a compressed block. */
+	static final int HEADER_BYTES = IOUtils.INT_BYTES * 2;
+
+	/** If blocks are compressed (set with hipg.compression). */
+	static final boolean ENABLED = checkCodec();
+
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private final Inflater inflater = new Inflater();
+	private byte[] scratch = new byte[0];
+
+	private static boolean checkCodec() {
+		if ("none".equals(Config.COMPRESSION)) {
+			return false;
+		} else if ("deflate".equals(Config.COMPRESSION)) {
+			return true;
+		}
+		throw new RuntimeException("Unknown compression: " + Config.COMPRESSION);
+	}
+
+	/** Returns a scratch buffer of at least the given length. */
+	byte[] scratch(final int length) {
+		if (scratch.length < length) {
+			scratch = new byte[length];
+		}
+		return scratch;
+	}
+
+	/**
+	 * Compresses a block into the scratch buffer.
+	 * 
+	 * @return Length of the compressed block (with the header) or -1 if the block does not compress
+	 */
+	int compress(final byte[] buf, final int offset, final int length) {
+		final long start = (Config.STATISTICS ? System.nanoTime() : 0);
+		final byte[] compressed = scratch(length);
+		IOUtils.writeInt(FastMessage.COMPRESSED, compressed, 0);
+		IOUtils.writeInt(length, compressed, IOUtils.INT_BYTES);
+		deflater.reset();
+		deflater.setInput(buf, offset, length);
+		deflater.finish();
+		final int max = length - HEADER_BYTES;
+		int compressedLength = 0;
+		while (!deflater.finished() && compressedLength < max) {
+			compressedLength += deflater.deflate(compressed, HEADER_BYTES + compressedLength, max - compressedLength);
+		}
+		final int result = (deflater.finished() ? HEADER_BYTES + compressedLength : -1);
+		if (Config.STATISTICS) {
+			Statistics.compressedBlock(length, result < 0 ? length : result, System.nanoTime() - start);
+		}
+		return result;
+	}
+
+	/** Decompresses the data of a compressed block (without the header). */
+	void decompress(final byte[] compressed, final int offset, final int length, final byte[] buf,
+			final int position, final int originalLength) throws IOException {
+		final long start = (Config.STATISTICS ? System.nanoTime() : 0);
+		inflater.reset();
+		inflater.setInput(compressed, offset, length);
+		int decompressedLength = 0;
+		try {
+			while (decompressedLength < originalLength && !inflater.finished()) {
+				final int n = inflater.inflate(buf, position + decompressedLength, originalLength - decompressedLength);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				decompressedLength += n;
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt compressed block", e);
+		}
+		if (decompressedLength != originalLength) {
+			throw new IOException("Compressed block decompressed to " + decompressedLength + " instead of "
+					+ originalLength + " bytes");
+		}
+		if (Config.STATISTICS) {
+			Statistics.decompressedBlock(HEADER_BYTES + length, originalLength, System.nanoTime() - start);
+		}
+	}
+
+}
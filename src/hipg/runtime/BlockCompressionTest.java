@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+
+package hipg.runtime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import myutils.IOUtils;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BlockCompressionTest {
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		final byte[] block = new byte[10000];
+		for (int i = 0; i < block.length; i += IOUtils.INT_BYTES) {
+			IOUtils.writeInt(i % 17, block, i);
+		}
+		final BlockCompression compression = new BlockCompression();
+		final int compressedSize = compression.compress(block, 0, block.length);
+		assertTrue(compressedSize > 0 && compressedSize < block.length);
+		final byte[] compressed = compression.scratch(compressedSize);
+		assertEquals(FastMessage.COMPRESSED, IOUtils.readInt(compressed, 0));
+		assertEquals(block.length, IOUtils.readInt(compressed, IOUtils.INT_BYTES));
+		final byte[] decompressed = new byte[block.length + 3];
+		new BlockCompression().decompress(compressed, BlockCompression.HEADER_BYTES, compressedSize
+				- BlockCompression.HEADER_BYTES, decompressed, 3, block.length);
+		for (int i = 0; i < block.length; i++) {
+			assertEquals(block[i], decompressed[i + 3]);
+		}
+	}
+
+	@Test
+	public void testIncompressible() throws Exception {
+		final byte[] block = new byte[5000];
+		new Random(3).nextBytes(block);
+		final byte[] copy = block.clone();
+		assertEquals(-1, new BlockCompression().compress(block, 0, block.length));
+		assertArrayEquals(copy, block);
+	}
+
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package hipg.runtime;
+
+import java.nio.ByteBuffer;
+
+import myutils.IOUtils;
+
+/**
+ * Bulk codecs for arrays of primitive values passed to remote node methods. The layout is the same as that of
+ * {@link IOUtils} (the length, -1 for null, followed by big-endian elements), but the elements are copied with a
+ * single bulk operation on a {@link ByteBuffer} view of the message buffer instead of one call per element.
+ */
+public final class Codec {
+
+	private static final int NULL_LENGTH = -1;
+
+	private Codec() {
+	}
+
+	private static ByteBuffer view(final byte[] buf, final int position, final int length) {
+		return ByteBuffer.wrap(buf, position + IOUtils.LENGTH_BYTES, length);
+	}
+
+	/* byte[] */
+
+	public static void writeByteArray(final byte[] a, final byte[] buf, final int position) {
+		if (a == null) {
+			IOUtils.writeInt(NULL_LENGTH, buf, position);
+		} else {
+			IOUtils.writeInt(a.length, buf, position);
+			System.arraycopy(a, 0, buf, position + IOUtils.LENGTH_BYTES, a.length);
+		}
+	}
+
+	public static byte[] readByteArray(final byte[] buf, final int position) {
+		final int length = IOUtils.readInt(buf, position);
+		if (length < 0) {
+			return null;
+		}
+		final byte[] a = new byte[length];
+		System.arraycopy(buf, position + IOUtils.LENGTH_BYTES, a, 0, length);
+		return a;
+	}
+
+	/* short[] */
+
+	public static void writeShortArray(final short[] a, final byte[] buf, final int position) {
+		if (a == null) {
+			IOUtils.writeInt(NULL_LENGTH, buf, position);
+		} else {
+			IOUtils.writeInt(a.length, buf, position);
+			view(buf, position, a.length * IOUtils.SHORT_BYTES).asShortBuffer().put(a);
+		}
+	}
+
+	public static short[] readShortArray(final byte[] buf, final int position) {
+		final int length = IOUtils.readInt(buf, position);
+		if (length < 0) {
+			return null;
+		}
+		final short[] a = new short[length];
+		view(buf, position, length * IOUtils.SHORT_BYTES).asShortBuffer().get(a);
+		return a;
+	}
+
+	/* char[] */
+
+	public static void writeCharArray(final char[] a, final byte[] buf, final int position) {
+		if (a == null) {
+			IOUtils.writeInt(NULL_LENGTH, buf, position);
+		} else {
+			IOUtils.writeInt(a.length, buf, position);
+			view(buf, position, a.length * IOUtils.CHAR_BYTES).asCharBuffer().put(a);
+		}
+	}
+
+	public static char[] readCharArray(final byte[] buf, final int position) {
+		final int length = IOUtils.readInt(buf, position);
+		if (length < 0) {
+			return null;
+		}
+		final char[] a = new char[length];
+		view(buf, position, length * IOUtils.CHAR_BYTES).asCharBuffer().get(a);
+		return a;
+	}
+
+	/* int[] */
+
+	public static void writeIntArray(final int[] a, final byte[] buf, final int position) {
+		if (a == null) {
+			IOUtils.writeInt(NULL_LENGTH, buf, position);
+		} else {
+			IOUtils.writeInt(a.length, buf, position);
+			view(buf, position, a.length * IOUtils.INT_BYTES).asIntBuffer().put(a);
+		}
+	}
+
+	public static int[] readIntArray(final byte[] buf, final int position) {
+		final int length = IOUtils.readInt(buf, position);
+		if (length < 0) {
+			return null;
+		}
+		final int[] a = new int[length];
+		view(buf, position, length * IOUtils.INT_BYTES).asIntBuffer().get(a);
+		return a;
+	}
+
+	/* long[] */
+
+	public static void writeLongArray(final long[] a, final byte[] buf, final int position) {
+		if (a == null) {
+			IOUtils.writeInt(NULL_LENGTH, buf, position);
+		} else {
+			IOUtils.writeInt(a.length, buf, position);
+			view(buf, position, a.length * IOUtils.LONG_BYTES).asLongBuffer().put(a);
+		}
+	}
+
+	public static long[] readLongArray(final byte[] buf, final int position) {
+		final int length = IOUtils.readInt(buf, position);
+		if (length < 0) {
+			return null;
+		}
+		final long[] a = new long[length];
+		view(buf, position, length * IOUtils.LONG_BYTES).asLongBuffer().get(a);
+		return a;
+	}
+
+	/* float[] */
+
+	public static void writeFloatArray(final float[] a, final byte[] buf, final int position) {
+		if (a == null) {
+			IOUtils.writeInt(NULL_LENGTH, buf, position);
+		} else {
+			IOUtils.writeInt(a.length, buf, position);
+			view(buf, position, a.length * IOUtils.FLOAT_BYTES).asFloatBuffer().put(a);
+		}
+	}
+
+	public static float[] readFloatArray(final byte[] buf, final int position) {
+		final int length = IOUtils.readInt(buf, position);
+		if (length < 0) {
+			return null;
+		}
+		final float[] a = new float[length];
+		view(buf, position, length * IOUtils.FLOAT_BYTES).asFloatBuffer().get(a);
+		return a;
+	}
+
+	/* double[] */
+
+	public static void writeDoubleArray(final double[] a, final byte[] buf, final int position) {
+		if (a == null) {
+			IOUtils.writeInt(NULL_LENGTH, buf, position);
+		} else {
+			IOUtils.writeInt(a.length, buf, position);
+			view(buf, position, a.length * IOUtils.DOUBLE_BYTES).asDoubleBuffer().put(a);
+		}
+	}
+
+	public static double[] readDoubleArray(final byte[] buf, final int position) {
+		final int length = IOUtils.readInt(buf, position);
+		if (length < 0) {
+			return null;
+		}
+		final double[] a = new double[length];
+		view(buf, position, length * IOUtils.DOUBLE_BYTES).asDoubleBuffer().get(a);
+		return a;
+	}
+
+}
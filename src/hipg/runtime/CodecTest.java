@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+
+package hipg.runtime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import myutils.IOUtils;
+
+import org.junit.Test;
+
+public class CodecTest {
+
+	private static final int OFFSET = 3;
+
+	@Test
+	public void testIntArray() {
+		final int[] a = new int[] { 0, 1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE, 123456789 };
+		final byte[] expected = new byte[64];
+		final byte[] buf = new byte[64];
+		IOUtils.writeIntArray(a, expected, OFFSET);
+		Codec.writeIntArray(a, buf, OFFSET);
+		assertArrayEquals(expected, buf);
+		assertArrayEquals(a, Codec.readIntArray(expected, OFFSET));
+	}
+
+	@Test
+	public void testLongArray() {
+		final long[] a = new long[] { 0, -1, Long.MAX_VALUE, Long.MIN_VALUE, 1234567890123L };
+		final byte[] expected = new byte[64];
+		final byte[] buf = new byte[64];
+		IOUtils.writeLongArray(a, expected, OFFSET);
+		Codec.writeLongArray(a, buf, OFFSET);
+		assertArrayEquals(expected, buf);
+		assertArrayEquals(a, Codec.readLongArray(expected, OFFSET));
+	}
+
+	@Test
+	public void testDoubleArray() {
+		final double[] a = new double[] { 0.0, -1.5, Double.MAX_VALUE, Double.NaN, Double.NEGATIVE_INFINITY };
+		final byte[] expected = new byte[64];
+		final byte[] buf = new byte[64];
+		IOUtils.writeDoubleArray(a, expected, OFFSET);
+		Codec.writeDoubleArray(a, buf, OFFSET);
+		assertArrayEquals(expected, buf);
+		assertArrayEquals(a, Codec.readDoubleArray(expected, OFFSET), 0.0);
+	}
+
+	@Test
+	public void testSmallArrays() {
+		final short[] s = new short[] { 0, -1, Short.MAX_VALUE };
+		final char[] c = new char[] { 'a', Character.MAX_VALUE };
+		final float[] f = new float[] { 1.25f, -0.0f };
+		final byte[] b = new byte[] { 1, -2, 3 };
+		final byte[] expected = new byte[64];
+		final byte[] buf = new byte[64];
+		int position = OFFSET;
+		IOUtils.writeShortArray(s, expected, position);
+		Codec.writeShortArray(s, buf, position);
+		position += IOUtils.bytesShortArray(s);
+		IOUtils.writeCharArray(c, expected, position);
+		Codec.writeCharArray(c, buf, position);
+		position += IOUtils.bytesCharArray(c);
+		IOUtils.writeFloatArray(f, expected, position);
+		Codec.writeFloatArray(f, buf, position);
+		position += IOUtils.bytesFloatArray(f);
+		IOUtils.writeByteArray(b, expected, position);
+		Codec.writeByteArray(b, buf, position);
+		assertArrayEquals(expected, buf);
+
+		position = OFFSET;
+		assertArrayEquals(s, Codec.readShortArray(buf, position));
+		position += IOUtils.bytesShortArray(s);
+		assertArrayEquals(c, Codec.readCharArray(buf, position));
+		position += IOUtils.bytesCharArray(c);
+		assertArrayEquals(f, Codec.readFloatArray(buf, position), 0.0f);
+		position += IOUtils.bytesFloatArray(f);
+		assertArrayEquals(b, Codec.readByteArray(buf, position));
+	}
+
+	@Test
+	public void testNull() {
+		final byte[] expected = new byte[16];
+		final byte[] buf = new byte[16];
+		IOUtils.writeIntArray(null, expected, OFFSET);
+		Codec.writeIntArray(null, buf, OFFSET);
+		assertArrayEquals(expected, buf);
+		assertNull(Codec.readIntArray(buf, OFFSET));
+		assertNull(Codec.readDoubleArray(buf, OFFSET));
+	}
+
+}
@@ -19,21 +19,13 @@
 package hipg.runtime;
 
 import hipg.Config;
-import ibis.ipl.Ibis;
-import ibis.ipl.IbisCapabilities;
-import ibis.ipl.IbisCreationFailedException;
-import ibis.ipl.IbisFactory;
-import ibis.ipl.IbisIdentifier;
-import ibis.ipl.MessageUpcall;
-import ibis.ipl.PortType;
-import ibis.ipl.ReadMessage;
-import ibis.ipl.ReceivePort;
-import ibis.ipl.RegistryEventHandler;
-import ibis.ipl.SendPort;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import myutils.IOUtils;
 
@@ -46,46 +38,20 @@ import org.slf4j.LoggerFactory;
  * @author ela, ekr@cs.vu.nl
  * 
  */
-public final class Communication implements RegistryEventHandler, MessageUpcall {
+public final class Communication implements Transport.Receiver {
 	/** Logging facilities. */
 	private static final Logger logger = LoggerFactory.getLogger(Communication.class);
 	private final String loggerPrefix;
 
-	/** Ibis configuration. */
-	private static final IbisCapabilities ibisCapabilities = new IbisCapabilities(IbisCapabilities.ELECTIONS_STRICT,
-			IbisCapabilities.MEMBERSHIP_TOTALLY_ORDERED);
+	/** Transport moving the messages. */
+	private final Transport transport;
 
-	private static final PortType portType = new PortType(PortType.COMMUNICATION_RELIABLE,
-			PortType.CONNECTION_MANY_TO_ONE, Config.OBJECT_SERIALIZATION ? PortType.SERIALIZATION_OBJECT_IBIS
-					: PortType.SERIALIZATION_DATA, PortType.RECEIVE_AUTO_UPCALLS);
-
-	/** This ibis. */
-	private final Ibis ibis;
-
-	/** This ibis' identifier. */
-	private final IbisIdentifier identifier;
-
-	/** This ibis' name. */
+	/** This process' name. */
 	private final String name;
 
-	/** This ibis' rank. */
+	/** This process' rank. */
 	private final int rank;
 
-	/** This ibis's rank proposal, established during joining. */
-	private int rankProposal = -1;
-
-	/** Send ports. */
-	private final SendPort[] sendPorts = new SendPort[Config.POOLSIZE];
-
-	/** Receive ports. */
-	private final ReceivePort receivePort;
-
-	/** Pool of participating ibises. */
-	private final IbisIdentifier[] pool = new IbisIdentifier[Config.POOLSIZE];
-
-	/** Pool size (to add new ibises). */
-	private volatile int currentPoolSize;
-
 	/** Current send messages. */
 	private final VolatileMessage[] currentSendMessage = new VolatileMessage[Config.POOLSIZE];
 
@@ -96,6 +62,12 @@ public final class Communication implements RegistryEventHandler, MessageUpcall
 	@SuppressWarnings("unchecked")
 	private final BlockingQueue<FastMessage>[] fullMessagesToSend = (BlockingQueue<FastMessage>[]) new LinkedBlockingQueue[Config.POOLSIZE];
 
+	/**
+	 * Number of full messages waiting to be sent (used to trigger preemption). Counted before a message is queued, so
+	 * the Sender never decrements it below zero.
+	 */
+	private final AtomicInteger fullSendMessages = new AtomicInteger();
+
 	/** Full messages received. */
 	private final BlockingQueue<FastMessage> fullMessagesReceived = new LinkedBlockingQueue<FastMessage>();
 
@@ -108,29 +80,52 @@ public final class Communication implements RegistryEventHandler, MessageUpcall
 	/** Sender */
 	private final Sender sender;
 
-	/** Creates communication. */
-	public Communication() throws IbisCreationFailedException {
+	/** Shared-memory rings to and from processes on the same host (null for other processes). */
+	private final SharedMemoryRing[] outRings = new SharedMemoryRing[Config.POOLSIZE];
+	private final SharedMemoryRing[] inRings = new SharedMemoryRing[Config.POOLSIZE];
+
+	/** Receiver of messages sent through shared memory. */
+	private final SharedMemoryReceiver sharedMemoryReceiver;
+
+	/** Lock protecting the current receive message (written by upcalls and the shared-memory receiver). */
+	private final Object receiveLock = new Object();
+
+	/** Decompression of received blocks (or null if blocks are not compressed). */
+	private final BlockCompression compression = (BlockCompression.ENABLED ? new BlockCompression() : null);
+
+	/** Header of a received block, read to recognize compressed blocks. */
+	private final byte[] blockHeader = new byte[BlockCompression.HEADER_BYTES];
+
+	/** Worker parked while waiting for messages (or null if the worker is not parked). */
+	private volatile Thread parkedWorker = null;
+
+	/** Time of the last upcall (ns). */
+	private volatile long lastArrivalTime = 0;
+
+	/** Moving average of the time between two upcalls (ns). */
+	private volatile long avgInterArrivalTime = 0;
+
+	/** Creates communication over the configured transport. */
+	public Communication() throws IOException {
+		this(createTransport());
+	}
+
+	/** Creates communication over a given transport. */
+	public Communication(final Transport transport) throws IOException {
 		logger.debug("Creating communication");
+		final long start = System.nanoTime();
 
-		ibis = IbisFactory.createIbis(ibisCapabilities, this, portType);
-		identifier = ibis.identifier();
-		name = identifier.name();
-		loggerPrefix = "(" + name + ") ";
-		String rName = "to_" + name;
-		try {
-			receivePort = ibis.createReceivePort(portType, rName, this);
-		} catch (Throwable t) {
-			throw new RuntimeException("Could not create receivePort", t);
+		this.transport = transport;
+		transport.start(this);
+		if (Config.STATISTICS) {
+			Statistics.startedTransport(System.nanoTime() - start);
 		}
-		receivePort.enableConnections();
-		ibis.registry().enableEvents();
-		logger.debug(loggerPrefix + "Waiting for rank");
-		awaitRankProposal();
-		rank = rankProposal;
+		rank = transport.getRank();
+		name = transport.getName();
+		loggerPrefix = "(" + name + ") ";
 		logger.debug(loggerPrefix + "Got rank " + rank);
-		logger.debug(loggerPrefix + "Communication created");
 
-		awaitPool(Config.POOLSIZE);
+		final boolean sharedMemory = connectSharedMemory();
 		allocateBasicBuffers();
 		allocateAdditionalBuffers();
 		logger.debug(loggerPrefix + "Buffers initialized");
@@ -140,16 +135,29 @@ public final class Communication implements RegistryEventHandler, MessageUpcall
 		} else {
 			sender = null;
 		}
-		receivePort.enableMessageUpcalls();
+		if (sharedMemory) {
+			sharedMemoryReceiver = new SharedMemoryReceiver(this, inRings);
+			sharedMemoryReceiver.start();
+		} else {
+			sharedMemoryReceiver = null;
+		}
+		transport.enableReceiving();
+		if (Config.STATISTICS) {
+			Statistics.startedCommunication(System.nanoTime() - start);
+		}
 		logger.debug(loggerPrefix + "Communication created");
 	}
 
-	public IbisIdentifier getIdentifier() {
-		return identifier;
-	}
-
-	private IbisIdentifier getIdentifier(final int owner) {
-		return pool[owner];
+	/** Creates the transport specified by hipg.transport. */
+	private static Transport createTransport() throws IOException {
+		if ("ibis".equals(Config.TRANSPORT)) {
+			return new IbisTransport();
+		} else if ("nio".equals(Config.TRANSPORT)) {
+			return new NioTransport(Config.HOST_FILE);
+		} else if ("loopback".equals(Config.TRANSPORT)) {
+			return new LoopbackTransport("hipg", Config.RANK < 0 ? 0 : Config.RANK, Config.POOLSIZE);
+		}
+		throw new RuntimeException("Unknown transport: " + Config.TRANSPORT);
 	}
 
 	public String getName() {
@@ -164,8 +172,9 @@ public final class Communication implements RegistryEventHandler, MessageUpcall
 		return Config.POOLSIZE;
 	}
 
-	private final FastMessage getMessage(final int rank) {
-		return currentSendMessage[rank].message;
+	private final FastMessage getMessage(final int dest) {
+		final FastMessage message = currentSendMessage[dest].message;
+		return (message == null ? getFirstSendMessage(dest) : message);
 	}
 
 	/** Returns new send buffer. */
@@ -212,8 +221,26 @@ public final class Communication implements RegistryEventHandler, MessageUpcall
 		return new FastMessage(minCapacity);
 	}
 
+	/** Retrieve or create the first message to a destination (when send buffers are allocated lazily). */
+	private FastMessage getFirstSendMessage(final int dest) {
+		final FastMessage freeMessage = getFreeSendMessage(0);
+		freeMessage.set(transport, dest, outRings[dest]);
+		currentSendMessage[dest].message = freeMessage;
+		return freeMessage;
+	}
+
 	/** Retrieve or create a new message that has enough space. Returns the old message. */
 	private FastMessage getNewSendMessage(final int dest, final int length, FastMessage oldMessage) {
+		final FastMessage freeMessage = getFreeSendMessage(length);
+		freeMessage.set(transport, dest, outRings[dest]);
+		currentSendMessage[dest].message = freeMessage;
+		fullSendMessages.incrementAndGet();
+		fullMessagesToSend[dest].offer(oldMessage);
+		return freeMessage;
+	}
+
+	/** Retrieve or create a free send message that has enough space. */
+	private FastMessage getFreeSendMessage(final int length) {
 		// Get free send message.
 		FastMessage freeMessage = freeMessagesToSend.poll();
 		if (freeMessage == null) {
@@ -226,19 +253,23 @@ public final class Communication implements RegistryEventHandler, MessageUpcall
 			freeMessagesToSend.add(freeMessage);
 			freeMessage = getNewSpecialSendMessage(length + 1);
 		}
-		freeMessage.set(sendPorts[dest]);
-		currentSendMessage[dest].message = freeMessage;
-		fullMessagesToSend[dest].offer(oldMessage);
 		return freeMessage;
 	}
 
-	/** Allocates all necessary send and receive buffers (the current messages and outgoing buffers). */
+	/**
+	 * Allocates all necessary send and receive buffers (the current messages and outgoing buffers). With lazy buffers,
+	 * the current send message to a destination is allocated when the first message is sent to it.
+	 */
 	private void allocateBasicBuffers() {
 		if (Config.POOLSIZE > 1) {
 			for (int dest = 0; dest < Config.POOLSIZE; dest++) {
 				if (dest != rank) {
-					currentSendMessage[dest] = new VolatileMessage(allocateNewSendBuffer());
-					currentSendMessage[dest].message.set(sendPorts[dest]);
+					if (Config.LAZY_BUFFERS) {
+						currentSendMessage[dest] = new VolatileMessage(null);
+					} else {
+						currentSendMessage[dest] = new VolatileMessage(allocateNewSendBuffer());
+						currentSendMessage[dest].message.set(transport, dest, outRings[dest]);
+					}
 					fullMessagesToSend[dest] = new LinkedBlockingQueue<FastMessage>();
 				}
 			}
@@ -258,12 +289,63 @@ public final class Communication implements RegistryEventHandler, MessageUpcall
 		}
 	}
 
-	/** Handles an upcall. */
-	public void upcall(final ReadMessage readMessage) throws IOException, ClassNotFoundException {
-		final int size = readMessage.readInt();
+	/** Receives a message from the transport or from a process on the same host. */
+	public void received(final int size, final Transport.Input input) throws IOException {
 		if (Config.STATISTICS) {
 			Statistics.upcallReceived(size);
 		}
+		arrived();
+		synchronized (receiveLock) {
+			if (compression != null && size >= BlockCompression.HEADER_BYTES) {
+				receivedBlock(size, input);
+			} else {
+				final int position = startReceive(size);
+				currentReceiveMessage.append(position, size, input);
+			}
+		}
+		if (Config.STATISTICS) {
+			Statistics.upcallProcessed(IOUtils.INT_BYTES + size);
+		}
+		wakeUpWorker();
+	}
+
+	/** Receives a block that may be compressed. */
+	private void receivedBlock(final int size, final Transport.Input input) throws IOException {
+		input.read(blockHeader, 0, IOUtils.INT_BYTES);
+		if (IOUtils.readInt(blockHeader, 0) == FastMessage.COMPRESSED) {
+			input.read(blockHeader, IOUtils.INT_BYTES, IOUtils.INT_BYTES);
+			final int originalSize = IOUtils.readInt(blockHeader, IOUtils.INT_BYTES);
+			final int compressedSize = size - BlockCompression.HEADER_BYTES;
+			final byte[] compressed = compression.scratch(compressedSize);
+			input.read(compressed, 0, compressedSize);
+			final int position = startReceive(originalSize);
+			compression.decompress(compressed, 0, compressedSize, currentReceiveMessage.buf, position, originalSize);
+			currentReceiveMessage.commitWrite(position + originalSize);
+		} else {
+			final int position = startReceive(size);
+			System.arraycopy(blockHeader, 0, currentReceiveMessage.buf, position, IOUtils.INT_BYTES);
+			currentReceiveMessage.append(position + IOUtils.INT_BYTES, size - IOUtils.INT_BYTES, input);
+		}
+	}
+
+	/** Records the arrival time of a message. */
+	private void arrived() {
+		if (Config.PARK_WHEN_IDLE) {
+			final long now = System.nanoTime();
+			if (lastArrivalTime > 0) {
+				final long interArrivalTime = now - lastArrivalTime;
+				avgInterArrivalTime = (avgInterArrivalTime == 0 ? interArrivalTime
+						: (7 * avgInterArrivalTime + interArrivalTime) / 8);
+			}
+			lastArrivalTime = now;
+		}
+	}
+
+	/**
+	 * Reserves space for a received message of a given size, making a new buffer current if necessary. Returns the
+	 * position in the current receive message.
+	 */
+	private int startReceive(final int size) {
 		assert (size > 0);
 		int position = currentReceiveMessage.startContigWrite(size);
 		if (position < 0) {
@@ -288,7 +370,7 @@ public final class Communication implements RegistryEventHandler, MessageUpcall
 				// (for example a reduce message). Return the message back to free messages.
 				freeMessagesToReceive.add(freeMessage);
 				freeMessage = getNewSpecialReceiveMessage(size + 1);
-				position = currentReceiveMessage.startContigWrite(size);
+				position = freeMessage.startContigWrite(size);
 				if (Config.STATISTICS) {
 					Statistics.upcallGoesToSpecialBuffer();
 				}
@@ -297,10 +379,47 @@ public final class Communication implements RegistryEventHandler, MessageUpcall
 			currentReceiveMessage = freeMessage;
 		}
 		assert (position >= 0);
-		currentReceiveMessage.append(position, size, readMessage);
-		if (Config.STATISTICS) {
-			Statistics.upcallProcessed(readMessage.bytesRead());
+		return position;
+	}
+
+	/** Wakes up the worker, if it is parked waiting for messages. */
+	private void wakeUpWorker() {
+		final Thread worker = parkedWorker;
+		if (worker != null) {
+			LockSupport.unpark(worker);
+		}
+	}
+
+	/**
+	 * Checks if the next message is overdue, that is if more time has passed since the last upcall than the average
+	 * time between upcalls. If so, it is not worth to spin waiting for it.
+	 */
+	boolean nextMessageOverdue() {
+		final long avg = avgInterArrivalTime;
+		return avg == 0 || System.nanoTime() - lastArrivalTime > avg;
+	}
+
+	/** Checks if there are any received messages waiting to be processed. */
+	boolean hasReceivedMessages() {
+		return !fullMessagesReceived.isEmpty() || currentReceiveMessage.sizeInReader() > 0;
+	}
+
+	/**
+	 * Parks the calling (worker) thread until a message arrives, a flush completes or the given time passes.
+	 * 
+	 * @return Time spent parked (ns)
+	 */
+	long parkWorker(final long maxNanos) {
+		final long start = System.nanoTime();
+		parkedWorker = Thread.currentThread();
+		try {
+			if (!hasReceivedMessages()) {
+				LockSupport.parkNanos(this, maxNanos);
+			}
+		} finally {
+			parkedWorker = null;
 		}
+		return System.nanoTime() - start;
 	}
 
 	/** Flushes all "big" messages. */
@@ -331,13 +450,23 @@ public final class Communication implements RegistryEventHandler, MessageUpcall
 		if (fullMessagesToSend == null || fullMessagesToSend[dest] == null) {
 			return null;
 		}
-		return fullMessagesToSend[dest].poll();
+		final FastMessage message = fullMessagesToSend[dest].poll();
+		if (message != null) {
+			fullSendMessages.decrementAndGet();
+		}
+		return message;
+	}
+
+	public int getFullSendMessages() {
+		return fullSendMessages.get();
 	}
 
 	public FastMessage getCurrentSendMessage(final int dest) {
-		if (currentSendMessage != null && currentSendMessage[dest] != null
-				&& currentSendMessage[dest].message.sizeInWriter() > 0) {
-			return currentSendMessage[dest].message;
+		if (currentSendMessage != null && currentSendMessage[dest] != null) {
+			final FastMessage message = currentSendMessage[dest].message;
+			if (message != null && message.sizeInWriter() > 0) {
+				return message;
+			}
 		}
 		return null;
 	}
@@ -383,132 +512,81 @@ public final class Communication implements RegistryEventHandler, MessageUpcall
 		return rank + 1;
 	}
 
-	/** Blocks until the rank is proposed. */
-	private void awaitRankProposal() {
-		if (rankProposal < 0) {
-			logger.debug(loggerPrefix + "Awaiting rank proposal");
-			while (rankProposal < 0) {
-				try {
-					Thread.sleep(200);
-				} catch (InterruptedException e) {
-				}
-			}
-			logger.debug(loggerPrefix + "Got rank " + rankProposal);
+	/** Blocks until the pool is of the specified size (the transport establishes the whole pool when it starts). */
+	public void awaitPool(final int size) {
+		if (size > Config.POOLSIZE) {
+			throw new RuntimeException("Pool of size " + size + " will never be reached, the pool size is "
+					+ Config.POOLSIZE);
 		}
 	}
 
-	/** Blocks until the pool is of the specified size. */
-	public void awaitPool(final int size) {
-		logger.debug(loggerPrefix + "Awaiting pool of size " + size);
-		synchronized (this) {
-			while (currentPoolSize < size) {
+	/**
+	 * Connects to the processes on the same host through shared-memory rings. Messages to other processes still go
+	 * through the transport. Returns if any rings were opened.
+	 */
+	private boolean connectSharedMemory() {
+		if (!Config.SHARED_MEMORY || Config.POOLSIZE <= 1) {
+			return false;
+		}
+		if (Config.RUN_ID == null) {
+			logger.info(loggerPrefix + "Not using shared memory: hipg.runId not set");
+			return false;
+		}
+		final File dir = new File(Config.SHARED_MEMORY_DIR);
+		if (!dir.isDirectory() || !dir.canWrite()) {
+			logger.info(loggerPrefix + "Not using shared memory: cannot write to " + dir);
+			return false;
+		}
+		// create all outgoing rings first, as opening an incoming ring waits for its writer
+		boolean connected = false;
+		for (int dest = 0; dest < Config.POOLSIZE; dest++) {
+			if (dest != rank && transport.isLocal(dest)) {
 				try {
-					wait();
-				} catch (InterruptedException e) {
+					outRings[dest] = SharedMemoryRing.create(getRingFile(dir, rank, dest),
+							Config.SHARED_MEMORY_RING_SIZE, getRingToken(rank, dest));
+				} catch (IOException e) {
+					throw new RuntimeException("Could not create shared memory to " + transport.getName(dest), e);
 				}
+				connected = true;
 			}
 		}
-		logger.debug(loggerPrefix + "Pool size of " + size + " reached");
-	}
-
-	/** Handles an election result. */
-	public void electionResult(String election, IbisIdentifier result) {
-		assert (false);
-	}
-
-	/** Connects this Ibis to all other Ibises. */
-	private void connect(final IbisIdentifier joiningIbis, final int joiningRank, final int maxAttempts) {
-		final String name = joiningIbis.name();
-		boolean success = false;
-		int attempts = maxAttempts;
-		Throwable lastThrown = null;
-		do {
-			try {
-				attempts--;
-				final String sName = "to_" + name;
-				final SendPort sp = ibis.createSendPort(portType);
-				logger.debug(loggerPrefix + "Connecting to " + name);
-				sp.connect(joiningIbis, sName, 200, true);
-				logger.debug(loggerPrefix + "Connected to " + name);
-				pool[joiningRank] = joiningIbis;
-				sendPorts[joiningRank] = sp;
-				success = true;
-				if (Config.STATISTICS) {
-					Statistics.openedConnection();
+		for (int dest = 0; dest < Config.POOLSIZE; dest++) {
+			if (outRings[dest] != null) {
+				try {
+					inRings[dest] = SharedMemoryRing.open(getRingFile(dir, dest, rank),
+							Config.SHARED_MEMORY_RING_SIZE, getRingToken(dest, rank));
+				} catch (IOException e) {
+					throw new RuntimeException("Could not open shared memory from " + transport.getName(dest), e);
 				}
-			} catch (Throwable t) {
+				logger.debug(loggerPrefix + "Connected to " + transport.getName(dest) + " through shared memory");
 				if (Config.STATISTICS) {
-					Statistics.openeConnectionsFailed();
-				}
-				lastThrown = t;
-				try {
-					Thread.sleep(100);
-				} catch (InterruptedException e) {
+					Statistics.openedSharedMemoryConnection();
 				}
 			}
-		} while ((maxAttempts == 0 || attempts < maxAttempts) && !success);
-		if (!success) {
-			logger.error(loggerPrefix + "Could not connect to newly joined " + name + ": " + lastThrown.getMessage(),
-					lastThrown);
-			Runtime.getRuntime().abort("Could not connect to " + name);
-		}
-	}
-
-	/** Handles a joined Ibis. */
-	public void joined(IbisIdentifier joiningIbis) {
-		final boolean itsme = (joiningIbis.compareTo(ibis.identifier()) == 0);
-		final int joiningRank;
-		synchronized (this) {
-			joiningRank = currentPoolSize;
-		}
-		logger.debug(loggerPrefix + " Joined by " + joiningIbis + (itsme ? " (It's me)" : ""));
-		if (!itsme) {
-			connect(joiningIbis, joiningRank, 10);
-		}
-		synchronized (this) {
-			currentPoolSize++;
-			if (itsme) {
-				rankProposal = joiningRank;
-			}
-			notify();
 		}
+		return connected;
 	}
 
-	/** Handles a leaving Ibis. */
-	synchronized public void left(IbisIdentifier leavingIbis) {
-		logger.debug(loggerPrefix + "Ibis " + leavingIbis + "left ");
-	}
-
-	/** Handles a dead Ibis. */
-	synchronized public void died(IbisIdentifier dyingIbis) {
-		logger.warn(loggerPrefix + "Ibis " + dyingIbis + " died");
-	}
-
-	/** Handles a signal from an Ibis. */
-	public void gotSignal(String signal, IbisIdentifier signallingIbis) {
-		logger.error(loggerPrefix + "Unexpected signal " + signal + " from " + signallingIbis);
+	/** Name of the ring between two processes, unique for this run. */
+	private File getRingFile(final File dir, final int from, final int to) {
+		return new File(dir, "hipg-" + Config.RUN_ID + "-" + transport.getName(from) + "-to-" + transport.getName(to));
 	}
 
-	/** Handles pool closed. */
-	public void poolClosed() {
-		logger.warn(loggerPrefix + "Pool closed");
-	}
-
-	/** Handles pool terminated. */
-	public void poolTerminated(IbisIdentifier signallingIbis) {
-		logger.warn(loggerPrefix + "Pool terminated, signalled by " + signallingIbis.name());
+	/** Token of the ring between two processes in this run, checked by the reader before it uses the ring. */
+	private static long getRingToken(final int from, final int to) {
+		final String id = Config.RUN_ID + "/" + from + "/" + to;
+		long token = 1125899906842597L;
+		for (int i = 0; i < id.length(); i++) {
+			token = 31 * token + id.charAt(i);
+		}
+		return token;
 	}
 
-	/** Handles not being able to communicate with an Ibis. */
+	/** Handles not being able to communicate with a process. */
 	void handleCouldNotCommunicate(final int dest, Throwable t) {
-		IbisIdentifier id = getIdentifier(dest);
-		logger.warn(loggerPrefix + "Could not communicate with " + id + ": " + t, t);
+		logger.warn(loggerPrefix + "Could not communicate with " + transport.getName(dest) + ": " + t, t);
 		t.printStackTrace();
-		try {
-			ibis.registry().maybeDead(id);
-		} catch (IOException e) {
-			logger.warn(loggerPrefix + "Failed " + "maybeDead: " + e.getMessage(), e);
-		}
+		transport.maybeDead(dest);
 	}
 
 	/** Closes this communication. */
@@ -521,13 +599,16 @@ public final class Communication implements RegistryEventHandler, MessageUpcall
 		} catch (Throwable t) {
 			logger.warn(loggerPrefix + "Could not close sender: " + t.getMessage());
 		}
-		if (ibis != null) {
-			try {
-				ibis.end();
-			} catch (Throwable e) {
-				logger.warn(loggerPrefix + "Could not close ibis: " + e.getMessage());
+		if (sharedMemoryReceiver != null) {
+			sharedMemoryReceiver.close();
+		}
+		for (int dest = 0; dest < Config.POOLSIZE; dest++) {
+			if (outRings[dest] != null) {
+				outRings[dest].close();
+				outRings[dest].delete();
 			}
 		}
+		transport.close();
 		logger.debug(loggerPrefix + "Communication closed");
 	}
 
@@ -635,6 +716,20 @@ public final class Communication implements RegistryEventHandler, MessageUpcall
 			}
 	}
 
+	void sendAllReduceChunk(final int issuerOwner, final int issuerId, final int allReduce, final int step,
+			final byte[] value, final int offset, final int chunkLength) {
+		final int length = IOUtils.INT_BYTES * 5 + IOUtils.bytesByteArray(chunkLength);
+		final int dest = nextRank();
+		FastMessage m = getMessage(dest);
+		int position = m.startContigWrite(length);
+		if (position < 0) {
+			m = getNewSendMessage(dest, length, m);
+			position = m.startContigWrite(length);
+			assert (position >= 0);
+		}
+		m.addAllReduceChunk(position, length, issuerOwner, issuerId, allReduce, step, value, offset, chunkLength);
+	}
+
 	void sendBarrierReduceToken(final int issuerOwner, final int issuerId, final int barrier, final int sum,
 			final int master) {
 		final int length = IOUtils.INT_BYTES * 6;
@@ -678,26 +773,21 @@ public final class Communication implements RegistryEventHandler, MessageUpcall
 		}
 	}
 
-	void sendNotification(final Synchronizer synchronizer, final short notificationMethodId, final byte[] value,
-			final int id) {
+	void sendNotification(final Synchronizer synchronizer, final int dest, final short notificationMethodId,
+			final byte[] value, final int id, final int issuer) {
 		final int length = IOUtils.INT_BYTES * 5 + IOUtils.SHORT_BYTES + IOUtils.bytesByteArray(value);
-		for (int dest = 0; dest < Config.POOLSIZE; dest++) {
-			if (dest != rank) {
-				FastMessage m = getMessage(dest);
-				int position = m.startContigWrite(length);
-				if (position < 0) {
-					m = getNewSendMessage(dest, length, m);
-					position = m.startContigWrite(length);
-					assert (position >= 0);
-				}
-				m.addNotificationToken(position, length, synchronizer, notificationMethodId, value, id,
-						Runtime.getRank());
-			}
+		FastMessage m = getMessage(dest);
+		int position = m.startContigWrite(length);
+		if (position < 0) {
+			m = getNewSendMessage(dest, length, m);
+			position = m.startContigWrite(length);
+			assert (position >= 0);
 		}
+		m.addNotificationToken(position, length, synchronizer, notificationMethodId, value, id, issuer);
 	}
 
-	void sendNotificationAck(final Synchronizer synchronizer, final int dest, final int id) {
-		final int length = IOUtils.INT_BYTES * 4;
+	void sendNotificationAck(final Synchronizer synchronizer, final int dest, final int id, final int issuer) {
+		final int length = IOUtils.INT_BYTES * 5;
 		FastMessage m = getMessage(dest);
 		int position = m.startContigWrite(length);
 		if (position < 0) {
@@ -705,7 +795,7 @@ public final class Communication implements RegistryEventHandler, MessageUpcall
 			position = m.startContigWrite(length);
 			assert (position >= 0);
 		}
-		m.addNotificationAckToken(position, length, synchronizer, id);
+		m.addNotificationAckToken(position, length, synchronizer, id, issuer);
 	}
 
 	void sendSynchronizerSpawnMessage(final int dest, final Synchronizer synchronizer) {
@@ -798,7 +888,9 @@ public final class Communication implements RegistryEventHandler, MessageUpcall
 		}
 		currentReceiveMessage.clear();
 		for (int i = 0; i < currentSendMessage.length; i++) {
-			currentSendMessage[i].message.clear();
+			if (currentSendMessage[i] != null && currentSendMessage[i].message != null) {
+				currentSendMessage[i].message.clear();
+			}
 		}
 	}
 
@@ -19,9 +19,6 @@
 package hipg.runtime;
 
 import hipg.Config;
-import ibis.ipl.ReadMessage;
-import ibis.ipl.SendPort;
-import ibis.ipl.WriteMessage;
 
 import java.io.IOException;
 
@@ -72,14 +69,52 @@ public final class FastMessage extends FastContigMessageQueue {
 	public static final int ADEL = -1017;
 	/** Opcode: test. */
 	public static final int TEST = -1018;
+	/** Opcode: synchronizer all-reduce chunk. */
+	public static final int ALLREDUCE = -1019;
+	/** Opcode: compressed block (handled on receipt, never dispatched). */
+	public static final int COMPRESSED = -1020;
+
+	/**
+	 * Opcode bits of a compact user message, which repeats the synchronizer, graph and method of the previous user
+	 * message (to an explicit node) in the same flushed buffer. The remaining bits hold the target node.
+	 */
+	public static final int USER_REPEAT = 0x80000000;
+	public static final int USER_REPEAT_MASK = 0xC0000000;
+	public static final int USER_REPEAT_MAX_TARGET = ~USER_REPEAT_MASK;
+
+	/** Length of a full user message header (to an explicit node). */
+	public static final int USER_HEADER_BYTES = 3 * IOUtils.INT_BYTES + 2 * IOUtils.SHORT_BYTES;
 
 	/** Opcode: synchronizer spawn (new synchronizer). */
 	public static final int SSPAWN = -2000;
 	/** Opcode: ambassador spawn. */
 	public static final int ASPAWN = -2001;
 
-	/** Message destination. */
-	private SendPort sp;
+	/** Transport and rank of the message destination. */
+	private Transport transport;
+	private int dest;
+
+	/** Message destination on the same host (or null). */
+	private SharedMemoryRing ring;
+
+	/**
+	 * Position and header of the last user message to an explicit node written since the message was set or last
+	 * flushed (or -1 if none).
+	 */
+	private int lastUserPosition = -1;
+	private int lastSynchOwner;
+	private int lastSynchId;
+	private short lastGraphId;
+	private short lastMethodId;
+
+	/** Compression of flushed blocks (shared by all messages, flushes are synchronized on it). */
+	private static final BlockCompression compression = (BlockCompression.ENABLED ? new BlockCompression() : null);
+
+	/**
+	 * Number of flushes of non-empty messages, used to detect that nothing was sent in between. Messages are flushed
+	 * only by the worker, through the Sender's synchRequest* methods.
+	 */
+	private static int flushes = 0;
 
 	/**
 	 * Creates a new message (allocates buffer).
@@ -91,8 +126,42 @@ public final class FastMessage extends FastContigMessageQueue {
 		}
 	}
 
-	public void set(SendPort sp) {
-		this.sp = sp;
+	public void set(Transport transport, int dest, SharedMemoryRing ring) {
+		this.transport = transport;
+		this.dest = dest;
+		this.ring = ring;
+		this.lastUserPosition = -1;
+	}
+
+	/**
+	 * Writes the header of a user message to an explicit node. If the previous user message in this buffer had the same
+	 * synchronizer, graph and method (and has not been flushed since), writes a compact header. The buffer is written
+	 * from a single thread (flushes included), so both messages end up in the same flushed block, unless the buffer
+	 * wrapped around in between, which is when the position decreases.
+	 * 
+	 * @return Length of the header
+	 */
+	public int writeExplicitUserMessage(final int position, final int synchOwner, final int synchId,
+			final short graphId, final short methodId, final int target) {
+		if (Config.COMPACT_USER_MESSAGES && lastUserPosition >= 0 && position > lastUserPosition
+				&& synchId == lastSynchId && synchOwner == lastSynchOwner && methodId == lastMethodId
+				&& graphId == lastGraphId && target >= 0 && target <= USER_REPEAT_MAX_TARGET) {
+			IOUtils.writeInt(USER_REPEAT | target, buf, position);
+			lastUserPosition = position;
+			if (Config.STATISTICS) {
+				Statistics.compactedUserMessage(USER_HEADER_BYTES - IOUtils.INT_BYTES);
+			}
+			return IOUtils.INT_BYTES;
+		}
+		IOUtils.write2Ints(synchOwner, synchId, buf, position);
+		IOUtils.write2Shorts(graphId, methodId, buf, position + (IOUtils.INT_BYTES << 1));
+		IOUtils.writeInt(target, buf, position + (IOUtils.INT_BYTES << 1) + (IOUtils.SHORT_BYTES << 1));
+		lastUserPosition = position;
+		lastSynchOwner = synchOwner;
+		lastSynchId = synchId;
+		lastGraphId = graphId;
+		lastMethodId = methodId;
+		return USER_HEADER_BYTES;
 	}
 
 	void addGlobalBarrierToken(final int position, final int length, final int barrier, final int sum, final int master) {
@@ -158,6 +227,18 @@ public final class FastMessage extends FastContigMessageQueue {
 		commitWrite(position + length);
 	}
 
+	void addAllReduceChunk(final int position, final int length, final int synchronizerOwner,
+			final int synchronizerId, final int allReduce, final int step, final byte[] value, final int offset,
+			final int chunkLength) {
+		if (Config.STATISTICS) {
+			Statistics.sendingReduceMessage(length);
+		}
+		IOUtils.write5Ints(ALLREDUCE, synchronizerOwner, synchronizerId, allReduce, step, buf, position);
+		IOUtils.writeByteArray(value, offset, chunkLength, buf, position + 5 * IOUtils.INT_BYTES);
+		assert (length == 5 * IOUtils.INT_BYTES + IOUtils.bytesByteArray(chunkLength));
+		commitWrite(position + length);
+	}
+
 	void addBarrierReduceToken(final int position, final int length, final int synchronizerOwner,
 			final int synchronizerId, final int barrier, final int sum, final int master) {
 		if (Config.STATISTICS) {
@@ -204,12 +285,14 @@ public final class FastMessage extends FastContigMessageQueue {
 		commitWrite(position + length);
 	}
 
-	void addNotificationAckToken(final int position, final int length, final Synchronizer synchronizer, final int id) {
+	void addNotificationAckToken(final int position, final int length, final Synchronizer synchronizer,
+			final int id, final int issuer) {
 		if (Config.STATISTICS) {
 			Statistics.sendingNotificationMessage(length);
 		}
-		IOUtils.write4Ints(NOTIFICATION_ACK, synchronizer.getOwner(), synchronizer.getId(), id, buf, position);
-		assert (length == 4 * IOUtils.INT_BYTES);
+		IOUtils.write5Ints(NOTIFICATION_ACK, synchronizer.getOwner(), synchronizer.getId(), id, issuer, buf,
+				position);
+		assert (length == 5 * IOUtils.INT_BYTES);
 		commitWrite(position + length);
 	}
 
@@ -281,7 +364,14 @@ public final class FastMessage extends FastContigMessageQueue {
 		commitWrite(position + length);
 	}
 
+	static int flushes() {
+		return flushes;
+	}
+
 	void flush() throws IOException {
+		if (sizeInReader() > 0) {
+			flushes++;
+		}
 		while (sizeInReader() > 0) {
 			final int size = availableContigRead();
 			if (size > 0) {
@@ -289,21 +379,37 @@ public final class FastMessage extends FastContigMessageQueue {
 					Statistics.startingFlush(size);
 				}
 				final int start = startContigRead();
-				final WriteMessage message = sp.newMessage();
-				message.writeInt(size);
-				message.writeArray(buf, start, size);
-				final long bytes = message.finish();
+				final long bytes;
+				if (ring != null) {
+					ring.write(buf, start, size);
+					bytes = IOUtils.INT_BYTES + size;
+				} else if (compression != null && size >= Config.COMPRESSION_THRESHOLD) {
+					bytes = sendCompressed(start, size);
+				} else {
+					bytes = transport.send(dest, buf, start, size);
+				}
 				commitRead(start + size);
 				if (Config.STATISTICS) {
 					Statistics.flushDone(bytes);
 				}
 			}
 		}
+		lastUserPosition = -1;
+	}
+
+	/** Sends a block compressed (or as it is, if it does not compress). */
+	private long sendCompressed(final int start, final int size) throws IOException {
+		synchronized (compression) {
+			final int compressedSize = compression.compress(buf, start, size);
+			if (compressedSize < 0) {
+				return transport.send(dest, buf, start, size);
+			}
+			return transport.send(dest, compression.scratch(compressedSize), 0, compressedSize);
+		}
 	}
 
-	public void append(final int position, final int addSize, ReadMessage readMessage) throws IOException,
-			ClassNotFoundException {
-		readMessage.readArray(buf, position, addSize);
+	public void append(final int position, final int addSize, Transport.Input input) throws IOException {
+		input.read(buf, position, addSize);
 		commitWrite(position + addSize);
 	}
 }
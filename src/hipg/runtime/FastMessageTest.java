@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+
+package hipg.runtime;
+
+import static org.junit.Assert.assertEquals;
+import myutils.IOUtils;
+
+import org.junit.Test;
+
+public class FastMessageTest {
+
+	@Test
+	public void testCompactUserMessages() throws Exception {
+		final FastMessage m = new FastMessage(1024);
+		m.set(null, 0, null);
+		int position = m.startContigWrite(64);
+		position += m.writeExplicitUserMessage(position, 1, 2, (short) 3, (short) 4, 5);
+		assertEquals(FastMessage.USER_HEADER_BYTES, position);
+		final int compact = position;
+		position += m.writeExplicitUserMessage(position, 1, 2, (short) 3, (short) 4, 6);
+		assertEquals(FastMessage.USER_HEADER_BYTES + IOUtils.INT_BYTES, position);
+		final int opcode = IOUtils.readInt(m.buf, compact);
+		assertEquals(FastMessage.USER_REPEAT, opcode & FastMessage.USER_REPEAT_MASK);
+		assertEquals(6, opcode & FastMessage.USER_REPEAT_MAX_TARGET);
+		position += m.writeExplicitUserMessage(position, 1, 2, (short) 3, (short) 7, 6);
+		assertEquals(2 * FastMessage.USER_HEADER_BYTES + IOUtils.INT_BYTES, position);
+		m.commitWrite(position);
+	}
+
+	@Test
+	public void testNoCompactAfterSet() throws Exception {
+		final FastMessage m = new FastMessage(1024);
+		m.set(null, 0, null);
+		int position = m.startContigWrite(64);
+		position += m.writeExplicitUserMessage(position, 1, 2, (short) 3, (short) 4, 5);
+		m.commitWrite(position);
+		m.set(null, 0, null);
+		position = m.startContigWrite(64);
+		assertEquals(FastMessage.USER_HEADER_BYTES,
+				m.writeExplicitUserMessage(position, 1, 2, (short) 3, (short) 4, 5));
+	}
+
+}
@@ -0,0 +1,298 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package hipg.runtime;
+
+import hipg.Config;
+import ibis.ipl.Ibis;
+import ibis.ipl.IbisCapabilities;
+import ibis.ipl.IbisFactory;
+import ibis.ipl.IbisIdentifier;
+import ibis.ipl.MessageUpcall;
+import ibis.ipl.PortType;
+import ibis.ipl.ReadMessage;
+import ibis.ipl.ReceivePort;
+import ibis.ipl.RegistryEventHandler;
+import ibis.ipl.SendPort;
+import ibis.ipl.WriteMessage;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transport over Ibis IPL. The pool is established by the Ibis registry (the ranks are assigned in the order in which
+ * the processes join) and the messages are delivered by Ibis upcalls. With hipg.lazyConnections, the send port to a
+ * process is connected when the first message is sent to it.
+ */
+public final class IbisTransport implements Transport, RegistryEventHandler, MessageUpcall {
+	/** Logging facilities. */
+	private static final Logger logger = LoggerFactory.getLogger(IbisTransport.class);
+	private String loggerPrefix = "";
+
+	/** Ibis configuration. */
+	private static final IbisCapabilities ibisCapabilities = new IbisCapabilities(IbisCapabilities.ELECTIONS_STRICT,
+			IbisCapabilities.MEMBERSHIP_TOTALLY_ORDERED);
+
+	private static final PortType portType = new PortType(PortType.COMMUNICATION_RELIABLE,
+			PortType.CONNECTION_MANY_TO_ONE, Config.OBJECT_SERIALIZATION ? PortType.SERIALIZATION_OBJECT_IBIS
+					: PortType.SERIALIZATION_DATA, PortType.RECEIVE_AUTO_UPCALLS);
+
+	/** This ibis. */
+	private Ibis ibis;
+
+	/** This ibis' identifier. */
+	private IbisIdentifier identifier;
+
+	/** This ibis' rank. */
+	private int rank = -1;
+
+	/** This ibis's rank proposal, established during joining. */
+	private int rankProposal = -1;
+
+	/** Send ports. */
+	private final SendPort[] sendPorts = new SendPort[Config.POOLSIZE];
+
+	/** Receive ports. */
+	private ReceivePort receivePort;
+
+	/** Pool of participating ibises. */
+	private final IbisIdentifier[] pool = new IbisIdentifier[Config.POOLSIZE];
+
+	/** Pool size (to add new ibises). */
+	private volatile int currentPoolSize;
+
+	/** Handler of received messages. */
+	private Receiver receiver;
+
+	public void start(final Receiver receiver) throws IOException {
+		this.receiver = receiver;
+		try {
+			ibis = IbisFactory.createIbis(ibisCapabilities, this, portType);
+		} catch (Throwable t) {
+			throw new RuntimeException("Could not create ibis", t);
+		}
+		identifier = ibis.identifier();
+		loggerPrefix = "(" + identifier.name() + ") ";
+		final String rName = "to_" + identifier.name();
+		try {
+			receivePort = ibis.createReceivePort(portType, rName, this);
+		} catch (Throwable t) {
+			throw new RuntimeException("Could not create receivePort", t);
+		}
+		receivePort.enableConnections();
+		ibis.registry().enableEvents();
+		logger.debug(loggerPrefix + "Waiting for rank");
+		awaitRankProposal();
+		rank = rankProposal;
+		awaitPool(Config.POOLSIZE);
+	}
+
+	public void enableReceiving() {
+		receivePort.enableMessageUpcalls();
+	}
+
+	public int getRank() {
+		return rank;
+	}
+
+	public String getName() {
+		return identifier.name();
+	}
+
+	public String getName(final int owner) {
+		return getIdentifier(owner).name();
+	}
+
+	public String getPoolName() {
+		return identifier.poolName();
+	}
+
+	private IbisIdentifier getIdentifier(final int owner) {
+		return (owner == rank ? identifier : pool[owner]);
+	}
+
+	public boolean isLocal(final int dest) {
+		return pool[dest] != null && pool[dest].location().compareTo(identifier.location()) == 0;
+	}
+
+	public long send(final int dest, final byte[] buf, final int off, final int len) throws IOException {
+		final WriteMessage message = getSendPort(dest).newMessage();
+		message.writeInt(len);
+		message.writeArray(buf, off, len);
+		return message.finish();
+	}
+
+	/** Returns the send port to a process, connecting it if necessary. */
+	private SendPort getSendPort(final int dest) {
+		synchronized (sendPorts) {
+			if (sendPorts[dest] == null) {
+				connect(pool[dest], dest, 10);
+			}
+			return sendPorts[dest];
+		}
+	}
+
+	/** Handles an upcall. */
+	public void upcall(final ReadMessage readMessage) throws IOException, ClassNotFoundException {
+		final int size = readMessage.readInt();
+		receiver.received(size, new Input() {
+			public void read(byte[] buf, int off, int len) throws IOException {
+				readMessage.readArray(buf, off, len);
+			}
+		});
+	}
+
+	/** Blocks until the rank is proposed. */
+	private void awaitRankProposal() {
+		if (rankProposal < 0) {
+			logger.debug(loggerPrefix + "Awaiting rank proposal");
+			while (rankProposal < 0) {
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+				}
+			}
+			logger.debug(loggerPrefix + "Got rank " + rankProposal);
+		}
+	}
+
+	/** Blocks until the pool is of the specified size. */
+	private void awaitPool(final int size) {
+		logger.debug(loggerPrefix + "Awaiting pool of size " + size);
+		synchronized (this) {
+			while (currentPoolSize < size) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+				}
+			}
+		}
+		logger.debug(loggerPrefix + "Pool size of " + size + " reached");
+	}
+
+	/** Handles an election result. */
+	public void electionResult(String election, IbisIdentifier result) {
+		assert (false);
+	}
+
+	/** Connects this Ibis to all other Ibises. */
+	private void connect(final IbisIdentifier joiningIbis, final int joiningRank, final int maxAttempts) {
+		final String name = joiningIbis.name();
+		boolean success = false;
+		int attempts = maxAttempts;
+		Throwable lastThrown = null;
+		do {
+			try {
+				attempts--;
+				final String sName = "to_" + name;
+				final SendPort sp = ibis.createSendPort(portType);
+				logger.debug(loggerPrefix + "Connecting to " + name);
+				sp.connect(joiningIbis, sName, 200, true);
+				logger.debug(loggerPrefix + "Connected to " + name);
+				pool[joiningRank] = joiningIbis;
+				sendPorts[joiningRank] = sp;
+				success = true;
+				if (Config.STATISTICS) {
+					Statistics.openedConnection();
+				}
+			} catch (Throwable t) {
+				if (Config.STATISTICS) {
+					Statistics.openeConnectionsFailed();
+				}
+				lastThrown = t;
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+				}
+			}
+		} while ((maxAttempts == 0 || attempts < maxAttempts) && !success);
+		if (!success) {
+			logger.error(loggerPrefix + "Could not connect to newly joined " + name + ": " + lastThrown.getMessage(),
+					lastThrown);
+			Runtime.getRuntime().abort("Could not connect to " + name);
+		}
+	}
+
+	/** Handles a joined Ibis. */
+	public void joined(IbisIdentifier joiningIbis) {
+		final boolean itsme = (joiningIbis.compareTo(ibis.identifier()) == 0);
+		final int joiningRank;
+		synchronized (this) {
+			joiningRank = currentPoolSize;
+		}
+		logger.debug(loggerPrefix + " Joined by " + joiningIbis + (itsme ? " (It's me)" : ""));
+		if (!itsme) {
+			pool[joiningRank] = joiningIbis;
+			if (!Config.LAZY_CONNECTIONS) {
+				getSendPort(joiningRank);
+			}
+		}
+		synchronized (this) {
+			currentPoolSize++;
+			if (itsme) {
+				rankProposal = joiningRank;
+			}
+			notify();
+		}
+	}
+
+	/** Handles a leaving Ibis. */
+	synchronized public void left(IbisIdentifier leavingIbis) {
+		logger.debug(loggerPrefix + "Ibis " + leavingIbis + "left ");
+	}
+
+	/** Handles a dead Ibis. */
+	synchronized public void died(IbisIdentifier dyingIbis) {
+		logger.warn(loggerPrefix + "Ibis " + dyingIbis + " died");
+	}
+
+	/** Handles a signal from an Ibis. */
+	public void gotSignal(String signal, IbisIdentifier signallingIbis) {
+		logger.error(loggerPrefix + "Unexpected signal " + signal + " from " + signallingIbis);
+	}
+
+	/** Handles pool closed. */
+	public void poolClosed() {
+		logger.warn(loggerPrefix + "Pool closed");
+	}
+
+	/** Handles pool terminated. */
+	public void poolTerminated(IbisIdentifier signallingIbis) {
+		logger.warn(loggerPrefix + "Pool terminated, signalled by " + signallingIbis.name());
+	}
+
+	public void maybeDead(final int dest) {
+		try {
+			ibis.registry().maybeDead(getIdentifier(dest));
+		} catch (IOException e) {
+			logger.warn(loggerPrefix + "Failed " + "maybeDead: " + e.getMessage(), e);
+		}
+	}
+
+	public void close() {
+		if (ibis != null) {
+			try {
+				ibis.end();
+			} catch (Throwable e) {
+				logger.warn(loggerPrefix + "Could not close ibis: " + e.getMessage());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package hipg.runtime;
+
+import hipg.Config;
+import hipg.LocalNode;
+
+/**
+ * Work-list of node methods invoked on local nodes. A rewritten local call appends the node, the synchronizer, the
+ * method and its arguments instead of executing the method recursively, and the outermost call drains the list
+ * iteratively. Entries and arguments are kept in columns that are reused between drains, so local work costs neither
+ * stack frames nor serialization. Primitive arguments are kept as longs, references as objects; the generated
+ * hipg_execute(methodId, synchronizer, work-list) reads them back in the order they were appended.
+ */
+public final class LocalWorkList {
+
+	/** Entries. */
+	private LocalNode<?>[] nodes;
+	private hipg.Synchronizer[] synchronizers;
+	private short[] methods;
+	private int head = 0;
+	private int tail = 0;
+
+	/** Primitive arguments. */
+	private long[] values;
+	private int valuesHead = 0;
+	private int valuesTail = 0;
+
+	/** Reference arguments. */
+	private Object[] objects;
+	private int objectsHead = 0;
+	private int objectsTail = 0;
+
+	/** If the list is being drained. */
+	private boolean draining = false;
+
+	public LocalWorkList(final int initialSize) {
+		final int size = Math.max(initialSize, 1);
+		nodes = new LocalNode<?>[size];
+		synchronizers = new hipg.Synchronizer[size];
+		methods = new short[size];
+		values = new long[size];
+		objects = new Object[size];
+	}
+
+	public LocalWorkList add(final LocalNode<?> node, final hipg.Synchronizer synchronizer, final short methodId) {
+		if (tail == nodes.length) {
+			makeRoomForEntry();
+		}
+		nodes[tail] = node;
+		synchronizers[tail] = synchronizer;
+		methods[tail] = methodId;
+		tail++;
+		return this;
+	}
+
+	/** Moves the pending entries to the front or, if more than half of the list is pending, doubles it. */
+	private void makeRoomForEntry() {
+		final int pending = tail - head;
+		final int size = (pending > (nodes.length >> 1) ? nodes.length << 1 : nodes.length);
+		final LocalNode<?>[] newNodes = (size == nodes.length ? nodes : new LocalNode<?>[size]);
+		final hipg.Synchronizer[] newSynchronizers = (size == nodes.length ? synchronizers
+				: new hipg.Synchronizer[size]);
+		final short[] newMethods = (size == nodes.length ? methods : new short[size]);
+		System.arraycopy(nodes, head, newNodes, 0, pending);
+		System.arraycopy(synchronizers, head, newSynchronizers, 0, pending);
+		System.arraycopy(methods, head, newMethods, 0, pending);
+		for (int i = pending; i < tail && i < size; i++) {
+			newNodes[i] = null;
+			newSynchronizers[i] = null;
+		}
+		nodes = newNodes;
+		synchronizers = newSynchronizers;
+		methods = newMethods;
+		head = 0;
+		tail = pending;
+	}
+
+	public LocalWorkList addInt(final int value) {
+		return addLong(value);
+	}
+
+	public LocalWorkList addLong(final long value) {
+		if (valuesTail == values.length) {
+			final int pending = valuesTail - valuesHead;
+			final long[] newValues = (pending > (values.length >> 1) ? new long[values.length << 1] : values);
+			System.arraycopy(values, valuesHead, newValues, 0, pending);
+			values = newValues;
+			valuesHead = 0;
+			valuesTail = pending;
+		}
+		values[valuesTail++] = value;
+		return this;
+	}
+
+	public LocalWorkList addFloat(final float value) {
+		return addLong(Float.floatToRawIntBits(value));
+	}
+
+	public LocalWorkList addDouble(final double value) {
+		return addLong(Double.doubleToRawLongBits(value));
+	}
+
+	public LocalWorkList addObject(final Object value) {
+		if (objectsTail == objects.length) {
+			final int pending = objectsTail - objectsHead;
+			final Object[] newObjects = (pending > (objects.length >> 1) ? new Object[objects.length << 1]
+					: objects);
+			System.arraycopy(objects, objectsHead, newObjects, 0, pending);
+			for (int i = pending; i < objectsTail && newObjects == objects; i++) {
+				objects[i] = null;
+			}
+			objects = newObjects;
+			objectsHead = 0;
+			objectsTail = pending;
+		}
+		objects[objectsTail++] = value;
+		return this;
+	}
+
+	public int nextInt() {
+		return (int) values[valuesHead++];
+	}
+
+	public long nextLong() {
+		return values[valuesHead++];
+	}
+
+	public float nextFloat() {
+		return Float.intBitsToFloat((int) values[valuesHead++]);
+	}
+
+	public double nextDouble() {
+		return Double.longBitsToDouble(values[valuesHead++]);
+	}
+
+	public Object nextObject() {
+		final Object value = objects[objectsHead];
+		objects[objectsHead++] = null;
+		return value;
+	}
+
+	/**
+	 * Executes the appended methods, including the ones they append, unless the list is already being drained by a
+	 * method further up the stack.
+	 */
+	public void drain() {
+		if (draining) {
+			return;
+		}
+		draining = true;
+		int executed = 0;
+		try {
+			while (head < tail) {
+				final LocalNode<?> node = nodes[head];
+				final hipg.Synchronizer synchronizer = synchronizers[head];
+				final short methodId = methods[head];
+				nodes[head] = null;
+				synchronizers[head] = null;
+				head++;
+				node.hipg_execute(methodId, synchronizer, this);
+				executed++;
+			}
+		} finally {
+			clear();
+			draining = false;
+			if (Config.STATISTICS) {
+				Statistics.drainedLocalWork(executed);
+			}
+		}
+	}
+
+	private void clear() {
+		for (int i = head; i < tail; i++) {
+			nodes[i] = null;
+			synchronizers[i] = null;
+		}
+		for (int i = objectsHead; i < objectsTail; i++) {
+			objects[i] = null;
+		}
+		head = tail = 0;
+		valuesHead = valuesTail = 0;
+		objectsHead = objectsTail = 0;
+	}
+
+	public boolean isEmpty() {
+		return head == tail;
+	}
+
+	public int size() {
+		return tail - head;
+	}
+
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+
+package hipg.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import hipg.LocalNode;
+import hipg.Node;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class LocalWorkListTest {
+
+	private static final class Calls {
+		final ArrayList<String> executed = new ArrayList<String>();
+		int maxDepth = 0;
+		int depth = 0;
+	}
+
+	/** Node with a hand-written hipg_execute, as the rewriter would generate it. */
+	private static final class TestNode extends LocalNode<Node> {
+		private final int id;
+		private final Calls calls;
+		private TestNode next;
+
+		TestNode(int id, Calls calls) {
+			this.id = id;
+			this.calls = calls;
+		}
+
+		/** Method 0: passes the chain on to the next node. */
+		void step(LocalWorkList work, int remaining, long l, double d, String tag) {
+			calls.executed.add(id + ":" + remaining + ":" + l + ":" + d + ":" + tag);
+			if (remaining > 0 && next != null) {
+				work.add(next, null, (short) 0).addInt(remaining - 1).addLong(l + 1).addDouble(d / 2)
+						.addObject(tag);
+				work.drain();
+			}
+		}
+
+		/** Method 1: fans out to the next node twice. */
+		void fork(LocalWorkList work, byte level, float f) {
+			calls.executed.add(id + ":" + level);
+			if (level > 0) {
+				work.add(next, null, (short) 1).addInt(level - 1).addFloat(f);
+				work.add(next, null, (short) 1).addInt(level - 1).addFloat(f);
+			}
+		}
+
+		@Override
+		public void hipg_execute(short methodId, hipg.Synchronizer synchronizer, LocalWorkList work) {
+			calls.depth++;
+			calls.maxDepth = Math.max(calls.maxDepth, calls.depth);
+			switch (methodId) {
+			case 0:
+				step(work, work.nextInt(), work.nextLong(), work.nextDouble(), (String) work.nextObject());
+				break;
+			case 1:
+				fork(work, (byte) work.nextInt(), work.nextFloat());
+				break;
+			default:
+				throw new RuntimeException("Unrecognized method " + methodId);
+			}
+			calls.depth--;
+		}
+
+		public boolean hasNeighbor(int index) {
+			return false;
+		}
+
+		public Node neighbor(int index) {
+			return null;
+		}
+
+		public boolean isNeighborLocal(int index) {
+			return true;
+		}
+
+		public int neighborOwner(int index) {
+			return 0;
+		}
+
+		public int neighborId(int index) {
+			return 0;
+		}
+
+		public String name() {
+			return "node" + id;
+		}
+
+		public short graphId() {
+			return 0;
+		}
+	}
+
+	@Test
+	public void testChainIsDrainedIteratively() {
+		final Calls calls = new Calls();
+		final int length = 100000;
+		final TestNode first = new TestNode(0, calls);
+		TestNode node = first;
+		for (int i = 1; i < length; i++) {
+			node.next = new TestNode(i, calls);
+			node = node.next;
+		}
+		final LocalWorkList work = new LocalWorkList(1);
+		work.add(first, null, (short) 0).addInt(length - 1).addLong(0).addDouble(1.0).addObject("x");
+		work.drain();
+		assertTrue(work.isEmpty());
+		assertEquals(length, calls.executed.size());
+		assertEquals(1, calls.maxDepth);
+		assertEquals("0:" + (length - 1) + ":0:1.0:x", calls.executed.get(0));
+		assertEquals("1:" + (length - 2) + ":1:0.5:x", calls.executed.get(1));
+		assertEquals("2:" + (length - 3) + ":2:0.25:x", calls.executed.get(2));
+	}
+
+	@Test
+	public void testFanOutIsExecutedInOrder() {
+		final Calls calls = new Calls();
+		final TestNode node = new TestNode(7, calls);
+		node.next = node;
+		final LocalWorkList work = new LocalWorkList(2);
+		work.add(node, null, (short) 1).addInt(10).addFloat(1.5f);
+		work.drain();
+		assertEquals((1 << 11) - 1, calls.executed.size());
+		assertEquals("7:10", calls.executed.get(0));
+		assertEquals("7:9", calls.executed.get(1));
+		assertEquals("7:9", calls.executed.get(2));
+		assertEquals("7:8", calls.executed.get(3));
+		assertEquals("7:0", calls.executed.get(calls.executed.size() - 1));
+		assertEquals(1, calls.maxDepth);
+	}
+
+	@Test
+	public void testReusedAfterFailure() {
+		final Calls calls = new Calls();
+		final TestNode node = new TestNode(1, calls);
+		final LocalWorkList work = new LocalWorkList(4);
+		work.add(node, null, (short) 5);
+		try {
+			work.drain();
+		} catch (RuntimeException e) {
+		}
+		assertTrue(work.isEmpty());
+		work.add(node, null, (short) 1).addInt(0).addFloat(0.0f);
+		work.drain();
+		assertEquals(1, calls.executed.size());
+	}
+
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package hipg.runtime;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory transport between processes simulated in one JVM (used in tests). Processes join a pool by name; a
+ * message is delivered by copying it into the receive buffer of the destination, on the thread of the sender.
+ * Messages sent before the destination enabled receiving are kept until it does.
+ */
+public final class LoopbackTransport implements Transport {
+
+	/** Pools of the transports, by name. */
+	private static final Map<String, LoopbackTransport[]> pools = new HashMap<String, LoopbackTransport[]>();
+
+	private final String poolName;
+	private final int rank;
+	private final int poolSize;
+	private LoopbackTransport[] pool;
+	private Receiver receiver;
+	private boolean receiving = false;
+
+	/** Messages kept until receiving is enabled. */
+	private final List<byte[]> pending = new ArrayList<byte[]>();
+
+	public LoopbackTransport(final String poolName, final int rank, final int poolSize) {
+		if (rank < 0 || rank >= poolSize) {
+			throw new RuntimeException("Rank " + rank + " not in pool of size " + poolSize);
+		}
+		this.poolName = poolName;
+		this.rank = rank;
+		this.poolSize = poolSize;
+	}
+
+	public void start(final Receiver receiver) throws IOException {
+		this.receiver = receiver;
+		synchronized (pools) {
+			LoopbackTransport[] transports = pools.get(poolName);
+			if (transports == null) {
+				transports = new LoopbackTransport[poolSize];
+				pools.put(poolName, transports);
+			}
+			if (transports.length != poolSize || transports[rank] != null) {
+				throw new RuntimeException("Could not join loopback pool " + poolName + " as " + rank);
+			}
+			transports[rank] = this;
+			pool = transports;
+			pools.notifyAll();
+			while (!joined()) {
+				try {
+					pools.wait();
+				} catch (InterruptedException e) {
+				}
+			}
+		}
+	}
+
+	private boolean joined() {
+		for (LoopbackTransport transport : pool) {
+			if (transport == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public void enableReceiving() {
+		synchronized (this) {
+			receiving = true;
+			for (byte[] message : pending) {
+				deliver(message, 0, message.length);
+			}
+			pending.clear();
+		}
+	}
+
+	public int getRank() {
+		return rank;
+	}
+
+	public String getName() {
+		return getName(rank);
+	}
+
+	public String getName(final int rank) {
+		return poolName + "-" + rank;
+	}
+
+	public String getPoolName() {
+		return poolName;
+	}
+
+	/** Loopback processes share the memory already, so there is no use for shared-memory rings. */
+	public boolean isLocal(final int rank) {
+		return false;
+	}
+
+	public long send(final int dest, final byte[] buf, final int off, final int len) throws IOException {
+		final LoopbackTransport destination = pool[dest];
+		synchronized (destination) {
+			if (destination.receiving) {
+				destination.deliver(buf, off, len);
+			} else {
+				final byte[] message = new byte[len];
+				System.arraycopy(buf, off, message, 0, len);
+				destination.pending.add(message);
+			}
+		}
+		return len;
+	}
+
+	private void deliver(final byte[] buf, final int off, final int len) {
+		try {
+			receiver.received(len, new Input() {
+				private int position = off;
+
+				public void read(byte[] dst, int dstOff, int dstLen) {
+					System.arraycopy(buf, position, dst, dstOff, dstLen);
+					position += dstLen;
+				}
+			});
+		} catch (IOException e) {
+			throw new RuntimeException("Could not deliver message to " + getName(), e);
+		}
+	}
+
+	public void maybeDead(final int rank) {
+	}
+
+	public void close() {
+		synchronized (pools) {
+			if (pool != null) {
+				pool[rank] = null;
+				boolean empty = true;
+				for (LoopbackTransport transport : pool) {
+					empty &= (transport == null);
+				}
+				if (empty) {
+					pools.remove(poolName);
+				}
+			}
+		}
+	}
+
+}
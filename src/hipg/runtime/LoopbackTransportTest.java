@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+
+package hipg.runtime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LoopbackTransportTest {
+
+	private static final class Collector implements Transport.Receiver {
+		final List<byte[]> messages = new ArrayList<byte[]>();
+
+		public void received(int size, Transport.Input input) throws IOException {
+			final byte[] message = new byte[size];
+			input.read(message, 0, size);
+			messages.add(message);
+		}
+	}
+
+	@Test
+	public void testSend() throws Exception {
+		final LoopbackTransport t0 = new LoopbackTransport("testSend", 0, 2);
+		final LoopbackTransport t1 = new LoopbackTransport("testSend", 1, 2);
+		final Collector c0 = new Collector();
+		final Collector c1 = new Collector();
+		final Thread starter = new Thread() {
+			public void run() {
+				try {
+					t1.start(c1);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		starter.start();
+		t0.start(c0);
+		starter.join();
+		assertEquals(0, t0.getRank());
+		assertEquals(1, t1.getRank());
+
+		final byte[] buf = new byte[] { 1, 2, 3, 4, 5, 6 };
+		t0.send(1, buf, 1, 3);
+		t1.enableReceiving();
+		t0.send(1, buf, 4, 2);
+		assertEquals(2, c1.messages.size());
+		assertArrayEquals(new byte[] { 2, 3, 4 }, c1.messages.get(0));
+		assertArrayEquals(new byte[] { 5, 6 }, c1.messages.get(1));
+		assertEquals(0, c0.messages.size());
+
+		t0.close();
+		t1.close();
+	}
+
+}
@@ -0,0 +1,438 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package hipg.runtime;
+
+import hipg.Config;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.net.BindException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import myutils.IOUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transport over plain TCP sockets. The pool is described by a static host file with one host:port line per process
+ * (the line number is the rank), so no registry server is needed. The rank of this process is given by hipg.rank or,
+ * if it is not set, it is the first local host:port in the file that can be bound.
+ * <p>
+ * With hipg.lazyConnections, the connection to a process is opened when the first message is sent to it. A message
+ * is sent with a gathering write of its 4-byte length and the message buffer itself. Incoming connections
+ * are non-blocking and served by a single receiver thread, which reads them in bulk into direct buffers, from
+ * which the contents of a message are copied once, into the receive buffer.
+ */
+public final class NioTransport implements Transport {
+	/** Logging facilities. */
+	private static final Logger logger = LoggerFactory.getLogger(NioTransport.class);
+	private String loggerPrefix = "";
+
+	/** Number of attempts to connect to a process that is not listening (yet). */
+	private static final int CONNECT_ATTEMPTS = 600;
+
+	/** Addresses of the processes in the pool. */
+	private final InetSocketAddress[] hosts;
+
+	private final String poolName;
+
+	private int rank = -1;
+
+	/** Socket accepting connections from other processes. */
+	private ServerSocketChannel server;
+
+	/** Connections to other processes. */
+	private final SocketChannel[] channels = new SocketChannel[Config.POOLSIZE];
+
+	/** Message headers, one for each connection. */
+	private final ByteBuffer[] headers = new ByteBuffer[Config.POOLSIZE];
+
+	/** Connections from other processes, not yet registered with the selector. */
+	private final List<SocketChannel> accepted = new ArrayList<SocketChannel>();
+
+	private Selector selector;
+
+	private Receiver receiver;
+
+	private ReceiverThread receiverThread;
+
+	private volatile boolean receiving = false;
+
+	public NioTransport(final String hostFile) throws IOException {
+		if (hostFile == null) {
+			throw new RuntimeException("The NIO transport needs a host file (set hipg.hostFile)");
+		}
+		hosts = readHostFile(hostFile);
+		if (hosts.length < Config.POOLSIZE) {
+			throw new RuntimeException("Host file " + hostFile + " lists " + hosts.length
+					+ " processes, but the pool size is " + Config.POOLSIZE);
+		}
+		poolName = new File(hostFile).getName();
+	}
+
+	/** Reads a host file: a host:port line for each process. Empty lines and lines starting with # are skipped. */
+	static InetSocketAddress[] readHostFile(final String hostFile) throws IOException {
+		final List<InetSocketAddress> hosts = new ArrayList<InetSocketAddress>();
+		final BufferedReader reader = new BufferedReader(new FileReader(hostFile));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) {
+					continue;
+				}
+				final int colon = line.lastIndexOf(':');
+				if (colon <= 0) {
+					throw new RuntimeException("Line " + line + " in " + hostFile + " is not host:port");
+				}
+				final int port;
+				try {
+					port = Integer.parseInt(line.substring(colon + 1));
+				} catch (NumberFormatException e) {
+					throw new RuntimeException("Line " + line + " in " + hostFile + " has no valid port");
+				}
+				hosts.add(new InetSocketAddress(line.substring(0, colon), port));
+			}
+		} finally {
+			reader.close();
+		}
+		return hosts.toArray(new InetSocketAddress[hosts.size()]);
+	}
+
+	public void start(final Receiver receiver) throws IOException {
+		this.receiver = receiver;
+		selector = Selector.open();
+		bind();
+		loggerPrefix = "(" + getName() + ") ";
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+		receiverThread = new ReceiverThread();
+		receiverThread.start();
+		if (!Config.LAZY_CONNECTIONS) {
+			for (int dest = 0; dest < Config.POOLSIZE; dest++) {
+				if (dest != rank) {
+					getChannel(dest);
+				}
+			}
+			logger.debug(loggerPrefix + "Connected to " + (Config.POOLSIZE - 1) + " processes");
+		}
+	}
+
+	/** Binds the server socket and establishes the rank. */
+	private void bind() throws IOException {
+		if (Config.RANK >= 0) {
+			if (Config.RANK >= Config.POOLSIZE) {
+				throw new RuntimeException("Rank " + Config.RANK + " not in pool of size " + Config.POOLSIZE);
+			}
+			server = ServerSocketChannel.open();
+			server.socket().bind(new InetSocketAddress(hosts[Config.RANK].getPort()));
+			rank = Config.RANK;
+			return;
+		}
+		for (int r = 0; r < Config.POOLSIZE; r++) {
+			if (isLocal(r)) {
+				final ServerSocketChannel channel = ServerSocketChannel.open();
+				try {
+					channel.socket().bind(new InetSocketAddress(hosts[r].getPort()));
+					server = channel;
+					rank = r;
+					return;
+				} catch (BindException e) {
+					channel.close();
+				}
+			}
+		}
+		throw new RuntimeException("Could not find a free local address in the host file (set hipg.rank)");
+	}
+
+	/** Returns the connection to a process, opening it if necessary. */
+	private SocketChannel getChannel(final int dest) throws IOException {
+		synchronized (channels) {
+			if (channels[dest] == null) {
+				connect(dest);
+			}
+			return channels[dest];
+		}
+	}
+
+	private void connect(final int dest) throws IOException {
+		for (int attempt = 0;; attempt++) {
+			final SocketChannel channel = SocketChannel.open();
+			try {
+				channel.connect(hosts[dest]);
+				channel.socket().setTcpNoDelay(true);
+				channels[dest] = channel;
+				headers[dest] = ByteBuffer.allocate(IOUtils.INT_BYTES);
+				if (Config.STATISTICS) {
+					Statistics.openedConnection();
+				}
+				return;
+			} catch (ConnectException e) {
+				channel.close();
+				if (Config.STATISTICS) {
+					Statistics.openeConnectionsFailed();
+				}
+				if (attempt >= CONNECT_ATTEMPTS) {
+					throw e;
+				}
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException ie) {
+				}
+			}
+		}
+	}
+
+	public void enableReceiving() {
+		receiving = true;
+		selector.wakeup();
+	}
+
+	public int getRank() {
+		return rank;
+	}
+
+	public String getName() {
+		return getName(rank);
+	}
+
+	public String getName(final int owner) {
+		return hosts[owner].getHostName() + ":" + hosts[owner].getPort();
+	}
+
+	public String getPoolName() {
+		return poolName;
+	}
+
+	public boolean isLocal(final int dest) {
+		final InetAddress address = hosts[dest].getAddress();
+		if (address == null) {
+			return false;
+		}
+		if (address.isLoopbackAddress() || address.isAnyLocalAddress()) {
+			return true;
+		}
+		try {
+			return NetworkInterface.getByInetAddress(address) != null;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	public long send(final int dest, final byte[] buf, final int off, final int len) throws IOException {
+		final SocketChannel channel = getChannel(dest);
+		synchronized (channel) {
+			final ByteBuffer header = headers[dest];
+			header.clear();
+			header.putInt(len);
+			header.flip();
+			final ByteBuffer[] message = new ByteBuffer[] { header, ByteBuffer.wrap(buf, off, len) };
+			while (message[1].hasRemaining()) {
+				channel.write(message);
+			}
+		}
+		return IOUtils.INT_BYTES + len;
+	}
+
+	public void maybeDead(final int dest) {
+		logger.warn(loggerPrefix + "Process " + getName(dest) + " might have died");
+	}
+
+	public void close() {
+		if (receiverThread != null) {
+			receiverThread.close();
+		}
+		for (int dest = 0; dest < Config.POOLSIZE; dest++) {
+			if (channels[dest] != null) {
+				try {
+					channels[dest].close();
+				} catch (IOException e) {
+					logger.warn(loggerPrefix + "Could not close connection to " + getName(dest) + ": "
+							+ e.getMessage());
+				}
+			}
+		}
+		try {
+			if (server != null) {
+				server.close();
+			}
+			if (selector != null) {
+				selector.close();
+			}
+		} catch (IOException e) {
+			logger.warn(loggerPrefix + "Could not close server: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Incoming connection. Bytes are read from the socket in bulk into a direct buffer, which the socket fills without
+	 * an intermediate copy; message headers are decoded in place and message contents are copied once, from the
+	 * direct buffer to the receive buffer.
+	 */
+	private static final class Connection implements Input {
+		private final SocketChannel channel;
+
+		/** Bytes read from the socket, but not yet consumed (between position and limit). */
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(Config.NIO_RECEIVE_BUFFER_SIZE);
+
+		public Connection(SocketChannel channel) {
+			this.channel = channel;
+			buffer.flip();
+		}
+
+		/** Reads the bytes available in the socket. Returns if any bytes were read. */
+		boolean fill() throws IOException {
+			buffer.compact();
+			final int n;
+			try {
+				n = channel.read(buffer);
+			} finally {
+				buffer.flip();
+			}
+			if (n < 0) {
+				throw new EOFException();
+			}
+			return n > 0;
+		}
+
+		/** Returns the size of the next message, if its header has been read already. */
+		int nextSize() {
+			if (buffer.remaining() < IOUtils.INT_BYTES) {
+				return -1;
+			}
+			return buffer.getInt();
+		}
+
+		/** Reads the contents of a message (which is usually already read or on its way). */
+		public void read(byte[] buf, int off, int len) throws IOException {
+			int idle = 0;
+			while (len > 0) {
+				if (buffer.hasRemaining()) {
+					final int n = Math.min(len, buffer.remaining());
+					buffer.get(buf, off, n);
+					off += n;
+					len -= n;
+				} else {
+					idle = (fill() ? 0 : SharedMemoryRing.idle(idle));
+				}
+			}
+		}
+	}
+
+	/** Thread accepting connections and receiving messages. */
+	private final class ReceiverThread extends Thread {
+		private volatile boolean done = false;
+
+		public ReceiverThread() {
+			setName("NioReceiver");
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!done) {
+					selector.select();
+					if (receiving) {
+						for (SocketChannel channel : accepted) {
+							channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+						}
+						accepted.clear();
+					}
+					final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while (keys.hasNext()) {
+						final SelectionKey key = keys.next();
+						keys.remove();
+						if (!key.isValid()) {
+							continue;
+						}
+						if (key.isAcceptable()) {
+							accept();
+						} else if (key.isReadable()) {
+							receive(key);
+						}
+					}
+				}
+			} catch (ClosedSelectorException e) {
+			} catch (IOException e) {
+				if (!done) {
+					logger.error(loggerPrefix + "Receiver failed: " + e.getMessage(), e);
+				}
+			}
+		}
+
+		private void accept() throws IOException {
+			final SocketChannel channel = server.accept();
+			if (channel != null) {
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				if (receiving) {
+					channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+				} else {
+					accepted.add(channel);
+				}
+			}
+		}
+
+		private void receive(final SelectionKey key) {
+			final Connection connection = (Connection) key.attachment();
+			try {
+				connection.fill();
+				int size;
+				while ((size = connection.nextSize()) >= 0) {
+					receiver.received(size, connection);
+				}
+			} catch (IOException e) {
+				key.cancel();
+				try {
+					connection.channel.close();
+				} catch (IOException ce) {
+				}
+				if (!done && !(e instanceof EOFException)) {
+					logger.warn(loggerPrefix + "Connection closed: " + e.getMessage());
+				}
+			}
+		}
+
+		public void close() {
+			done = true;
+			selector.wakeup();
+			try {
+				join();
+			} catch (InterruptedException e) {
+			}
+		}
+	}
+
+}
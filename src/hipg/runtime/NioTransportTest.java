@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+
+package hipg.runtime;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.net.InetSocketAddress;
+
+import org.junit.Test;
+
+public class NioTransportTest {
+
+	@Test
+	public void testReadHostFile() throws Exception {
+		final File file = File.createTempFile("hipg-hosts", null);
+		try {
+			final FileWriter writer = new FileWriter(file);
+			writer.write("# pool\nlocalhost:5001\n\n  127.0.0.1:5002  \n");
+			writer.close();
+			final InetSocketAddress[] hosts = NioTransport.readHostFile(file.getPath());
+			assertEquals(2, hosts.length);
+			assertEquals("localhost", hosts[0].getHostName());
+			assertEquals(5001, hosts[0].getPort());
+			assertEquals(5002, hosts[1].getPort());
+		} finally {
+			file.delete();
+		}
+	}
+
+}
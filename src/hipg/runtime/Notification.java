@@ -18,11 +18,19 @@
 
 package hipg.runtime;
 
+import java.util.Arrays;
+import java.util.HashMap;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import hipg.Config;
 
+/**
+ * Notification, broadcast from the issuing worker along a spanning tree (of fan-out hipg.notificationFanout) rooted at
+ * the issuer. Acknowledgements are aggregated up the tree: a worker acknowledges a notification to its parent once all
+ * its children did.
+ */
 public class Notification {
 
 	/** Logging facilities. */
@@ -31,10 +39,16 @@ public class Notification {
 
 	private final Synchronizer issuer;
 
-	private final int[] acks = (Config.POOLSIZE <= 1 ? null : new int[1024]);
-	private int firstUsed = 0;
-	private int firstFree = 0;
-	private int used = 0;
+	/** Id of the next notification issued here. */
+	private int nextId = 0;
+
+	/** Acknowledgements still expected from the children, per notification (issuer and id). */
+	private final HashMap<Long, Integer> acks = new HashMap<Long, Integer>();
+
+	/** Last notification issued here (for coalescing). */
+	private short lastNotificationMethodId = -1;
+	private byte[] lastValue = null;
+	private int lastFlushes = -1;
 
 	public Notification(final Synchronizer issuer) {
 		this.issuer = issuer;
@@ -45,67 +59,98 @@ public class Notification {
 	}
 
 	public void init(final short notificationMethodId, final byte[] value) {
-		this.issuer.hipg_notify(notificationMethodId, value);
 		if (Runtime.getRuntime().hasCoworkers()) {
-			int id = newId();
-			Runtime.getCommunication().sendNotification(issuer, notificationMethodId, value, id);
+			if (Config.COALESCE_NOTIFICATIONS && notificationMethodId == lastNotificationMethodId
+					&& lastFlushes == FastMessage.flushes() && Arrays.equals(value, lastValue)) {
+				// The same notification is still waiting to be sent: it runs once here, as on the other workers.
+				if (Config.STATISTICS) {
+					Statistics.notificationCoalesced();
+				}
+				return;
+			}
+			this.issuer.hipg_notify(notificationMethodId, value);
+			final int id = nextId++;
+			final int me = Runtime.getRank();
+			final int children = sendToChildren(notificationMethodId, value, id, me);
+			acks.put(key(me, id), children);
+			lastNotificationMethodId = notificationMethodId;
+			lastValue = value;
+			lastFlushes = FastMessage.flushes();
 			if (Config.FINEDEBUG) {
 				logger.info(loggerPrefix + "initializing notification " + id);
 			}
+		} else {
+			this.issuer.hipg_notify(notificationMethodId, value);
 		}
 	}
 
 	public void received(final short notificationMethodId, final byte[] value, final int id, final int notifIssuer) {
 		this.issuer.hipg_notify(notificationMethodId, value);
-		Runtime.getCommunication().sendNotificationAck(issuer, notifIssuer, id);
+		final int children = sendToChildren(notificationMethodId, value, id, notifIssuer);
+		if (children == 0) {
+			Runtime.getCommunication().sendNotificationAck(issuer, parent(notifIssuer), id, notifIssuer);
+		} else {
+			acks.put(key(notifIssuer, id), children);
+		}
 		if (Config.FINEDEBUG) {
-			logger.info(loggerPrefix + "received notification " + id + " from " + notifIssuer);
+			logger.info(loggerPrefix + "received notification " + id + " from " + notifIssuer + ", forwarded to "
+					+ children);
 		}
 	}
 
-	public void receivedAck(final int id) {
+	public void receivedAck(final int id, final int notifIssuer) {
+		final Long key = key(notifIssuer, id);
+		final Integer expected = acks.get(key);
 		if (Config.FINEDEBUG) {
-			logger.info(loggerPrefix + "received ack for " + id + " while expecting " + acks[id] + " acks");
+			logger.info(loggerPrefix + "received ack for " + id + " of " + notifIssuer + " while expecting "
+					+ expected + " acks");
 		}
-		freeId(id);
-	}
-
-	private final int newId() {
-		if (used == acks.length) {
-			logger.warn("too many warnings! not waiting for acknowledgements");
-			return -1;
-		} else {
-			int id = firstFree++;
-			used++;
-			if (firstFree == acks.length) {
-				firstFree = 0;
+		if (Config.ERRCHECK) {
+			if (expected == null || expected <= 0) {
+				throw new RuntimeException("Too many acks for id " + id + " of " + notifIssuer + " at synchronizer "
+						+ issuer.name() + " at " + Runtime.getRank());
 			}
-			acks[id] = Config.POOLSIZE - 1;
-			return id;
 		}
-	}
-
-	private final void freeId(final int id) {
-		if (Config.ERRCHECK) {
-			if (acks[id] <= 0) {
-				throw new RuntimeException("Too many acks for id " + id + " at synchronizer " + issuer.name() + " at "
-						+ Runtime.getRank());
+		if (expected == 1) {
+			acks.remove(key);
+			if (notifIssuer != Runtime.getRank()) {
+				Runtime.getCommunication().sendNotificationAck(issuer, parent(notifIssuer), id, notifIssuer);
 			}
+		} else {
+			acks.put(key, expected - 1);
 		}
-		acks[id]--;
-		if (acks[id] == 0) {
-			used--;
-			if (id == firstUsed) {
-				if (used == 0) {
-					firstUsed = firstFree;
-				} else {
-					do {
-						firstUsed++;
-						if (firstUsed == acks.length)
-							firstUsed = 0;
-					} while (acks[firstUsed] == 0);
-				}
+	}
+
+	/** Sends a notification to the children of this worker in the tree rooted at the issuer. */
+	private int sendToChildren(final short notificationMethodId, final byte[] value, final int id,
+			final int notifIssuer) {
+		final int poolSize = Runtime.getPoolSize();
+		final int relativeRank = (Runtime.getRank() - notifIssuer + poolSize) % poolSize;
+		int children = 0;
+		for (int k = 1; k <= Config.NOTIFICATION_FANOUT; k++) {
+			final int child = relativeRank * Config.NOTIFICATION_FANOUT + k;
+			if (child >= poolSize) {
+				break;
 			}
+			Runtime.getCommunication().sendNotification(issuer, (child + notifIssuer) % poolSize,
+					notificationMethodId, value, id, notifIssuer);
+			children++;
 		}
+		return children;
+	}
+
+	/** Parent of this worker in the tree rooted at the issuer. */
+	private static int parent(final int notifIssuer) {
+		final int poolSize = Runtime.getPoolSize();
+		final int relativeRank = (Runtime.getRank() - notifIssuer + poolSize) % poolSize;
+		return ((relativeRank - 1) / Config.NOTIFICATION_FANOUT + notifIssuer) % poolSize;
+	}
+
+	private static Long key(final int notifIssuer, final int id) {
+		return ((long) notifIssuer << 32) | (id & 0xffffffffL);
+	}
+
+	public String toString() {
+		return "Notification(pending=" + acks.size() + ")";
 	}
 }
@@ -24,10 +24,10 @@ import hipg.LocalNode;
 import hipg.Node;
 import hipg.graph.ExplicitGraph;
 import hipg.graph.OnTheFlyGraph;
-import ibis.ipl.IbisCreationFailedException;
 
 import java.io.IOException;
 import java.lang.reflect.Array;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -138,6 +138,30 @@ public final class Runtime {
 
 	public static int immediateDepth = 0;
 
+	/** Countdown to the next check at an automatic preemption point. */
+	private static int preemptCountdown = Config.PREEMPT_INTERVAL;
+	private static final long PREEMPT_BUDGET_NANOS = Config.PREEMPT_BUDGET_MICROS * 1000L;
+
+	/** If received messages are being processed (preemption must not process them recursively). */
+	private boolean processingMessages = false;
+
+	/** When received messages were last processed. */
+	private long lastProcessedMessages = System.nanoTime();
+
+	/** Methods invoked on local nodes, executed iteratively (see LocalWorkList). */
+	private static final LocalWorkList localWorkList = new LocalWorkList(Config.LOCAL_WORK_LIST_SIZE);
+
+	/**
+	 * Batch of received user messages to explicit nodes, executed in the order of their targets (used with
+	 * hipg.batchedDispatch). A key holds the target in the upper and the index in the batch in the lower half.
+	 */
+	private int batchSize = 0;
+	private long[] batchKeys = new long[0];
+	private LocalNode<?>[] batchNodes = new LocalNode<?>[0];
+	private Synchronizer[] batchSynchronizers = new Synchronizer[0];
+	private short[] batchMethods = new short[0];
+	private int[] batchPositions = new int[0];
+
 	/** Get singleton runtime. */
 	public static final Runtime getRuntime() {
 		return runtime;
@@ -161,8 +185,36 @@ public final class Runtime {
 		runtime.beNice();
 	}
 
+	/**
+	 * Automatic preemption point, inserted by the rewriter into the loops of synchronizers. Every
+	 * hipg.preemptInterval calls checks if the time budget since messages were last processed has elapsed or if
+	 * full send buffers are waiting and, if so, is nice.
+	 */
+	public static final void preempt() {
+		if (--preemptCountdown > 0) {
+			return;
+		}
+		preemptCountdown = Config.PREEMPT_INTERVAL;
+		if (Config.PREEMPT) {
+			runtime.checkPreempt();
+		}
+	}
+
+	private final void checkPreempt() {
+		if (processingMessages || communication == null) {
+			return;
+		}
+		if (System.nanoTime() - lastProcessedMessages >= PREEMPT_BUDGET_NANOS
+				|| communication.getFullSendMessages() >= Config.PREEMPT_FULL_SEND_MESSAGES) {
+			if (Config.STATISTICS) {
+				Statistics.runtimePreempted();
+			}
+			beNice();
+		}
+	}
+
 	/** Creates runtime. */
-	public Runtime() throws IbisCreationFailedException {
+	public Runtime() {
 		if (communication == null) {
 			// Under JUnit.
 			rank = 0;
@@ -377,6 +429,10 @@ public final class Runtime {
 		}
 
 		public void addToken(int type, Object[] token) {
+			if (numTokens + 1 >= tokens.length) {
+				tokens = Arrays.copyOf(tokens, 2 * tokens.length);
+				tokenTypes = Arrays.copyOf(tokenTypes, 2 * tokenTypes.length);
+			}
 			numTokens++;
 			tokens[numTokens] = token;
 			tokenTypes[numTokens] = type;
@@ -408,6 +464,10 @@ public final class Runtime {
 					case FastMessage.BARRED:
 						synchronizer.receivedBarrierReduceToken((Integer) token[0], (Integer) token[1],
 								(Integer) token[2]);
+						break;
+					case FastMessage.ALLREDUCE:
+						synchronizer.receivedAllReduceChunk((Integer) token[0], (Integer) token[1], (byte[]) token[2]);
+						break;
 					}
 				}
 			}
@@ -686,8 +746,9 @@ public final class Runtime {
 		if (Config.STATISTICS) {
 			Statistics.saveMemoryUsage();
 		}
-		int consecutiveProcessNoMessages = 0;
+		int consecutiveProcessNoMessages = 0, consecutiveIdleLoops = 0;
 		int barrierLoops = 0, barrierLoopsWithUserMessagesProcessed = 0, barrierLoopsWithYield = 0;
+		int barrierLoopsWithPark = 0;
 		try {
 			while (!globalBarrier.isDone()) {
 				barrierLoops++;
@@ -703,9 +764,22 @@ public final class Runtime {
 					}
 					if (processedUserMessages == 0) {
 						if (processSynchronizers() > 0) {
+							consecutiveIdleLoops = 0;
 							communication.flushAll();
 						} else {
-							if (consecutiveProcessNoMessages < Config.SKIP_STEPS_BEFORE_SENDING_SMALL_MESSAGE) {
+							consecutiveIdleLoops++;
+							if (Config.PARK_WHEN_IDLE
+									&& consecutiveIdleLoops > Config.SKIP_STEPS_BEFORE_SENDING_SMALL_MESSAGE
+									&& (consecutiveIdleLoops > Config.MAX_SPIN_BEFORE_PARK || communication
+											.nextMessageOverdue())) {
+								// Nothing to do and no message expected soon: park instead of spinning.
+								communication.flushAll();
+								barrierLoopsWithPark++;
+								final long parkedTime = communication.parkWorker(Config.MAX_PARK_MICROS * 1000L);
+								if (Config.STATISTICS) {
+									Statistics.runtimeParked(parkedTime);
+								}
+							} else if (consecutiveProcessNoMessages < Config.SKIP_STEPS_BEFORE_SENDING_SMALL_MESSAGE) {
 								if (consecutiveProcessNoMessages == Config.YIELD_BEFORE_SENDING_SMALL_MESSAGE) {
 									barrierLoopsWithYield++;
 									Thread.yield();
@@ -723,6 +797,7 @@ public final class Runtime {
 					} else {
 						barrierLoopsWithUserMessagesProcessed++;
 						consecutiveProcessNoMessages = 0;
+						consecutiveIdleLoops = 0;
 					}
 				}
 				checkGlobalBarrier();
@@ -743,7 +818,8 @@ public final class Runtime {
 			monitor.stopMonitor();
 		}
 		if (Config.STATISTICS) {
-			Statistics.doneRuntimeBarrier(barrierLoops, barrierLoopsWithUserMessagesProcessed, barrierLoopsWithYield);
+			Statistics.doneRuntimeBarrier(barrierLoops, barrierLoopsWithUserMessagesProcessed, barrierLoopsWithYield,
+					barrierLoopsWithPark);
 		}
 		if (unexpectedError != null) {
 			throw unexpectedError;
@@ -821,18 +897,27 @@ public final class Runtime {
 	private final int processMessages() {
 		int processedBytes = 0;
 		FastMessage message;
-		do {
-			message = communication.getFullReceivedMessage();
-			if (message != null) {
-				processedBytes += processMessage(message);
-				communication.recycleReceivedMessage(message);
-			} else {
-				message = communication.getCurrentReceiveMessage();
+		final boolean wasProcessingMessages = processingMessages;
+		processingMessages = true;
+		try {
+			do {
+				message = communication.getFullReceivedMessage();
 				if (message != null) {
 					processedBytes += processMessage(message);
+					communication.recycleReceivedMessage(message);
+				} else {
+					message = communication.getCurrentReceiveMessage();
+					if (message != null) {
+						processedBytes += processMessage(message);
+					}
 				}
-			}
-		} while (message != null);
+			} while (message != null);
+		} finally {
+			processingMessages = wasProcessingMessages;
+		}
+		if (Config.PREEMPT) {
+			lastProcessedMessages = System.nanoTime();
+		}
 		return processedBytes;
 	}
 
@@ -857,19 +942,39 @@ public final class Runtime {
 		final byte[] buf = message.buf;
 		final int endPosition = position + size;
 
+		/* header of the last full user message to an explicit node (repeated by compact user messages) */
+		int lastSynchOwner = 0;
+		int lastSynchId = 0;
+		short lastGraphId = 0;
+		short lastMethodId = 0;
+
 		while (position < endPosition) {
 			final int opcode = IOUtils.readInt(buf, position);
 			position += IOUtils.INT_BYTES;
+			final boolean repeat = (opcode & FastMessage.USER_REPEAT_MASK) == FastMessage.USER_REPEAT;
 
-			if (opcode >= 0 || opcode == Synchronizer.OWNER_ALL) {
+			if (opcode >= 0 || opcode == Synchronizer.OWNER_ALL || repeat) {
 				final int originalPosition = position;
 
 				/* user message */
-				final int synchOwner = opcode;
-				final int synchId = IOUtils.readInt(buf, position);
-				position += IOUtils.INT_BYTES;
-				final short graphId = IOUtils.readShort(buf, position);
-				position += IOUtils.SHORT_BYTES;
+				final int synchOwner;
+				final int synchId;
+				final short graphId;
+				final short methodId;
+				if (repeat) {
+					synchOwner = lastSynchOwner;
+					synchId = lastSynchId;
+					graphId = lastGraphId;
+					methodId = lastMethodId;
+				} else {
+					synchOwner = opcode;
+					synchId = IOUtils.readInt(buf, position);
+					position += IOUtils.INT_BYTES;
+					graphId = IOUtils.readShort(buf, position);
+					position += IOUtils.SHORT_BYTES;
+					methodId = IOUtils.readShort(buf, position);
+					position += IOUtils.SHORT_BYTES;
+				}
 
 				if (Config.ERRCHECK) {
 					if (graphId < 0 || graphId >= graphs.length || graphs[graphId] == null) {
@@ -881,18 +986,24 @@ public final class Runtime {
 					}
 				}
 
-				final short methodId = IOUtils.readShort(buf, position);
-				position += IOUtils.SHORT_BYTES;
-
 				final Synchronizer synchronizer = synchronizers[synchId];
 				final LocalNode<?> node;
 
 				final int type = graphType[graphId];
+				int target = -1;
 
 				if (type == GRAPH_EXPLICIT) {
 					final ExplicitGraph<?> graph = (ExplicitGraph<?>) graphs[graphId];
-					final int target = IOUtils.readInt(buf, position);
-					position += IOUtils.INT_BYTES;
+					if (repeat) {
+						target = opcode & FastMessage.USER_REPEAT_MAX_TARGET;
+					} else {
+						target = IOUtils.readInt(buf, position);
+						position += IOUtils.INT_BYTES;
+						lastSynchOwner = synchOwner;
+						lastSynchId = synchId;
+						lastGraphId = graphId;
+						lastMethodId = methodId;
+					}
 					node = graph.node(target);
 				} else if (type == GRAPH_ONTHEFLY) {
 					final OnTheFlyGraph<?> graph = (OnTheFlyGraph<?>) graphs[graphId];
@@ -904,7 +1015,14 @@ public final class Runtime {
 					throw new RuntimeException("Unrecognized graph with id " + graphId + " and type " + type);
 				}
 
-				if (synchronizer != null) {
+				if (Config.BATCHED_DISPATCH && target >= 0 && synchronizer != null) {
+					final int paramCount = node.hipg_parameters(methodId, buf, position);
+					addToBatch(target, node, synchronizer, methodId, position);
+					position += paramCount;
+				} else if (synchronizer != null) {
+					if (Config.BATCHED_DISPATCH) {
+						executeBatch(buf);
+					}
 					immediateDepth = 0;
 					synchronizer.receivedBasicMessage();
 					position = node.hipg_execute(methodId, synchronizer, buf, position);
@@ -920,6 +1038,10 @@ public final class Runtime {
 
 			} else {
 
+				if (Config.BATCHED_DISPATCH) {
+					executeBatch(buf);
+				}
+
 				switch (opcode) {
 
 				/* global barrier token */
@@ -1028,6 +1150,32 @@ public final class Runtime {
 					getSynchronizer(synchronizerOwner, synchronizerId).receivedReduceAnnounceToken(result, sender);
 					break;
 				}
+				/* all-reduce chunk */
+				case FastMessage.ALLREDUCE: {
+					final int synchronizerOwner = IOUtils.readInt(buf, position);
+					position += IOUtils.INT_BYTES;
+					final int synchronizerId = IOUtils.readInt(buf, position);
+					position += IOUtils.INT_BYTES;
+					final int allReduce = IOUtils.readInt(buf, position);
+					position += IOUtils.INT_BYTES;
+					final int step = IOUtils.readInt(buf, position);
+					position += IOUtils.INT_BYTES;
+					final byte[] chunk = IOUtils.readByteArray(buf, position);
+					final int chunkBytes = IOUtils.bytesByteArray(chunk);
+					position += chunkBytes;
+					if (Config.STATISTICS) {
+						Statistics.receivingReduceMessage(IOUtils.INT_BYTES * 5 + chunkBytes);
+					}
+
+					final Synchronizer synchronizer = getSynchronizer(synchronizerOwner, synchronizerId);
+					if (synchronizer != null)
+						synchronizer.receivedAllReduceChunk(allReduce, step, chunk);
+					else {
+						postponeTokenMessage(synchronizerOwner, synchronizerId, FastMessage.ALLREDUCE, new Object[] {
+								allReduce, step, chunk });
+					}
+					break;
+				}
 				/* barrier-and-reduce token */
 				case FastMessage.BARRED: {
 					final int synchOwner = IOUtils.readInt(buf, position);
@@ -1117,11 +1265,13 @@ public final class Runtime {
 					position += IOUtils.INT_BYTES;
 					final int id = IOUtils.readInt(buf, position);
 					position += IOUtils.INT_BYTES;
+					final int iss = IOUtils.readInt(buf, position);
+					position += IOUtils.INT_BYTES;
 					if (Config.STATISTICS) {
-						Statistics.receivingNotificationMessage(IOUtils.INT_BYTES * 4);
+						Statistics.receivingNotificationMessage(IOUtils.INT_BYTES * 5);
 					}
 
-					getSynchronizer(synchronizerOwner, synchronizerId).receivedNotificationAck(id);
+					getSynchronizer(synchronizerOwner, synchronizerId).receivedNotificationAck(id, iss);
 					break;
 				}
 				/* synchronizer id */
@@ -1194,6 +1344,55 @@ public final class Runtime {
 				}
 			}
 		}
+		if (Config.BATCHED_DISPATCH) {
+			executeBatch(buf);
+		}
+	}
+
+	/** Adds a received user message to the batch. */
+	private void addToBatch(final int target, final LocalNode<?> node, final Synchronizer synchronizer,
+			final short methodId, final int position) {
+		if (batchSize == batchKeys.length) {
+			final int capacity = Math.max(1024, batchSize * 2);
+			batchKeys = Arrays.copyOf(batchKeys, capacity);
+			batchNodes = Arrays.copyOf(batchNodes, capacity);
+			batchSynchronizers = Arrays.copyOf(batchSynchronizers, capacity);
+			batchMethods = Arrays.copyOf(batchMethods, capacity);
+			batchPositions = Arrays.copyOf(batchPositions, capacity);
+		}
+		final int index = batchSize++;
+		batchKeys[index] = ((long) target << 32) | index;
+		batchNodes[index] = node;
+		batchSynchronizers[index] = synchronizer;
+		batchMethods[index] = methodId;
+		batchPositions[index] = position;
+	}
+
+	/**
+	 * Executes the batched user messages. Large batches are executed in the order of their targets (messages to the
+	 * same target keep their order), so that the nodes are visited in memory order.
+	 */
+	private void executeBatch(final byte[] buf) {
+		final int size = batchSize;
+		if (size == 0) {
+			return;
+		}
+		batchSize = 0;
+		if (size >= Config.BATCHED_DISPATCH_SORT_MIN) {
+			Arrays.sort(batchKeys, 0, size);
+		}
+		for (int i = 0; i < size; i++) {
+			final int index = (int) batchKeys[i];
+			final Synchronizer synchronizer = batchSynchronizers[index];
+			immediateDepth = 0;
+			synchronizer.receivedBasicMessage();
+			batchNodes[index].hipg_execute(batchMethods[index], synchronizer, buf, batchPositions[index]);
+			batchNodes[index] = null;
+			batchSynchronizers[index] = null;
+		}
+		if (Config.STATISTICS) {
+			Statistics.executedBatch(size);
+		}
 	}
 
 	public void spawnOne(Synchronizer synchronizer) {
@@ -1361,6 +1560,10 @@ public final class Runtime {
 		}
 	}
 
+	public static LocalWorkList getLocalWorkList() {
+		return localWorkList;
+	}
+
 	public boolean aborted() {
 		return aborted;
 	}
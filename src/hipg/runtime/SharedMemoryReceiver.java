@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package hipg.runtime;
+
+import java.io.IOException;
+
+/**
+ * Receiver thread for messages from processes on the same host, sent through shared-memory rings. It plays the role
+ * of transport upcalls for these processes.
+ */
+public final class SharedMemoryReceiver extends Thread {
+	private volatile boolean done = false;
+	private volatile boolean finished = false;
+	private final Communication communication;
+	private final SharedMemoryRing[] rings;
+
+	public SharedMemoryReceiver(Communication communication, SharedMemoryRing[] rings) {
+		this.communication = communication;
+		this.rings = rings;
+		setName("SharedMemoryReceiver");
+		setDaemon(true);
+	}
+
+	@Override
+	public void run() {
+		int idle = 0;
+		try {
+			while (!done) {
+				boolean received = false;
+				for (int source = 0; source < rings.length; source++) {
+					final SharedMemoryRing ring = rings[source];
+					if (ring != null && ring.hasMessage()) {
+						communication.received(ring.readLength(), ring);
+						received = true;
+					}
+				}
+				idle = (received ? 0 : SharedMemoryRing.idle(idle));
+			}
+		} catch (IOException e) {
+			if (!done) {
+				throw new RuntimeException("Could not receive through shared memory", e);
+			}
+		} finally {
+			synchronized (this) {
+				finished = true;
+				notifyAll();
+			}
+		}
+	}
+
+	/** Stops receiving, also if waiting for the rest of a message from a process that died. */
+	public void close() {
+		done = true;
+		for (SharedMemoryRing ring : rings) {
+			if (ring != null) {
+				ring.close();
+			}
+		}
+		synchronized (this) {
+			while (!finished) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package hipg.runtime;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-producer single-consumer ring of messages in a memory-mapped file (typically in /dev/shm), used to send
+ * messages between two processes on the same host. Each message is stored as its length followed by its bytes. A
+ * message may be larger than the ring: it is then streamed through the ring in pieces.
+ * <p>
+ * The file starts with the total number of bytes written and the token of the run (on one cache line) and the total
+ * number of bytes read (on another), followed by the data. Only the writer updates the former and only the reader the
+ * latter. A position is stored after a fence that follows the copy of the data it covers, and loaded before a fence
+ * that precedes the copy of the data; the fence is a store to a volatile field followed by a load of it, which the
+ * JVM does not reorder with the accesses to the buffer around it.
+ * <p>
+ * The writer creates the ring with a reset header and moves it into place, the reader waits for a ring with the token
+ * of its run, maps it and removes the file, so a ring is never shared with processes of another run (even one with the
+ * same file name) and no file is left behind. A closed ring stops waiting, so that neither end blocks forever on a
+ * process that died.
+ */
+public final class SharedMemoryRing implements Transport.Input {
+
+	private static final int WRITE_POS = 0;
+	private static final int TOKEN = 8;
+	private static final int READ_POS = 64;
+	private static final int DATA = 128;
+
+	/** Time the reader waits for the writer to create the ring (ms). */
+	private static final long OPEN_TIMEOUT = 60000;
+
+	/** Shared file. */
+	private final File file;
+	/** Mapped file. */
+	private final MappedByteBuffer buffer;
+	/** Capacity of the data part. */
+	private final int capacity;
+	/** Local copies of the positions. */
+	private long writePos, readPos;
+	/** Buffer for message lengths. */
+	private final byte[] lengthBytes = new byte[4];
+	/** Target of the fences. */
+	private volatile int fence;
+	/** If this ring was closed. */
+	private volatile boolean closed = false;
+
+	private SharedMemoryRing(final File file, final MappedByteBuffer buffer, final int capacity) {
+		this.file = file;
+		this.buffer = buffer;
+		this.capacity = capacity;
+		this.writePos = buffer.getLong(WRITE_POS);
+		this.readPos = buffer.getLong(READ_POS);
+		fence();
+	}
+
+	/** Creates the writing end of a ring with a given capacity and run token, replacing a stale file. */
+	public static SharedMemoryRing create(final File file, final int capacity, final long token) throws IOException {
+		final File tmp = new File(file.getPath() + ".tmp");
+		final RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+		final SharedMemoryRing ring;
+		try {
+			final long length = DATA + (long) capacity;
+			raf.setLength(0);
+			raf.setLength(length);
+			final MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+			buffer.putLong(READ_POS, 0);
+			buffer.putLong(TOKEN, token);
+			buffer.putLong(WRITE_POS, 0);
+			ring = new SharedMemoryRing(file, buffer, capacity);
+		} finally {
+			raf.close();
+		}
+		if (!tmp.renameTo(file)) {
+			tmp.delete();
+			throw new IOException("Could not create " + file);
+		}
+		return ring;
+	}
+
+	/**
+	 * Opens the reading end of a ring with a given capacity and run token, waiting for the writer to create it. A file
+	 * with another token (left by another run) is ignored until the writer replaces it.
+	 */
+	public static SharedMemoryRing open(final File file, final int capacity, final long token) throws IOException {
+		final long length = DATA + (long) capacity;
+		final long deadline = System.currentTimeMillis() + OPEN_TIMEOUT;
+		while (true) {
+			if (file.length() >= length) {
+				final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+				try {
+					final MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+					if (buffer.getLong(TOKEN) == token) {
+						file.delete();
+						return new SharedMemoryRing(file, buffer, capacity);
+					}
+				} finally {
+					raf.close();
+				}
+			}
+			if (System.currentTimeMillis() > deadline) {
+				throw new IOException("Ring " + file + " not created in " + OPEN_TIMEOUT + "ms");
+			}
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				throw new IOException("Interrupted while waiting for " + file);
+			}
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	/* Writer */
+
+	/** Writes a message, waiting for space in the ring as necessary (until the ring is closed). */
+	public synchronized void write(final byte[] src, final int offset, final int length) {
+		lengthBytes[0] = (byte) (length >>> 24);
+		lengthBytes[1] = (byte) (length >>> 16);
+		lengthBytes[2] = (byte) (length >>> 8);
+		lengthBytes[3] = (byte) length;
+		put(lengthBytes, 0, 4);
+		put(src, offset, length);
+	}
+
+	private void put(final byte[] src, int offset, int length) {
+		int idle = 0;
+		while (length > 0) {
+			final long free = capacity - (writePos - buffer.getLong(READ_POS));
+			if (free <= 0) {
+				if (closed) {
+					throw new RuntimeException("Shared memory ring " + file + " closed");
+				}
+				idle = idle(idle);
+				continue;
+			}
+			fence();
+			idle = 0;
+			final int index = (int) (writePos % capacity);
+			final int n = (int) Math.min(Math.min(length, free), capacity - index);
+			buffer.position(DATA + index);
+			buffer.put(src, offset, n);
+			offset += n;
+			length -= n;
+			writePos += n;
+			fence();
+			buffer.putLong(WRITE_POS, writePos);
+		}
+	}
+
+	/* Reader */
+
+	/** Checks if a message is available (at least its length). */
+	public boolean hasMessage() {
+		return buffer.getLong(WRITE_POS) - readPos >= 4;
+	}
+
+	/** Reads the length of the next message, waiting for it as necessary (until the ring is closed). */
+	public int readLength() throws IOException {
+		get(lengthBytes, 0, 4);
+		return ((lengthBytes[0] & 0xff) << 24) | ((lengthBytes[1] & 0xff) << 16) | ((lengthBytes[2] & 0xff) << 8)
+				| (lengthBytes[3] & 0xff);
+	}
+
+	/** Reads (the rest of) a message, waiting for it as necessary (until the ring is closed). */
+	public void read(final byte[] dst, final int offset, final int length) throws IOException {
+		get(dst, offset, length);
+	}
+
+	private void get(final byte[] dst, int offset, int length) throws IOException {
+		int idle = 0;
+		while (length > 0) {
+			final long available = buffer.getLong(WRITE_POS) - readPos;
+			if (available <= 0) {
+				if (closed) {
+					throw new IOException("Shared memory ring " + file + " closed");
+				}
+				idle = idle(idle);
+				continue;
+			}
+			fence();
+			idle = 0;
+			final int index = (int) (readPos % capacity);
+			final int n = (int) Math.min(Math.min(length, available), capacity - index);
+			buffer.position(DATA + index);
+			buffer.get(dst, offset, n);
+			offset += n;
+			length -= n;
+			readPos += n;
+			fence();
+			buffer.putLong(READ_POS, readPos);
+		}
+	}
+
+	/** Waits a bit: spins first, then yields, then sleeps shortly. */
+	static int idle(final int idle) {
+		if (idle < 100) {
+			// spin
+		} else if (idle < 200) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(50000);
+		}
+		return idle + 1;
+	}
+
+	/**
+	 * Orders the accesses to the buffer before the fence with the accesses after it: a volatile store may not be
+	 * reordered with the accesses before it and a volatile load with the accesses after it. Returns the loaded value.
+	 */
+	private int fence() {
+		fence = 0;
+		return fence;
+	}
+
+	/** Closes this ring: waiting for the other end stops with an exception. */
+	public void close() {
+		closed = true;
+	}
+
+	/** Removes the shared file (if the reader has not removed it yet). */
+	public void delete() {
+		file.delete();
+	}
+
+	public String toString() {
+		return "SharedMemoryRing(" + file + ",written=" + buffer.getLong(WRITE_POS) + ",read="
+				+ buffer.getLong(READ_POS) + ")";
+	}
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package hipg.runtime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SharedMemoryRingTest {
+
+	private static byte[] message(final Random random, final int length) {
+		final byte[] message = new byte[length];
+		random.nextBytes(message);
+		return message;
+	}
+
+	@Test
+	public void testSmall() throws Exception {
+		final File file = File.createTempFile("hipg-ring", null);
+		try {
+			final SharedMemoryRing writer = SharedMemoryRing.create(file, 64, 1);
+			final SharedMemoryRing reader = SharedMemoryRing.open(file, 64, 1);
+			assertFalse(reader.hasMessage());
+			final Random random = new Random(7);
+			for (int i = 1; i < 200; i++) {
+				final byte[] message = message(random, i % 37 + 1);
+				writer.write(message, 0, message.length);
+				assertTrue(reader.hasMessage());
+				final int length = reader.readLength();
+				assertEquals(message.length, length);
+				final byte[] received = new byte[length];
+				reader.read(received, 0, length);
+				assertArrayEquals(message, received);
+				assertFalse(reader.hasMessage());
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testLargerThanRing() throws Exception {
+		final File file = File.createTempFile("hipg-ring", null);
+		try {
+			final SharedMemoryRing writer = SharedMemoryRing.create(file, 100, 1);
+			final SharedMemoryRing reader = SharedMemoryRing.open(file, 100, 1);
+			final Random random = new Random(13);
+			final byte[][] messages = new byte[50][];
+			for (int i = 0; i < messages.length; i++) {
+				messages[i] = message(random, random.nextInt(1000) + 1);
+			}
+			final Thread writerThread = new Thread() {
+				public void run() {
+					for (byte[] message : messages) {
+						writer.write(message, 0, message.length);
+					}
+				}
+			};
+			writerThread.start();
+			for (byte[] message : messages) {
+				final int length = reader.readLength();
+				assertEquals(message.length, length);
+				final byte[] received = new byte[length + 2];
+				reader.read(received, 1, length);
+				for (int j = 0; j < length; j++) {
+					assertEquals(message[j], received[j + 1]);
+				}
+			}
+			writerThread.join();
+			assertFalse(reader.hasMessage());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testStaleRing() throws Exception {
+		final File file = File.createTempFile("hipg-ring", null);
+		try {
+			SharedMemoryRing writer = SharedMemoryRing.create(file, 32, 1);
+			final byte[] message = new byte[] { 1, 2, 3, 4, 5 };
+			writer.write(message, 0, message.length);
+			// A ring left with unread messages is replaced by a new writer.
+			writer = SharedMemoryRing.create(file, 32, 1);
+			final SharedMemoryRing reader = SharedMemoryRing.open(file, 32, 1);
+			assertFalse(reader.hasMessage());
+			assertFalse(file.exists());
+			writer.write(message, 0, message.length);
+			final byte[] received = new byte[reader.readLength()];
+			reader.read(received, 0, received.length);
+			assertArrayEquals(message, received);
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testRingOfAnotherRun() throws Exception {
+		final File file = File.createTempFile("hipg-ring", null);
+		try {
+			final SharedMemoryRing stale = SharedMemoryRing.create(file, 32, 1);
+			final byte[] message = new byte[] { 1, 2, 3 };
+			stale.write(message, 0, message.length);
+			// The reader waits until the writer of its own run replaces the ring.
+			final SharedMemoryRing[] writer = new SharedMemoryRing[1];
+			final Thread writerThread = new Thread() {
+				public void run() {
+					try {
+						Thread.sleep(100);
+						writer[0] = SharedMemoryRing.create(file, 32, 2);
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+				}
+			};
+			writerThread.start();
+			final SharedMemoryRing reader = SharedMemoryRing.open(file, 32, 2);
+			writerThread.join();
+			assertFalse(reader.hasMessage());
+			writer[0].write(message, 0, message.length);
+			assertEquals(message.length, reader.readLength());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testClose() throws Exception {
+		final File file = File.createTempFile("hipg-ring", null);
+		try {
+			SharedMemoryRing.create(file, 32, 1);
+			final SharedMemoryRing reader = SharedMemoryRing.open(file, 32, 1);
+			final boolean[] stopped = new boolean[1];
+			final Thread readerThread = new Thread() {
+				public void run() {
+					try {
+						reader.readLength();
+					} catch (IOException e) {
+						stopped[0] = true;
+					}
+				}
+			};
+			readerThread.start();
+			Thread.sleep(100);
+			// The writer never writes: closing the ring stops the reader.
+			reader.close();
+			readerThread.join(10000);
+			assertTrue(stopped[0]);
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -71,20 +71,29 @@ public final class Statistics {
 	private static Vector<Integer> runtimeBarriersLoops = new Vector<Integer>();
 	private static Vector<Integer> runtimeBarriersLoopsWithUserMessagesProcessed = new Vector<Integer>();
 	private static Vector<Integer> runtimeBarriersLoopsWithYield = new Vector<Integer>();
+	private static Vector<Integer> runtimeBarriersLoopsWithPark = new Vector<Integer>();
+	private static long numRuntimeParks = 0, runtimeParksTotalTime = 0;
 	private static long numRuntimeNices = 0;
 	private static long runtimeNicesTotalTime = 0, runtimeNicesStartTime = 0;
+	private static long numRuntimePreemptions = 0;
 
 	public static void startingRuntimeBarrier() {
 		runtimeBarriersTime.add(System.nanoTime());
 	}
 
 	public static void doneRuntimeBarrier(int barrierLoops, int barrierLoopsWithUserMessagesProcessed,
-			int barrierLoopsWithYield) {
+			int barrierLoopsWithYield, int barrierLoopsWithPark) {
 		final long startTime = runtimeBarriersTime.remove(runtimeBarriersTime.size() - 1);
 		runtimeBarriersTime.add(System.nanoTime() - startTime);
 		runtimeBarriersLoops.add(barrierLoops);
 		runtimeBarriersLoopsWithUserMessagesProcessed.add(barrierLoopsWithUserMessagesProcessed);
 		runtimeBarriersLoopsWithYield.add(barrierLoopsWithYield);
+		runtimeBarriersLoopsWithPark.add(barrierLoopsWithPark);
+	}
+
+	public static void runtimeParked(long parkedTime) {
+		numRuntimeParks++;
+		runtimeParksTotalTime += parkedTime;
 	}
 
 	public static void startingRuntimeNice() {
@@ -96,6 +105,10 @@ public final class Statistics {
 		runtimeNicesTotalTime = System.nanoTime() - runtimeNicesStartTime;
 	}
 
+	public static void runtimePreempted() {
+		numRuntimePreemptions++;
+	}
+
 	public static void getRuntimeReport(final StringBuilder sb, final String prefix, final String delimiter) {
 		append(sb, "rank", Runtime.getRank(), prefix, delimiter);
 		append(sb, "poolSize", Runtime.getPoolSize(), prefix, delimiter);
@@ -108,14 +121,20 @@ public final class Statistics {
 					.valueOf(runtimeBarriersLoopsWithUserMessagesProcessed.get(i)) : "?";
 			final String loopsWithYield = i < runtimeBarriersLoopsWithYield.size() ? String
 					.valueOf(runtimeBarriersLoopsWithYield.get(i)) : "?";
+			final String loopsWithPark = i < runtimeBarriersLoopsWithPark.size() ? String
+					.valueOf(runtimeBarriersLoopsWithPark.get(i)) : "?";
 			append(sb, "runtimeBarrier-" + i + ":Time", time, prefix, delimiter);
 			append(sb, "runtimeBarrier-" + i + ":Loops", loops, prefix, delimiter);
 			append(sb, "runtimeBarrier-" + i + ":LoopsWithUserMessagesProcessed", loopsWithUserMessagesProcessed,
 					prefix, delimiter);
 			append(sb, "runtimeBarrier-" + i + ":LoopsWithYield", loopsWithYield, prefix, delimiter);
+			append(sb, "runtimeBarrier-" + i + ":LoopsWithPark", loopsWithPark, prefix, delimiter);
 		}
+		append(sb, "numRuntimeParks", numRuntimeParks, prefix, delimiter);
+		append(sb, "runtimeParksTotalTime", ConversionUtils.ns2sec(runtimeParksTotalTime), prefix, delimiter);
 		append(sb, "numRuntimeNices", numRuntimeNices, prefix, delimiter);
 		append(sb, "runtimeNicesTotalTime", ConversionUtils.ns2sec(runtimeNicesTotalTime), prefix, delimiter);
+		append(sb, "numRuntimePreemptions", numRuntimePreemptions, prefix, delimiter);
 	}
 
 	/* Global barrier */
@@ -171,6 +190,9 @@ public final class Statistics {
 
 	private static long openedConnections = 0;
 	private static long openedConnectionsFailedAttempts = 0;
+	private static long openedSharedMemoryConnections = 0;
+	private static long startupTransportTime = 0;
+	private static long startupCommunicationTime = 0;
 
 	public static void openedConnection() {
 		openedConnections++;
@@ -180,9 +202,56 @@ public final class Statistics {
 		openedConnectionsFailedAttempts++;
 	}
 
+	public static void openedSharedMemoryConnection() {
+		openedSharedMemoryConnections++;
+	}
+
+	public static void startedTransport(long time) {
+		startupTransportTime = time;
+	}
+
+	public static void startedCommunication(long time) {
+		startupCommunicationTime = time;
+	}
+
 	public static void getOpenConnectionsReport(final StringBuilder sb, final String prefix, final String delimiter) {
 		append(sb, "openedConnections", openedConnections, prefix, delimiter);
 		append(sb, "openedConnectionsFailedAttempts", openedConnectionsFailedAttempts, prefix, delimiter);
+		append(sb, "openedSharedMemoryConnections", openedSharedMemoryConnections, prefix, delimiter);
+		append(sb, "startupTransportTime", ConversionUtils.ns2sec(startupTransportTime), prefix, delimiter);
+		append(sb, "startupCommunicationTime", ConversionUtils.ns2sec(startupCommunicationTime), prefix, delimiter);
+	}
+
+	/* Block compression. */
+
+	private static long compressedBlocks = 0, compressedBytesBefore = 0, compressedBytesAfter = 0;
+	private static long compressionTime = 0;
+	private static long decompressedBlocks = 0, decompressedBytesBefore = 0, decompressedBytesAfter = 0;
+	private static long decompressionTime = 0;
+
+	public static void compressedBlock(long before, long after, long time) {
+		compressedBlocks++;
+		compressedBytesBefore += before;
+		compressedBytesAfter += after;
+		compressionTime += time;
+	}
+
+	public static void decompressedBlock(long before, long after, long time) {
+		decompressedBlocks++;
+		decompressedBytesBefore += before;
+		decompressedBytesAfter += after;
+		decompressionTime += time;
+	}
+
+	public static void getBlockCompressionReport(final StringBuilder sb, final String prefix, final String delimiter) {
+		append(sb, "compressedBlocks", compressedBlocks, prefix, delimiter);
+		append(sb, "compressedBytesBefore", compressedBytesBefore, prefix, delimiter);
+		append(sb, "compressedBytesAfter", compressedBytesAfter, prefix, delimiter);
+		append(sb, "compressionTime", ConversionUtils.ns2sec(compressionTime), prefix, delimiter);
+		append(sb, "decompressedBlocks", decompressedBlocks, prefix, delimiter);
+		append(sb, "decompressedBytesBefore", decompressedBytesBefore, prefix, delimiter);
+		append(sb, "decompressedBytesAfter", decompressedBytesAfter, prefix, delimiter);
+		append(sb, "decompressionTime", ConversionUtils.ns2sec(decompressionTime), prefix, delimiter);
 	}
 
 	/* Send and receive buffers. */
@@ -235,12 +304,24 @@ public final class Statistics {
 	private static long receivedTestMessages = 0, receivedTestMessagesTotalLength = 0;
 	private static long sentAbortMessages = 0, sentAbortMessagesTotalLength = 0;
 	private static long receivedAbortMessages = 0, receivedAbortMessagesTotalLength = 0;
+	private static long sentCompactUserMessages = 0;
+	private static long executedBatches = 0, executedBatchedMessages = 0;
 
 	public static void gettingUserMessage(final int size) {
 		sentUserMessages++;
 		sentUserMessagesTotalLength += size;
 	}
 
+	public static void compactedUserMessage(final int savedBytes) {
+		sentCompactUserMessages++;
+		sentUserMessagesTotalLength -= savedBytes;
+	}
+
+	public static void executedBatch(final int size) {
+		executedBatches++;
+		executedBatchedMessages += size;
+	}
+
 	public static void receivingUserMessage(final int size) {
 		receivedUserMessages++;
 		receivedUserMessagesTotalLength += size;
@@ -371,6 +452,9 @@ public final class Statistics {
 				receivedTestMessagesTotalLength, prefix, delimiter);
 		appendTable4(sb, "abortMessages", sentAbortMessages, sentAbortMessagesTotalLength, receivedAbortMessages,
 				receivedAbortMessagesTotalLength, prefix, delimiter);
+		append(sb, "sentCompactUserMessages", sentCompactUserMessages, prefix, delimiter);
+		append(sb, "executedBatches", executedBatches, prefix, delimiter);
+		append(sb, "executedBatchedMessages", executedBatchedMessages, prefix, delimiter);
 	}
 
 	/* Sent and received bytes. */
@@ -641,6 +725,11 @@ public final class Statistics {
 	private static long reduceInitializations = 0;
 	private static long reducePostpones = 0;
 
+	// All-reduces.
+	private static long totalNumAllReduces = 0;
+	private static long allReduceInitializations = 0;
+	private static long allReduceBytes = 0;
+
 	// Barrier&Reduces.
 	private static long totalNumBarrierAndReduces = 0;
 	private static long barrierAndReduceInitializations = 0;
@@ -648,10 +737,13 @@ public final class Statistics {
 
 	// Notifications.
 	private static long totalNumNotifications = 0;
+	private static long notificationsCoalesced = 0;
 
 	// Stack
 	private static long synchronizersProcessStackNumCalls = 0;
 	private static long synchronizersProcessStackSum = 0;
+	private static long localWorkListDrains = 0;
+	private static long localWorkListDrainedSum = 0;
 
 	public static void newBarrier() {
 		totalNumBarriers++;
@@ -677,6 +769,15 @@ public final class Statistics {
 		reducePostpones++;
 	}
 
+	public static void newAllReduce() {
+		totalNumAllReduces++;
+	}
+
+	public static void allReduceInitialized(int bytes) {
+		allReduceInitializations++;
+		allReduceBytes += bytes;
+	}
+
 	public static void newBarrierAndReduce() {
 		totalNumBarrierAndReduces++;
 	}
@@ -693,11 +794,20 @@ public final class Statistics {
 		totalNumNotifications++;
 	}
 
+	public static void notificationCoalesced() {
+		notificationsCoalesced++;
+	}
+
 	public static void processedStack(int numElements) {
 		synchronizersProcessStackSum += numElements;
 		synchronizersProcessStackNumCalls++;
 	}
 
+	public static void drainedLocalWork(int numElements) {
+		localWorkListDrainedSum += numElements;
+		localWorkListDrains++;
+	}
+
 	public static void getSynchronizerReport(final StringBuilder sb, final String prefix, final String delimiter) {
 		append(sb, "totalNumBarriers", totalNumBarriers, prefix, delimiter);
 		append(sb, "barrierInitializations", barrierInitializations, prefix, delimiter);
@@ -707,15 +817,22 @@ public final class Statistics {
 		append(sb, "reduceInitializations", reduceInitializations, prefix, delimiter);
 		append(sb, "reducePospones", reducePostpones, prefix, delimiter);
 
+		append(sb, "totalNumAllReduces", totalNumAllReduces, prefix, delimiter);
+		append(sb, "allReduceInitializations", allReduceInitializations, prefix, delimiter);
+		append(sb, "allReduceBytes", allReduceBytes, prefix, delimiter);
+
 		append(sb, "totalNumBarrierAndReduces", totalNumBarrierAndReduces, prefix, delimiter);
 		append(sb, "barrierAndReduceInitializations", barrierAndReduceInitializations, prefix, delimiter);
 		append(sb, "barrierAndReducePospones", barrierAndReducePostpones, prefix, delimiter);
 
 		append(sb, "totalNumNotifications", totalNumNotifications, prefix, delimiter);
+		append(sb, "notificationsCoalesced", notificationsCoalesced, prefix, delimiter);
 
 		append(sb, "synchronizersProcessStackNumCalls", synchronizersProcessStackNumCalls, prefix, delimiter);
 		append(sb, "synchronizersProcessStackAvg", (double) synchronizersProcessStackSum
 				/ (double) synchronizersProcessStackNumCalls, prefix, delimiter);
+		append(sb, "localWorkListDrains", localWorkListDrains, prefix, delimiter);
+		append(sb, "localWorkListDrainedSum", localWorkListDrainedSum, prefix, delimiter);
 	}
 
 	/** Returns the entire report. */
@@ -746,6 +863,12 @@ public final class Statistics {
 		} catch (Throwable t) {
 			sb.append("exception: " + t.getMessage());
 		}
+		sb.append("Block compression:" + delimiter);
+		try {
+			getBlockCompressionReport(sb, prefix, delimiter);
+		} catch (Throwable t) {
+			sb.append("exception: " + t.getMessage());
+		}
 		sb.append("Allocated buffers: " + delimiter);
 		try {
 			getAllocatedBuffersReport(sb, prefix, delimiter);
@@ -21,6 +21,8 @@ package hipg.runtime;
 import hipg.Config;
 import hipg.LocalNode;
 import hipg.Node;
+import hipg.graph.ActiveSet;
+import hipg.graph.ExplicitGraph;
 import myutils.IOUtils;
 import myutils.ObjectCache;
 import myutils.storage.bigarray.BigByteQueue;
@@ -111,10 +113,14 @@ public abstract class Synchronizer implements hipg.Synchronizer {
 	transient private Barrier barrier = null;
 	transient private BarrierAndReduce barrierAndReduce = null;
 	transient private Reduce reduce = null;
+	transient private AllReduce allReduce = null;
 	transient private Notification notification = null;
 	transient private boolean inSync = false;
 	transient private int lastReduceProtocol = -1;
 
+	/** Active sets of this synchronizer (one per graph). */
+	transient private ActiveSet<?>[] activeSets = null;
+
 	/** Creates root synchronizer. */
 	public Synchronizer() {
 	}
@@ -388,6 +394,12 @@ public abstract class Synchronizer implements hipg.Synchronizer {
 			if (!reduce.isDone())
 				return false;
 		}
+		// check all-reduce
+		if (allReduce != null && !allReduce.isDone()) {
+			allReduce.progress();
+			if (!allReduce.isDone())
+				return false;
+		}
 		// for ambassadors: we're done
 		if (isAmbassador()) {
 			return false;
@@ -443,12 +455,35 @@ public abstract class Synchronizer implements hipg.Synchronizer {
 		reduce.init();
 	}
 
+	/**
+	 * Initiates an all-reduce method with a given initial value, an array of elements of a given type combined
+	 * element-wise with a given operation. Small values are reduced as in a normal reduce.
+	 */
+	public final void allReduce(final short reduceMethodId, final byte type, final byte op, final byte[] initialValue) {
+		if (!valid)
+			invalid();
+		if (executionMode != EXECUTION_ALL || !Runtime.getRuntime().hasCoworkers() || initialValue == null
+				|| initialValue.length < Config.ALLREDUCE_THRESHOLD) {
+			reduce(reduceMethodId, initialValue);
+			return;
+		}
+		if (allReduce == null)
+			allReduce = new AllReduce(this);
+		if (Config.FINEDEBUG && logger.isDebugEnabled())
+			logger.debug(loggerPrefix + "Starting all-reduce " + reduceMethodId);
+		lastReduceProtocol = 3;
+		allReduce.set(reduceMethodId, type, op, initialValue);
+		allReduce.init();
+	}
+
 	/**
 	 * Gets result of the last reduce method (valid only after the reduce method finished).
 	 */
 	protected final byte[] result() {
 		if (lastReduceProtocol == 0)
 			return reduce.result();
+		else if (lastReduceProtocol == 3)
+			return allReduce.result();
 		else
 			return barrierAndReduce.result();
 	}
@@ -566,6 +601,12 @@ public abstract class Synchronizer implements hipg.Synchronizer {
 		this.reduce.receivedContinue();
 	}
 
+	final void receivedAllReduceChunk(final int allReduce, final int step, final byte[] chunk) {
+		if (this.allReduce == null)
+			this.allReduce = new AllReduce(this);
+		this.allReduce.received(allReduce, step, chunk);
+	}
+
 	final void receivedBarrierReduceToken(final int barrier, final int sum, final int master) {
 		if (this.barrierAndReduce == null)
 			this.barrierAndReduce = new BarrierAndReduce(this);
@@ -587,8 +628,8 @@ public abstract class Synchronizer implements hipg.Synchronizer {
 		this.notification.received(notificationMethodId, value, id, issuer);
 	}
 
-	final void receivedNotificationAck(final int id) {
-		this.notification.receivedAck(id);
+	final void receivedNotificationAck(final int id, final int issuer) {
+		this.notification.receivedAck(id, issuer);
 	}
 
 	final boolean passive() {
@@ -649,6 +690,7 @@ public abstract class Synchronizer implements hipg.Synchronizer {
 			sb.append("father=" + fatherName() + " ");
 			sb.append("barrier=" + barrier + " ");
 			sb.append("reduce=" + (reduce == null ? "null" : reduce) + " ");
+			sb.append("allreduce=" + (allReduce == null ? "null" : allReduce) + " ");
 			sb.append("barr&red=" + (barrierAndReduce == null ? "null" : barrierAndReduce) + " ");
 			sb.append("insync=" + inSync);
 		}
@@ -674,6 +716,59 @@ public abstract class Synchronizer implements hipg.Synchronizer {
 		return mc;
 	}
 
+	/**
+	 * Gets the set of active nodes of a graph used by this synchronizer on this worker, creating an empty one when
+	 * called for the first time.
+	 */
+	@SuppressWarnings("unchecked")
+	public final <TNode extends Node> ActiveSet<TNode> activeSet(final ExplicitGraph<TNode> graph) {
+		if (activeSets == null) {
+			activeSets = new ActiveSet<?>[1];
+		}
+		int i = 0;
+		for (; i < activeSets.length && activeSets[i] != null; i++) {
+			if (activeSets[i].getGraph() == graph) {
+				return (ActiveSet<TNode>) activeSets[i];
+			}
+		}
+		if (i == activeSets.length) {
+			final ActiveSet<?>[] newActiveSets = new ActiveSet<?>[2 * i];
+			System.arraycopy(activeSets, 0, newActiveSets, 0, i);
+			activeSets = newActiveSets;
+		}
+		final ActiveSet<TNode> activeSet = new ActiveSet<TNode>(graph);
+		activeSets[i] = activeSet;
+		return activeSet;
+	}
+
+	/**
+	 * Counts nodes active in the current superstep in the active sets of this synchronizer on all workers.
+	 */
+	@hipg.Reduce
+	public long countActive(long count) {
+		if (activeSets != null) {
+			for (int i = 0; i < activeSets.length && activeSets[i] != null; i++) {
+				count += activeSets[i].size();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Checks if any node is active in the current superstep in the active sets of this synchronizer on any worker.
+	 */
+	@hipg.Reduce
+	public boolean anyActive(boolean any) {
+		if (!any && activeSets != null) {
+			for (int i = 0; i < activeSets.length && activeSets[i] != null; i++) {
+				if (!activeSets[i].isEmpty()) {
+					return true;
+				}
+			}
+		}
+		return any;
+	}
+
 	public byte[] hipg_reduce(final short reduceMethodId, final byte[] param) {
 		throw new RuntimeException("hipg_reduce() not defined. Did you use the rewriter?");
 	}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2009-2011 Vrije Universiteit Amsterdam
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package hipg.runtime;
+
+import java.io.IOException;
+
+/**
+ * Transport underlying communication. A transport establishes the pool of processes, assigns the ranks and moves
+ * (already serialized) messages between the processes. Messages are sent and received as contiguous byte arrays: the
+ * transport must deliver the bytes passed to {@link #send(int, byte[], int, int)} as one message, in order with the
+ * other messages to the same destination.
+ */
+public interface Transport {
+
+	/** Source of the contents of a received message. */
+	public static interface Input {
+		/** Reads exactly len bytes into buf at off. */
+		public void read(byte[] buf, int off, int len) throws IOException;
+	}
+
+	/** Handler of received messages. */
+	public static interface Receiver {
+		/** Handles a received message of the given size, whose contents must be read from the input. */
+		public void received(int size, Input input) throws IOException;
+	}
+
+	/** Joins the pool. Blocks until the rank is known and all processes in the pool can be reached. */
+	public void start(Receiver receiver) throws IOException;
+
+	/** Starts delivering received messages to the receiver. */
+	public void enableReceiving();
+
+	public int getRank();
+
+	/** Name of this process. */
+	public String getName();
+
+	/** Name of the process with the given rank. */
+	public String getName(int rank);
+
+	public String getPoolName();
+
+	/** Checks if the process with the given rank runs on the same host as this process. */
+	public boolean isLocal(int rank);
+
+	/**
+	 * Sends a message.
+	 * 
+	 * @return Number of bytes sent
+	 */
+	public long send(int dest, byte[] buf, int off, int len) throws IOException;
+
+	/** Reports that the process with the given rank might have died. */
+	public void maybeDead(int rank);
+
+	public void close();
+
+}